@@ -25,6 +25,8 @@ package ru.beykerykt.minecraft.lightapi.bukkit.api.extension;
 
 import org.bukkit.World;
 
+import java.nio.ByteBuffer;
+
 import ru.beykerykt.minecraft.lightapi.bukkit.internal.handler.IHandler;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.EditPolicy;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.SendPolicy;
@@ -43,6 +45,13 @@ public interface IBukkitExtension extends IExtension {
      */
     int getLightLevel(World world, int blockX, int blockY, int blockZ, int lightFlags);
 
+    /**
+     * Gets the levels of light in the given region with specific flags. Levels are packed as nibbles
+     * into the buffer, see {@link ru.beykerykt.minecraft.lightapi.common.api.engine.LightLevelBuffer}.
+     */
+    int getLightLevels(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ, int lightFlags,
+            ByteBuffer out);
+
     /**
      * Placement of a specific type of light with a given level of illumination in the named world in
      * certain coordinates with the return code result.
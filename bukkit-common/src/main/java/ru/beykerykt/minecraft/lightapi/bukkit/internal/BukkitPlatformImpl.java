@@ -24,12 +24,15 @@
 package ru.beykerykt.minecraft.lightapi.bukkit.internal;
 
 import org.bstats.bukkit.Metrics;
+import org.bstats.charts.SimplePie;
+import org.bstats.charts.SingleLineChart;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.World;
 import org.bukkit.configuration.file.FileConfiguration;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.UUID;
 
 import ru.beykerykt.minecraft.lightapi.bukkit.BukkitPlugin;
@@ -39,6 +42,10 @@ import ru.beykerykt.minecraft.lightapi.bukkit.internal.engine.sched.BukkitSchedu
 import ru.beykerykt.minecraft.lightapi.bukkit.internal.handler.CompatibilityHandler;
 import ru.beykerykt.minecraft.lightapi.bukkit.internal.handler.IHandler;
 import ru.beykerykt.minecraft.lightapi.bukkit.internal.handler.IHandlerFactory;
+import ru.beykerykt.minecraft.lightapi.bukkit.internal.handler.VirtualLightHandler;
+import ru.beykerykt.minecraft.lightapi.bukkit.internal.listener.LightIndexListener;
+import ru.beykerykt.minecraft.lightapi.bukkit.internal.listener.LightRestoreListener;
+import ru.beykerykt.minecraft.lightapi.bukkit.internal.listener.WorldListener;
 import ru.beykerykt.minecraft.lightapi.bukkit.internal.service.BukkitBackgroundServiceImpl;
 import ru.beykerykt.minecraft.lightapi.bukkit.internal.utils.VersionUtil;
 import ru.beykerykt.minecraft.lightapi.common.Build;
@@ -53,7 +60,16 @@ import ru.beykerykt.minecraft.lightapi.common.internal.InternalCode;
 import ru.beykerykt.minecraft.lightapi.common.internal.PlatformType;
 import ru.beykerykt.minecraft.lightapi.common.internal.chunks.observer.IChunkObserver;
 import ru.beykerykt.minecraft.lightapi.common.internal.engine.ILightEngine;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.sched.DeadlineScheduler;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.sched.IScheduledLightEngine;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.sched.IScheduler;
+import ru.beykerykt.minecraft.lightapi.common.internal.index.LightIndex;
+import ru.beykerykt.minecraft.lightapi.common.internal.operation.LightOperationManager;
+import ru.beykerykt.minecraft.lightapi.common.internal.restore.LightRestorePipeline;
 import ru.beykerykt.minecraft.lightapi.common.internal.service.IBackgroundService;
+import ru.beykerykt.minecraft.lightapi.common.internal.source.LightSourceManager;
+import ru.beykerykt.minecraft.lightapi.common.internal.storage.ILightStorage;
+import ru.beykerykt.minecraft.lightapi.common.internal.storage.RegionLightStorage;
 
 public class BukkitPlatformImpl implements IPlatformImpl, IBukkitExtension {
 
@@ -65,6 +81,14 @@ public class BukkitPlatformImpl implements IPlatformImpl, IBukkitExtension {
     private final String CONFIG_DEBUG = CONFIG_TITLE + ".debug";
     private final String CONFIG_ENABLE_METRICS = CONFIG_TITLE + ".enable-metrics";
     private final String CONFIG_ENABLE_COMPATIBILITY_MODE = CONFIG_TITLE + ".enable-compatibility-mode";
+    private final String CONFIG_ENABLE_VIRTUAL_LIGHT_MODE = CONFIG_TITLE + ".enable-virtual-light-mode";
+    private final String CONFIG_ENABLE_LIGHT_STORAGE = CONFIG_TITLE + ".enable-light-storage";
+    private final String CONFIG_LIGHT_STORAGE_FLUSH_PERIOD = CONFIG_TITLE + ".light-storage-flush-period-ms";
+    private final String CONFIG_ENABLE_LIGHT_INDEX = CONFIG_TITLE + ".enable-light-index";
+    private final String CONFIG_RESTORE_MAX_CHUNKS_PER_TICK = CONFIG_TITLE + ".restore-max-chunks-per-tick";
+    private final String CONFIG_RESTORE_MAX_LIGHTS_PER_TICK = CONFIG_TITLE + ".restore-max-lights-per-tick";
+    private final String CONFIG_OPERATION_MAX_EDITS_PER_TICK = CONFIG_TITLE + ".operation-max-edits-per-tick";
+    private final String CONFIG_OPERATION_MAX_PENDING_REQUESTS = CONFIG_TITLE + ".operation-max-pending-requests";
     private final String CONFIG_FORCE_ENABLE_LEGACY = CONFIG_TITLE + ".force-enable-legacy";
     private final String CONFIG_SPECIFIC_HANDLER_PATH = CONFIG_TITLE + ".specific-handler-path";
     private final String CONFIG_HANDLERS_TITLE = CONFIG_TITLE + ".handlers";
@@ -78,6 +102,11 @@ public class BukkitPlatformImpl implements IPlatformImpl, IBukkitExtension {
     private IChunkObserver mChunkObserver;
     private ILightEngine mLightEngine;
     private IBackgroundService mBackgroundService;
+    private ILightStorage mLightStorage;
+    private LightIndex mLightIndex;
+    private LightRestorePipeline mRestorePipeline;
+    private LightSourceManager mLightSourceManager;
+    private LightOperationManager mLightOperationManager;
     private IExtension mExtension;
     private UUID mUUID;
 
@@ -102,6 +131,14 @@ public class BukkitPlatformImpl implements IPlatformImpl, IBukkitExtension {
                 getConfig().set(CONFIG_DEBUG, false);
                 getConfig().set(CONFIG_ENABLE_METRICS, true);
                 getConfig().set(CONFIG_ENABLE_COMPATIBILITY_MODE, false);
+                getConfig().set(CONFIG_ENABLE_VIRTUAL_LIGHT_MODE, false);
+                getConfig().set(CONFIG_ENABLE_LIGHT_STORAGE, false);
+                getConfig().set(CONFIG_LIGHT_STORAGE_FLUSH_PERIOD, 5000);
+                getConfig().set(CONFIG_ENABLE_LIGHT_INDEX, false);
+                getConfig().set(CONFIG_RESTORE_MAX_CHUNKS_PER_TICK, 8);
+                getConfig().set(CONFIG_RESTORE_MAX_LIGHTS_PER_TICK, 2048);
+                getConfig().set(CONFIG_OPERATION_MAX_EDITS_PER_TICK, 4096);
+                getConfig().set(CONFIG_OPERATION_MAX_PENDING_REQUESTS, 16384);
                 if (Build.API_VERSION == Build.PREVIEW) { // only for PREVIEW build
                     getConfig().set(CONFIG_FORCE_ENABLE_LEGACY, true);
                 } else {
@@ -140,6 +177,38 @@ public class BukkitPlatformImpl implements IPlatformImpl, IBukkitExtension {
             getConfig().set(CONFIG_ENABLE_COMPATIBILITY_MODE, false);
             needSave = true;
         }
+        if (!getConfig().isSet(CONFIG_ENABLE_VIRTUAL_LIGHT_MODE)) {
+            getConfig().set(CONFIG_ENABLE_VIRTUAL_LIGHT_MODE, false);
+            needSave = true;
+        }
+        if (!getConfig().isSet(CONFIG_ENABLE_LIGHT_STORAGE)) {
+            getConfig().set(CONFIG_ENABLE_LIGHT_STORAGE, false);
+            needSave = true;
+        }
+        if (!getConfig().isSet(CONFIG_LIGHT_STORAGE_FLUSH_PERIOD)) {
+            getConfig().set(CONFIG_LIGHT_STORAGE_FLUSH_PERIOD, 5000);
+            needSave = true;
+        }
+        if (!getConfig().isSet(CONFIG_ENABLE_LIGHT_INDEX)) {
+            getConfig().set(CONFIG_ENABLE_LIGHT_INDEX, false);
+            needSave = true;
+        }
+        if (!getConfig().isSet(CONFIG_RESTORE_MAX_CHUNKS_PER_TICK)) {
+            getConfig().set(CONFIG_RESTORE_MAX_CHUNKS_PER_TICK, 8);
+            needSave = true;
+        }
+        if (!getConfig().isSet(CONFIG_RESTORE_MAX_LIGHTS_PER_TICK)) {
+            getConfig().set(CONFIG_RESTORE_MAX_LIGHTS_PER_TICK, 2048);
+            needSave = true;
+        }
+        if (!getConfig().isSet(CONFIG_OPERATION_MAX_EDITS_PER_TICK)) {
+            getConfig().set(CONFIG_OPERATION_MAX_EDITS_PER_TICK, 4096);
+            needSave = true;
+        }
+        if (!getConfig().isSet(CONFIG_OPERATION_MAX_PENDING_REQUESTS)) {
+            getConfig().set(CONFIG_OPERATION_MAX_PENDING_REQUESTS, 16384);
+            needSave = true;
+        }
         if (!getConfig().isSet(CONFIG_SPECIFIC_HANDLER_PATH)) {
             getConfig().set(CONFIG_SPECIFIC_HANDLER_PATH, "none");
             needSave = true;
@@ -165,6 +234,17 @@ public class BukkitPlatformImpl implements IPlatformImpl, IBukkitExtension {
             return;
         }
 
+        // virtual light mode (1.17+), the world is not changed at all
+        if (getConfig().getBoolean(CONFIG_ENABLE_VIRTUAL_LIGHT_MODE)) {
+            if (VersionUtil.compareBukkitVersionTo("1.17") >= 0) {
+                info("Virtual light mode is enabled");
+                mHandler = new VirtualLightHandler();
+                return;
+            } else {
+                error("Virtual light mode can only work on versions > 1.17");
+            }
+        }
+
         // compatibility mode (1.17+)
         compatibilityMode = getConfig().getBoolean(CONFIG_ENABLE_COMPATIBILITY_MODE);
         if (compatibilityMode) {
@@ -197,10 +277,26 @@ public class BukkitPlatformImpl implements IPlatformImpl, IBukkitExtension {
         debug("Handler is loaded: " + mHandler.getClass().getName());
     }
 
+    private IScheduler getScheduler() {
+        if (mLightEngine instanceof IScheduledLightEngine) {
+            return ((IScheduledLightEngine) mLightEngine).getScheduler();
+        }
+        return null;
+    }
+
     private void enableMetrics() {
         boolean enableMetrics = getConfig().getBoolean(CONFIG_ENABLE_METRICS);
         if (enableMetrics) {
             Metrics metrics = new Metrics(getPlugin(), BSTATS_ID);
+            metrics.addCustomChart(new SimplePie("scheduler_type", () -> getScheduler() != null
+                    ? getScheduler().getType().name() : "NONE"));
+            metrics.addCustomChart(new SingleLineChart("missed_deadlines", () -> {
+                if (!(getScheduler() instanceof DeadlineScheduler)) {
+                    return 0;
+                }
+                long count = ((DeadlineScheduler) getScheduler()).takeUnreportedMissedCount();
+                return (int) Math.min(count, Integer.MAX_VALUE);
+            }));
         }
         info("Metrics is " + (enableMetrics ? "en" : "dis") + "abled!");
     }
@@ -232,6 +328,9 @@ public class BukkitPlatformImpl implements IPlatformImpl, IBukkitExtension {
             return ResultCode.FAILED;
         }
 
+        // forward world events to handler
+        Bukkit.getPluginManager().registerEvents(new WorldListener(getHandler()), getPlugin());
+
         // init background service
         mBackgroundService = new BukkitBackgroundServiceImpl(this, getHandler());
         mBackgroundService.onStart();
@@ -240,10 +339,43 @@ public class BukkitPlatformImpl implements IPlatformImpl, IBukkitExtension {
         mChunkObserver = new BukkitScheduledChunkObserverImpl(this, getBackgroundService(), getHandler());
         mChunkObserver.onStart();
 
+        // init light index, must be ready before the engine starts to apply lights
+        if (getConfig().getBoolean(CONFIG_ENABLE_LIGHT_INDEX)) {
+            mLightIndex = new LightIndex();
+            Bukkit.getPluginManager().registerEvents(new LightIndexListener(mLightIndex), getPlugin());
+        }
+
         // init light engine
         mLightEngine = new BukkitScheduledLightEngineImpl(this, getBackgroundService(), getHandler());
         mLightEngine.onStart();
 
+        // init light restore pipeline
+        mRestorePipeline = new LightRestorePipeline(this, getConfig().getInt(CONFIG_RESTORE_MAX_CHUNKS_PER_TICK),
+                getConfig().getInt(CONFIG_RESTORE_MAX_LIGHTS_PER_TICK));
+        mRestorePipeline.onStart();
+        Bukkit.getPluginManager().registerEvents(new LightRestoreListener(mRestorePipeline), getPlugin());
+
+        // init light sources
+        mLightSourceManager = new LightSourceManager(this);
+        mLightSourceManager.onStart();
+
+        // init light operations
+        mLightOperationManager = new LightOperationManager(this,
+                getConfig().getInt(CONFIG_OPERATION_MAX_EDITS_PER_TICK),
+                getConfig().getInt(CONFIG_OPERATION_MAX_PENDING_REQUESTS));
+        mLightOperationManager.onStart();
+
+        // init light storage
+        if (getConfig().getBoolean(CONFIG_ENABLE_LIGHT_STORAGE)) {
+            mLightStorage = new RegionLightStorage(this, new File(getPlugin().getDataFolder(), "storage"),
+                    getConfig().getInt(CONFIG_LIGHT_STORAGE_FLUSH_PERIOD));
+            mLightStorage.onStart();
+            ILightStorage storage = mLightStorage;
+            mRestorePipeline.registerProvider(
+                    (worldName, chunkX, chunkZ, consumer) -> storage.forEachLight(worldName, chunkX, chunkZ,
+                            consumer::accept));
+        }
+
         // init extension
         mExtension = this;
 
@@ -257,9 +389,21 @@ public class BukkitPlatformImpl implements IPlatformImpl, IBukkitExtension {
 
     @Override
     public void shutdown() {
+        if (mLightOperationManager != null) {
+            mLightOperationManager.onShutdown();
+        }
+        if (mLightSourceManager != null) {
+            mLightSourceManager.onShutdown();
+        }
+        if (mRestorePipeline != null) {
+            mRestorePipeline.onShutdown();
+        }
         if (mLightEngine != null) {
             mLightEngine.onShutdown();
         }
+        if (mLightStorage != null) {
+            mLightStorage.onShutdown();
+        }
         if (mChunkObserver != null) {
             mChunkObserver.onShutdown();
         }
@@ -269,6 +413,10 @@ public class BukkitPlatformImpl implements IPlatformImpl, IBukkitExtension {
         if (mHandler != null) {
             mHandler.onShutdown(this);
         }
+        if (mLightIndex != null) {
+            mLightIndex.clear();
+            mLightIndex = null;
+        }
         mHandler = null;
         isInit = false;
     }
@@ -322,6 +470,31 @@ public class BukkitPlatformImpl implements IPlatformImpl, IBukkitExtension {
         return mBackgroundService;
     }
 
+    @Override
+    public ILightStorage getLightStorage() {
+        return mLightStorage;
+    }
+
+    @Override
+    public LightIndex getLightIndex() {
+        return mLightIndex;
+    }
+
+    @Override
+    public LightRestorePipeline getRestorePipeline() {
+        return mRestorePipeline;
+    }
+
+    @Override
+    public LightSourceManager getLightSourceManager() {
+        return mLightSourceManager;
+    }
+
+    @Override
+    public LightOperationManager getLightOperationManager() {
+        return mLightOperationManager;
+    }
+
     @Override
     public IExtension getExtension() {
         return mExtension;
@@ -376,6 +549,13 @@ public class BukkitPlatformImpl implements IPlatformImpl, IBukkitExtension {
         return getLightEngine().getLightLevel(world.getName(), blockX, blockY, blockZ, lightFlags);
     }
 
+    @Override
+    public int getLightLevels(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+            int lightFlags, ByteBuffer out) {
+        return getLightEngine().getLightLevels(world.getName(), minX, minY, minZ, maxX, maxY, maxZ, lightFlags,
+                out);
+    }
+
     @Override
     public int setLightLevel(World world, int blockX, int blockY, int blockZ, int lightLevel) {
         return setLightLevel(world, blockX, blockY, blockZ, lightLevel, LightFlag.BLOCK_LIGHTING, EditPolicy.DEFERRED,
@@ -28,7 +28,9 @@ import org.bukkit.World;
 import org.bukkit.configuration.file.FileConfiguration;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -37,7 +39,11 @@ import ru.beykerykt.minecraft.lightapi.bukkit.internal.handler.IHandler;
 import ru.beykerykt.minecraft.lightapi.common.api.ResultCode;
 import ru.beykerykt.minecraft.lightapi.common.internal.chunks.data.IChunkData;
 import ru.beykerykt.minecraft.lightapi.common.internal.chunks.observer.sched.ScheduledChunkObserverImpl;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.propagation.IOpacityProvider;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.propagation.LightFrontierTracer;
 import ru.beykerykt.minecraft.lightapi.common.internal.service.IBackgroundService;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.BlockPosition;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.ChunkUtils;
 
 public class BukkitScheduledChunkObserverImpl extends ScheduledChunkObserverImpl {
 
@@ -47,9 +53,11 @@ public class BukkitScheduledChunkObserverImpl extends ScheduledChunkObserverImpl
     private final String CONFIG_TITLE = getClass().getSimpleName();
 
     private final String CONFIG_TICK_PERIOD = CONFIG_TITLE + ".tick-period";
+    private final String CONFIG_PRECISE_SECTIONS = CONFIG_TITLE + ".precise-sections";
 
     private final IHandler mHandler;
     private ScheduledFuture mScheduledFuture;
+    private boolean mPreciseSections;
 
     public BukkitScheduledChunkObserverImpl(BukkitPlatformImpl platform, IBackgroundService service, IHandler handler) {
         super(platform, service);
@@ -72,6 +80,10 @@ public class BukkitScheduledChunkObserverImpl extends ScheduledChunkObserverImpl
             fc.set(CONFIG_TICK_PERIOD, 2);
             needSave = true;
         }
+        if (!fc.isSet(CONFIG_PRECISE_SECTIONS)) {
+            fc.set(CONFIG_PRECISE_SECTIONS, false);
+            needSave = true;
+        }
 
         if (needSave) {
             getPlatformImpl().getPlugin().saveConfig();
@@ -83,6 +95,7 @@ public class BukkitScheduledChunkObserverImpl extends ScheduledChunkObserverImpl
 
         FileConfiguration fc = getPlatformImpl().getPlugin().getConfig();
         int period = fc.getInt(CONFIG_TICK_PERIOD);
+        mPreciseSections = fc.getBoolean(CONFIG_PRECISE_SECTIONS);
         mScheduledFuture = getBackgroundService().scheduleWithFixedDelay(this, 0, 50 * period, TimeUnit.MILLISECONDS);
     }
 
@@ -126,6 +139,22 @@ public class BukkitScheduledChunkObserverImpl extends ScheduledChunkObserverImpl
         return world.isChunkLoaded(chunkX, chunkZ);
     }
 
+    /**
+     * Whether the sections to send are computed by tracing the light through the blocks
+     */
+    public boolean isPreciseSectionsEnabled() {
+        return mPreciseSections;
+    }
+
+    @Override
+    protected IOpacityProvider getOpacityProvider(String worldName) {
+        if (!isPreciseSectionsEnabled() || !getPlatformImpl().isWorldAvailable(worldName)) {
+            return null;
+        }
+        World world = Bukkit.getWorld(worldName);
+        return (blockX, blockY, blockZ) -> getHandler().getBlockOpacity(world, blockX, blockY, blockZ);
+    }
+
     @Override
     public List<IChunkData> collectChunkSections(String worldName, int blockX, int blockY, int blockZ, int lightLevel,
             int lightFlags) {
@@ -133,7 +162,23 @@ public class BukkitScheduledChunkObserverImpl extends ScheduledChunkObserverImpl
             return new ArrayList<>();
         }
         World world = Bukkit.getWorld(worldName);
-        return getHandler().collectChunkSections(world, blockX, blockY, blockZ, lightLevel, lightFlags);
+        LightFrontierTracer tracer = traceLight(worldName, blockX, blockY, blockZ, lightLevel, lightFlags);
+        if (tracer == null) {
+            return getHandler().collectChunkSections(world, blockX, blockY, blockZ, lightLevel, lightFlags);
+        }
+        Map<Long, IChunkData> chunks = new HashMap<>();
+        tracer.forEachSection(sectionKey -> {
+            int chunkX = BlockPosition.unpackLongX(sectionKey);
+            int sectionY = BlockPosition.unpackLongY(sectionKey);
+            int chunkZ = BlockPosition.unpackLongZ(sectionKey);
+            if (!getHandler().isValidChunkSection(world, sectionY) || !world.isChunkLoaded(chunkX, chunkZ)) {
+                return;
+            }
+            IChunkData data = chunks.computeIfAbsent(ChunkUtils.getChunkKey(chunkX, chunkZ),
+                    k -> getHandler().createChunkData(worldName, chunkX, chunkZ));
+            data.markSectionForUpdate(lightFlags, sectionY);
+        });
+        return new ArrayList<>(chunks.values());
     }
 
     @Override
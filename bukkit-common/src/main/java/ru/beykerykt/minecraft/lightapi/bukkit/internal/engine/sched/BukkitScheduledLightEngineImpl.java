@@ -27,20 +27,32 @@ import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.bukkit.configuration.file.FileConfiguration;
 
+import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import ru.beykerykt.minecraft.lightapi.bukkit.internal.BukkitPlatformImpl;
 import ru.beykerykt.minecraft.lightapi.bukkit.internal.handler.IHandler;
 import ru.beykerykt.minecraft.lightapi.common.api.ResultCode;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.LightFlag;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.RelightPolicy;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.ICallback;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.SchedulerType;
 import ru.beykerykt.minecraft.lightapi.common.internal.chunks.observer.sched.IScheduledChunkObserver;
 import ru.beykerykt.minecraft.lightapi.common.internal.engine.LightEngineType;
 import ru.beykerykt.minecraft.lightapi.common.internal.engine.LightEngineVersion;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.sched.DeadlineScheduler;
 import ru.beykerykt.minecraft.lightapi.common.internal.engine.sched.IScheduler;
 import ru.beykerykt.minecraft.lightapi.common.internal.engine.sched.PriorityScheduler;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.sched.RequestJournal;
 import ru.beykerykt.minecraft.lightapi.common.internal.engine.sched.ScheduledLightEngineImpl;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.sched.ThroughputScheduler;
+import ru.beykerykt.minecraft.lightapi.common.internal.index.LightIndex;
 import ru.beykerykt.minecraft.lightapi.common.internal.service.IBackgroundService;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.BlockPosition;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.FlagUtils;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongIntHashMap;
 
 public class BukkitScheduledLightEngineImpl extends ScheduledLightEngineImpl {
 
@@ -52,6 +64,11 @@ public class BukkitScheduledLightEngineImpl extends ScheduledLightEngineImpl {
     private final String CONFIG_TICK_PERIOD = CONFIG_TITLE + ".tick-period";
     private final String CONFIG_MAX_TIME_MS_IN_PER_TICK = CONFIG_TITLE + ".max-time-ms-in-per-tick";
     private final String CONFIG_MAX_ITERATIONS_IN_PER_TICK = CONFIG_TITLE + ".max-iterations-in-per-tick";
+    private final String CONFIG_JOURNAL_ON_SHUTDOWN = CONFIG_TITLE + ".journal-on-shutdown";
+    private final String CONFIG_SCHEDULER = CONFIG_TITLE + ".scheduler";
+    private final String CONFIG_DEADLINE_AGING_TICKS = CONFIG_TITLE + ".deadline-aging-ticks";
+    private final String CONFIG_THROUGHPUT_BATCH_SIZE = CONFIG_TITLE + ".throughput-batch-size";
+    private final String CONFIG_ASYNC_CALLBACKS = CONFIG_TITLE + ".async-callbacks";
 
     private final IHandler mHandler;
     private ScheduledFuture mScheduledFuture;
@@ -98,6 +115,27 @@ public class BukkitScheduledLightEngineImpl extends ScheduledLightEngineImpl {
             fc.set(CONFIG_MAX_ITERATIONS_IN_PER_TICK, 256);
             needSave = true;
         }
+        if (!fc.isSet(CONFIG_JOURNAL_ON_SHUTDOWN)) {
+            fc.set(CONFIG_JOURNAL_ON_SHUTDOWN, false);
+            needSave = true;
+        }
+        if (!fc.isSet(CONFIG_SCHEDULER)) {
+            fc.set(CONFIG_SCHEDULER, SchedulerType.PRIORITY.name());
+            needSave = true;
+        }
+        if (!fc.isSet(CONFIG_DEADLINE_AGING_TICKS)) {
+            fc.set(CONFIG_DEADLINE_AGING_TICKS, 100);
+            needSave = true;
+        }
+        if (!fc.isSet(CONFIG_THROUGHPUT_BATCH_SIZE)) {
+            fc.set(CONFIG_THROUGHPUT_BATCH_SIZE, 64);
+            needSave = true;
+        }
+
+        if (!fc.isSet(CONFIG_ASYNC_CALLBACKS)) {
+            fc.set(CONFIG_ASYNC_CALLBACKS, false);
+            needSave = true;
+        }
 
         if (needSave) {
             getPlatformImpl().getPlugin().saveConfig();
@@ -120,20 +158,48 @@ public class BukkitScheduledLightEngineImpl extends ScheduledLightEngineImpl {
         maxRequestCount = fc.getInt(CONFIG_MAX_ITERATIONS_IN_PER_TICK);
         maxTimeMsPerTick = fc.getInt(CONFIG_MAX_TIME_MS_IN_PER_TICK);
 
+        if (fc.getBoolean(CONFIG_JOURNAL_ON_SHUTDOWN)) {
+            setJournal(new RequestJournal(new File(getPlatformImpl().getPlugin().getDataFolder(), "requests.journal")));
+        }
+        // callbacks leave the drain threads, on Java 21+ they run on virtual threads
+        setAsyncCallbacks(fc.getBoolean(CONFIG_ASYNC_CALLBACKS));
+
         this.mTaskId = getPlatformImpl().getPlugin().getServer().getScheduler().runTaskTimer(
-                getPlatformImpl().getPlugin(), this::onTickPenaltyTime, 0, 1).getTaskId();
+                getPlatformImpl().getPlugin(), () -> {
+                    onTickPenaltyTime();
+                    onTickScheduler();
+                }, 0, 1).getTaskId();
 
         // scheduler
-        // TODO: Make config (?)
-        IScheduler scheduler = new PriorityScheduler(this,
-                (IScheduledChunkObserver) getPlatformImpl().getChunkObserver(), getBackgroundService(),
-                maxTimeMsPerTick);
-        setScheduler(scheduler);
+        SchedulerType schedulerType = SchedulerType.PRIORITY;
+        try {
+            schedulerType = SchedulerType.valueOf(fc.getString(CONFIG_SCHEDULER));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        setScheduler(createScheduler(schedulerType));
 
         int period = fc.getInt(CONFIG_TICK_PERIOD);
         mScheduledFuture = getBackgroundService().scheduleWithFixedDelay(this, 0, 50 * period, TimeUnit.MILLISECONDS);
     }
 
+    @Override
+    protected IScheduler createScheduler(SchedulerType type) {
+        FileConfiguration fc = getPlatformImpl().getPlugin().getConfig();
+        IScheduledChunkObserver chunkObserver = (IScheduledChunkObserver) getPlatformImpl().getChunkObserver();
+        switch (type) {
+            case DEADLINE:
+                return new DeadlineScheduler(this, chunkObserver, getBackgroundService(), maxTimeMsPerTick,
+                        fc.getInt(CONFIG_DEADLINE_AGING_TICKS));
+            case THROUGHPUT:
+                return new ThroughputScheduler(this, chunkObserver, getBackgroundService(), maxTimeMsPerTick,
+                        fc.getInt(CONFIG_THROUGHPUT_BATCH_SIZE));
+            case PRIORITY:
+            default:
+                return new PriorityScheduler(this, chunkObserver, getBackgroundService(), maxTimeMsPerTick);
+        }
+    }
+
     @Override
     public void onStart() {
         configure();
@@ -148,6 +214,11 @@ public class BukkitScheduledLightEngineImpl extends ScheduledLightEngineImpl {
         if (mScheduledFuture != null) {
             mScheduledFuture.cancel(true);
         }
+        if (getScheduler() instanceof DeadlineScheduler) {
+            DeadlineScheduler scheduler = (DeadlineScheduler) getScheduler();
+            getPlatformImpl().debug("Deadlines met: " + scheduler.getMetDeadlineCount() + ", missed: "
+                    + scheduler.getMissedDeadlineCount());
+        }
         super.onShutdown();
     }
 
@@ -181,27 +252,95 @@ public class BukkitScheduledLightEngineImpl extends ScheduledLightEngineImpl {
         }
     }
 
+    @Override
+    public boolean isSectionCopySupported() {
+        return getHandler().isSectionCopySupported();
+    }
+
+    @Override
+    public int getLightLevels(String worldName, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+            int lightFlags, ByteBuffer out) {
+        if (!getPlatformImpl().isWorldAvailable(worldName)) {
+            return ResultCode.WORLD_NOT_AVAILABLE;
+        }
+        World world = Bukkit.getWorld(worldName);
+        // The handler takes care of thread safety by itself
+        return getHandler().getRawLightLevels(world, minX, minY, minZ, maxX, maxY, maxZ, lightFlags, out);
+    }
+
     /* @hide */
     private int setRawLightLevelLocked(String worldName, int blockX, int blockY, int blockZ, int lightLevel,
-            int lightFlags) {
+            int lightFlags, ICallback callback) {
         if (!getPlatformImpl().isWorldAvailable(worldName)) {
             return ResultCode.WORLD_NOT_AVAILABLE;
         }
         World world = Bukkit.getWorld(worldName);
-        return getHandler().setRawLightLevel(world, blockX, blockY, blockZ, lightLevel, lightFlags);
+        LightIndex lightIndex = getPlatformImpl().getLightIndex();
+        if (lightIndex == null || !FlagUtils.isFlagSet(lightFlags, LightFlag.BLOCK_LIGHTING)) {
+            return getHandler().setRawLightLevel(world, blockX, blockY, blockZ, lightLevel, lightFlags, callback);
+        }
+        // A postponed edit updates the index when it is really written
+        ICallback indexCallback = (requestFlag, resultCode) -> {
+            if (resultCode == ResultCode.SUCCESS) {
+                lightIndex.onLightLevelChanged(worldName, blockX, blockY, blockZ, lightLevel);
+            }
+            if (callback != null) {
+                callback.onResult(requestFlag, resultCode);
+            }
+        };
+        int resultCode = getHandler().setRawLightLevel(world, blockX, blockY, blockZ, lightLevel, lightFlags,
+                indexCallback);
+        if (resultCode == ResultCode.SUCCESS) {
+            lightIndex.onLightLevelChanged(worldName, blockX, blockY, blockZ, lightLevel);
+        }
+        return resultCode;
     }
 
     @Override
     public int setRawLightLevel(String worldName, int blockX, int blockY, int blockZ, int lightLevel, int lightFlags) {
+        return setRawLightLevel(worldName, blockX, blockY, blockZ, lightLevel, lightFlags, null);
+    }
+
+    @Override
+    public int setRawLightLevel(String worldName, int blockX, int blockY, int blockZ, int lightLevel, int lightFlags,
+            ICallback callback) {
         if (getHandler().isMainThread()) {
-            return setRawLightLevelLocked(worldName, blockX, blockY, blockZ, lightLevel, lightFlags);
+            return setRawLightLevelLocked(worldName, blockX, blockY, blockZ, lightLevel, lightFlags, callback);
         } else {
             synchronized (lightQueue) {
-                return setRawLightLevelLocked(worldName, blockX, blockY, blockZ, lightLevel, lightFlags);
+                return setRawLightLevelLocked(worldName, blockX, blockY, blockZ, lightLevel, lightFlags, callback);
             }
         }
     }
 
+    @Override
+    protected int setRawLightLevels(String worldName, LongIntHashMap lights, int lightFlags,
+            LongIntHashMap oldLevels) {
+        if (!getPlatformImpl().isWorldAvailable(worldName)) {
+            return ResultCode.WORLD_NOT_AVAILABLE;
+        }
+        World world = Bukkit.getWorld(worldName);
+        LightIndex lightIndex = getPlatformImpl().getLightIndex();
+        if (lightIndex == null || !FlagUtils.isFlagSet(lightFlags, LightFlag.BLOCK_LIGHTING)) {
+            return getHandler().setRawLightLevels(world, lights, lightFlags, oldLevels, null);
+        }
+        // Postponed levels update the index when they are really written
+        int resultCode = getHandler().setRawLightLevels(world, lights, lightFlags, oldLevels,
+                (requestFlag, code) -> updateLightIndex(lightIndex, worldName, lights, oldLevels));
+        if (resultCode != ResultCode.MOVED_TO_DEFERRED) {
+            updateLightIndex(lightIndex, worldName, lights, oldLevels);
+        }
+        return resultCode;
+    }
+
+    private void updateLightIndex(LightIndex lightIndex, String worldName, LongIntHashMap lights,
+            LongIntHashMap oldLevels) {
+        // only the written positions are in the old levels
+        oldLevels.forEach((pos, oldLightLevel) -> lightIndex.onLightLevelChanged(worldName,
+                BlockPosition.unpackLongX(pos), BlockPosition.unpackLongY(pos), BlockPosition.unpackLongZ(pos),
+                lights.get(pos, 0)));
+    }
+
     /* @hide */
     private int recalculateLightingLocked(String worldName, int blockX, int blockY, int blockZ, int lightFlags) {
         if (!getPlatformImpl().isWorldAvailable(worldName)) {
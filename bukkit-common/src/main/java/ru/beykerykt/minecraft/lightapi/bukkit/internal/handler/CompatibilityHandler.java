@@ -25,26 +25,45 @@
 package ru.beykerykt.minecraft.lightapi.bukkit.internal.handler;
 
 import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
 import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.BlockData;
 import org.bukkit.block.data.Levelled;
+import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.event.world.WorldLoadEvent;
 import org.bukkit.event.world.WorldUnloadEvent;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ru.beykerykt.minecraft.lightapi.bukkit.internal.BukkitPlatformImpl;
 import ru.beykerykt.minecraft.lightapi.common.api.ResultCode;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.LightFlag;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.LightLevelBuffer;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.ICallback;
 import ru.beykerykt.minecraft.lightapi.common.internal.PlatformType;
 import ru.beykerykt.minecraft.lightapi.common.internal.chunks.data.BitChunkData;
 import ru.beykerykt.minecraft.lightapi.common.internal.chunks.data.IChunkData;
 import ru.beykerykt.minecraft.lightapi.common.internal.engine.LightEngineType;
 import ru.beykerykt.minecraft.lightapi.common.internal.engine.LightEngineVersion;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.sched.RequestFlag;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.BlockPosition;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.ChunkUtils;
 import ru.beykerykt.minecraft.lightapi.common.internal.utils.FlagUtils;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongIntHashMap;
 
 public class CompatibilityHandler implements IHandler {
 
@@ -56,7 +75,20 @@ public class CompatibilityHandler implements IHandler {
             BlockFace.SOUTH,
             BlockFace.WEST
     };
+
+    /**
+     * CONFIG
+     */
+    private final String CONFIG_TITLE = getClass().getSimpleName();
+    private final String CONFIG_MAX_TIME_MS_IN_PER_TICK = CONFIG_TITLE + ".max-time-ms-in-per-tick";
+    // Number of queued edits grouped by chunks at once
+    private final int DRAIN_BATCH_SIZE = 256;
+
     private BukkitPlatformImpl mPlatform;
+    // world name -> edits from other threads, applied on the main thread
+    private final Map<String, Queue<PendingEdit>> mPendingEdits = new ConcurrentHashMap<>();
+    private final AtomicBoolean mDrainScheduled = new AtomicBoolean(false);
+    private int mMaxTimeMsPerTick;
 
     private BukkitPlatformImpl getPlatformImpl() {
         return mPlatform;
@@ -65,10 +97,33 @@ public class CompatibilityHandler implements IHandler {
     @Override
     public void onInitialization(BukkitPlatformImpl impl) throws Exception {
         this.mPlatform = impl;
+        configure();
     }
 
     @Override
     public void onShutdown(BukkitPlatformImpl impl) {
+        // Do not lose the edits which are not applied yet
+        drainPendingEdits(Long.MAX_VALUE);
+    }
+
+    private void checkAndSetDefaults() {
+        boolean needSave = false;
+        FileConfiguration fc = getPlatformImpl().getPlugin().getConfig();
+        if (!fc.isSet(CONFIG_MAX_TIME_MS_IN_PER_TICK)) {
+            fc.set(CONFIG_MAX_TIME_MS_IN_PER_TICK, 10);
+            needSave = true;
+        }
+
+        if (needSave) {
+            getPlatformImpl().getPlugin().saveConfig();
+        }
+    }
+
+    private void configure() {
+        checkAndSetDefaults();
+
+        FileConfiguration fc = getPlatformImpl().getPlugin().getConfig();
+        mMaxTimeMsPerTick = fc.getInt(CONFIG_MAX_TIME_MS_IN_PER_TICK);
     }
 
     @Override
@@ -97,6 +152,13 @@ public class CompatibilityHandler implements IHandler {
 
     @Override
     public void onWorldUnload(WorldUnloadEvent event) {
+        Queue<PendingEdit> queue = mPendingEdits.remove(event.getWorld().getName());
+        if (queue != null) {
+            PendingEdit edit;
+            while ((edit = queue.poll()) != null) {
+                edit.onResult(ResultCode.WORLD_NOT_AVAILABLE);
+            }
+        }
     }
 
     @Override
@@ -104,46 +166,184 @@ public class CompatibilityHandler implements IHandler {
         return FlagUtils.isFlagSet(lightFlags, LightFlag.BLOCK_LIGHTING);
     }
 
-    private void setLightBlock(Block block, int finalLightLevel) {
-        Material newMaterial = finalLightLevel > 0 ? Material.LIGHT : Material.AIR;
-        block.setType(newMaterial);
-        if (newMaterial == Material.LIGHT) {
+    private static int getLightBlockLevel(BlockData data) {
+        return data.getMaterial() == Material.LIGHT ? ((Levelled) data).getLevel() : 0;
+    }
+
+    private void setLightBlock(Block block, BlockData oldData, int finalLightLevel) {
+        // LIGHT blocks do not need physics, the final state is written once
+        if (finalLightLevel > 0) {
+            if (getLightBlockLevel(oldData) == finalLightLevel) {
+                return;
+            }
             Levelled level = (Levelled) Material.LIGHT.createBlockData();
             level.setLevel(finalLightLevel);
-            block.setBlockData(level, true);
+            block.setBlockData(level, false);
+        } else if (oldData.getMaterial() == Material.LIGHT) {
+            block.setType(Material.AIR, false);
         }
     }
 
-    private int setRawLightLevelLocked(World world, int blockX, int blockY, int blockZ, int lightLevel,
-            int lightFlags) {
-        if (!isLightingSupported(world, lightFlags)) {
-            return ResultCode.NOT_IMPLEMENTED;
-        }
-        int finalLightLevel = lightLevel < 0 ? 0 : Math.min(lightLevel, 15);
-        Block block = world.getBlockAt(blockX, blockY, blockZ);
-        Material material = block.getType();
+    /* @hide */
+    private void setLightLevelLocked(Block block, int finalLightLevel) {
+        BlockData data = block.getBlockData();
+        Material material = data.getMaterial();
 
         if (material.isAir() || material == Material.LIGHT) {
-            setLightBlock(block, finalLightLevel);
+            setLightBlock(block, data, finalLightLevel);
         } else {
+            int sideLightLevel = Math.max(finalLightLevel - 1, 0);
             for (BlockFace side : SIDES) {
                 Block sideBlock = block.getRelative(side);
-                if (sideBlock.getType().isAir() || sideBlock.getType() == Material.LIGHT) {
-                    setLightBlock(sideBlock, Math.max(finalLightLevel - 1, 0));
+                BlockData sideData = sideBlock.getBlockData();
+                if (sideData.getMaterial().isAir() || sideData.getMaterial() == Material.LIGHT) {
+                    setLightBlock(sideBlock, sideData, sideLightLevel);
                 }
             }
         }
+    }
+
+    private int setRawLightLevelLocked(World world, int blockX, int blockY, int blockZ, int lightLevel,
+            int lightFlags) {
+        if (!isLightingSupported(world, lightFlags)) {
+            return ResultCode.NOT_IMPLEMENTED;
+        }
+        int finalLightLevel = lightLevel < 0 ? 0 : Math.min(lightLevel, 15);
+        setLightLevelLocked(world.getBlockAt(blockX, blockY, blockZ), finalLightLevel);
         return ResultCode.SUCCESS;
     }
 
     @Override
     public int setRawLightLevel(World world, int blockX, int blockY, int blockZ, int lightLevel, int lightFlags) {
+        return setRawLightLevel(world, blockX, blockY, blockZ, lightLevel, lightFlags, null);
+    }
+
+    @Override
+    public int setRawLightLevel(World world, int blockX, int blockY, int blockZ, int lightLevel, int lightFlags,
+            ICallback callback) {
         if (isMainThread()) {
             return setRawLightLevelLocked(world, blockX, blockY, blockZ, lightLevel, lightFlags);
-        } else {
-            Bukkit.getScheduler().runTask(getPlatformImpl().getPlugin(),
-                    () -> setRawLightLevelLocked(world, blockX, blockY, blockZ, lightLevel, lightFlags));
-            return ResultCode.SUCCESS;
+        }
+        if (!isLightingSupported(world, lightFlags)) {
+            return ResultCode.NOT_IMPLEMENTED;
+        }
+        mPendingEdits.computeIfAbsent(world.getName(), k -> new ConcurrentLinkedQueue<>()).add(
+                new PendingEdit(blockX, blockY, blockZ, lightLevel, lightFlags, callback));
+        scheduleDrain();
+        return ResultCode.MOVED_TO_DEFERRED;
+    }
+
+    @Override
+    public int setRawLightLevels(World world, LongIntHashMap lights, int lightFlags, LongIntHashMap oldLevels,
+            ICallback callback) {
+        if (!isLightingSupported(world, lightFlags)) {
+            return ResultCode.NOT_IMPLEMENTED;
+        }
+        if (isMainThread()) {
+            lights.forEach((pos, lightLevel) -> {
+                int blockX = BlockPosition.unpackLongX(pos);
+                int blockY = BlockPosition.unpackLongY(pos);
+                int blockZ = BlockPosition.unpackLongZ(pos);
+                if (!world.isChunkLoaded(blockX >> 4, blockZ >> 4)) {
+                    return;
+                }
+                oldLevels.put(pos, getRawLightLevel(world, blockX, blockY, blockZ, lightFlags));
+                setRawLightLevelLocked(world, blockX, blockY, blockZ, lightLevel, lightFlags);
+            });
+            return oldLevels.isEmpty() ? ResultCode.CHUNK_NOT_LOADED : ResultCode.SUCCESS;
+        }
+        // The callback gets SUCCESS if any of the postponed edits is applied
+        AtomicInteger remaining = new AtomicInteger(lights.size());
+        AtomicInteger resultCode = new AtomicInteger(ResultCode.FAILED);
+        ICallback editCallback = (requestFlag, editResultCode) -> {
+            if (editResultCode == ResultCode.SUCCESS) {
+                resultCode.set(ResultCode.SUCCESS);
+            } else {
+                resultCode.compareAndSet(ResultCode.FAILED, editResultCode);
+            }
+            if (remaining.decrementAndGet() == 0 && callback != null) {
+                callback.onResult(requestFlag, resultCode.get());
+            }
+        };
+        Queue<PendingEdit> queue = mPendingEdits.computeIfAbsent(world.getName(),
+                k -> new ConcurrentLinkedQueue<>());
+        lights.forEach((pos, lightLevel) -> queue.add(new PendingEdit(BlockPosition.unpackLongX(pos),
+                BlockPosition.unpackLongY(pos), BlockPosition.unpackLongZ(pos), lightLevel, lightFlags,
+                editCallback, oldLevels)));
+        scheduleDrain();
+        return ResultCode.MOVED_TO_DEFERRED;
+    }
+
+    private void scheduleDrain() {
+        // Only one task is waiting for the next tick, no matter how many edits come in
+        if (mDrainScheduled.compareAndSet(false, true)) {
+            Bukkit.getScheduler().runTask(getPlatformImpl().getPlugin(), () -> {
+                drainPendingEdits(TimeUnit.MILLISECONDS.toNanos(mMaxTimeMsPerTick));
+                mDrainScheduled.set(false);
+                if (hasPendingEdits()) {
+                    scheduleDrain();
+                }
+            });
+        }
+    }
+
+    private boolean hasPendingEdits() {
+        for (Queue<PendingEdit> queue : mPendingEdits.values()) {
+            if (!queue.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* @hide */
+    private void drainPendingEdits(long maxTimeNs) {
+        long startTime = System.nanoTime();
+        for (Map.Entry<String, Queue<PendingEdit>> entry : mPendingEdits.entrySet()) {
+            World world = Bukkit.getWorld(entry.getKey());
+            Queue<PendingEdit> queue = entry.getValue();
+            while (!queue.isEmpty()) {
+                // Group the next edits by chunk, the order of edits inside a chunk is kept
+                Map<Long, List<PendingEdit>> chunkEdits = new LinkedHashMap<>();
+                PendingEdit edit;
+                for (int i = 0; i < DRAIN_BATCH_SIZE && (edit = queue.poll()) != null; i++) {
+                    chunkEdits.computeIfAbsent(ChunkUtils.getChunkKey(edit.blockX >> 4, edit.blockZ >> 4),
+                            k -> new ArrayList<>()).add(edit);
+                }
+                for (List<PendingEdit> edits : chunkEdits.values()) {
+                    applyChunkEdits(world, edits);
+                }
+                if (System.nanoTime() - startTime >= maxTimeNs) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void applyChunkEdits(World world, List<PendingEdit> edits) {
+        if (world == null) {
+            for (PendingEdit edit : edits) {
+                edit.onResult(ResultCode.WORLD_NOT_AVAILABLE);
+            }
+            return;
+        }
+        PendingEdit first = edits.get(0);
+        // The chunk may be unloaded while the edits were waiting, it must not be loaded again for them
+        if (!world.isChunkLoaded(first.blockX >> 4, first.blockZ >> 4)) {
+            for (PendingEdit edit : edits) {
+                edit.onResult(ResultCode.CHUNK_NOT_LOADED);
+            }
+            return;
+        }
+        Chunk chunk = world.getChunkAt(first.blockX >> 4, first.blockZ >> 4);
+        for (PendingEdit edit : edits) {
+            if (edit.oldLevels != null) {
+                edit.oldLevels.put(BlockPosition.asLong(edit.blockX, edit.blockY, edit.blockZ),
+                        getRawLightLevel(world, edit.blockX, edit.blockY, edit.blockZ, edit.lightFlags));
+            }
+            int finalLightLevel = edit.lightLevel < 0 ? 0 : Math.min(edit.lightLevel, 15);
+            setLightLevelLocked(chunk.getBlock(edit.blockX & 15, edit.blockY, edit.blockZ & 15), finalLightLevel);
+            edit.onResult(ResultCode.SUCCESS);
         }
     }
 
@@ -182,6 +382,64 @@ public class CompatibilityHandler implements IHandler {
         return lightLevel;
     }
 
+    private List<ChunkSnapshot> takeChunkSnapshots(World world, int minX, int minZ, int maxX, int maxZ) {
+        List<ChunkSnapshot> snapshots = new ArrayList<>();
+        for (int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++) {
+            for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++) {
+                if (world.isChunkLoaded(chunkX, chunkZ)) {
+                    snapshots.add(world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false));
+                }
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * {@link #getRawLightLevels} takes snapshots of whole chunks on the main thread.
+     */
+    @Override
+    public boolean isSectionCopySupported() {
+        return false;
+    }
+
+    @Override
+    public int getRawLightLevels(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+            int lightFlags, ByteBuffer out) {
+        LightLevelBuffer.checkCapacity(out, minX, minY, minZ, maxX, maxY, maxZ);
+        if (!isMainThread()) {
+            // Chunk snapshots can only be taken on the main thread, and waiting for it here may stall
+            // the caller or never return during shutdown. Callers fall back to single reads.
+            return ResultCode.NOT_IMPLEMENTED;
+        }
+        List<ChunkSnapshot> snapshots = takeChunkSnapshots(world, minX, minZ, maxX, maxZ);
+
+        LightLevelBuffer.clear(out, minX, minY, minZ, maxX, maxY, maxZ);
+        int fromY = Math.max(minY, world.getMinHeight());
+        int toY = Math.min(maxY, world.getMaxHeight() - 1);
+        for (ChunkSnapshot snapshot : snapshots) {
+            int fromX = Math.max(minX, snapshot.getX() << 4);
+            int toX = Math.min(maxX, (snapshot.getX() << 4) + 15);
+            int fromZ = Math.max(minZ, snapshot.getZ() << 4);
+            int toZ = Math.min(maxZ, (snapshot.getZ() << 4) + 15);
+            for (int y = fromY; y <= toY; y++) {
+                for (int z = fromZ; z <= toZ; z++) {
+                    for (int x = fromX; x <= toX; x++) {
+                        int lightLevel = 0;
+                        if (FlagUtils.isFlagSet(lightFlags, LightFlag.BLOCK_LIGHTING)) {
+                            lightLevel = snapshot.getBlockEmittedLight(x & 15, y, z & 15);
+                        }
+                        if (FlagUtils.isFlagSet(lightFlags, LightFlag.SKY_LIGHTING)) {
+                            lightLevel = Math.max(lightLevel, snapshot.getBlockSkyLight(x & 15, y, z & 15));
+                        }
+                        LightLevelBuffer.setLightLevel(out,
+                                LightLevelBuffer.getIndex(minX, minY, minZ, maxX, maxY, maxZ, x, y, z), lightLevel);
+                    }
+                }
+            }
+        }
+        return ResultCode.SUCCESS;
+    }
+
     @Override
     public int recalculateLighting(World world, int blockX, int blockY, int blockZ, int lightFlags) {
         return ResultCode.NOT_IMPLEMENTED;
@@ -203,6 +461,17 @@ public class CompatibilityHandler implements IHandler {
         return true;
     }
 
+    @Override
+    public int getBlockOpacity(World world, int blockX, int blockY, int blockZ) {
+        if (!world.isChunkLoaded(blockX >> 4, blockZ >> 4)) {
+            return 15;
+        }
+        if (isMainThread()) {
+            return world.getBlockAt(blockX, blockY, blockZ).getType().isOccluding() ? 15 : 0;
+        }
+        return 0;
+    }
+
     @Override
     public int sendChunk(IChunkData data) {
         getPlatformImpl().debug("sendChunk: Not implemented for compatibility mode");
@@ -214,4 +483,37 @@ public class CompatibilityHandler implements IHandler {
         getPlatformImpl().debug("sendCmd: Not implemented for compatibility mode");
         return ResultCode.NOT_IMPLEMENTED;
     }
+
+    private static final class PendingEdit {
+
+        private final int blockX;
+        private final int blockY;
+        private final int blockZ;
+        private final int lightLevel;
+        private final int lightFlags;
+        private final ICallback callback;
+        // old levels of a postponed batch, filled when the edit is applied
+        private final LongIntHashMap oldLevels;
+
+        private PendingEdit(int blockX, int blockY, int blockZ, int lightLevel, int lightFlags, ICallback callback) {
+            this(blockX, blockY, blockZ, lightLevel, lightFlags, callback, null);
+        }
+
+        private PendingEdit(int blockX, int blockY, int blockZ, int lightLevel, int lightFlags, ICallback callback,
+                LongIntHashMap oldLevels) {
+            this.blockX = blockX;
+            this.blockY = blockY;
+            this.blockZ = blockZ;
+            this.lightLevel = lightLevel;
+            this.lightFlags = lightFlags;
+            this.callback = callback;
+            this.oldLevels = oldLevels;
+        }
+
+        private void onResult(int resultCode) {
+            if (callback != null) {
+                callback.onResult(RequestFlag.EDIT, resultCode);
+            }
+        }
+    }
 }
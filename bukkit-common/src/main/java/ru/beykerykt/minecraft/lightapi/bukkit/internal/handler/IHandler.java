@@ -27,13 +27,16 @@ import org.bukkit.World;
 import org.bukkit.event.world.WorldLoadEvent;
 import org.bukkit.event.world.WorldUnloadEvent;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 import ru.beykerykt.minecraft.lightapi.bukkit.internal.BukkitPlatformImpl;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.ICallback;
 import ru.beykerykt.minecraft.lightapi.common.internal.PlatformType;
 import ru.beykerykt.minecraft.lightapi.common.internal.chunks.data.IChunkData;
 import ru.beykerykt.minecraft.lightapi.common.internal.engine.LightEngineType;
 import ru.beykerykt.minecraft.lightapi.common.internal.engine.LightEngineVersion;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongIntHashMap;
 
 public interface IHandler {
 
@@ -91,11 +94,52 @@ public interface IHandler {
      */
     int setRawLightLevel(World world, int blockX, int blockY, int blockZ, int lightLevel, int lightFlags);
 
+    /**
+     * Sets "directly" the level of light in given coordinates without additional processing. If the
+     * level can not be set from the current thread, the edit may be postponed: then
+     * {@link ru.beykerykt.minecraft.lightapi.common.api.ResultCode#MOVED_TO_DEFERRED} is returned and the
+     * real result is passed to the callback later.
+     */
+    int setRawLightLevel(World world, int blockX, int blockY, int blockZ, int lightLevel, int lightFlags,
+            ICallback callback);
+
+    /**
+     * Sets "directly" the levels of light of many positions at once. The keys of lights are
+     * {@link ru.beykerykt.minecraft.lightapi.common.internal.utils.BlockPosition#asLong(int, int, int)}, the
+     * values are the new levels. All levels are written in one critical section, the levels read right before
+     * the write are put to oldLevels. Positions which could not be set are left out of oldLevels. If the levels
+     * can not be set from the current thread, they are postponed: then
+     * {@link ru.beykerykt.minecraft.lightapi.common.api.ResultCode#MOVED_TO_DEFERRED} is returned, oldLevels
+     * stays empty until the levels are written, then the callback gets the result.
+     */
+    int setRawLightLevels(World world, LongIntHashMap lights, int lightFlags, LongIntHashMap oldLevels,
+            ICallback callback);
+
     /**
      * Gets "directly" the level of light from given coordinates without additional processing.
      */
     int getRawLightLevel(World world, int blockX, int blockY, int blockZ, int lightFlags);
 
+    /**
+     * Gets "directly" the levels of light in the given region without additional processing. Levels
+     * are packed as nibbles into the buffer, see
+     * {@link ru.beykerykt.minecraft.lightapi.common.api.engine.LightLevelBuffer}. When called off the
+     * main thread, the levels must be taken from a snapshot, or NOT_IMPLEMENTED is returned if the
+     * handler can't take one without blocking on the main thread.
+     */
+    int getRawLightLevels(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ, int lightFlags,
+            ByteBuffer out);
+
+    /**
+     * Returns true if {@link #getRawLightLevels} copies whole sections from the light storage on the
+     * calling thread. Otherwise it reads block by block or takes chunk snapshots and is not cheaper than
+     * a few single reads.
+     * <p>
+     * Of the NMS handlers only v1_19_R2 copies sections and caches its per-world handles, the older
+     * versions use the generic per-block implementation of {@code BaseNMSHandler}.
+     */
+    boolean isSectionCopySupported();
+
     /**
      * Performs re-illumination of the light in the given coordinates.
      */
@@ -120,6 +164,12 @@ public interface IHandler {
      */
     boolean isValidChunkSection(World world, int sectionY);
 
+    /**
+     * Gets the amount of light absorbed by the block, from 0 to 15. Blocks of unloaded chunks and out of
+     * the world return 15. If the block can not be read safely from the current thread, 0 is returned.
+     */
+    int getBlockOpacity(World world, int blockX, int blockY, int blockZ);
+
     /**
      * N/A
      */
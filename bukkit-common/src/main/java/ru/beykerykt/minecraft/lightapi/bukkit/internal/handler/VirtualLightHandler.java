@@ -0,0 +1,562 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.bukkit.internal.handler;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.data.Levelled;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import ru.beykerykt.minecraft.lightapi.bukkit.internal.BukkitPlatformImpl;
+import ru.beykerykt.minecraft.lightapi.bukkit.internal.listener.VirtualLightListener;
+import ru.beykerykt.minecraft.lightapi.common.api.ResultCode;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.LightFlag;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.LightLevelBuffer;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.ICallback;
+import ru.beykerykt.minecraft.lightapi.common.internal.PlatformType;
+import ru.beykerykt.minecraft.lightapi.common.internal.chunks.data.BitChunkData;
+import ru.beykerykt.minecraft.lightapi.common.internal.chunks.data.IChunkData;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.LightEngineType;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.LightEngineVersion;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.BlockPosition;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.ChunkUtils;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.FlagUtils;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongIntHashMap;
+
+/**
+ * Virtual light mode. Light sources are not placed into the world, the players who can see them
+ * receive fake LIGHT blocks instead. Sources are kept in a per-chunk index and sent again when the
+ * chunk is sent to a player.
+ */
+public class VirtualLightHandler implements IHandler {
+
+    /**
+     * CONFIG
+     */
+    private final String CONFIG_TITLE = getClass().getSimpleName();
+    private final String CONFIG_RESEND_DELAY_TICKS = CONFIG_TITLE + ".resend-delay-ticks";
+
+    private BukkitPlatformImpl mPlatform;
+    // world name -> chunk key -> light sources
+    private final Map<String, Map<Long, VirtualChunk>> mWorldChunks = new ConcurrentHashMap<>();
+    // world name -> chunk keys with changes to send
+    private final Map<String, Set<Long>> mPendingSends = new ConcurrentHashMap<>();
+    private final AtomicBoolean mSendScheduled = new AtomicBoolean(false);
+    private int mResendDelayTicks;
+    // Paper: one packet per section
+    private Method mSendMultiBlockChange;
+    private boolean isMultiBlockChangeWithFlag;
+
+    private BukkitPlatformImpl getPlatformImpl() {
+        return mPlatform;
+    }
+
+    @Override
+    public void onInitialization(BukkitPlatformImpl impl) throws Exception {
+        this.mPlatform = impl;
+        configure();
+        initMultiBlockChange();
+        new VirtualLightListener(this).register(getPlatformImpl().getPlugin());
+    }
+
+    @Override
+    public void onShutdown(BukkitPlatformImpl impl) {
+        // Show the real blocks again
+        for (Map.Entry<String, Map<Long, VirtualChunk>> entry : mWorldChunks.entrySet()) {
+            World world = Bukkit.getWorld(entry.getKey());
+            if (world == null) {
+                continue;
+            }
+            for (VirtualChunk chunk : entry.getValue().values()) {
+                Map<Integer, Map<Location, BlockData>> sections = new HashMap<>();
+                chunk.forEachLight(null, (pos, lightLevel) -> addBlockChange(sections, world, pos, 0));
+                sendBlockChanges(getViewers(world, chunk.chunkX, chunk.chunkZ), sections);
+            }
+        }
+        mWorldChunks.clear();
+        mPendingSends.clear();
+    }
+
+    private void checkAndSetDefaults() {
+        boolean needSave = false;
+        FileConfiguration fc = getPlatformImpl().getPlugin().getConfig();
+        if (!fc.isSet(CONFIG_RESEND_DELAY_TICKS)) {
+            fc.set(CONFIG_RESEND_DELAY_TICKS, 2);
+            needSave = true;
+        }
+
+        if (needSave) {
+            getPlatformImpl().getPlugin().saveConfig();
+        }
+    }
+
+    private void configure() {
+        checkAndSetDefaults();
+
+        FileConfiguration fc = getPlatformImpl().getPlugin().getConfig();
+        mResendDelayTicks = Math.max(fc.getInt(CONFIG_RESEND_DELAY_TICKS), 1);
+    }
+
+    private void initMultiBlockChange() {
+        try {
+            // Paper 1.17 - 1.19.3
+            mSendMultiBlockChange = Player.class.getMethod("sendMultiBlockChange", Map.class, boolean.class);
+            isMultiBlockChangeWithFlag = true;
+        } catch (NoSuchMethodException e) {
+            try {
+                // Paper 1.19.4+, Location is a Position
+                mSendMultiBlockChange = Player.class.getMethod("sendMultiBlockChange", Map.class);
+            } catch (NoSuchMethodException ex) {
+                getPlatformImpl().debug("sendMultiBlockChange is not available, blocks are sent one by one");
+            }
+        }
+    }
+
+    @Override
+    public PlatformType getPlatformType() {
+        return PlatformType.BUKKIT;
+    }
+
+    @Override
+    public LightEngineType getLightEngineType() {
+        return LightEngineType.VIRTUAL;
+    }
+
+    @Override
+    public LightEngineVersion getLightEngineVersion() {
+        return LightEngineVersion.UNKNOWN;
+    }
+
+    @Override
+    public boolean isMainThread() {
+        return Bukkit.isPrimaryThread();
+    }
+
+    @Override
+    public void onWorldLoad(WorldLoadEvent event) {
+    }
+
+    @Override
+    public void onWorldUnload(WorldUnloadEvent event) {
+        mWorldChunks.remove(event.getWorld().getName());
+        mPendingSends.remove(event.getWorld().getName());
+    }
+
+    @Override
+    public boolean isLightingSupported(World world, int lightFlags) {
+        return FlagUtils.isFlagSet(lightFlags, LightFlag.BLOCK_LIGHTING);
+    }
+
+    private VirtualChunk getChunk(World world, int chunkX, int chunkZ) {
+        Map<Long, VirtualChunk> chunks = mWorldChunks.get(world.getName());
+        return chunks != null ? chunks.get(ChunkUtils.getChunkKey(chunkX, chunkZ)) : null;
+    }
+
+    @Override
+    public int setRawLightLevel(World world, int blockX, int blockY, int blockZ, int lightLevel, int lightFlags) {
+        if (!isLightingSupported(world, lightFlags)) {
+            return ResultCode.NOT_IMPLEMENTED;
+        }
+        int finalLightLevel = lightLevel < 0 ? 0 : Math.min(lightLevel, 15);
+        int chunkX = blockX >> 4;
+        int chunkZ = blockZ >> 4;
+        Map<Long, VirtualChunk> chunks = mWorldChunks.computeIfAbsent(world.getName(),
+                k -> new ConcurrentHashMap<>());
+        // Written inside compute, so sendPendingChunks can't drop the chunk as empty in between
+        chunks.compute(ChunkUtils.getChunkKey(chunkX, chunkZ), (k, c) -> {
+            VirtualChunk chunk = c != null ? c : new VirtualChunk(chunkX, chunkZ);
+            chunk.setLightLevel(BlockPosition.asLong(blockX, blockY, blockZ), finalLightLevel);
+            return chunk;
+        });
+        return ResultCode.SUCCESS;
+    }
+
+    /**
+     * Only the index is changed, the callback is never used.
+     */
+    @Override
+    public int setRawLightLevel(World world, int blockX, int blockY, int blockZ, int lightLevel, int lightFlags,
+            ICallback callback) {
+        return setRawLightLevel(world, blockX, blockY, blockZ, lightLevel, lightFlags);
+    }
+
+    /**
+     * Only the index is changed, the callback is never used.
+     */
+    @Override
+    public int setRawLightLevels(World world, LongIntHashMap lights, int lightFlags, LongIntHashMap oldLevels,
+            ICallback callback) {
+        if (!isLightingSupported(world, lightFlags)) {
+            return ResultCode.NOT_IMPLEMENTED;
+        }
+        lights.forEach((pos, lightLevel) -> {
+            int blockX = BlockPosition.unpackLongX(pos);
+            int blockY = BlockPosition.unpackLongY(pos);
+            int blockZ = BlockPosition.unpackLongZ(pos);
+            oldLevels.put(pos, getRawLightLevel(world, blockX, blockY, blockZ, lightFlags));
+            setRawLightLevel(world, blockX, blockY, blockZ, lightLevel, lightFlags);
+        });
+        return ResultCode.SUCCESS;
+    }
+
+    @Override
+    public int getRawLightLevel(World world, int blockX, int blockY, int blockZ, int lightFlags) {
+        if (!isLightingSupported(world, lightFlags)) {
+            return 0;
+        }
+        VirtualChunk chunk = getChunk(world, blockX >> 4, blockZ >> 4);
+        return chunk != null ? chunk.getLightLevel(BlockPosition.asLong(blockX, blockY, blockZ)) : 0;
+    }
+
+    /**
+     * The levels are read from the in-memory index of the virtual chunks.
+     */
+    @Override
+    public boolean isSectionCopySupported() {
+        return true;
+    }
+
+    @Override
+    public int getRawLightLevels(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+            int lightFlags, ByteBuffer out) {
+        LightLevelBuffer.checkCapacity(out, minX, minY, minZ, maxX, maxY, maxZ);
+        LightLevelBuffer.clear(out, minX, minY, minZ, maxX, maxY, maxZ);
+        if (!isLightingSupported(world, lightFlags)) {
+            return ResultCode.SUCCESS;
+        }
+        for (int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++) {
+            for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++) {
+                VirtualChunk chunk = getChunk(world, chunkX, chunkZ);
+                if (chunk == null) {
+                    continue;
+                }
+                chunk.forEachLight(null, (pos, lightLevel) -> {
+                    int x = BlockPosition.unpackLongX(pos);
+                    int y = BlockPosition.unpackLongY(pos);
+                    int z = BlockPosition.unpackLongZ(pos);
+                    if (x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ) {
+                        LightLevelBuffer.setLightLevel(out,
+                                LightLevelBuffer.getIndex(minX, minY, minZ, maxX, maxY, maxZ, x, y, z), lightLevel);
+                    }
+                });
+            }
+        }
+        return ResultCode.SUCCESS;
+    }
+
+    /**
+     * Virtual light is not propagated by the server, the client lights the fake blocks by itself.
+     */
+    @Override
+    public int recalculateLighting(World world, int blockX, int blockY, int blockZ, int lightFlags) {
+        return ResultCode.SUCCESS;
+    }
+
+    @Override
+    public IChunkData createChunkData(String worldName, int chunkX, int chunkZ) {
+        return new BitChunkData(worldName, chunkX, chunkZ, 0, 0);
+    }
+
+    /**
+     * Only the chunk of the source is changed, the sections are tracked by the index.
+     */
+    @Override
+    public List<IChunkData> collectChunkSections(World world, int blockX, int blockY, int blockZ, int lightLevel,
+            int lightFlags) {
+        List<IChunkData> list = new ArrayList<>();
+        list.add(createChunkData(world.getName(), blockX >> 4, blockZ >> 4));
+        return list;
+    }
+
+    @Override
+    public boolean isValidChunkSection(World world, int sectionY) {
+        return true;
+    }
+
+    @Override
+    public int getBlockOpacity(World world, int blockX, int blockY, int blockZ) {
+        return world.isChunkLoaded(blockX >> 4, blockZ >> 4) ? 0 : 15;
+    }
+
+    @Override
+    public int sendChunk(IChunkData data) {
+        mPendingSends.computeIfAbsent(data.getWorldName(), k -> ConcurrentHashMap.newKeySet()).add(
+                ChunkUtils.getChunkKey(data.getChunkX(), data.getChunkZ()));
+        scheduleSend();
+        return ResultCode.SUCCESS;
+    }
+
+    private void scheduleSend() {
+        // Blocks are read on the main thread, one task collects all the chunks changed meanwhile
+        if (mSendScheduled.compareAndSet(false, true)) {
+            Bukkit.getScheduler().runTask(getPlatformImpl().getPlugin(), () -> {
+                mSendScheduled.set(false);
+                sendPendingChunks();
+            });
+        }
+    }
+
+    /* @hide */
+    private void sendPendingChunks() {
+        for (Map.Entry<String, Set<Long>> entry : mPendingSends.entrySet()) {
+            World world = Bukkit.getWorld(entry.getKey());
+            Map<Long, VirtualChunk> chunks = mWorldChunks.get(entry.getKey());
+            for (Long chunkKey : entry.getValue()) {
+                entry.getValue().remove(chunkKey);
+                VirtualChunk chunk = chunks != null ? chunks.get(chunkKey) : null;
+                if (world == null || chunk == null) {
+                    continue;
+                }
+                Map<Integer, Map<Location, BlockData>> sections = new HashMap<>();
+                chunk.drainChanges((pos, lightLevel) -> addBlockChange(sections, world, pos, lightLevel));
+                // forget the chunk if it has no light anymore
+                chunks.computeIfPresent(chunkKey, (k, c) -> c.isEmpty() ? null : c);
+                sendBlockChanges(getViewers(world, chunk.chunkX, chunk.chunkZ), sections);
+            }
+        }
+    }
+
+    /**
+     * Sends all light sources of the chunk to the player, used when the chunk is sent to the client.
+     */
+    public void resendChunk(Player player, int chunkX, int chunkZ) {
+        Bukkit.getScheduler().runTaskLater(getPlatformImpl().getPlugin(), () -> {
+            if (!player.isOnline()) {
+                return;
+            }
+            resendChunkLocked(player.getWorld(), chunkX, chunkZ, Collections.singletonList(player));
+        }, mResendDelayTicks);
+    }
+
+    /**
+     * Sends all light sources of the chunk to all players who can see it.
+     */
+    public void resendChunk(World world, int chunkX, int chunkZ) {
+        if (getChunk(world, chunkX, chunkZ) == null) {
+            return;
+        }
+        Bukkit.getScheduler().runTaskLater(getPlatformImpl().getPlugin(),
+                () -> resendChunkLocked(world, chunkX, chunkZ, getViewers(world, chunkX, chunkZ)), mResendDelayTicks);
+    }
+
+    /**
+     * Sends the light sources of the chunks which came into the view of the player.
+     *
+     * @param from previous location of the player, or null if the whole view is new
+     */
+    public void resendView(Player player, Location from) {
+        Map<Long, VirtualChunk> chunks = mWorldChunks.get(player.getWorld().getName());
+        if (chunks == null || chunks.isEmpty()) {
+            return;
+        }
+        Bukkit.getScheduler().runTaskLater(getPlatformImpl().getPlugin(), () -> {
+            if (!player.isOnline()) {
+                return;
+            }
+            World world = player.getWorld();
+            Location location = player.getLocation();
+            boolean sameWorld = from != null && world.equals(from.getWorld());
+            int viewDistance = Bukkit.getViewDistance();
+            int centerX = location.getBlockX() >> 4;
+            int centerZ = location.getBlockZ() >> 4;
+            // Only the chunks of the view are looked up in the index
+            for (int chunkX = centerX - viewDistance; chunkX <= centerX + viewDistance; chunkX++) {
+                for (int chunkZ = centerZ - viewDistance; chunkZ <= centerZ + viewDistance; chunkZ++) {
+                    if (!chunks.containsKey(ChunkUtils.getChunkKey(chunkX, chunkZ))) {
+                        continue;
+                    }
+                    if (sameWorld && isInView(from, chunkX, chunkZ)) {
+                        continue;
+                    }
+                    resendChunkLocked(world, chunkX, chunkZ, Collections.singletonList(player));
+                }
+            }
+        }, mResendDelayTicks);
+    }
+
+    /* @hide */
+    private void resendChunkLocked(World world, int chunkX, int chunkZ, Collection<? extends Player> players) {
+        VirtualChunk chunk = getChunk(world, chunkX, chunkZ);
+        if (chunk == null || players.isEmpty()) {
+            return;
+        }
+        Map<Integer, Map<Location, BlockData>> sections = new HashMap<>();
+        chunk.forEachLight(null, (pos, lightLevel) -> addBlockChange(sections, world, pos, lightLevel));
+        sendBlockChanges(players, sections);
+    }
+
+    private boolean isInView(Location location, int chunkX, int chunkZ) {
+        int distance = Math.max(Math.abs((location.getBlockX() >> 4) - chunkX),
+                Math.abs((location.getBlockZ() >> 4) - chunkZ));
+        return distance <= Bukkit.getViewDistance();
+    }
+
+    private List<Player> getViewers(World world, int chunkX, int chunkZ) {
+        List<Player> viewers = new ArrayList<>();
+        for (Player player : world.getPlayers()) {
+            if (isInView(player.getLocation(), chunkX, chunkZ)) {
+                viewers.add(player);
+            }
+        }
+        return viewers;
+    }
+
+    private void addBlockChange(Map<Integer, Map<Location, BlockData>> sections, World world, long pos,
+            int lightLevel) {
+        int x = BlockPosition.unpackLongX(pos);
+        int y = BlockPosition.unpackLongY(pos);
+        int z = BlockPosition.unpackLongZ(pos);
+        // Reading the block would load the chunk, the client gets the light when the chunk is sent anyway
+        if (!world.isChunkLoaded(x >> 4, z >> 4)) {
+            return;
+        }
+        BlockData realData = world.getBlockAt(x, y, z).getBlockData();
+        BlockData data = realData;
+        // A light source can not replace a real block
+        if (lightLevel > 0 && realData.getMaterial().isAir()) {
+            Levelled level = (Levelled) Material.LIGHT.createBlockData();
+            level.setLevel(lightLevel);
+            data = level;
+        }
+        sections.computeIfAbsent(y >> 4, k -> new LinkedHashMap<>()).put(new Location(world, x, y, z), data);
+    }
+
+    private void sendBlockChanges(Collection<? extends Player> players, Map<Integer, Map<Location, BlockData>> sections) {
+        for (Player player : players) {
+            for (Map<Location, BlockData> changes : sections.values()) {
+                sendBlockChanges(player, changes);
+            }
+        }
+    }
+
+    private void sendBlockChanges(Player player, Map<Location, BlockData> changes) {
+        if (mSendMultiBlockChange != null) {
+            try {
+                if (isMultiBlockChangeWithFlag) {
+                    // the client must relight the fake blocks
+                    mSendMultiBlockChange.invoke(player, changes, false);
+                } else {
+                    mSendMultiBlockChange.invoke(player, changes);
+                }
+                return;
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                e.printStackTrace();
+                mSendMultiBlockChange = null;
+            }
+        }
+        for (Map.Entry<Location, BlockData> change : changes.entrySet()) {
+            player.sendBlockChange(change.getKey(), change.getValue());
+        }
+    }
+
+    @Override
+    public int sendCmd(int cmdId, Object... args) {
+        getPlatformImpl().debug("sendCmd: Not implemented for virtual mode");
+        return ResultCode.NOT_IMPLEMENTED;
+    }
+
+    private static final class VirtualChunk {
+
+        private final int chunkX;
+        private final int chunkZ;
+        // block position -> light level
+        private final LongIntHashMap mLights = new LongIntHashMap();
+        // removed sources, the real blocks must be sent
+        private final LongIntHashMap mRemoved = new LongIntHashMap();
+        private final Set<Integer> mDirtySections = new HashSet<>();
+
+        private VirtualChunk(int chunkX, int chunkZ) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        private synchronized int getLightLevel(long pos) {
+            return mLights.get(pos, 0);
+        }
+
+        private synchronized void setLightLevel(long pos, int lightLevel) {
+            if (lightLevel > 0) {
+                if (mLights.get(pos, 0) == lightLevel) {
+                    return;
+                }
+                mLights.put(pos, lightLevel);
+                mRemoved.remove(pos);
+            } else if (mLights.remove(pos)) {
+                mRemoved.put(pos, 0);
+            } else {
+                return;
+            }
+            mDirtySections.add(BlockPosition.unpackLongY(pos) >> 4);
+        }
+
+        private synchronized boolean isEmpty() {
+            return mLights.isEmpty() && mRemoved.isEmpty() && mDirtySections.isEmpty();
+        }
+
+        /**
+         * @param sections sections to iterate, or null for all
+         */
+        private synchronized void forEachLight(Set<Integer> sections, LongIntHashMap.Consumer consumer) {
+            mLights.forEach((pos, lightLevel) -> {
+                if (sections == null || sections.contains(BlockPosition.unpackLongY(pos) >> 4)) {
+                    consumer.accept(pos, lightLevel);
+                }
+            });
+        }
+
+        /**
+         * Passes the current state of the changed sections and the removed sources, then forgets the changes
+         */
+        private synchronized void drainChanges(LongIntHashMap.Consumer consumer) {
+            if (mDirtySections.isEmpty()) {
+                return;
+            }
+            forEachLight(mDirtySections, consumer);
+            mRemoved.forEach(consumer);
+            mRemoved.clear();
+            mDirtySections.clear();
+        }
+    }
+}
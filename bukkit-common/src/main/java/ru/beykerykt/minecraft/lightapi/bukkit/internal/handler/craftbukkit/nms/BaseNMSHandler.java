@@ -24,18 +24,73 @@
 package ru.beykerykt.minecraft.lightapi.bukkit.internal.handler.craftbukkit.nms;
 
 import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import ru.beykerykt.minecraft.lightapi.bukkit.internal.BukkitPlatformImpl;
 import ru.beykerykt.minecraft.lightapi.bukkit.internal.handler.IHandler;
+import ru.beykerykt.minecraft.lightapi.common.api.ResultCode;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.LightFlag;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.LightLevelBuffer;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.ICallback;
 import ru.beykerykt.minecraft.lightapi.common.internal.PlatformType;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.BlockPosition;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.FlagUtils;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongIntHashMap;
 
 public abstract class BaseNMSHandler implements IHandler {
 
     private BukkitPlatformImpl mPlatformImpl;
+    // world name -> per-world handle of the handler, see createWorldHandle()
+    private final Map<String, Object> mWorldHandles = new ConcurrentHashMap<>();
 
     @Override
     public void onInitialization(BukkitPlatformImpl impl) throws Exception {
         this.mPlatformImpl = impl;
+        for (World world : Bukkit.getWorlds()) {
+            addWorldHandle(world);
+        }
+    }
+
+    /**
+     * Creates the per-world handle (level, light engine, ...) of the handler, or returns null if the
+     * handler does not cache anything per world. Only the v1_19_R2 handlers create handles so far.
+     */
+    protected Object createWorldHandle(World world) {
+        return null;
+    }
+
+    /**
+     * Handles are created on initialization and on world load only, so a handle is never created
+     * again for an unloaded world and does not keep its level alive.
+     *
+     * @return the handle of the world, or null if the world is not loaded
+     */
+    @SuppressWarnings("unchecked")
+    protected <T> T getWorldHandle(World world) {
+        return world == null ? null : (T) mWorldHandles.get(world.getName());
+    }
+
+    private void addWorldHandle(World world) {
+        Object handle = createWorldHandle(world);
+        if (handle != null) {
+            mWorldHandles.put(world.getName(), handle);
+        }
+    }
+
+    @Override
+    public void onWorldLoad(WorldLoadEvent event) {
+        addWorldHandle(event.getWorld());
+    }
+
+    @Override
+    public void onWorldUnload(WorldUnloadEvent event) {
+        mWorldHandles.remove(event.getWorld().getName());
     }
 
     protected BukkitPlatformImpl getPlatformImpl() {
@@ -51,4 +106,76 @@ public abstract class BaseNMSHandler implements IHandler {
     public boolean isMainThread() {
         return Bukkit.isPrimaryThread();
     }
+
+    /**
+     * NMS handlers set the level in place, the callback is never used.
+     */
+    @Override
+    public int setRawLightLevel(World world, int blockX, int blockY, int blockZ, int lightLevel, int lightFlags,
+            ICallback callback) {
+        return setRawLightLevel(world, blockX, blockY, blockZ, lightLevel, lightFlags);
+    }
+
+    /**
+     * Generic implementation, sets the level of each position separately, the callback is never used.
+     * Handlers with a critical section of the light engine should override it and write all levels in
+     * one section.
+     */
+    @Override
+    public int setRawLightLevels(World world, LongIntHashMap lights, int lightFlags, LongIntHashMap oldLevels,
+            ICallback callback) {
+        lights.forEach((pos, lightLevel) -> {
+            int blockX = BlockPosition.unpackLongX(pos);
+            int blockY = BlockPosition.unpackLongY(pos);
+            int blockZ = BlockPosition.unpackLongZ(pos);
+            int oldLightLevel = getRawLightLevel(world, blockX, blockY, blockZ, lightFlags);
+            if (setRawLightLevel(world, blockX, blockY, blockZ, lightLevel, lightFlags) == ResultCode.SUCCESS) {
+                oldLevels.put(pos, Math.max(oldLightLevel, 0));
+            }
+        });
+        return oldLevels.isEmpty() ? ResultCode.FAILED : ResultCode.SUCCESS;
+    }
+
+    /**
+     * Generic implementation, does not look at the blocks. Handlers with access to the chunks should
+     * override it.
+     */
+    @Override
+    public int getBlockOpacity(World world, int blockX, int blockY, int blockZ) {
+        return world.isChunkLoaded(blockX >> 4, blockZ >> 4) ? 0 : 15;
+    }
+
+    /**
+     * The generic {@link #getRawLightLevels} reads block by block.
+     */
+    @Override
+    public boolean isSectionCopySupported() {
+        return false;
+    }
+
+    /**
+     * Generic implementation, reads the light level of each block separately. Handlers with access to
+     * the light storage should override it and copy whole sections.
+     */
+    @Override
+    public int getRawLightLevels(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+            int lightFlags, ByteBuffer out) {
+        LightLevelBuffer.checkCapacity(out, minX, minY, minZ, maxX, maxY, maxZ);
+        int index = 0;
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int x = minX; x <= maxX; x++) {
+                    int lightLevel = 0;
+                    if (FlagUtils.isFlagSet(lightFlags, LightFlag.BLOCK_LIGHTING)) {
+                        lightLevel = getRawLightLevel(world, x, y, z, LightFlag.BLOCK_LIGHTING);
+                    }
+                    if (FlagUtils.isFlagSet(lightFlags, LightFlag.SKY_LIGHTING)) {
+                        lightLevel = Math.max(lightLevel, getRawLightLevel(world, x, y, z, LightFlag.SKY_LIGHTING));
+                    }
+                    LightLevelBuffer.setLightLevel(out, index++, Math.max(lightLevel, 0));
+                }
+            }
+        }
+        return ResultCode.SUCCESS;
+    }
 }
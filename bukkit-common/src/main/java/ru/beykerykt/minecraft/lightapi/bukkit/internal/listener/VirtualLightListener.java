@@ -0,0 +1,124 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.bukkit.internal.listener;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.reflect.Method;
+
+import ru.beykerykt.minecraft.lightapi.bukkit.internal.handler.VirtualLightHandler;
+
+/**
+ * Sends the virtual light again when a chunk comes into the view of a player. On Paper the chunks
+ * sent to the player are known exactly, otherwise the view is estimated from the player movement.
+ */
+public class VirtualLightListener implements Listener {
+
+    private static final String PAPER_PLAYER_CHUNK_LOAD_EVENT = "io.papermc.paper.event.packet.PlayerChunkLoadEvent";
+
+    private final VirtualLightHandler mHandler;
+    private boolean isChunkSendTracked = false;
+
+    public VirtualLightListener(VirtualLightHandler handler) {
+        this.mHandler = handler;
+    }
+
+    public void register(Plugin plugin) {
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+        try {
+            Class<? extends Event> eventClass = Class.forName(PAPER_PLAYER_CHUNK_LOAD_EVENT).asSubclass(Event.class);
+            Method getPlayer = eventClass.getMethod("getPlayer");
+            Method getChunk = eventClass.getMethod("getChunk");
+            Bukkit.getPluginManager().registerEvent(eventClass, this, EventPriority.MONITOR, (listener, event) -> {
+                if (!eventClass.isInstance(event)) {
+                    return;
+                }
+                try {
+                    Chunk chunk = (Chunk) getChunk.invoke(event);
+                    mHandler.resendChunk((Player) getPlayer.invoke(event), chunk.getX(), chunk.getZ());
+                } catch (ReflectiveOperationException e) {
+                    throw new EventException(e);
+                }
+            }, plugin);
+            isChunkSendTracked = true;
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            // not Paper
+        }
+    }
+
+    private static boolean isSameChunk(Location from, Location to) {
+        return from.getWorld() == to.getWorld() && (from.getBlockX() >> 4) == (to.getBlockX() >> 4)
+                && (from.getBlockZ() >> 4) == (to.getBlockZ() >> 4);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        if (!isChunkSendTracked) {
+            mHandler.resendView(event.getPlayer(), null);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        if (!isChunkSendTracked) {
+            mHandler.resendView(event.getPlayer(), null);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        if (!isChunkSendTracked && event.getTo() != null && !isSameChunk(event.getFrom(), event.getTo())) {
+            mHandler.resendView(event.getPlayer(), event.getFrom());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        if (!isChunkSendTracked && event.getTo() != null && !isSameChunk(event.getFrom(), event.getTo())) {
+            mHandler.resendView(event.getPlayer(), event.getFrom());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        if (!isChunkSendTracked) {
+            Chunk chunk = event.getChunk();
+            mHandler.resendChunk(chunk.getWorld(), chunk.getX(), chunk.getZ());
+        }
+    }
+}
@@ -43,6 +43,7 @@ public class BukkitBackgroundServiceImpl extends BackgroundServiceImpl {
     @Deprecated
     private final String CONFIG_TICK_PERIOD = CONFIG_TITLE + ".tick-period";
     private final String CONFIG_CORE_POOL_SIZE = CONFIG_TITLE + ".corePoolSize";
+    private final String CONFIG_USE_VIRTUAL_THREADS = CONFIG_TITLE + ".use-virtual-threads";
 
     private final IHandler mHandler;
     private int taskId = -1;
@@ -81,6 +82,11 @@ public class BukkitBackgroundServiceImpl extends BackgroundServiceImpl {
             needSave = true;
         }
 
+        if (!fc.isSet(CONFIG_USE_VIRTUAL_THREADS)) {
+            fc.set(CONFIG_USE_VIRTUAL_THREADS, true);
+            needSave = true;
+        }
+
         if (needSave) {
             getPlatformImpl().getPlugin().saveConfig();
         }
@@ -96,6 +102,11 @@ public class BukkitBackgroundServiceImpl extends BackgroundServiceImpl {
         FileConfiguration fc = getPlatformImpl().getPlugin().getConfig();
         int corePoolSize = fc.getInt(CONFIG_CORE_POOL_SIZE);
         configureExecutorService(corePoolSize, namedThreadFactory);
+        // the drain of the queues keeps the platform threads, virtual threads are only for blocking tasks
+        if (fc.getBoolean(CONFIG_USE_VIRTUAL_THREADS)) {
+            boolean isVirtual = configureBlockingExecutorService("lightapi-blocking-thread-");
+            getPlatformImpl().debug("Blocking tasks use " + (isVirtual ? "virtual" : "background") + " threads");
+        }
 
         // heartbeat
         taskId = getPlatformImpl().getPlugin().getServer().getScheduler().runTaskTimer(getPlatformImpl().getPlugin(),
@@ -0,0 +1,335 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package ru.beykerykt.minecraft.lightapi.bukkit.dynamiclights;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntitySpawnEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import ru.beykerykt.minecraft.lightapi.common.LightAPI;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.ILightSource;
+
+/**
+ * Tracks light-emitting entities and moves a {@link ILightSource} after each of them.
+ * <p>
+ * Everything runs on the main thread. Tracked entities are kept in a chunk-keyed spatial hash and
+ * the chunks around players are collected into a set once per tick, so checking whether an entity
+ * is near a player is a single lookup instead of a distance check against every player. Every tick
+ * only the handles whose position or level changed are touched, the light source manager then
+ * applies all changes of a world in one relight and one send.
+ */
+public class DynamicLightManager implements Listener {
+
+    private final Plugin mPlugin;
+    private final LightAPI mLightAPI;
+    private final LightEmission mEmission;
+    private final int mRadiusChunks;
+    private final int mUpdatePeriodTicks;
+    private final int mRescanPeriodTicks;
+
+    private final Map<UUID, TrackedEntity> mTrackedEntities = new HashMap<>();
+    // world name -> chunk key -> tracked entities in the chunk
+    private final Map<String, Map<Long, List<TrackedEntity>>> mSpatialHash = new HashMap<>();
+    // world name -> keys of the chunks within the radius of any player, rebuilt every update
+    private final Map<String, Set<Long>> mActiveChunks = new HashMap<>();
+    private final List<Entity> mPendingEntities = new ArrayList<>();
+    private final List<TrackedEntity> mRemoveList = new ArrayList<>();
+    private BukkitTask mTask;
+    private int mTicksSinceRescan = Integer.MAX_VALUE / 2;
+
+    public DynamicLightManager(Plugin plugin, LightAPI lightAPI, LightEmission emission, int radiusChunks,
+            int updatePeriodTicks, int rescanPeriodTicks) {
+        this.mPlugin = plugin;
+        this.mLightAPI = lightAPI;
+        this.mEmission = emission;
+        this.mRadiusChunks = Math.max(0, radiusChunks);
+        this.mUpdatePeriodTicks = Math.max(1, updatePeriodTicks);
+        this.mRescanPeriodTicks = Math.max(1, rescanPeriodTicks);
+    }
+
+    public void start() {
+        Bukkit.getPluginManager().registerEvents(this, mPlugin);
+        mTask = Bukkit.getScheduler().runTaskTimer(mPlugin, this::update, 1, mUpdatePeriodTicks);
+    }
+
+    public void shutdown() {
+        if (mTask != null) {
+            mTask.cancel();
+            mTask = null;
+        }
+        HandlerList.unregisterAll(this);
+        for (TrackedEntity tracked : mTrackedEntities.values()) {
+            if (tracked.mLightSource != null) {
+                tracked.mLightSource.destroy();
+            }
+        }
+        mTrackedEntities.clear();
+        mSpatialHash.clear();
+        mActiveChunks.clear();
+        mPendingEntities.clear();
+    }
+
+    /**
+     * N/A
+     */
+    public int getTrackedEntityCount() {
+        return mTrackedEntities.size();
+    }
+
+    private void update() {
+        rebuildActiveChunks();
+
+        // entities created since the last update, they have a valid location only now
+        for (int i = 0; i < mPendingEntities.size(); i++) {
+            track(mPendingEntities.get(i));
+        }
+        mPendingEntities.clear();
+
+        // new entities don't always fire an event (chunk loading), look for them around players
+        mTicksSinceRescan += mUpdatePeriodTicks;
+        if (mTicksSinceRescan >= mRescanPeriodTicks) {
+            mTicksSinceRescan = 0;
+            scanActiveChunks();
+        }
+
+        for (TrackedEntity tracked : mTrackedEntities.values()) {
+            if (!updateEntity(tracked)) {
+                mRemoveList.add(tracked);
+            }
+        }
+        for (int i = 0; i < mRemoveList.size(); i++) {
+            untrack(mRemoveList.get(i));
+        }
+        mRemoveList.clear();
+    }
+
+    private static long getChunkKey(int chunkX, int chunkZ) {
+        return (long) chunkX & 0xffffffffL | ((long) chunkZ & 0xffffffffL) << 32;
+    }
+
+    private void rebuildActiveChunks() {
+        for (Set<Long> chunks : mActiveChunks.values()) {
+            chunks.clear();
+        }
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            Location loc = player.getLocation();
+            Set<Long> chunks = mActiveChunks.computeIfAbsent(player.getWorld().getName(), k -> new HashSet<>());
+            int chunkX = loc.getBlockX() >> 4;
+            int chunkZ = loc.getBlockZ() >> 4;
+            for (int dx = -mRadiusChunks; dx <= mRadiusChunks; dx++) {
+                for (int dz = -mRadiusChunks; dz <= mRadiusChunks; dz++) {
+                    chunks.add(getChunkKey(chunkX + dx, chunkZ + dz));
+                }
+            }
+        }
+    }
+
+    private boolean isActiveChunk(String worldName, long chunkKey) {
+        Set<Long> chunks = mActiveChunks.get(worldName);
+        return chunks != null && chunks.contains(chunkKey);
+    }
+
+    private void scanActiveChunks() {
+        for (Map.Entry<String, Set<Long>> entry : mActiveChunks.entrySet()) {
+            World world = Bukkit.getWorld(entry.getKey());
+            if (world == null) {
+                continue;
+            }
+            for (long chunkKey : entry.getValue()) {
+                int chunkX = (int) chunkKey;
+                int chunkZ = (int) (chunkKey >>> 32);
+                if (!world.isChunkLoaded(chunkX, chunkZ)) {
+                    continue;
+                }
+                Chunk chunk = world.getChunkAt(chunkX, chunkZ);
+                for (Entity entity : chunk.getEntities()) {
+                    track(entity);
+                }
+            }
+        }
+    }
+
+    private void track(Entity entity) {
+        if (mTrackedEntities.containsKey(entity.getUniqueId()) || !entity.isValid()
+                || !mEmission.canEmit(entity)) {
+            return;
+        }
+        Location loc = entity.getLocation();
+        TrackedEntity tracked = new TrackedEntity(entity, entity.getWorld().getName(),
+                getChunkKey(loc.getBlockX() >> 4, loc.getBlockZ() >> 4));
+        mTrackedEntities.put(entity.getUniqueId(), tracked);
+        addToSpatialHash(tracked);
+    }
+
+    private void untrack(TrackedEntity tracked) {
+        mTrackedEntities.remove(tracked.mEntity.getUniqueId());
+        removeFromSpatialHash(tracked);
+        if (tracked.mLightSource != null) {
+            tracked.mLightSource.destroy();
+            tracked.mLightSource = null;
+        }
+    }
+
+    private void addToSpatialHash(TrackedEntity tracked) {
+        mSpatialHash.computeIfAbsent(tracked.mWorldName, k -> new HashMap<>()).computeIfAbsent(tracked.mChunkKey,
+                k -> new ArrayList<>(4)).add(tracked);
+    }
+
+    private void removeFromSpatialHash(TrackedEntity tracked) {
+        Map<Long, List<TrackedEntity>> chunks = mSpatialHash.get(tracked.mWorldName);
+        if (chunks == null) {
+            return;
+        }
+        List<TrackedEntity> list = chunks.get(tracked.mChunkKey);
+        if (list == null) {
+            return;
+        }
+        list.remove(tracked);
+        if (list.isEmpty()) {
+            chunks.remove(tracked.mChunkKey);
+        }
+    }
+
+    /**
+     * Returns false if the entity is gone and must be untracked.
+     */
+    private boolean updateEntity(TrackedEntity tracked) {
+        Entity entity = tracked.mEntity;
+        if (!entity.isValid()) {
+            return false;
+        }
+        Location loc = entity.getLocation();
+        String worldName = entity.getWorld().getName();
+        int blockX = loc.getBlockX();
+        int blockY = loc.getBlockY();
+        int blockZ = loc.getBlockZ();
+        long chunkKey = getChunkKey(blockX >> 4, blockZ >> 4);
+        if (chunkKey != tracked.mChunkKey || !worldName.equals(tracked.mWorldName)) {
+            removeFromSpatialHash(tracked);
+            tracked.mWorldName = worldName;
+            tracked.mChunkKey = chunkKey;
+            addToSpatialHash(tracked);
+        }
+
+        int lightLevel = isActiveChunk(worldName, chunkKey) ? mEmission.getLightLevel(entity) : 0;
+        ILightSource source = tracked.mLightSource;
+        if (source == null) {
+            if (lightLevel > 0) {
+                tracked.mLightSource = mLightAPI.createLightSource(worldName, blockX, blockY, blockZ, lightLevel);
+            }
+            return true;
+        }
+
+        // a hidden source is not moved, it will be moved when it is lit again
+        if (lightLevel > 0 && (blockX != source.getBlockX() || blockY != source.getBlockY()
+                || blockZ != source.getBlockZ() || !worldName.equals(source.getWorldName()))) {
+            source.moveTo(worldName, blockX, blockY, blockZ);
+        }
+        if (lightLevel != source.getLightLevel()) {
+            source.setLightLevel(lightLevel);
+        }
+        return true;
+    }
+
+    private void untrackChunk(String worldName, long chunkKey) {
+        Map<Long, List<TrackedEntity>> chunks = mSpatialHash.get(worldName);
+        if (chunks == null) {
+            return;
+        }
+        List<TrackedEntity> list = chunks.get(chunkKey);
+        if (list == null) {
+            return;
+        }
+        for (TrackedEntity tracked : new ArrayList<>(list)) {
+            untrack(tracked);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntitySpawn(EntitySpawnEvent event) {
+        mPendingEntities.add(event.getEntity());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        mPendingEntities.add(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        TrackedEntity tracked = mTrackedEntities.get(event.getPlayer().getUniqueId());
+        if (tracked != null) {
+            untrack(tracked);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        Chunk chunk = event.getChunk();
+        untrackChunk(chunk.getWorld().getName(), getChunkKey(chunk.getX(), chunk.getZ()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        String worldName = event.getWorld().getName();
+        Iterator<TrackedEntity> it = mTrackedEntities.values().iterator();
+        while (it.hasNext()) {
+            TrackedEntity tracked = it.next();
+            if (!worldName.equals(tracked.mWorldName)) {
+                continue;
+            }
+            it.remove();
+            if (tracked.mLightSource != null) {
+                tracked.mLightSource.destroy();
+                tracked.mLightSource = null;
+            }
+        }
+        mSpatialHash.remove(worldName);
+        mActiveChunks.remove(worldName);
+    }
+}
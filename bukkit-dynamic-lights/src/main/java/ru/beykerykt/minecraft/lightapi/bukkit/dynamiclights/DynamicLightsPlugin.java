@@ -0,0 +1,106 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package ru.beykerykt.minecraft.lightapi.bukkit.dynamiclights;
+
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.Arrays;
+
+import ru.beykerykt.minecraft.lightapi.common.LightAPI;
+
+public class DynamicLightsPlugin extends JavaPlugin {
+
+    private final String CONFIG_TITLE = "general";
+    private final String CONFIG_UPDATE_PERIOD = CONFIG_TITLE + ".update-period-ticks";
+    private final String CONFIG_RESCAN_PERIOD = CONFIG_TITLE + ".rescan-period-ticks";
+    private final String CONFIG_RADIUS_CHUNKS = CONFIG_TITLE + ".radius-chunks";
+    private final String CONFIG_BURNING_LIGHT_LEVEL = CONFIG_TITLE + ".burning-light-level";
+    private final String CONFIG_ENTITIES = "light-levels.entities";
+    private final String CONFIG_ITEMS = "light-levels.items";
+
+    private DynamicLightManager mManager;
+
+    @Override
+    public void onEnable() {
+        checkAndSetDefaults();
+
+        FileConfiguration fc = getConfig();
+        LightEmission emission = new LightEmission(fc.getStringList(CONFIG_ENTITIES),
+                fc.getStringList(CONFIG_ITEMS), fc.getInt(CONFIG_BURNING_LIGHT_LEVEL), getLogger());
+        mManager = new DynamicLightManager(this, LightAPI.get(), emission, fc.getInt(CONFIG_RADIUS_CHUNKS),
+                fc.getInt(CONFIG_UPDATE_PERIOD), fc.getInt(CONFIG_RESCAN_PERIOD));
+        mManager.start();
+    }
+
+    @Override
+    public void onDisable() {
+        if (mManager != null) {
+            mManager.shutdown();
+            mManager = null;
+        }
+    }
+
+    private void checkAndSetDefaults() {
+        FileConfiguration fc = getConfig();
+        boolean needSave = false;
+        if (!fc.isSet(CONFIG_UPDATE_PERIOD)) {
+            fc.set(CONFIG_UPDATE_PERIOD, 1);
+            needSave = true;
+        }
+
+        if (!fc.isSet(CONFIG_RESCAN_PERIOD)) {
+            fc.set(CONFIG_RESCAN_PERIOD, 20);
+            needSave = true;
+        }
+
+        if (!fc.isSet(CONFIG_RADIUS_CHUNKS)) {
+            fc.set(CONFIG_RADIUS_CHUNKS, 4);
+            needSave = true;
+        }
+
+        if (!fc.isSet(CONFIG_BURNING_LIGHT_LEVEL)) {
+            fc.set(CONFIG_BURNING_LIGHT_LEVEL, 12);
+            needSave = true;
+        }
+
+        if (!fc.isSet(CONFIG_ENTITIES)) {
+            fc.set(CONFIG_ENTITIES, Arrays.asList("BLAZE:10", "MAGMA_CUBE:8", "GLOW_SQUID:6", "ALLAY:6"));
+            needSave = true;
+        }
+
+        if (!fc.isSet(CONFIG_ITEMS)) {
+            fc.set(CONFIG_ITEMS, Arrays.asList("TORCH:14", "SOUL_TORCH:10", "REDSTONE_TORCH:7", "LANTERN:15",
+                    "SOUL_LANTERN:10", "GLOWSTONE:15", "SEA_LANTERN:15", "JACK_O_LANTERN:15", "SHROOMLIGHT:15",
+                    "LAVA_BUCKET:15", "BEACON:15", "END_ROD:14", "GLOW_BERRIES:14", "BLAZE_ROD:10",
+                    "MAGMA_BLOCK:3", "GLOW_INK_SAC:6"));
+            needSave = true;
+        }
+
+        if (needSave) {
+            saveConfig();
+        }
+    }
+}
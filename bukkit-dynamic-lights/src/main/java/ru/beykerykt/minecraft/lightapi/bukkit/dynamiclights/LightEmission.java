@@ -0,0 +1,116 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package ru.beykerykt.minecraft.lightapi.bukkit.dynamiclights;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Item;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.inventory.EntityEquipment;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Light levels emitted by entities. An entity emits the highest of: the level of its type, the
+ * burning level while it is on fire, the level of a dropped item and the levels of the items held
+ * in both hands.
+ * <p>
+ * Levels are configured by name ("TORCH:14") so that materials and entity types that don't exist on
+ * the running server version are ignored instead of failing.
+ */
+public class LightEmission {
+
+    private final Map<String, Integer> mEntityLevels = new HashMap<>();
+    private final Map<String, Integer> mItemLevels = new HashMap<>();
+    private final int mBurningLevel;
+
+    public LightEmission(List<String> entityLevels, List<String> itemLevels, int burningLevel, Logger logger) {
+        parseLevels(entityLevels, mEntityLevels, logger);
+        parseLevels(itemLevels, mItemLevels, logger);
+        this.mBurningLevel = clampLevel(burningLevel);
+    }
+
+    private static void parseLevels(List<String> entries, Map<String, Integer> out, Logger logger) {
+        if (entries == null) {
+            return;
+        }
+        for (String entry : entries) {
+            int index = entry.lastIndexOf(':');
+            if (index <= 0) {
+                logger.warning("Skip malformed light entry: " + entry);
+                continue;
+            }
+            try {
+                int level = Integer.parseInt(entry.substring(index + 1).trim());
+                out.put(entry.substring(0, index).trim().toUpperCase(), clampLevel(level));
+            } catch (NumberFormatException e) {
+                logger.warning("Skip malformed light entry: " + entry);
+            }
+        }
+    }
+
+    private static int clampLevel(int level) {
+        return Math.max(0, Math.min(15, level));
+    }
+
+    /**
+     * Returns true if the entity can emit light at some point of its life, e.g. a mob can pick up a
+     * torch. Only such entities are tracked.
+     */
+    public boolean canEmit(Entity entity) {
+        return entity instanceof Item || entity instanceof LivingEntity || entity.getFireTicks() > 0
+                || mEntityLevels.containsKey(entity.getType().name());
+    }
+
+    /**
+     * N/A
+     */
+    public int getLightLevel(Entity entity) {
+        int level = mEntityLevels.getOrDefault(entity.getType().name(), 0);
+        if (mBurningLevel > level && entity.getFireTicks() > 0) {
+            level = mBurningLevel;
+        }
+        if (entity instanceof Item) {
+            level = Math.max(level, getItemLevel(((Item) entity).getItemStack()));
+        } else if (entity instanceof LivingEntity) {
+            EntityEquipment equipment = ((LivingEntity) entity).getEquipment();
+            if (equipment != null) {
+                level = Math.max(level, getItemLevel(equipment.getItemInMainHand()));
+                level = Math.max(level, getItemLevel(equipment.getItemInOffHand()));
+            }
+        }
+        return level;
+    }
+
+    private int getItemLevel(ItemStack itemStack) {
+        if (itemStack == null || itemStack.getType() == null || mItemLevels.isEmpty()) {
+            return 0;
+        }
+        return mItemLevels.getOrDefault(itemStack.getType().name(), 0);
+    }
+}
@@ -36,7 +36,6 @@ import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.EntityDeathEvent;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -44,9 +43,7 @@ import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
 
-import ru.beykerykt.minecraft.lightapi.common.api.engine.EditPolicy;
-import ru.beykerykt.minecraft.lightapi.common.api.engine.LightFlag;
-import ru.beykerykt.minecraft.lightapi.common.api.engine.SendPolicy;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.ILightSource;
 
 public class EntityTracker implements Listener {
 
@@ -57,7 +54,7 @@ public class EntityTracker implements Listener {
             searchEntities(player);
         }
     };
-    private Map<UUID, Location> lightLocations = new HashMap<>();
+    private Map<UUID, ILightSource> lightSources = new HashMap<>();
     private BukkitPlugin mPlugin;
     private final Runnable updateRun = () -> updateLights();
     private int taskId1;
@@ -75,15 +72,11 @@ public class EntityTracker implements Listener {
     }
 
     public void shutdown() {
-        for (Location loc : lightLocations.values()) {
-            int blockX = loc.getBlockX();
-            int blockY = loc.getBlockY();
-            int blockZ = loc.getBlockZ();
-            getPlugin().mLightAPI.setLightLevel(loc.getWorld().getName(), blockX, blockY, blockZ, 0,
-                    LightFlag.BLOCK_LIGHTING, EditPolicy.FORCE_IMMEDIATE, SendPolicy.IGNORE, null);
+        for (ILightSource source : lightSources.values()) {
+            source.destroy();
         }
 
-        lightLocations.clear();
+        lightSources.clear();
         mTrackedEntityList.clear();
         Bukkit.getScheduler().cancelTask(taskId1);
         Bukkit.getScheduler().cancelTask(taskId2);
@@ -120,32 +113,25 @@ public class EntityTracker implements Listener {
     }
 
     // check only world and positions
-    private boolean equalsLocations(Location firstLoc, Location secondLoc) {
-        return firstLoc.getWorld().getName().equals(secondLoc.getWorld().getName())
-                && firstLoc.getBlockX() == secondLoc.getBlockX()
-                && firstLoc.getBlockY() == secondLoc.getBlockY()
-                && firstLoc.getBlockZ() == secondLoc.getBlockZ();
-    }
-
-    private void setLightLevel(Location loc, int lightLevel) {
-        int blockX = loc.getBlockX();
-        int blockY = loc.getBlockY();
-        int blockZ = loc.getBlockZ();
-        getPlugin().mLightAPI.setLightLevel(loc.getWorld().getName(), blockX, blockY, blockZ, lightLevel);
+    private boolean equalsLocations(ILightSource source, Location loc) {
+        return source.getWorldName().equals(loc.getWorld().getName())
+                && source.getBlockX() == loc.getBlockX()
+                && source.getBlockY() == loc.getBlockY()
+                && source.getBlockZ() == loc.getBlockZ();
     }
 
     private void updateLights() {
-        List<Location> removeLightLocs = new ArrayList<>();
-        List<Location> newLightUpLocs = new ArrayList<>();
-
         // update current locations
         synchronized (mTrackedEntityList) {
             for (Entity entity : mTrackedEntityList) {
                 UUID entityUUID = entity.getUniqueId();
                 Location entityLoc = entity.getLocation().clone();
-                if (!lightLocations.containsKey(entityUUID)) {
-                    lightLocations.put(entityUUID, entityLoc);
-                    newLightUpLocs.add(entityLoc);
+                ILightSource source = lightSources.get(entityUUID);
+                if (source == null) {
+                    int value = 14;
+                    lightSources.put(entityUUID, getPlugin().mLightAPI.createLightSource(
+                            entityLoc.getWorld().getName(), entityLoc.getBlockX(), entityLoc.getBlockY(),
+                            entityLoc.getBlockZ(), value));
                     continue;
                 }
 
@@ -159,38 +145,20 @@ public class EntityTracker implements Listener {
                 }
                 entityIsAvailable &= !entity.isDead();
 
-                Location lastKnowLocation = lightLocations.get(entityUUID);
                 if (!entityIsAvailable) {
-                    removeLightLocs.add(lastKnowLocation);
-                    lightLocations.remove(entityUUID);
+                    source.destroy();
+                    lightSources.remove(entityUUID);
                     mTrackedEntityList.remove(entity);
                     continue;
                 }
 
-                if (!equalsLocations(lastKnowLocation, entityLoc)) {
-                    removeLightLocs.add(lastKnowLocation);
-                    newLightUpLocs.add(entityLoc);
-                    lightLocations.replace(entityUUID, entityLoc);
+                // the old light is removed and the new one is placed in one relight
+                if (!equalsLocations(source, entityLoc)) {
+                    source.moveTo(entityLoc.getWorld().getName(), entityLoc.getBlockX(), entityLoc.getBlockY(),
+                            entityLoc.getBlockZ());
                 }
             }
         }
-
-        // light down old locations
-        if (!removeLightLocs.isEmpty()) {
-            for (Location loc : removeLightLocs) {
-                setLightLevel(loc, 0);
-            }
-        }
-
-        // light up new locations
-        if (!newLightUpLocs.isEmpty()) {
-            for (Location loc : newLightUpLocs) {
-                int value = 14;
-                setLightLevel(loc, value);
-            }
-        }
-        removeLightLocs.clear();
-        newLightUpLocs.clear();
     }
 
     private void searchEntities(Player player) {
@@ -218,10 +186,10 @@ public class EntityTracker implements Listener {
         Entity entity = event.getEntity();
         synchronized (mTrackedEntityList) {
             if (mTrackedEntityList.contains(entity)) {
-                UUID uuid = entity.getUniqueId();
-                Location lastKnowLocation = lightLocations.get(uuid);
-                setLightLevel(lastKnowLocation, 0);
-                lightLocations.remove(uuid);
+                ILightSource source = lightSources.remove(entity.getUniqueId());
+                if (source != null) {
+                    source.destroy();
+                }
                 mTrackedEntityList.remove(entity);
             }
         }
@@ -42,6 +42,8 @@ import org.bukkit.craftbukkit.v1_19_R2.CraftWorld;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BooleanSupplier;
@@ -50,17 +52,22 @@ import ca.spottedleaf.starlight.common.light.BlockStarLightEngine;
 import ca.spottedleaf.starlight.common.light.SkyStarLightEngine;
 import ca.spottedleaf.starlight.common.light.StarLightEngine;
 import ca.spottedleaf.starlight.common.light.StarLightInterface;
-import org.bukkit.event.world.WorldLoadEvent;
 import org.bukkit.event.world.WorldUnloadEvent;
 import ru.beykerykt.minecraft.lightapi.bukkit.internal.BukkitPlatformImpl;
+import ru.beykerykt.minecraft.lightapi.bukkit.internal.chunks.observer.sched.BukkitScheduledChunkObserverImpl;
 import ru.beykerykt.minecraft.lightapi.bukkit.internal.handler.craftbukkit.nms.BaseNMSHandler;
 import ru.beykerykt.minecraft.lightapi.common.api.ResultCode;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.LightFlag;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.ICallback;
 import ru.beykerykt.minecraft.lightapi.common.internal.chunks.data.BitChunkData;
 import ru.beykerykt.minecraft.lightapi.common.internal.chunks.data.IChunkData;
+import ru.beykerykt.minecraft.lightapi.common.internal.chunks.observer.IChunkObserver;
 import ru.beykerykt.minecraft.lightapi.common.internal.engine.LightEngineType;
 import ru.beykerykt.minecraft.lightapi.common.internal.engine.LightEngineVersion;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.propagation.LightFrontierTracer;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.ChunkUtils;
 import ru.beykerykt.minecraft.lightapi.common.internal.utils.FlagUtils;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongIntHashMap;
 
 import static ru.beykerykt.minecraft.lightapi.bukkit.internal.handler.craftbukkit.nms.v1_19_R2.VanillaNMSHandler.toRuntimeException;
 
@@ -71,15 +78,24 @@ public class StarlightNMSHandler extends BaseNMSHandler {
 
     private final int ALL_DIRECTIONS_BITSET = (1 << 6) - 1;
     private final long FLAG_HAS_SIDED_TRANSPARENT_BLOCKS = Long.MIN_VALUE;
-    private final Map<ChunkPos, Set<LightPos>> blockQueueMap = new ConcurrentHashMap<>();
-    private final Map<ChunkPos, Set<LightPos>> skyQueueMap = new ConcurrentHashMap<>();
+    // Chunks of different regions are at least 5 chunks apart, so the 5x5 cache windows of their groups
+    // never share a chunk and the light of one region can not reach the other
+    private final int REGION_GAP_CHUNKS = 4;
+    // world name -> chunk key -> pending light levels
+    private final Map<String, Map<Long, ChunkLightQueue>> blockQueueMap = new ConcurrentHashMap<>();
+    private final Map<String, Map<Long, ChunkLightQueue>> skyQueueMap = new ConcurrentHashMap<>();
     // StarLightInterface
     private Field starInterface;
     private Field starInterface_coordinateOffset;
+    private Field starInterface_lightQueue;
     private Method starInterface_getBlockLightEngine;
     private Method starInterface_getSkyLightEngine;
+    private Method starInterface_releaseBlockLightEngine;
+    private Method starInterface_releaseSkyLightEngine;
+    private Method starInterface_scheduleChunkLight;
 
     // StarLightEngine
+    private Method starEngine_getLightLevel;
     private Method starEngine_setLightLevel;
     private Method starEngine_appendToIncreaseQueue;
     private Method starEngine_appendToDecreaseQueue;
@@ -89,78 +105,287 @@ public class StarlightNMSHandler extends BaseNMSHandler {
     private Method starEngine_setupCaches;
     private Method starEngine_destroyCaches;
 
-    private void addTaskToQueue(ServerLevel worldServer, StarLightInterface starLightInterface, StarLightEngine sle,
-                                ChunkPos chunkCoordIntPair, Set<LightPos> lightPoints)  {
-        int type = (sle instanceof BlockStarLightEngine) ? LightFlag.BLOCK_LIGHTING : LightFlag.SKY_LIGHTING;
-        scheduleChunkLight(starLightInterface, chunkCoordIntPair, () -> {
-            try {
-                int chunkX = chunkCoordIntPair.x;
-                int chunkZ = chunkCoordIntPair.z;
+    private final ThreadLocal<LightFrontierTracer> mTracer = ThreadLocal.withInitial(LightFrontierTracer::new);
+
+    private Map<String, Map<Long, ChunkLightQueue>> getQueueMap(int type) {
+        return type == LightFlag.BLOCK_LIGHTING ? blockQueueMap : skyQueueMap;
+    }
+
+    private void addToQueue(World world, int type, int blockX, int blockY, int blockZ, int lightLevel) {
+        final int chunkX = blockX >> 4;
+        final int chunkZ = blockZ >> 4;
+        Map<Long, ChunkLightQueue> queues = getQueueMap(type).computeIfAbsent(world.getName(),
+                k -> new ConcurrentHashMap<>());
+        // compute() is atomic per chunk, so a queue can not be removed while the edit is being added
+        queues.compute(ChunkUtils.getChunkKey(chunkX, chunkZ), (k, queue) -> {
+            if (queue == null) {
+                queue = new ChunkLightQueue(chunkX, chunkZ);
+            }
+            queue.add(BlockPos.asLong(blockX, blockY, blockZ), lightLevel);
+            return queue;
+        });
+    }
 
-                if (!worldServer.getChunkSource().isChunkLoaded(chunkX, chunkZ)) {
-                    return;
+    private boolean hasQueuedLight(World world, int type, int chunkX, int chunkZ) {
+        Map<Long, ChunkLightQueue> queues = getQueueMap(type).get(world.getName());
+        return queues != null && queues.containsKey(ChunkUtils.getChunkKey(chunkX, chunkZ));
+    }
+
+    private boolean hasQueuedLight(World world) {
+        Map<Long, ChunkLightQueue> blockQueues = blockQueueMap.get(world.getName());
+        Map<Long, ChunkLightQueue> skyQueues = skyQueueMap.get(world.getName());
+        return (blockQueues != null && !blockQueues.isEmpty()) || (skyQueues != null && !skyQueues.isEmpty());
+    }
+
+    private void submitChunkQueues(ServerLevel worldServer, StarLightInterface starLightInterface, int type) {
+        Map<Long, ChunkLightQueue> queues = getQueueMap(type).get(worldServer.getWorld().getName());
+        if (queues == null) {
+            return;
+        }
+        for (ChunkLightQueue start : queues.values()) {
+            // Chunk is submitted only once until its task is done, other edits are collected meanwhile
+            if (!start.markScheduled()) {
+                continue;
+            }
+            // Collect the region: all pending chunks reachable in steps of at most REGION_GAP_CHUNKS
+            List<ChunkLightQueue> region = new ArrayList<>();
+            region.add(start);
+            for (int i = 0; i < region.size(); i++) {
+                ChunkLightQueue queue = region.get(i);
+                for (int dx = -REGION_GAP_CHUNKS; dx <= REGION_GAP_CHUNKS; dx++) {
+                    for (int dz = -REGION_GAP_CHUNKS; dz <= REGION_GAP_CHUNKS; dz++) {
+                        ChunkLightQueue neighbour = queues.get(
+                                ChunkUtils.getChunkKey(queue.chunkX + dx, queue.chunkZ + dz));
+                        if (neighbour != null && neighbour.markScheduled()) {
+                            region.add(neighbour);
+                        }
+                    }
                 }
+            }
+            submitRegion(worldServer, starLightInterface, queues, region, type);
+        }
+    }
 
-                // blocksChangedInChunk -- start
-                // setup cache
-                starEngine_setupCaches.invoke(sle, worldServer.getChunkSource(), chunkX * 16 + 7, 128, chunkZ * 16 + 7,
-                        true, true);
-                try {
-                    // propagateBlockChanges -- start
-                    Iterator<LightPos> it = lightPoints.iterator();
-                    while (it.hasNext()) {
-                        try {
-                            LightPos lightPos = it.next();
-                            BlockPos blockPos = lightPos.blockPos;
-                            int lightLevel = lightPos.lightLevel;
-                            int currentLightLevel = getRawLightLevel(worldServer.getWorld(), blockPos.getX(),
-                                    blockPos.getY(), blockPos.getZ(), type);
-                            if (lightLevel <= currentLightLevel) {
-                                // do nothing
-                                continue;
-                            }
-                            int encodeOffset = starInterface_coordinateOffset.getInt(sle);
-                            Block.BlockStateBase blockData = worldServer.getBlockState(blockPos);
-                            starEngine_setLightLevel.invoke(sle, blockPos.getX(), blockPos.getY(), blockPos.getZ(),
-                                    lightLevel);
-                            if (lightLevel != 0) {
-                                starEngine_appendToIncreaseQueue.invoke(sle,
-                                        ((blockPos.getX() + (blockPos.getZ() << 6) + (blockPos.getY() << (6 + 6))
-                                                + encodeOffset) & ((1L << (6 + 6 + 16)) - 1)) | (lightLevel & 0xFL) << (
-                                                6 + 6 + 16) | (((long) ALL_DIRECTIONS_BITSET) << (6 + 6 + 16 + 4)) | (
-                                                blockData.isConditionallyFullOpaque()
-                                                        ? FLAG_HAS_SIDED_TRANSPARENT_BLOCKS : 0));
-                            }
-                        } finally {
-                            it.remove();
+    private void submitRegion(ServerLevel worldServer, StarLightInterface starLightInterface,
+            Map<Long, ChunkLightQueue> queues, List<ChunkLightQueue> region, int type) {
+        // Each region is a separate task of the server light executor, so independent regions may be lit
+        // at the same time and never run beside the server's own light tasks of the same chunks
+        ChunkLightQueue first = region.get(0);
+        scheduleChunkLight(starLightInterface, new ChunkPos(first.chunkX, first.chunkZ),
+                () -> runRegion(worldServer, starLightInterface, queues, region, type));
+    }
+
+    private void runRegion(ServerLevel worldServer, StarLightInterface starLightInterface,
+            Map<Long, ChunkLightQueue> queues, List<ChunkLightQueue> region, int type) {
+        try {
+            Map<Long, ChunkLightQueue> pending = new HashMap<>();
+            for (ChunkLightQueue queue : region) {
+                pending.put(ChunkUtils.getChunkKey(queue.chunkX, queue.chunkZ), queue);
+            }
+            for (ChunkLightQueue center : region) {
+                if (pending.remove(ChunkUtils.getChunkKey(center.chunkX, center.chunkZ)) == null) {
+                    continue;
+                }
+                // Merge pending neighbours, they share one cache setup around the center chunk
+                List<ChunkLightQueue> group = new ArrayList<>(9);
+                group.add(center);
+                for (int dx = -1; dx <= 1; dx++) {
+                    for (int dz = -1; dz <= 1; dz++) {
+                        ChunkLightQueue neighbour = pending.remove(
+                                ChunkUtils.getChunkKey(center.chunkX + dx, center.chunkZ + dz));
+                        if (neighbour != null) {
+                            group.add(neighbour);
                         }
                     }
-                    starEngine_performLightIncrease.invoke(sle, worldServer.getChunkSource());
-                    // propagateBlockChanges -- end
-                    starEngine_updateVisible.invoke(sle, worldServer.getChunkSource());
-                } finally {
-                    starEngine_destroyCaches.invoke(sle);
                 }
-                // blocksChangedInChunk -- end
-            } catch (Exception ex) {
-                ex.printStackTrace();
+                try {
+                    processChunkGroup(worldServer, starLightInterface, group, type);
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
             }
-        });
+        } finally {
+            List<ChunkLightQueue> again = new ArrayList<>();
+            for (ChunkLightQueue queue : region) {
+                // Drop the queue if nothing was added while the task was running, otherwise run it again
+                queues.computeIfPresent(ChunkUtils.getChunkKey(queue.chunkX, queue.chunkZ),
+                        (k, q) -> q.isEmpty() ? null : q);
+                if (!queue.isEmpty()) {
+                    again.add(queue);
+                }
+            }
+            if (!again.isEmpty()) {
+                submitRegion(worldServer, starLightInterface, queues, again, type);
+            }
+        }
+    }
+
+    private boolean isInsideCacheWindow(ChunkLightQueue center, int blockX, int blockZ, int radius) {
+        // Starlight encodes coordinates with 6 bits relative to the cache center: [center - 31, center + 32]
+        int centerX = center.chunkX * 16 + 7;
+        int centerZ = center.chunkZ * 16 + 7;
+        return blockX - radius >= centerX - 31 && blockX + radius <= centerX + 32 && blockZ - radius >= centerZ - 31
+                && blockZ + radius <= centerZ + 32;
+    }
+
+    private boolean isPreciseSectionsEnabled() {
+        IChunkObserver observer = getPlatformImpl().getChunkObserver();
+        return observer instanceof BukkitScheduledChunkObserverImpl
+                && ((BukkitScheduledChunkObserverImpl) observer).isPreciseSectionsEnabled();
     }
+
+    private void processChunkGroup(ServerLevel worldServer, StarLightInterface starLightInterface,
+            List<ChunkLightQueue> group, int type)
+            throws IllegalAccessException, InvocationTargetException {
+        ChunkLightQueue center = group.get(0);
+        LongIntHashMap lightPoints = new LongIntHashMap();
+        WorldLightHandle handle = isPreciseSectionsEnabled() ? getWorldHandle(worldServer.getWorld()) : null;
+        for (ChunkLightQueue queue : group) {
+            LongIntHashMap drained = queue.drain();
+            if (!worldServer.getChunkSource().isChunkLoaded(queue.chunkX, queue.chunkZ)) {
+                continue;
+            }
+            if (queue == center) {
+                drained.forEach(lightPoints::put);
+                continue;
+            }
+            // The light of the neighbour must not spread out of the cache window, otherwise it is processed
+            // by its own chunk task. The current level of a lowered block is unknown yet, so the maximum is used.
+            drained.forEach((pos, lightLevel) -> {
+                int blockX = BlockPos.getX(pos);
+                int blockZ = BlockPos.getZ(pos);
+                int radius = lightLevel == 0 ? 15 : lightLevel;
+                if (handle != null && !isInsideCacheWindow(center, blockX, blockZ, radius)) {
+                    // Same bounds as used for the sections to send: walls may stop the light much earlier.
+                    // The engine also looks at the neighbours of the last lit blocks.
+                    LightFrontierTracer tracer = mTracer.get();
+                    tracer.trace(handle::getBlockOpacity, blockX, BlockPos.getY(pos), blockZ, radius);
+                    radius = tracer.getHorizontalRadius() + 1;
+                }
+                if (isInsideCacheWindow(center, blockX, blockZ, radius)) {
+                    lightPoints.put(pos, lightLevel);
+                } else {
+                    queue.restore(pos, lightLevel);
+                }
+            });
+        }
+        if (lightPoints.isEmpty() || !worldServer.getChunkSource().isChunkLoaded(center.chunkX, center.chunkZ)) {
+            return;
+        }
+        boolean isBlock = type == LightFlag.BLOCK_LIGHTING;
+        StarLightEngine sle = (StarLightEngine) (isBlock ? starInterface_getBlockLightEngine
+                : starInterface_getSkyLightEngine).invoke(starLightInterface);
+        try {
+            // blocksChangedInChunk -- start
+            // setup cache
+            starEngine_setupCaches.invoke(sle, worldServer.getChunkSource(), center.chunkX * 16 + 7, 128,
+                    center.chunkZ * 16 + 7, true, true);
+            try {
+                // propagateBlockChanges -- start
+                final int encodeOffset = starInterface_coordinateOffset.getInt(sle);
+                final LongIntHashMap increasePoints = new LongIntHashMap(lightPoints.size());
+                // Step 1: remove the old light of all lowered blocks at once
+                lightPoints.forEach((pos, lightLevel) -> {
+                    int blockX = BlockPos.getX(pos);
+                    int blockY = BlockPos.getY(pos);
+                    int blockZ = BlockPos.getZ(pos);
+                    int currentLightLevel = getEngineLightLevel(sle, blockX, blockY, blockZ);
+                    if (lightLevel > currentLightLevel) {
+                        increasePoints.put(pos, lightLevel);
+                    } else if (lightLevel < currentLightLevel) {
+                        Block.BlockStateBase blockData = worldServer.getBlockState(BlockPos.of(pos));
+                        invokeEngine(starEngine_setLightLevel, sle, blockX, blockY, blockZ, 0);
+                        invokeEngine(starEngine_appendToDecreaseQueue, sle,
+                                encodeQueueEntry(blockX, blockY, blockZ, encodeOffset, currentLightLevel, blockData));
+                        // The block may still emit some light by itself
+                        int emission = type == LightFlag.BLOCK_LIGHTING ? blockData.getLightEmission() : 0;
+                        if (Math.max(lightLevel, emission) > 0) {
+                            increasePoints.put(pos, Math.max(lightLevel, emission));
+                        }
+                    }
+                });
+                starEngine_performLightDecrease.invoke(sle, worldServer.getChunkSource());
+
+                // Step 2: spread the new light
+                increasePoints.forEach((pos, lightLevel) -> {
+                    int blockX = BlockPos.getX(pos);
+                    int blockY = BlockPos.getY(pos);
+                    int blockZ = BlockPos.getZ(pos);
+                    if (lightLevel <= getEngineLightLevel(sle, blockX, blockY, blockZ)) {
+                        // do nothing
+                        return;
+                    }
+                    Block.BlockStateBase blockData = worldServer.getBlockState(BlockPos.of(pos));
+                    invokeEngine(starEngine_setLightLevel, sle, blockX, blockY, blockZ, lightLevel);
+                    invokeEngine(starEngine_appendToIncreaseQueue, sle,
+                            encodeQueueEntry(blockX, blockY, blockZ, encodeOffset, lightLevel, blockData));
+                });
+                starEngine_performLightIncrease.invoke(sle, worldServer.getChunkSource());
+                // propagateBlockChanges -- end
+                starEngine_updateVisible.invoke(sle, worldServer.getChunkSource());
+            } finally {
+                starEngine_destroyCaches.invoke(sle);
+            }
+            // blocksChangedInChunk -- end
+        } finally {
+            (isBlock ? starInterface_releaseBlockLightEngine : starInterface_releaseSkyLightEngine).invoke(
+                    starLightInterface, sle);
+        }
+    }
+
+    private long encodeQueueEntry(int blockX, int blockY, int blockZ, int encodeOffset, int lightLevel,
+            Block.BlockStateBase blockData) {
+        return ((blockX + (blockZ << 6) + (blockY << (6 + 6)) + encodeOffset) & ((1L << (6 + 6 + 16)) - 1)) | (
+                lightLevel & 0xFL) << (6 + 6 + 16) | (((long) ALL_DIRECTIONS_BITSET) << (6 + 6 + 16 + 4)) | (
+                blockData.isConditionallyFullOpaque() ? FLAG_HAS_SIDED_TRANSPARENT_BLOCKS : 0);
+    }
+
+    private int getEngineLightLevel(StarLightEngine sle, int blockX, int blockY, int blockZ) {
+        // Reads the updating (not yet visible) data from the engine caches
+        return (int) invokeEngine(starEngine_getLightLevel, sle, blockX, blockY, blockZ);
+    }
+
+    private Object invokeEngine(Method method, StarLightEngine sle, Object... args) {
+        try {
+            return method.invoke(sle, args);
+        } catch (InvocationTargetException e) {
+            throw toRuntimeException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw toRuntimeException(e);
+        }
+    }
+
     private void scheduleChunkLight(StarLightInterface starLightInterface, ChunkPos chunkCoordIntPair,
                                     Runnable runnable) {
         try {
-            Class<?> threadClazz = Class.forName("ca.spottedleaf.starlight.common.light.StarLightInterface$LightQueue");
-            Method method = threadClazz.getMethod("queueChunkLighting", ChunkPos.class, Runnable.class);
-            method.invoke(null, chunkCoordIntPair, runnable);
-        } catch (ClassNotFoundException | NoSuchMethodException e) {
-            e.printStackTrace();
+            Object target = null;
+            if (!Modifier.isStatic(starInterface_scheduleChunkLight.getModifiers())) {
+                target = starInterface_lightQueue != null ? starInterface_lightQueue.get(starLightInterface)
+                        : starLightInterface;
+            }
+            starInterface_scheduleChunkLight.invoke(target, chunkCoordIntPair, runnable);
+        } catch (InvocationTargetException e) {
+            throw toRuntimeException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw toRuntimeException(e);
         }
     }
 
-
+    /**
+     * Runs the task inline. Unlike vanilla, Starlight does not relight in the tasks of the light engine
+     * mailbox, so there is nothing to pause: edits only go to the chunk queues of this handler, which are
+     * relit in Starlight light tasks, and the nibble arrays of Starlight can be read from any thread.
+     */
     protected void executeSync(ThreadedLevelLightEngine lightEngine, Runnable task) {
-            task.run();
+        task.run();
+    }
+
+    @Override
+    protected WorldLightHandle createWorldHandle(World world) {
+        ServerLevel worldServer = ((CraftWorld) world).getHandle();
+        ThreadedLevelLightEngine lightEngine = worldServer.getChunkSource().getLightEngine();
+        return new WorldLightHandle(worldServer, lightEngine.getLayerListener(LightLayer.BLOCK) != null,
+                lightEngine.getLayerListener(LightLayer.SKY) != null);
     }
 
     @Override
@@ -170,6 +395,9 @@ public class StarlightNMSHandler extends BaseNMSHandler {
             starEngine_setLightLevel = StarLightEngine.class.getDeclaredMethod("setLightLevel", int.class, int.class,
                     int.class, int.class);
             starEngine_setLightLevel.setAccessible(true);
+            starEngine_getLightLevel = StarLightEngine.class.getDeclaredMethod("getLightLevel", int.class, int.class,
+                    int.class);
+            starEngine_getLightLevel.setAccessible(true);
             starEngine_appendToIncreaseQueue = StarLightEngine.class.getDeclaredMethod("appendToIncreaseQueue",
                     long.class);
             starEngine_appendToIncreaseQueue.setAccessible(true);
@@ -197,6 +425,26 @@ public class StarlightNMSHandler extends BaseNMSHandler {
             starInterface_getSkyLightEngine.setAccessible(true);
             starInterface_coordinateOffset = StarLightEngine.class.getDeclaredField("coordinateOffset");
             starInterface_coordinateOffset.setAccessible(true);
+            starInterface_releaseBlockLightEngine = StarLightInterface.class.getDeclaredMethod(
+                    "releaseBlockLightEngine", BlockStarLightEngine.class);
+            starInterface_releaseBlockLightEngine.setAccessible(true);
+            starInterface_releaseSkyLightEngine = StarLightInterface.class.getDeclaredMethod("releaseSkyLightEngine",
+                    SkyStarLightEngine.class);
+            starInterface_releaseSkyLightEngine.setAccessible(true);
+            // Resolve the light queue entry point once, it differs between Paper builds
+            try {
+                starInterface_scheduleChunkLight = StarLightInterface.class.getMethod("scheduleChunkLight",
+                        ChunkPos.class, Runnable.class);
+            } catch (NoSuchMethodException e) {
+                Class<?> lightQueueClass = Class.forName(
+                        "ca.spottedleaf.starlight.common.light.StarLightInterface$LightQueue");
+                starInterface_scheduleChunkLight = lightQueueClass.getMethod("queueChunkLighting", ChunkPos.class,
+                        Runnable.class);
+                if (!Modifier.isStatic(starInterface_scheduleChunkLight.getModifiers())) {
+                    starInterface_lightQueue = StarLightInterface.class.getDeclaredField("lightQueue");
+                    starInterface_lightQueue.setAccessible(true);
+                }
+            }
         } catch (Exception e) {
             throw toRuntimeException(e);
         }
@@ -215,114 +463,120 @@ public class StarlightNMSHandler extends BaseNMSHandler {
         return LightEngineVersion.V2;
     }
 
-    @Override
-    public void onWorldLoad(WorldLoadEvent event) {
-
-    }
-
     @Override
     public void onWorldUnload(WorldUnloadEvent event) {
-
+        super.onWorldUnload(event);
+        blockQueueMap.remove(event.getWorld().getName());
+        skyQueueMap.remove(event.getWorld().getName());
     }
 
     @Override
     public boolean isLightingSupported(World world, int lightFlags) {
-        ServerLevel worldServer = ((CraftWorld) world).getHandle();
-        ThreadedLevelLightEngine lightEngine = worldServer.getChunkSource().getLightEngine();
-        if (FlagUtils.isFlagSet(lightFlags, LightFlag.SKY_LIGHTING)) {
-            return lightEngine.getLayerListener(LightLayer.SKY) != null;
-        } else if (FlagUtils.isFlagSet(lightFlags, LightFlag.BLOCK_LIGHTING)) {
-            return lightEngine.getLayerListener(LightLayer.BLOCK) != null;
-        }
-        return false;
+        WorldLightHandle handle = getWorldHandle(world);
+        return handle != null && handle.isLightingSupported(lightFlags);
     }
 
     @Override
     public int setRawLightLevel(World world, int blockX, int blockY, int blockZ, int lightLevel, int flags) {
-        ServerLevel worldServer = ((CraftWorld) world).getHandle();
+        WorldLightHandle handle = getWorldHandle(world);
+        if (handle == null) {
+            return ResultCode.WORLD_NOT_AVAILABLE;
+        }
+        ServerLevel worldServer = handle.getLevel();
         final BlockPos position = new BlockPos(blockX, blockY, blockZ);
-        final ThreadedLevelLightEngine lightEngine = worldServer.getChunkSource().getLightEngine();
+        final ThreadedLevelLightEngine lightEngine = handle.getLightEngine();
         final int finalLightLevel = lightLevel < 0 ? 0 : Math.min(lightLevel, 15);
-        ChunkPos chunkCoordIntPair = new ChunkPos(blockX >> 4, blockZ >> 4);
 
         if (!worldServer.getChunkSource().isChunkLoaded(blockX >> 4, blockZ >> 4)) {
             return ResultCode.CHUNK_NOT_LOADED;
         }
-        executeSync(lightEngine, () -> {
-            // block lighting
-            if (FlagUtils.isFlagSet(flags, LightFlag.BLOCK_LIGHTING)) {
-                if (isLightingSupported(world, LightFlag.BLOCK_LIGHTING)) {
-                    LayerLightEventListener lele = lightEngine.getLayerListener(LightLayer.BLOCK);
-                    if (finalLightLevel == 0) {
-                        try {
-                            StarLightInterface starLightInterface = (StarLightInterface) starInterface.get(lightEngine);
-                            starLightInterface.blockChange(position);
-                        } catch (Exception ex) {
-                            ex.printStackTrace();
-                        }
-                    } else if (lele.getDataLayerData(SectionPos.of(position)) != null) {
-                        try {
-                            if (blockQueueMap.containsKey(chunkCoordIntPair)) {
-                                Set<LightPos> lightPoints = blockQueueMap.get(chunkCoordIntPair);
-                                lightPoints.add(new LightPos(position, finalLightLevel));
-                            } else {
-                                Set<LightPos> lightPoints = new HashSet<>();
-                                lightPoints.add(new LightPos(position, finalLightLevel));
-                                blockQueueMap.put(chunkCoordIntPair, lightPoints);
-                            }
-                        } catch (NullPointerException ignore) {
-                            // To prevent problems with the absence of the NibbleArray, even
-                            // if leb.a(SectionPosition.a(position)) returns non-null value (corrupted data)
-                        }
+        executeSync(lightEngine, () -> queueLightLevel(world, handle, position, finalLightLevel, flags));
+        int targetType = 0;
+        if (FlagUtils.isFlagSet(flags, LightFlag.SKY_LIGHTING)) {
+            targetType = LightFlag.SKY_LIGHTING;
+        } else if (FlagUtils.isFlagSet(flags, LightFlag.BLOCK_LIGHTING)) {
+            targetType = LightFlag.BLOCK_LIGHTING;
+        }
+        if (lightEngine.hasLightWork() || targetType != 0 && hasQueuedLight(world, targetType, blockX >> 4,
+                blockZ >> 4)) {
+            return ResultCode.SUCCESS;
+        }
+        return ResultCode.FAILED;
+    }
+
+    private void queueLightLevel(World world, WorldLightHandle handle, BlockPos position, int finalLightLevel,
+            int flags) {
+        // block lighting
+        if (FlagUtils.isFlagSet(flags, LightFlag.BLOCK_LIGHTING)) {
+            if (handle.isLightingSupported(LightFlag.BLOCK_LIGHTING)) {
+                LayerLightEventListener lele = handle.getBlockListener();
+                if (finalLightLevel == 0) {
+                    // Removal goes through the batched decrease queue of the chunk
+                    addToQueue(world, LightFlag.BLOCK_LIGHTING, position, finalLightLevel);
+                } else if (lele.getDataLayerData(SectionPos.of(position)) != null) {
+                    try {
+                        addToQueue(world, LightFlag.BLOCK_LIGHTING, position, finalLightLevel);
+                    } catch (NullPointerException ignore) {
+                        // To prevent problems with the absence of the NibbleArray, even
+                        // if leb.a(SectionPosition.a(position)) returns non-null value (corrupted data)
                     }
                 }
             }
+        }
 
-            // sky lighting
-            if (FlagUtils.isFlagSet(flags, LightFlag.SKY_LIGHTING)) {
-                if (isLightingSupported(world, LightFlag.SKY_LIGHTING)) {
-                    LayerLightEventListener lele = lightEngine.getLayerListener(LightLayer.SKY);
-                    if (finalLightLevel == 0) {
-                        try {
-                            StarLightInterface starLightInterface = (StarLightInterface) starInterface.get(lightEngine);
-                            starLightInterface.blockChange(position);
-                        } catch (Exception ex) {
-                            ex.printStackTrace();
-                        }
-                    } else if (lele.getDataLayerData(SectionPos.of(position)) != null) {
-                        try {
-                            if (skyQueueMap.containsKey(chunkCoordIntPair)) {
-                                Set<LightPos> lightPoints = skyQueueMap.get(chunkCoordIntPair);
-                                lightPoints.add(new LightPos(position, finalLightLevel));
-                            } else {
-                                Set<LightPos> lightPoints = new HashSet<>();
-                                lightPoints.add(new LightPos(position, finalLightLevel));
-                                skyQueueMap.put(chunkCoordIntPair, lightPoints);
-                            }
-                        } catch (NullPointerException ignore) {
-                            // To prevent problems with the absence of the NibbleArray, even
-                            // if les.a(SectionPosition.a(position)) returns non-null value (corrupted data)
-                        }
+        // sky lighting
+        if (FlagUtils.isFlagSet(flags, LightFlag.SKY_LIGHTING)) {
+            if (handle.isLightingSupported(LightFlag.SKY_LIGHTING)) {
+                LayerLightEventListener lele = handle.getSkyListener();
+                if (finalLightLevel == 0) {
+                    // Removal goes through the batched decrease queue of the chunk
+                    addToQueue(world, LightFlag.SKY_LIGHTING, position, finalLightLevel);
+                } else if (lele.getDataLayerData(SectionPos.of(position)) != null) {
+                    try {
+                        addToQueue(world, LightFlag.SKY_LIGHTING, position, finalLightLevel);
+                    } catch (NullPointerException ignore) {
+                        // To prevent problems with the absence of the NibbleArray, even
+                        // if les.a(SectionPosition.a(position)) returns non-null value (corrupted data)
                     }
                 }
             }
-        });
-        Map<ChunkPos, Set<LightPos>> targetMap = null;
-        if (FlagUtils.isFlagSet(flags, LightFlag.SKY_LIGHTING)) {
-            targetMap = skyQueueMap;
-        } else if (FlagUtils.isFlagSet(flags, LightFlag.BLOCK_LIGHTING)) {
-            targetMap = blockQueueMap;
         }
-        if (lightEngine.hasLightWork() || targetMap != null && targetMap.containsKey(chunkCoordIntPair)) {
-            return ResultCode.SUCCESS;
+    }
+
+    private void addToQueue(World world, int type, BlockPos position, int lightLevel) {
+        addToQueue(world, type, position.getX(), position.getY(), position.getZ(), lightLevel);
+    }
+
+    @Override
+    public int setRawLightLevels(World world, LongIntHashMap lights, int lightFlags, LongIntHashMap oldLevels,
+            ICallback callback) {
+        WorldLightHandle handle = getWorldHandle(world);
+        if (handle == null) {
+            return ResultCode.WORLD_NOT_AVAILABLE;
         }
-        return ResultCode.FAILED;
+        ServerLevel worldServer = handle.getLevel();
+        final ThreadedLevelLightEngine lightEngine = handle.getLightEngine();
+        // All levels are read and queued together, the chunk tasks apply them on the light queue
+        executeSync(lightEngine, () -> lights.forEach((pos, lightLevel) -> {
+            BlockPos position = BlockPos.of(pos);
+            if (!worldServer.getChunkSource().isChunkLoaded(position.getX() >> 4, position.getZ() >> 4)) {
+                return;
+            }
+            oldLevels.put(pos, Math.max(getRawLightLevel(world, position.getX(), position.getY(), position.getZ(),
+                    lightFlags), 0));
+            queueLightLevel(world, handle, position, lightLevel < 0 ? 0 : Math.min(lightLevel, 15), lightFlags);
+        }));
+        return oldLevels.isEmpty() ? ResultCode.CHUNK_NOT_LOADED : ResultCode.SUCCESS;
     }
 
     @Override
     public int getRawLightLevel(World world, int blockX, int blockY, int blockZ, int flags) {
         int lightLevel = -1;
-        ServerLevel worldServer = ((CraftWorld) world).getHandle();
+        WorldLightHandle handle = getWorldHandle(world);
+        if (handle == null) {
+            return lightLevel;
+        }
+        ServerLevel worldServer = handle.getLevel();
         BlockPos position = new BlockPos(blockX, blockY, blockZ);
         if (FlagUtils.isFlagSet(flags, LightFlag.BLOCK_LIGHTING) && FlagUtils.isFlagSet(flags,
                 LightFlag.SKY_LIGHTING)) {
@@ -335,44 +589,45 @@ public class StarlightNMSHandler extends BaseNMSHandler {
         return lightLevel;
     }
 
+    @Override
+    public boolean isSectionCopySupported() {
+        return true;
+    }
+
+    @Override
+    public int getRawLightLevels(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+            int lightFlags, ByteBuffer out) {
+        WorldLightHandle handle = getWorldHandle(world);
+        if (handle == null) {
+            return ResultCode.WORLD_NOT_AVAILABLE;
+        }
+        return handle.getRawLightLevels(task -> executeSync(handle.getLightEngine(), task), minX, minY, minZ, maxX,
+                maxY, maxZ, lightFlags, out);
+    }
+
     @Override
     public int recalculateLighting(World world, int blockX, int blockY, int blockZ, int flags) {
-        ServerLevel worldServer = ((CraftWorld) world).getHandle();
-        final ThreadedLevelLightEngine lightEngine = worldServer.getChunkSource().getLightEngine();
+        WorldLightHandle handle = getWorldHandle(world);
+        if (handle == null) {
+            return ResultCode.WORLD_NOT_AVAILABLE;
+        }
+        ServerLevel worldServer = handle.getLevel();
+        final ThreadedLevelLightEngine lightEngine = handle.getLightEngine();
 
         if (!worldServer.getChunkSource().isChunkLoaded(blockX >> 4, blockZ >> 4)) {
             return ResultCode.CHUNK_NOT_LOADED;
         }
 
         // Do not recalculate if no changes!
-        if (!lightEngine.hasLightWork() && blockQueueMap.isEmpty() && skyQueueMap.isEmpty()) {
+        if (!lightEngine.hasLightWork() && !hasQueuedLight(world)) {
             return ResultCode.RECALCULATE_NO_CHANGES;
         }
 
         try {
             StarLightInterface starLightInterface = (StarLightInterface) starInterface.get(lightEngine);
-            Iterator<Map.Entry<ChunkPos, Set<LightPos>>> blockIt = blockQueueMap.entrySet().iterator();
-            while (blockIt.hasNext()) {
-                BlockStarLightEngine bsle = (BlockStarLightEngine) starInterface_getBlockLightEngine.invoke(
-                        starLightInterface);
-                Map.Entry<ChunkPos, Set<LightPos>> pair = (Map.Entry<ChunkPos, Set<LightPos>>) blockIt.next();
-                ChunkPos chunkCoordIntPair = pair.getKey();
-                Set<LightPos> lightPoints = pair.getValue();
-                addTaskToQueue(worldServer, starLightInterface, bsle, chunkCoordIntPair, lightPoints);
-                blockIt.remove();
-            }
-
-            Iterator skyIt = skyQueueMap.entrySet().iterator();
-            while (skyIt.hasNext()) {
-                SkyStarLightEngine ssle = (SkyStarLightEngine) starInterface_getSkyLightEngine.invoke(
-                        starLightInterface);
-                Map.Entry<ChunkPos, Set<LightPos>> pair = (Map.Entry<ChunkPos, Set<LightPos>>) skyIt.next();
-                ChunkPos chunkCoordIntPair = pair.getKey();
-                Set<LightPos> lightPoints = pair.getValue();
-                addTaskToQueue(worldServer, starLightInterface, ssle, chunkCoordIntPair, lightPoints);
-                skyIt.remove();
-            }
-        } catch (IllegalAccessException | InvocationTargetException e) {
+            submitChunkQueues(worldServer, starLightInterface, LightFlag.BLOCK_LIGHTING);
+            submitChunkQueues(worldServer, starLightInterface, LightFlag.SKY_LIGHTING);
+        } catch (IllegalAccessException e) {
             e.printStackTrace();
         }
 
@@ -395,11 +650,12 @@ public class StarlightNMSHandler extends BaseNMSHandler {
     }
 
     private IChunkData createBitChunkData(String worldName, int chunkX, int chunkZ) {
-        World world = Bukkit.getWorld(worldName);
-        ServerLevel worldServer = ((CraftWorld) world).getHandle();
-        final ThreadedLevelLightEngine lightEngine = worldServer.getChunkSource().getLightEngine();
-        int bottom = lightEngine.getMinLightSection();
-        int top = lightEngine.getMaxLightSection();
+        WorldLightHandle handle = getWorldHandle(Bukkit.getWorld(worldName));
+        if (handle == null) {
+            return null;
+        }
+        int bottom = handle.getMinLightSection();
+        int top = handle.getMaxLightSection();
         return new BitChunkData(worldName, chunkX, chunkZ, top, bottom);
     }
     private int getDeltaLight(int x, int dx) {
@@ -409,13 +665,14 @@ public class StarlightNMSHandler extends BaseNMSHandler {
     @Override
     public List<IChunkData> collectChunkSections(World world, int blockX, int blockY, int blockZ, int lightLevel,
                                                  int lightFlags) {
-        ServerLevel worldServer = ((CraftWorld) world).getHandle();
+        WorldLightHandle handle = getWorldHandle(world);
         List<IChunkData> list = new ArrayList<>();
         int finalLightLevel = lightLevel < 0 ? 0 : Math.min(lightLevel, 15);
 
-        if (world == null) {
+        if (handle == null) {
             return list;
         }
+        ServerLevel worldServer = handle.getLevel();
 
         for (int dX = -1; dX <= 1; dX++) {
             int lightLevelX = finalLightLevel - getDeltaLight(blockX & 15, dX);
@@ -449,9 +706,14 @@ public class StarlightNMSHandler extends BaseNMSHandler {
 
     @Override
     public boolean isValidChunkSection(World world, int sectionY) {
-        ServerLevel worldServer = ((CraftWorld) world).getHandle();
-        ThreadedLevelLightEngine lightEngine = worldServer.getChunkSource().getLightEngine();
-        return (sectionY >= lightEngine.getMinLightSection()) && (sectionY <= lightEngine.getMaxLightSection());
+        WorldLightHandle handle = getWorldHandle(world);
+        return handle != null && handle.isValidChunkSection(sectionY);
+    }
+
+    @Override
+    public int getBlockOpacity(World world, int blockX, int blockY, int blockZ) {
+        WorldLightHandle handle = getWorldHandle(world);
+        return handle != null ? handle.getBlockOpacity(blockX, blockY, blockZ) : 15;
     }
 
     @Override
@@ -460,14 +722,51 @@ public class StarlightNMSHandler extends BaseNMSHandler {
     @Override
     public int sendCmd(int cmdId, Object... args) { return 0; }
 
-    private static final class LightPos {
+    private static final class ChunkLightQueue {
+
+        private final int chunkX;
+        private final int chunkZ;
+        // packed block position -> light level, the last edit of the same block wins
+        private LongIntHashMap mLightPoints = new LongIntHashMap();
+        private boolean mScheduled;
+
+        public ChunkLightQueue(int chunkX, int chunkZ) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        public synchronized void add(long blockPos, int lightLevel) {
+            mLightPoints.put(blockPos, lightLevel);
+        }
 
-        public BlockPos blockPos;
-        public int lightLevel;
+        public synchronized boolean isEmpty() {
+            return mLightPoints.isEmpty();
+        }
+
+        /**
+         * @return true if the queue was not scheduled yet and must be submitted by the caller
+         */
+        public synchronized boolean markScheduled() {
+            if (mScheduled || mLightPoints.isEmpty()) {
+                return false;
+            }
+            mScheduled = true;
+            return true;
+        }
+
+        /**
+         * Puts back the light point which was not processed, a newer edit of the same block wins.
+         */
+        public synchronized void restore(long blockPos, int lightLevel) {
+            if (!mLightPoints.containsKey(blockPos)) {
+                mLightPoints.put(blockPos, lightLevel);
+            }
+        }
 
-        public LightPos(BlockPos blockPos, int lightLevel) {
-            this.blockPos = blockPos;
-            this.lightLevel = lightLevel;
+        public synchronized LongIntHashMap drain() {
+            LongIntHashMap lightPoints = mLightPoints;
+            mLightPoints = new LongIntHashMap();
+            return lightPoints;
         }
     }
 }
@@ -42,12 +42,11 @@ import net.minecraft.world.level.lighting.SkyLightEngine;
 import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.bukkit.craftbukkit.v1_19_R2.CraftWorld;
-import org.bukkit.event.world.WorldLoadEvent;
-import org.bukkit.event.world.WorldUnloadEvent;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.List;
@@ -58,11 +57,13 @@ import ru.beykerykt.minecraft.lightapi.bukkit.internal.BukkitPlatformImpl;
 import ru.beykerykt.minecraft.lightapi.bukkit.internal.handler.craftbukkit.nms.BaseNMSHandler;
 import ru.beykerykt.minecraft.lightapi.common.api.ResultCode;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.LightFlag;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.ICallback;
 import ru.beykerykt.minecraft.lightapi.common.internal.chunks.data.BitChunkData;
 import ru.beykerykt.minecraft.lightapi.common.internal.chunks.data.IChunkData;
 import ru.beykerykt.minecraft.lightapi.common.internal.engine.LightEngineType;
 import ru.beykerykt.minecraft.lightapi.common.internal.engine.LightEngineVersion;
 import ru.beykerykt.minecraft.lightapi.common.internal.utils.FlagUtils;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongIntHashMap;
 
 public class VanillaNMSHandler extends BaseNMSHandler {
 
@@ -156,14 +157,24 @@ public class VanillaNMSHandler extends BaseNMSHandler {
     }
 
     private IChunkData createBitChunkData(String worldName, int chunkX, int chunkZ) {
-        World world = Bukkit.getWorld(worldName);
-        ServerLevel worldServer = ((CraftWorld) world).getHandle();
-        final ThreadedLevelLightEngine lightEngine = worldServer.getChunkSource().getLightEngine();
-        int bottom = lightEngine.getMinLightSection();
-        int top = lightEngine.getMaxLightSection();
+        WorldLightHandle handle = getWorldHandle(Bukkit.getWorld(worldName));
+        if (handle == null) {
+            return null;
+        }
+        int bottom = handle.getMinLightSection();
+        int top = handle.getMaxLightSection();
         return new BitChunkData(worldName, chunkX, chunkZ, top, bottom);
     }
 
+    @Override
+    protected WorldLightHandle createWorldHandle(World world) {
+        ServerLevel worldServer = ((CraftWorld) world).getHandle();
+        ThreadedLevelLightEngine lightEngine = worldServer.getChunkSource().getLightEngine();
+        return new WorldLightHandle(worldServer,
+                lightEngine.getLayerListener(LightLayer.BLOCK) instanceof BlockLightEngine,
+                lightEngine.getLayerListener(LightLayer.SKY) instanceof SkyLightEngine);
+    }
+
     @Override
     public void onInitialization(BukkitPlatformImpl impl) throws Exception {
         super.onInitialization(impl);
@@ -198,24 +209,10 @@ public class VanillaNMSHandler extends BaseNMSHandler {
         return LightEngineType.VANILLA;
     }
 
-    @Override
-    public void onWorldLoad(WorldLoadEvent event) {
-    }
-
-    @Override
-    public void onWorldUnload(WorldUnloadEvent event) {
-    }
-
     @Override
     public boolean isLightingSupported(World world, int lightFlags) {
-        ServerLevel worldServer = ((CraftWorld) world).getHandle();
-        ThreadedLevelLightEngine lightEngine = worldServer.getChunkSource().getLightEngine();
-        if (FlagUtils.isFlagSet(lightFlags, LightFlag.SKY_LIGHTING)) {
-            return lightEngine.getLayerListener(LightLayer.SKY) instanceof SkyLightEngine;
-        } else if (FlagUtils.isFlagSet(lightFlags, LightFlag.BLOCK_LIGHTING)) {
-            return lightEngine.getLayerListener(LightLayer.BLOCK) instanceof BlockLightEngine;
-        }
-        return false;
+        WorldLightHandle handle = getWorldHandle(world);
+        return handle != null && handle.isLightingSupported(lightFlags);
     }
 
     @Override
@@ -225,9 +222,13 @@ public class VanillaNMSHandler extends BaseNMSHandler {
 
     @Override
     public int setRawLightLevel(World world, int blockX, int blockY, int blockZ, int lightLevel, int flags) {
-        ServerLevel worldServer = ((CraftWorld) world).getHandle();
+        WorldLightHandle handle = getWorldHandle(world);
+        if (handle == null) {
+            return ResultCode.WORLD_NOT_AVAILABLE;
+        }
+        ServerLevel worldServer = handle.getLevel();
         final BlockPos position = new BlockPos(blockX, blockY, blockZ);
-        final ThreadedLevelLightEngine lightEngine = worldServer.getChunkSource().getLightEngine();
+        final ThreadedLevelLightEngine lightEngine = handle.getLightEngine();
         final int finalLightLevel = lightLevel < 0 ? 0 : Math.min(lightLevel, 15);
 
         if (!worldServer.getChunkSource().isChunkLoaded(blockX >> 4, blockZ >> 4)) {
@@ -235,58 +236,98 @@ public class VanillaNMSHandler extends BaseNMSHandler {
         }
 
         if (FlagUtils.isFlagSet(flags, LightFlag.BLOCK_LIGHTING)) {
-            if (!isLightingSupported(world, LightFlag.BLOCK_LIGHTING)) {
+            if (!handle.isLightingSupported(LightFlag.BLOCK_LIGHTING)) {
                 return ResultCode.BLOCKLIGHT_DATA_NOT_AVAILABLE;
             }
         }
 
         if (FlagUtils.isFlagSet(flags, LightFlag.SKY_LIGHTING)) {
-            if (!isLightingSupported(world, LightFlag.SKY_LIGHTING)) {
+            if (!handle.isLightingSupported(LightFlag.SKY_LIGHTING)) {
                 return ResultCode.SKYLIGHT_DATA_NOT_AVAILABLE;
             }
         }
 
-        executeSync(lightEngine, () -> {
-            // block lighting
-            if (FlagUtils.isFlagSet(flags, LightFlag.BLOCK_LIGHTING)) {
-                BlockLightEngine leb = (BlockLightEngine) lightEngine.getLayerListener(LightLayer.BLOCK);
-                if (finalLightLevel == 0) {
-                    leb.checkBlock(position);
-                } else if (leb.getDataLayerData(SectionPos.of(position)) != null) {
-                    try {
-                        leb.onBlockEmissionIncrease(position, finalLightLevel);
-                    } catch (NullPointerException ignore) {
-                        // To prevent problems with the absence of the NibbleArray, even
-                        // if leb.a(SectionPosition.a(position)) returns non-null value (corrupted data)
-                    }
+        executeSync(lightEngine, () -> applyLightLevel(handle, position, finalLightLevel, flags));
+        if (lightEngine.hasLightWork()) {
+            return ResultCode.SUCCESS;
+        }
+        return ResultCode.FAILED;
+    }
+
+    private void applyLightLevel(WorldLightHandle handle, BlockPos position, int finalLightLevel, int flags) {
+        // block lighting
+        if (FlagUtils.isFlagSet(flags, LightFlag.BLOCK_LIGHTING)) {
+            BlockLightEngine leb = (BlockLightEngine) handle.getBlockListener();
+            if (finalLightLevel == 0) {
+                leb.checkBlock(position);
+            } else if (leb.getDataLayerData(SectionPos.of(position)) != null) {
+                try {
+                    leb.onBlockEmissionIncrease(position, finalLightLevel);
+                } catch (NullPointerException ignore) {
+                    // To prevent problems with the absence of the NibbleArray, even
+                    // if leb.a(SectionPosition.a(position)) returns non-null value (corrupted data)
                 }
             }
+        }
 
-            // sky lighting
-            if (FlagUtils.isFlagSet(flags, LightFlag.SKY_LIGHTING)) {
-                SkyLightEngine les = (SkyLightEngine) lightEngine.getLayerListener(LightLayer.SKY);
-                if (finalLightLevel == 0) {
-                    les.checkBlock(position);
-                } else if (les.getDataLayerData(SectionPos.of(position)) != null) {
-                    try {
-                        lightEngineLayer_a(les, position, finalLightLevel);
-                    } catch (NullPointerException ignore) {
-                        // To prevent problems with the absence of the NibbleArray, even
-                        // if les.a(SectionPosition.a(position)) returns non-null value (corrupted data)
-                    }
+        // sky lighting
+        if (FlagUtils.isFlagSet(flags, LightFlag.SKY_LIGHTING)) {
+            SkyLightEngine les = (SkyLightEngine) handle.getSkyListener();
+            if (finalLightLevel == 0) {
+                les.checkBlock(position);
+            } else if (les.getDataLayerData(SectionPos.of(position)) != null) {
+                try {
+                    lightEngineLayer_a(les, position, finalLightLevel);
+                } catch (NullPointerException ignore) {
+                    // To prevent problems with the absence of the NibbleArray, even
+                    // if les.a(SectionPosition.a(position)) returns non-null value (corrupted data)
                 }
             }
-        });
-        if (lightEngine.hasLightWork()) {
+        }
+    }
+
+    @Override
+    public int setRawLightLevels(World world, LongIntHashMap lights, int lightFlags, LongIntHashMap oldLevels,
+            ICallback callback) {
+        WorldLightHandle handle = getWorldHandle(world);
+        if (handle == null) {
+            return ResultCode.WORLD_NOT_AVAILABLE;
+        }
+        ServerLevel worldServer = handle.getLevel();
+        final ThreadedLevelLightEngine lightEngine = handle.getLightEngine();
+        if (FlagUtils.isFlagSet(lightFlags, LightFlag.BLOCK_LIGHTING) && !handle.isLightingSupported(
+                LightFlag.BLOCK_LIGHTING)) {
+            return ResultCode.BLOCKLIGHT_DATA_NOT_AVAILABLE;
+        }
+        if (FlagUtils.isFlagSet(lightFlags, LightFlag.SKY_LIGHTING) && !handle.isLightingSupported(
+                LightFlag.SKY_LIGHTING)) {
+            return ResultCode.SKYLIGHT_DATA_NOT_AVAILABLE;
+        }
+
+        // All levels are read and written while the light engine mailbox is stopped
+        executeSync(lightEngine, () -> lights.forEach((pos, lightLevel) -> {
+            BlockPos position = BlockPos.of(pos);
+            if (!worldServer.getChunkSource().isChunkLoaded(position.getX() >> 4, position.getZ() >> 4)) {
+                return;
+            }
+            oldLevels.put(pos, Math.max(getRawLightLevel(world, position.getX(), position.getY(), position.getZ(),
+                    lightFlags), 0));
+            applyLightLevel(handle, position, lightLevel < 0 ? 0 : Math.min(lightLevel, 15), lightFlags);
+        }));
+        if (!oldLevels.isEmpty() && lightEngine.hasLightWork()) {
             return ResultCode.SUCCESS;
         }
-        return ResultCode.FAILED;
+        return oldLevels.isEmpty() ? ResultCode.CHUNK_NOT_LOADED : ResultCode.FAILED;
     }
 
     @Override
     public int getRawLightLevel(World world, int blockX, int blockY, int blockZ, int flags) {
         int lightLevel = -1;
-        ServerLevel worldServer = ((CraftWorld) world).getHandle();
+        WorldLightHandle handle = getWorldHandle(world);
+        if (handle == null) {
+            return lightLevel;
+        }
+        ServerLevel worldServer = handle.getLevel();
         BlockPos position = new BlockPos(blockX, blockY, blockZ);
         if (FlagUtils.isFlagSet(flags, LightFlag.BLOCK_LIGHTING) && FlagUtils.isFlagSet(flags,
                 LightFlag.SKY_LIGHTING)) {
@@ -299,10 +340,30 @@ public class VanillaNMSHandler extends BaseNMSHandler {
         return lightLevel;
     }
 
+    @Override
+    public boolean isSectionCopySupported() {
+        return true;
+    }
+
+    @Override
+    public int getRawLightLevels(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+            int lightFlags, ByteBuffer out) {
+        WorldLightHandle handle = getWorldHandle(world);
+        if (handle == null) {
+            return ResultCode.WORLD_NOT_AVAILABLE;
+        }
+        return handle.getRawLightLevels(task -> executeSync(handle.getLightEngine(), task), minX, minY, minZ, maxX,
+                maxY, maxZ, lightFlags, out);
+    }
+
     @Override
     public int recalculateLighting(World world, int blockX, int blockY, int blockZ, int flags) {
-        ServerLevel worldServer = ((CraftWorld) world).getHandle();
-        final ThreadedLevelLightEngine lightEngine = worldServer.getChunkSource().getLightEngine();
+        WorldLightHandle handle = getWorldHandle(world);
+        if (handle == null) {
+            return ResultCode.WORLD_NOT_AVAILABLE;
+        }
+        ServerLevel worldServer = handle.getLevel();
+        final ThreadedLevelLightEngine lightEngine = handle.getLightEngine();
 
         if (!worldServer.getChunkSource().isChunkLoaded(blockX >> 4, blockZ >> 4)) {
             return ResultCode.CHUNK_NOT_LOADED;
@@ -316,10 +377,10 @@ public class VanillaNMSHandler extends BaseNMSHandler {
         executeSync(lightEngine, () -> {
             if (FlagUtils.isFlagSet(flags, LightFlag.BLOCK_LIGHTING) && FlagUtils.isFlagSet(flags,
                     LightFlag.SKY_LIGHTING)) {
-                if (isLightingSupported(world, LightFlag.SKY_LIGHTING) && isLightingSupported(world,
+                if (handle.isLightingSupported(LightFlag.SKY_LIGHTING) && handle.isLightingSupported(
                         LightFlag.BLOCK_LIGHTING)) {
-                    BlockLightEngine leb = (BlockLightEngine) lightEngine.getLayerListener(LightLayer.BLOCK);
-                    SkyLightEngine les = (SkyLightEngine) lightEngine.getLayerListener(LightLayer.SKY);
+                    BlockLightEngine leb = (BlockLightEngine) handle.getBlockListener();
+                    SkyLightEngine les = (SkyLightEngine) handle.getSkyListener();
 
                     // nms
                     int maxUpdateCount = Integer.MAX_VALUE;
@@ -333,16 +394,16 @@ public class VanillaNMSHandler extends BaseNMSHandler {
                 } else {
                     // block lighting
                     if (FlagUtils.isFlagSet(flags, LightFlag.BLOCK_LIGHTING)) {
-                        if (isLightingSupported(world, LightFlag.BLOCK_LIGHTING)) {
-                            BlockLightEngine leb = (BlockLightEngine) lightEngine.getLayerListener(LightLayer.BLOCK);
+                        if (handle.isLightingSupported(LightFlag.BLOCK_LIGHTING)) {
+                            BlockLightEngine leb = (BlockLightEngine) handle.getBlockListener();
                             leb.runUpdates(Integer.MAX_VALUE, true, true);
                         }
                     }
 
                     // sky lighting
                     if (FlagUtils.isFlagSet(flags, LightFlag.SKY_LIGHTING)) {
-                        if (isLightingSupported(world, LightFlag.SKY_LIGHTING)) {
-                            SkyLightEngine les = (SkyLightEngine) lightEngine.getLayerListener(LightLayer.SKY);
+                        if (handle.isLightingSupported(LightFlag.SKY_LIGHTING)) {
+                            SkyLightEngine les = (SkyLightEngine) handle.getSkyListener();
                             les.runUpdates(Integer.MAX_VALUE, true, true);
                         }
                     }
@@ -350,16 +411,16 @@ public class VanillaNMSHandler extends BaseNMSHandler {
             } else {
                 // block lighting
                 if (FlagUtils.isFlagSet(flags, LightFlag.BLOCK_LIGHTING)) {
-                    if (isLightingSupported(world, LightFlag.BLOCK_LIGHTING)) {
-                        BlockLightEngine leb = (BlockLightEngine) lightEngine.getLayerListener(LightLayer.BLOCK);
+                    if (handle.isLightingSupported(LightFlag.BLOCK_LIGHTING)) {
+                        BlockLightEngine leb = (BlockLightEngine) handle.getBlockListener();
                         leb.runUpdates(Integer.MAX_VALUE, true, true);
                     }
                 }
 
                 // sky lighting
                 if (FlagUtils.isFlagSet(flags, LightFlag.SKY_LIGHTING)) {
-                    if (isLightingSupported(world, LightFlag.SKY_LIGHTING)) {
-                        SkyLightEngine les = (SkyLightEngine) lightEngine.getLayerListener(LightLayer.SKY);
+                    if (handle.isLightingSupported(LightFlag.SKY_LIGHTING)) {
+                        SkyLightEngine les = (SkyLightEngine) handle.getSkyListener();
                         les.runUpdates(Integer.MAX_VALUE, true, true);
                     }
                 }
@@ -386,13 +447,14 @@ public class VanillaNMSHandler extends BaseNMSHandler {
     @Override
     public List<IChunkData> collectChunkSections(World world, int blockX, int blockY, int blockZ, int lightLevel,
             int lightFlags) {
-        ServerLevel worldServer = ((CraftWorld) world).getHandle();
+        WorldLightHandle handle = getWorldHandle(world);
         List<IChunkData> list = new ArrayList<>();
         int finalLightLevel = lightLevel < 0 ? 0 : Math.min(lightLevel, 15);
 
-        if (world == null) {
+        if (handle == null) {
             return list;
         }
+        ServerLevel worldServer = handle.getLevel();
 
         for (int dX = -1; dX <= 1; dX++) {
             int lightLevelX = finalLightLevel - getDeltaLight(blockX & 15, dX);
@@ -426,9 +488,14 @@ public class VanillaNMSHandler extends BaseNMSHandler {
 
     @Override
     public boolean isValidChunkSection(World world, int sectionY) {
-        ServerLevel worldServer = ((CraftWorld) world).getHandle();
-        ThreadedLevelLightEngine lightEngine = worldServer.getChunkSource().getLightEngine();
-        return (sectionY >= lightEngine.getMinLightSection()) && (sectionY <= lightEngine.getMaxLightSection());
+        WorldLightHandle handle = getWorldHandle(world);
+        return handle != null && handle.isValidChunkSection(sectionY);
+    }
+
+    @Override
+    public int getBlockOpacity(World world, int blockX, int blockY, int blockZ) {
+        WorldLightHandle handle = getWorldHandle(world);
+        return handle != null ? handle.getBlockOpacity(blockX, blockY, blockZ) : 15;
     }
 
     @Override
@@ -443,10 +510,11 @@ public class VanillaNMSHandler extends BaseNMSHandler {
     }
 
     protected int sendChunk(World world, int chunkX, int chunkZ, BitSet sectionMaskSky, BitSet sectionMaskBlock) {
-        if (world == null) {
+        WorldLightHandle handle = getWorldHandle(world);
+        if (handle == null) {
             return ResultCode.WORLD_NOT_AVAILABLE;
         }
-        ServerLevel worldServer = ((CraftWorld) world).getHandle();
+        ServerLevel worldServer = handle.getLevel();
         if (!worldServer.getChunkSource().isChunkLoaded(chunkX, chunkZ)) {
             return ResultCode.CHUNK_NOT_LOADED;
         }
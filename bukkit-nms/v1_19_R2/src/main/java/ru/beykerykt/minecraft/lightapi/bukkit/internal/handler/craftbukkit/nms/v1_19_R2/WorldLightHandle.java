@@ -0,0 +1,205 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.bukkit.internal.handler.craftbukkit.nms.v1_19_R2;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ThreadedLevelLightEngine;
+import net.minecraft.world.level.LightLayer;
+import net.minecraft.world.level.chunk.DataLayer;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.lighting.LayerLightEventListener;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+
+import ru.beykerykt.minecraft.lightapi.common.api.ResultCode;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.LightFlag;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.LightLevelBuffer;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.FlagUtils;
+
+/**
+ * Per-world cache of the level, its light engine and the capabilities. Created on world load and
+ * dropped on world unload.
+ */
+final class WorldLightHandle {
+
+    private final ServerLevel mLevel;
+    private final ThreadedLevelLightEngine mLightEngine;
+    private final LayerLightEventListener mBlockListener;
+    private final LayerLightEventListener mSkyListener;
+    private final int mMinLightSection;
+    private final int mMaxLightSection;
+    private final boolean mBlockLightingSupported;
+    private final boolean mSkyLightingSupported;
+
+    WorldLightHandle(ServerLevel level, boolean blockLightingSupported, boolean skyLightingSupported) {
+        this.mLevel = level;
+        this.mLightEngine = level.getChunkSource().getLightEngine();
+        this.mBlockListener = mLightEngine.getLayerListener(LightLayer.BLOCK);
+        this.mSkyListener = mLightEngine.getLayerListener(LightLayer.SKY);
+        this.mMinLightSection = mLightEngine.getMinLightSection();
+        this.mMaxLightSection = mLightEngine.getMaxLightSection();
+        this.mBlockLightingSupported = blockLightingSupported;
+        this.mSkyLightingSupported = skyLightingSupported;
+    }
+
+    public ServerLevel getLevel() {
+        return mLevel;
+    }
+
+    public ThreadedLevelLightEngine getLightEngine() {
+        return mLightEngine;
+    }
+
+    public LayerLightEventListener getBlockListener() {
+        return mBlockListener;
+    }
+
+    public LayerLightEventListener getSkyListener() {
+        return mSkyListener;
+    }
+
+    public int getMinLightSection() {
+        return mMinLightSection;
+    }
+
+    public int getMaxLightSection() {
+        return mMaxLightSection;
+    }
+
+    public boolean isValidChunkSection(int sectionY) {
+        return sectionY >= mMinLightSection && sectionY <= mMaxLightSection;
+    }
+
+    public int getBlockOpacity(int blockX, int blockY, int blockZ) {
+        if (mLevel.isOutsideBuildHeight(blockY)) {
+            return 15;
+        }
+        // Does not wait for the main thread, unlike getChunkNow()
+        LevelChunk chunk = mLevel.getChunkSource().getChunkAtIfLoadedImmediately(blockX >> 4, blockZ >> 4);
+        if (chunk == null) {
+            return 15;
+        }
+        BlockPos pos = new BlockPos(blockX, blockY, blockZ);
+        return chunk.getBlockState(pos).getLightBlock(mLevel, pos);
+    }
+
+    /**
+     * Copies the light levels of the box into the buffer. All sections are copied in one task of the
+     * executor, values are packed after it returns.
+     */
+    public int getRawLightLevels(Executor syncExecutor, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+            int lightFlags, ByteBuffer out) {
+        LightLevelBuffer.checkCapacity(out, minX, minY, minZ, maxX, maxY, maxZ);
+        final boolean isBlock = FlagUtils.isFlagSet(lightFlags, LightFlag.BLOCK_LIGHTING) && mBlockLightingSupported;
+        final boolean isSky = FlagUtils.isFlagSet(lightFlags, LightFlag.SKY_LIGHTING) && mSkyLightingSupported;
+        final int minSectionX = minX >> 4;
+        final int minSectionZ = minZ >> 4;
+        final int minSectionY = Math.max(minY >> 4, mMinLightSection);
+        final int maxSectionY = Math.min(maxY >> 4, mMaxLightSection);
+        final int sizeX = (maxX >> 4) - minSectionX + 1;
+        final int sizeZ = (maxZ >> 4) - minSectionZ + 1;
+        final int sizeY = Math.max(maxSectionY - minSectionY + 1, 0);
+        final boolean[] loaded = new boolean[sizeX * sizeZ];
+        final DataLayer[] blockLayers = new DataLayer[sizeX * sizeY * sizeZ];
+        final DataLayer[] skyLayers = new DataLayer[sizeX * sizeY * sizeZ];
+
+        syncExecutor.execute(() -> {
+            for (int sx = 0; sx < sizeX; sx++) {
+                for (int sz = 0; sz < sizeZ; sz++) {
+                    if (!mLevel.getChunkSource().isChunkLoaded(minSectionX + sx, minSectionZ + sz)) {
+                        continue;
+                    }
+                    loaded[sx * sizeZ + sz] = true;
+                    for (int sy = 0; sy < sizeY; sy++) {
+                        int index = (sy * sizeZ + sz) * sizeX + sx;
+                        SectionPos sectionPos = SectionPos.of(minSectionX + sx, minSectionY + sy, minSectionZ + sz);
+                        if (isBlock) {
+                            DataLayer layer = mBlockListener.getDataLayerData(sectionPos);
+                            blockLayers[index] = layer == null ? null : layer.copy();
+                        }
+                        if (isSky) {
+                            DataLayer layer = mSkyListener.getDataLayerData(sectionPos);
+                            // No sky data for this section, ask the world for each block in the box
+                            skyLayers[index] = layer != null ? layer.copy() : getSkyLayerPerBlock(sectionPos, minX,
+                                    minY, minZ, maxX, maxY, maxZ);
+                        }
+                    }
+                }
+            }
+        });
+
+        LightLevelBuffer.clear(out, minX, minY, minZ, maxX, maxY, maxZ);
+        for (int sx = 0; sx < sizeX; sx++) {
+            for (int sz = 0; sz < sizeZ; sz++) {
+                if (!loaded[sx * sizeZ + sz]) {
+                    continue;
+                }
+                for (int sy = 0; sy < sizeY; sy++) {
+                    int index = (sy * sizeZ + sz) * sizeX + sx;
+                    int sectionX = minSectionX + sx;
+                    int sectionY = minSectionY + sy;
+                    int sectionZ = minSectionZ + sz;
+                    if (isBlock) {
+                        DataLayer layer = blockLayers[index];
+                        LightLevelBuffer.copySection(layer == null || layer.isEmpty() ? null : layer.getData(), 0,
+                                sectionX, sectionY, sectionZ, minX, minY, minZ, maxX, maxY, maxZ, out, false);
+                    }
+                    if (isSky) {
+                        DataLayer layer = skyLayers[index];
+                        LightLevelBuffer.copySection(layer.isEmpty() ? null : layer.getData(), 0, sectionX,
+                                sectionY, sectionZ, minX, minY, minZ, maxX, maxY, maxZ, out, isBlock);
+                    }
+                }
+            }
+        }
+        return ResultCode.SUCCESS;
+    }
+
+    private DataLayer getSkyLayerPerBlock(SectionPos sectionPos, int minX, int minY, int minZ, int maxX, int maxY,
+            int maxZ) {
+        DataLayer layer = new DataLayer();
+        BlockPos.MutableBlockPos position = new BlockPos.MutableBlockPos();
+        for (int y = Math.max(minY, sectionPos.minBlockY()); y <= Math.min(maxY, sectionPos.maxBlockY()); y++) {
+            for (int z = Math.max(minZ, sectionPos.minBlockZ()); z <= Math.min(maxZ, sectionPos.maxBlockZ()); z++) {
+                for (int x = Math.max(minX, sectionPos.minBlockX()); x <= Math.min(maxX, sectionPos.maxBlockX());
+                        x++) {
+                    layer.set(x & 15, y & 15, z & 15, mLevel.getBrightness(LightLayer.SKY, position.set(x, y, z)));
+                }
+            }
+        }
+        return layer;
+    }
+
+    public boolean isLightingSupported(int lightFlags) {
+        if (FlagUtils.isFlagSet(lightFlags, LightFlag.SKY_LIGHTING)) {
+            return mSkyLightingSupported;
+        } else if (FlagUtils.isFlagSet(lightFlags, LightFlag.BLOCK_LIGHTING)) {
+            return mBlockLightingSupported;
+        }
+        return false;
+    }
+}
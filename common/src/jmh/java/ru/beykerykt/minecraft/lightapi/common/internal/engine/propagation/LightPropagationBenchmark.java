@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.common.internal.engine.propagation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Propagation throughput in edits per second. One edit places a light source into a 64x64x64 area
+ * and removes the source placed {@code activeLights} edits before.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LightPropagationBenchmark {
+
+    private static final int SIZE = 64;
+
+    /**
+     * Percent of opaque blocks in the area
+     */
+    @Param({"0", "20"})
+    public int opaquePercent;
+
+    @Param({"1", "32"})
+    public int activeLights;
+
+    private LightPropagationEngine mEngine;
+    private long[] mLights;
+    private int mLightIndex;
+    private Random mRandom;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        mRandom = new Random(42);
+        final byte[] opacity = new byte[SIZE * SIZE * SIZE];
+        for (int i = 0; i < opacity.length; i++) {
+            opacity[i] = (byte) (mRandom.nextInt(100) < opaquePercent ? 15 : 0);
+        }
+        IOpacityProvider provider = (x, y, z) -> {
+            if (x < 0 || y < 0 || z < 0 || x >= SIZE || y >= SIZE || z >= SIZE) {
+                return 15;
+            }
+            return opacity[(y * SIZE + z) * SIZE + x];
+        };
+        mEngine = new LightPropagationEngine(new LightSectionStorage(), provider);
+        mLights = new long[activeLights];
+        mLightIndex = 0;
+        for (int i = 0; i < activeLights; i++) {
+            mLights[i] = placeRandomLight();
+        }
+        mEngine.propagate();
+        mEngine.clearChangedSections();
+    }
+
+    private long placeRandomLight() {
+        int x = mRandom.nextInt(SIZE);
+        int y = mRandom.nextInt(SIZE);
+        int z = mRandom.nextInt(SIZE);
+        mEngine.setLightLevel(x, y, z, 15);
+        return ((long) x << 32) | ((long) y << 16) | z;
+    }
+
+    @Benchmark
+    public int moveLight() {
+        long old = mLights[mLightIndex];
+        mEngine.setLightLevel((int) (old >>> 32), (int) (old >>> 16) & 0xFFFF, (int) old & 0xFFFF, 0);
+        mLights[mLightIndex] = placeRandomLight();
+        mLightIndex = (mLightIndex + 1) % mLights.length;
+        int processed = mEngine.propagate();
+        mEngine.clearChangedSections();
+        return processed;
+    }
+
+    @Benchmark
+    public int placeAndRemoveLight() {
+        long pos = placeRandomLight();
+        int processed = mEngine.propagate();
+        mEngine.setLightLevel((int) (pos >>> 32), (int) (pos >>> 16) & 0xFFFF, (int) pos & 0xFFFF, 0);
+        processed += mEngine.propagate();
+        mEngine.clearChangedSections();
+        return processed;
+    }
+}
@@ -23,23 +23,35 @@
  */
 package ru.beykerykt.minecraft.lightapi.common;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Spliterator;
 import java.util.UUID;
 
 import ru.beykerykt.minecraft.lightapi.common.api.ResultCode;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.EditPolicy;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.ILightOperation;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.ILightProvider;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.ILightSource;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.ILightTransaction;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.LightFlag;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.SendPolicy;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.ICallback;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.ILightRequest;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.SchedulerType;
 import ru.beykerykt.minecraft.lightapi.common.api.extension.IExtension;
 import ru.beykerykt.minecraft.lightapi.common.internal.IPlatformImpl;
 import ru.beykerykt.minecraft.lightapi.common.internal.InternalCode;
 import ru.beykerykt.minecraft.lightapi.common.internal.PlatformType;
 import ru.beykerykt.minecraft.lightapi.common.internal.chunks.observer.IChunkObserver;
 import ru.beykerykt.minecraft.lightapi.common.internal.engine.ILightEngine;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.LightTransactionImpl;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.sched.IScheduledLightEngine;
 import ru.beykerykt.minecraft.lightapi.common.internal.engine.sched.RequestFlag;
+import ru.beykerykt.minecraft.lightapi.common.internal.index.LightIndex;
 import ru.beykerykt.minecraft.lightapi.common.internal.service.IBackgroundService;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.BlockPosition;
 
 /**
  * Main class for all platforms. Contains basic methods for all implementations.
@@ -266,6 +278,26 @@ public final class LightAPI {
         return getPluginImpl().getLightEngine();
     }
 
+    /**
+     * N/A
+     */
+    private IScheduledLightEngine getScheduledLightEngine() {
+        if (!(getLightEngine() instanceof IScheduledLightEngine)) {
+            throw new IllegalStateException("LightEngine does not support schedulers!");
+        }
+        return (IScheduledLightEngine) getLightEngine();
+    }
+
+    /**
+     * N/A
+     */
+    private LightIndex getLightIndex() {
+        if (getPluginImpl().getLightIndex() == null) {
+            throw new IllegalStateException("LightIndex is disabled!");
+        }
+        return getPluginImpl().getLightIndex();
+    }
+
     /**
      * N/A
      */
@@ -326,6 +358,22 @@ public final class LightAPI {
         return getLightEngine().getLightLevel(worldName, blockX, blockY, blockZ, lightFlags);
     }
 
+    /**
+     * Gets the levels of light in the given region (bounds are inclusive) with specific flags. The
+     * levels are packed as nibbles into the buffer starting at its current position, the position
+     * itself is not changed. If both light flags are set, the maximum of the block and sky levels is
+     * written. Can be called from any thread, off the main thread the data is taken from a snapshot
+     * of the light engine. Handlers that can't take a snapshot off the main thread return
+     * {@link ResultCode#NOT_IMPLEMENTED}, then use {@link #getLightLevel} instead.
+     *
+     * @return One of the {@link ResultCode}
+     * @see ru.beykerykt.minecraft.lightapi.common.api.engine.LightLevelBuffer
+     */
+    public int getLightLevels(String worldName, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+            int lightFlags, ByteBuffer out) {
+        return getLightEngine().getLightLevels(worldName, minX, minY, minZ, maxX, maxY, maxZ, lightFlags, out);
+    }
+
     /**
      * Placement of a specific type of light with a given level of illumination in the named world in
      * certain coordinates with the return code result.
@@ -364,6 +412,185 @@ public final class LightAPI {
                 sendPolicy, callback);
     }
 
+    /**
+     * Queues a block light edit and returns its handle, see {@link ILightRequest}. A pending edit with
+     * the same non-null key is superseded by this one, e.g. use the id of an entity to drop its stale
+     * light when the entity moves before the queue is drained.
+     *
+     * @return handle of the request, or null if the world is not available
+     */
+    public ILightRequest submitLightLevel(String worldName, int blockX, int blockY, int blockZ, int lightLevel,
+            Object key) {
+        return submitLightLevel(worldName, blockX, blockY, blockZ, lightLevel, LightFlag.BLOCK_LIGHTING,
+                EditPolicy.DEFERRED, SendPolicy.DEFERRED, key, null);
+    }
+
+    /**
+     * Queues a light edit with specific flags and policies and returns its handle, see
+     * {@link ILightRequest}. A pending edit with the same non-null key is superseded by this one.
+     *
+     * @return handle of the request, or null if the world is not available
+     */
+    public ILightRequest submitLightLevel(String worldName, int blockX, int blockY, int blockZ, int lightLevel,
+            int lightFlags, EditPolicy editPolicy, SendPolicy sendPolicy, Object key, ICallback callback) {
+        return submitLightLevel(worldName, blockX, blockY, blockZ, lightLevel, lightFlags, editPolicy, sendPolicy,
+                key, ILightRequest.NO_DEADLINE, callback);
+    }
+
+    /**
+     * Queues a light edit that should be relit within the given number of ticks. The deadline is an ordering
+     * hint, a scheduler with deadline support handles the earliest deadlines first and counts the missed ones.
+     *
+     * @return handle of the request, or null if the world is not available
+     */
+    public ILightRequest submitLightLevel(String worldName, int blockX, int blockY, int blockZ, int lightLevel,
+            int lightFlags, EditPolicy editPolicy, SendPolicy sendPolicy, Object key, int deadlineTicks,
+            ICallback callback) {
+        return getLightEngine().submitLightLevel(worldName, blockX, blockY, blockZ, lightLevel, lightFlags,
+                editPolicy, sendPolicy, key, deadlineTicks, callback);
+    }
+
+    /**
+     * Returns the type of the scheduler that orders and batches requests of the light engine.
+     */
+    public SchedulerType getSchedulerType() {
+        return getScheduledLightEngine().getSchedulerType();
+    }
+
+    /**
+     * Replaces the scheduler of the light engine, queued requests are kept. Called outside the main thread,
+     * the scheduler is replaced on the next server tick and {@link ResultCode#MOVED_TO_DEFERRED} is returned.
+     */
+    public int setSchedulerType(SchedulerType type) {
+        return getScheduledLightEngine().setSchedulerType(type);
+    }
+
+    /**
+     * Starts a transaction that collects light edits of the named world and applies them at once on
+     * commit, see {@link ILightTransaction}.
+     */
+    public ILightTransaction beginTransaction(String worldName) {
+        return new LightTransactionImpl(getLightEngine(), worldName);
+    }
+
+    /**
+     * Creates a block light source that can be moved and changed later, see {@link ILightSource}.
+     */
+    public ILightSource createLightSource(String worldName, int blockX, int blockY, int blockZ, int lightLevel) {
+        return createLightSource(worldName, blockX, blockY, blockZ, lightLevel, LightFlag.BLOCK_LIGHTING);
+    }
+
+    /**
+     * Creates a light source with specific flags that can be moved and changed later, see
+     * {@link ILightSource}.
+     */
+    public ILightSource createLightSource(String worldName, int blockX, int blockY, int blockZ, int lightLevel,
+            int lightFlags) {
+        if (getPluginImpl().getLightSourceManager() == null) {
+            throw new IllegalStateException("LightSourceManager not yet initialized!");
+        }
+        return getPluginImpl().getLightSourceManager().createLightSource(worldName, blockX, blockY, blockZ,
+                lightLevel, lightFlags);
+    }
+
+    /**
+     * Returns positions of the custom block lights in the chunk, packed with
+     * {@link BlockPosition#asLong(int, int, int)}. Only lights placed through LightAPI are known.
+     */
+    public long[] getLightsInChunk(String worldName, int chunkX, int chunkZ) {
+        return getLightIndex().getLightsInChunk(worldName, chunkX, chunkZ);
+    }
+
+    /**
+     * Returns positions of the custom block lights within the radius (in blocks) of the center, packed
+     * with {@link BlockPosition#asLong(int, int, int)}.
+     */
+    public long[] getLightsInRadius(String worldName, int blockX, int blockY, int blockZ, int radius) {
+        return getLightIndex().getLightsInRadius(worldName, blockX, blockY, blockZ, radius);
+    }
+
+    /**
+     * Returns positions of the custom block lights in the box (bounds are inclusive), packed with
+     * {@link BlockPosition#asLong(int, int, int)}.
+     */
+    public long[] getLightsInBox(String worldName, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return getLightIndex().getLightsInBox(worldName, minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    /**
+     * Removes all custom block lights in the box (bounds are inclusive). The lights are removed with
+     * the given flags, add {@link LightFlag#USE_STORAGE_PROVIDER} to drop them from the storage too.
+     * A light leaves the index only when its level is really written, so failed writes keep it there.
+     *
+     * @return One of the {@link ResultCode}
+     */
+    public int removeLightsInBox(String worldName, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+            int lightFlags, EditPolicy editPolicy, SendPolicy sendPolicy) {
+        if (getPluginImpl().getLightIndex() == null) {
+            return ResultCode.NOT_IMPLEMENTED;
+        }
+        long[] positions = getPluginImpl().getLightIndex().getLightsInBox(worldName, minX, minY, minZ, maxX,
+                maxY, maxZ);
+        for (long pos : positions) {
+            int resultCode = setLightLevel(worldName, BlockPosition.unpackLongX(pos), BlockPosition.unpackLongY(pos),
+                    BlockPosition.unpackLongZ(pos), 0, lightFlags, editPolicy, sendPolicy, null);
+            if (resultCode == ResultCode.WORLD_NOT_AVAILABLE) {
+                return resultCode;
+            }
+        }
+        return ResultCode.SUCCESS;
+    }
+
+    /**
+     * Sets the level of block light in every position of a lazily evaluated shape, see
+     * {@link ru.beykerykt.minecraft.lightapi.common.api.engine.LightShapes}. The positions are applied
+     * over several ticks, a level of zero clears the area.
+     */
+    public ILightOperation submitLightOperation(String worldName, Spliterator.OfLong positions, int lightLevel) {
+        return submitLightOperation(worldName, positions, lightLevel, LightFlag.BLOCK_LIGHTING, SendPolicy.DEFERRED);
+    }
+
+    /**
+     * Sets the level of light with specific flags in every position of a lazily evaluated shape, see
+     * {@link ru.beykerykt.minecraft.lightapi.common.api.engine.LightShapes}. The positions are applied
+     * over several ticks, only as fast as the light engine keeps up with them.
+     */
+    public ILightOperation submitLightOperation(String worldName, Spliterator.OfLong positions, int lightLevel,
+            int lightFlags, SendPolicy sendPolicy) {
+        if (getPluginImpl().getLightOperationManager() == null) {
+            throw new IllegalStateException("LightOperationManager not yet initialized!");
+        }
+        return getPluginImpl().getLightOperationManager().submit(worldName, positions, lightLevel, lightFlags,
+                sendPolicy);
+    }
+
+    /**
+     * Registers a provider of custom lights. When a chunk is loaded, its lights are requested from the
+     * provider on a background thread and restored with a low priority.
+     *
+     * @return One of the {@link ResultCode}
+     */
+    public int registerLightProvider(ILightProvider provider) {
+        if (getPluginImpl().getRestorePipeline() == null) {
+            return ResultCode.NOT_IMPLEMENTED;
+        }
+        getPluginImpl().getRestorePipeline().registerProvider(provider);
+        return ResultCode.SUCCESS;
+    }
+
+    /**
+     * Unregisters a provider of custom lights.
+     *
+     * @return One of the {@link ResultCode}
+     */
+    public int unregisterLightProvider(ILightProvider provider) {
+        if (getPluginImpl().getRestorePipeline() == null) {
+            return ResultCode.NOT_IMPLEMENTED;
+        }
+        getPluginImpl().getRestorePipeline().unregisterProvider(provider);
+        return ResultCode.SUCCESS;
+    }
+
     /**
      * Checks the light level and restores it if available.
      */
@@ -72,4 +72,9 @@ public class ResultCode {
      * Chunk is not loaded
      */
     public static final int CHUNK_NOT_LOADED = -7;
+
+    /**
+     * The request was cancelled or superseded by a newer request with the same key
+     */
+    public static final int CANCELLED = -8;
 }
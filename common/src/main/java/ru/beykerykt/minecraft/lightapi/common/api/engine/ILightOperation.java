@@ -0,0 +1,79 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package ru.beykerykt.minecraft.lightapi.common.api.engine;
+
+/**
+ * Handle of a light operation over a large area. The positions of the area are consumed lazily, a few
+ * thousand per tick, only while the light engine keeps up with the edits. So neither memory nor the
+ * request queue grows with the size of the area.
+ * <p>
+ * The methods can be called from any thread.
+ */
+public interface ILightOperation {
+
+    /**
+     * Returns the number of positions handed to the light engine so far.
+     */
+    long getProcessedCount();
+
+    /**
+     * Returns the number of positions of the area, or -1 if the shape does not know its size.
+     */
+    long getTotalCount();
+
+    /**
+     * Returns the progress in range 0.0 - 1.0, or -1 if the total count is unknown.
+     */
+    double getProgress();
+
+    /**
+     * Returns the estimated time until all positions are processed in milliseconds, or -1 if it is not
+     * known yet.
+     */
+    long getEstimatedTimeRemainingMs();
+
+    /**
+     * Returns the result of the last edit, or {@link ru.beykerykt.minecraft.lightapi.common.api.ResultCode#FAILED}
+     * if the shape threw an exception and the operation was cancelled.
+     *
+     * @return One of the {@link ru.beykerykt.minecraft.lightapi.common.api.ResultCode}
+     */
+    int getResultCode();
+
+    /**
+     * Stops the operation. Edits that were already handed to the light engine are still applied.
+     */
+    void cancel();
+
+    /**
+     * N/A
+     */
+    boolean isCancelled();
+
+    /**
+     * Returns true if all positions were processed or the operation was cancelled.
+     */
+    boolean isDone();
+}
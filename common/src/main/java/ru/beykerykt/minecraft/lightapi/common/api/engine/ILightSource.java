@@ -0,0 +1,89 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.common.api.engine;
+
+/**
+ * Handle of a light source that can be moved and changed. Changes are applied once per tick, only
+ * the last position and level of the tick are used. A move removes the old light and places the new
+ * one in a single relight with a single send.
+ * <p>
+ * The methods can be called from any thread.
+ */
+public interface ILightSource {
+
+    /**
+     * N/A
+     */
+    String getWorldName();
+
+    /**
+     * N/A
+     */
+    int getBlockX();
+
+    /**
+     * N/A
+     */
+    int getBlockY();
+
+    /**
+     * N/A
+     */
+    int getBlockZ();
+
+    /**
+     * N/A
+     */
+    int getLightLevel();
+
+    /**
+     * N/A
+     */
+    int getLightFlags();
+
+    /**
+     * Moves the light source to the given coordinates in the same world.
+     */
+    void moveTo(int blockX, int blockY, int blockZ);
+
+    /**
+     * Moves the light source to the given coordinates in the named world.
+     */
+    void moveTo(String worldName, int blockX, int blockY, int blockZ);
+
+    /**
+     * Changes the level of the light source, zero hides it until the level is changed again.
+     */
+    void setLightLevel(int lightLevel);
+
+    /**
+     * Removes the light source. The handle can not be used afterwards.
+     */
+    void destroy();
+
+    /**
+     * N/A
+     */
+    boolean isDestroyed();
+}
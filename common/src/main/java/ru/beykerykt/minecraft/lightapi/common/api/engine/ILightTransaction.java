@@ -0,0 +1,73 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package ru.beykerykt.minecraft.lightapi.common.api.engine;
+
+/**
+ * Collects light edits of one world and applies them at once. Nothing is applied or sent before
+ * {@link #commit()}: then all levels are written together, the world is relit once and clients receive
+ * one merged update per chunk. Only the last edit of a position is kept.
+ * <p>
+ * A transaction is closed by {@link #commit()} or {@link #rollback()} and can't be reused. The methods
+ * can be called from any thread.
+ */
+public interface ILightTransaction {
+
+    /**
+     * N/A
+     */
+    String getWorldName();
+
+    /**
+     * Adds an edit of block light.
+     */
+    void setLightLevel(int blockX, int blockY, int blockZ, int lightLevel);
+
+    /**
+     * Adds an edit of light with specific flags.
+     */
+    void setLightLevel(int blockX, int blockY, int blockZ, int lightLevel, int lightFlags);
+
+    /**
+     * Returns the number of edited positions.
+     */
+    int getEditCount();
+
+    /**
+     * Applies all edits and closes the transaction.
+     *
+     * @return One of the {@link ru.beykerykt.minecraft.lightapi.common.api.ResultCode}
+     */
+    int commit();
+
+    /**
+     * Discards all edits and closes the transaction.
+     */
+    void rollback();
+
+    /**
+     * Returns false once the transaction is committed or rolled back.
+     */
+    boolean isOpen();
+}
@@ -41,8 +41,8 @@ public class LightFlag {
     public static final int SKY_LIGHTING = 2;
 
     /**
-     * A flag for storing the light level in the storage provider
+     * A flag for storing the light level in the storage provider. Stored lights are restored when the chunk is
+     * loaded again.
      */
-    @Deprecated
     public static final int USE_STORAGE_PROVIDER = 4;
 }
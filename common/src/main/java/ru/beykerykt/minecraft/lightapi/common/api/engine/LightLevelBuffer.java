@@ -0,0 +1,196 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.common.api.engine;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Helpers for buffers filled by bulk light queries. Light levels are packed as nibbles (two levels
+ * per byte, low nibble first) in Y-Z-X order, the same order that is used by chunk section light
+ * arrays.
+ */
+public final class LightLevelBuffer {
+
+    private LightLevelBuffer() {
+    }
+
+    /**
+     * Checks that the given bounds describe a non-empty region.
+     */
+    public static void checkBounds(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        if (minX > maxX || minY > maxY || minZ > maxZ) {
+            throw new IllegalArgumentException(
+                    "Invalid region: [" + minX + ", " + minY + ", " + minZ + "] - [" + maxX + ", " + maxY + ", "
+                            + maxZ + "]");
+        }
+    }
+
+    /**
+     * @return Amount of blocks in the region
+     */
+    public static long getVolume(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        checkBounds(minX, minY, minZ, maxX, maxY, maxZ);
+        return ((long) maxX - minX + 1) * ((long) maxY - minY + 1) * ((long) maxZ - minZ + 1);
+    }
+
+    /**
+     * @return Amount of bytes required to store the light levels of the region
+     */
+    public static int getRequiredCapacity(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        long capacity = (getVolume(minX, minY, minZ, maxX, maxY, maxZ) + 1) >> 1;
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Region is too large: " + capacity + " bytes");
+        }
+        return (int) capacity;
+    }
+
+    /**
+     * Allocates a buffer large enough to store the light levels of the region.
+     */
+    public static ByteBuffer allocate(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return ByteBuffer.allocate(getRequiredCapacity(minX, minY, minZ, maxX, maxY, maxZ));
+    }
+
+    /**
+     * Checks that the remaining space of the buffer is enough to store the light levels of the region.
+     */
+    public static void checkCapacity(ByteBuffer out, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        int capacity = getRequiredCapacity(minX, minY, minZ, maxX, maxY, maxZ);
+        if (out.isReadOnly()) {
+            throw new IllegalArgumentException("Buffer is read-only");
+        }
+        if (out.remaining() < capacity) {
+            throw new IllegalArgumentException(
+                    "Buffer is too small: " + out.remaining() + " bytes remaining, " + capacity + " required");
+        }
+    }
+
+    /**
+     * @return Index of the nibble for the given coordinates inside the region
+     */
+    public static int getIndex(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, int blockX, int blockY,
+            int blockZ) {
+        int sizeX = maxX - minX + 1;
+        int sizeZ = maxZ - minZ + 1;
+        return ((blockY - minY) * sizeZ + (blockZ - minZ)) * sizeX + (blockX - minX);
+    }
+
+    /**
+     * Gets the light level by nibble index. The index is relative to the current position of the
+     * buffer.
+     */
+    public static int getLightLevel(ByteBuffer buffer, int index) {
+        int value = buffer.get(buffer.position() + (index >> 1));
+        return (value >> ((index & 1) << 2)) & 0xF;
+    }
+
+    /**
+     * Gets the light level for the given coordinates from a buffer filled by a bulk light query.
+     */
+    public static int getLightLevel(ByteBuffer buffer, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+            int blockX, int blockY, int blockZ) {
+        return getLightLevel(buffer, getIndex(minX, minY, minZ, maxX, maxY, maxZ, blockX, blockY, blockZ));
+    }
+
+    /**
+     * Sets the light level by nibble index. The index is relative to the current position of the
+     * buffer.
+     */
+    public static void setLightLevel(ByteBuffer buffer, int index, int lightLevel) {
+        int pos = buffer.position() + (index >> 1);
+        int shift = (index & 1) << 2;
+        int value = buffer.get(pos);
+        buffer.put(pos, (byte) ((value & ~(0xF << shift)) | ((lightLevel & 0xF) << shift)));
+    }
+
+    /**
+     * Fills the region part of the buffer with zero light level.
+     */
+    public static void clear(ByteBuffer buffer, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        int capacity = getRequiredCapacity(minX, minY, minZ, maxX, maxY, maxZ);
+        int start = buffer.position();
+        for (int i = 0; i < capacity; i++) {
+            buffer.put(start + i, (byte) 0);
+        }
+    }
+
+    /**
+     * Copies the intersection of a chunk section light array (2048 bytes, Y-Z-X order) with the region
+     * into the buffer.
+     *
+     * @param data     - section light array. If null, the section is considered as filled by
+     *                 defaultLevel.
+     * @param mergeMax - if true, the maximum of the existing and the section value is written
+     */
+    public static void copySection(byte[] data, int defaultLevel, int sectionX, int sectionY, int sectionZ,
+            int minX, int minY, int minZ, int maxX, int maxY, int maxZ, ByteBuffer out, boolean mergeMax) {
+        int fromX = Math.max(minX, sectionX << 4);
+        int toX = Math.min(maxX, (sectionX << 4) + 15);
+        int fromY = Math.max(minY, sectionY << 4);
+        int toY = Math.min(maxY, (sectionY << 4) + 15);
+        int fromZ = Math.max(minZ, sectionZ << 4);
+        int toZ = Math.min(maxZ, (sectionZ << 4) + 15);
+        if (fromX > toX || fromY > toY || fromZ > toZ) {
+            return;
+        }
+        if (data == null && defaultLevel == 0 && mergeMax) {
+            return;
+        }
+        int base = out.position();
+        int sizeX = maxX - minX + 1;
+        int sizeZ = maxZ - minZ + 1;
+        for (int y = fromY; y <= toY; y++) {
+            for (int z = fromZ; z <= toZ; z++) {
+                int outIndex = ((y - minY) * sizeZ + (z - minZ)) * sizeX + (fromX - minX);
+                int sectionIndex = ((y & 15) << 8) | ((z & 15) << 4) | (fromX & 15);
+                int x = fromX;
+                if (data != null && !mergeMax && (outIndex & 1) == 0 && (sectionIndex & 1) == 0) {
+                    // both nibble rows are aligned, copy whole bytes
+                    int pairs = (toX - x + 1) >> 1;
+                    for (int i = 0; i < pairs; i++) {
+                        out.put(base + (outIndex >> 1) + i, data[(sectionIndex >> 1) + i]);
+                    }
+                    outIndex += pairs << 1;
+                    sectionIndex += pairs << 1;
+                    x += pairs << 1;
+                }
+                for (; x <= toX; x++, outIndex++, sectionIndex++) {
+                    int level = data == null ? defaultLevel
+                            : (data[sectionIndex >> 1] >> ((sectionIndex & 1) << 2)) & 0xF;
+                    if (mergeMax) {
+                        int pos = base + (outIndex >> 1);
+                        int shift = (outIndex & 1) << 2;
+                        int value = out.get(pos);
+                        if (((value >> shift) & 0xF) >= level) {
+                            continue;
+                        }
+                        out.put(pos, (byte) ((value & ~(0xF << shift)) | (level << shift)));
+                    } else {
+                        setLightLevel(out, outIndex, level);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package ru.beykerykt.minecraft.lightapi.common.api.engine;
+
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.LongConsumer;
+
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.BlockPosition;
+
+/**
+ * Lazily evaluated shapes for light operations. A shape is a {@link Spliterator.OfLong} of block
+ * positions packed with {@link BlockPosition#asLong(int, int, int)}, positions are computed when they
+ * are consumed and nothing is stored.
+ */
+public final class LightShapes {
+
+    private LightShapes() {
+    }
+
+    /**
+     * Returns all positions of the cuboid, bounds are inclusive.
+     */
+    public static Spliterator.OfLong cuboid(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return new CuboidSpliterator(Math.min(minX, maxX), Math.min(minY, maxY), Math.min(minZ, maxZ),
+                Math.max(minX, maxX), Math.max(minY, maxY), Math.max(minZ, maxZ));
+    }
+
+    /**
+     * Returns all positions within the radius (in blocks) of the center.
+     */
+    public static Spliterator.OfLong sphere(int centerX, int centerY, int centerZ, int radius) {
+        return new SphereSpliterator(centerX, centerY, centerZ, Math.max(0, radius));
+    }
+
+    /**
+     * Wraps an iterator of packed positions, the size of such a shape is unknown.
+     */
+    public static Spliterator.OfLong of(PrimitiveIterator.OfLong positions) {
+        return Spliterators.spliteratorUnknownSize(positions, Spliterator.NONNULL);
+    }
+
+    private static class CuboidSpliterator extends Spliterators.AbstractLongSpliterator {
+
+        private final int mMinX;
+        private final int mMinY;
+        private final int mMaxX;
+        private final int mMaxY;
+        private final int mMaxZ;
+        private int mX;
+        private int mY;
+        private int mZ;
+        private long mRemaining;
+
+        CuboidSpliterator(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+            super((long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1),
+                    Spliterator.SIZED | Spliterator.DISTINCT | Spliterator.NONNULL);
+            this.mMinX = minX;
+            this.mMinY = minY;
+            this.mMaxX = maxX;
+            this.mMaxY = maxY;
+            this.mMaxZ = maxZ;
+            this.mX = minX;
+            this.mY = minY;
+            this.mZ = minZ;
+            this.mRemaining = super.estimateSize();
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if (mRemaining <= 0) {
+                return false;
+            }
+            action.accept(BlockPosition.asLong(mX, mY, mZ));
+            mRemaining--;
+            if (++mX > mMaxX) {
+                mX = mMinX;
+                if (++mY > mMaxY) {
+                    mY = mMinY;
+                    if (mZ < mMaxZ) {
+                        mZ++;
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public long estimateSize() {
+            return mRemaining;
+        }
+    }
+
+    private static class SphereSpliterator extends Spliterators.AbstractLongSpliterator {
+
+        private final int mCenterX;
+        private final int mCenterY;
+        private final int mCenterZ;
+        private final int mRadius;
+        private final long mRadiusSq;
+        private int mDx;
+        private int mDy;
+        private int mDz;
+        private int mRowHalfWidth;
+        private long mRemaining;
+        private boolean mDone;
+
+        SphereSpliterator(int centerX, int centerY, int centerZ, int radius) {
+            super(countPositions(radius), Spliterator.SIZED | Spliterator.DISTINCT | Spliterator.NONNULL);
+            this.mCenterX = centerX;
+            this.mCenterY = centerY;
+            this.mCenterZ = centerZ;
+            this.mRadius = radius;
+            this.mRadiusSq = (long) radius * radius;
+            this.mDz = -radius;
+            this.mDy = -radius;
+            this.mRemaining = super.estimateSize();
+            startRow();
+        }
+
+        private static long countPositions(int radius) {
+            long radiusSq = (long) radius * radius;
+            long count = 0;
+            for (int dz = -radius; dz <= radius; dz++) {
+                for (int dy = -radius; dy <= radius; dy++) {
+                    long rest = radiusSq - (long) dz * dz - (long) dy * dy;
+                    if (rest >= 0) {
+                        count += 2 * (long) Math.floor(Math.sqrt(rest)) + 1;
+                    }
+                }
+            }
+            return count;
+        }
+
+        // moves to the next row (dy, dz) that intersects the sphere
+        private void startRow() {
+            while (true) {
+                long rest = mRadiusSq - (long) mDz * mDz - (long) mDy * mDy;
+                if (rest >= 0) {
+                    mRowHalfWidth = (int) Math.floor(Math.sqrt(rest));
+                    mDx = -mRowHalfWidth;
+                    return;
+                }
+                if (!nextRow()) {
+                    return;
+                }
+            }
+        }
+
+        private boolean nextRow() {
+            if (++mDy > mRadius) {
+                mDy = -mRadius;
+                if (++mDz > mRadius) {
+                    mDone = true;
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if (mDone) {
+                return false;
+            }
+            action.accept(BlockPosition.asLong(mCenterX + mDx, mCenterY + mDy, mCenterZ + mDz));
+            mRemaining--;
+            if (++mDx > mRowHalfWidth) {
+                if (nextRow()) {
+                    startRow();
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public long estimateSize() {
+            return mRemaining;
+        }
+    }
+}
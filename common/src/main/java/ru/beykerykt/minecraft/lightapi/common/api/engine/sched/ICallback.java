@@ -24,7 +24,9 @@
 package ru.beykerykt.minecraft.lightapi.common.api.engine.sched;
 
 /**
- * Callback interface for async light engine operations
+ * Callback interface for async light engine operations. By default the result is reported on the
+ * thread that handles the request; with the async-callbacks option of the light engine it is
+ * reported on a background thread, in the order of the results.
  */
 public interface ICallback {
 
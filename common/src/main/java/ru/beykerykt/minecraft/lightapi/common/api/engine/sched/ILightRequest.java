@@ -0,0 +1,66 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package ru.beykerykt.minecraft.lightapi.common.api.engine.sched;
+
+/**
+ * Handle of a queued light edit. A cancelled edit stays in the queue as a tombstone and is skipped when
+ * the queue reaches it, so cancelling takes constant time. The callback of a cancelled edit receives
+ * {@link ru.beykerykt.minecraft.lightapi.common.api.ResultCode#CANCELLED}.
+ */
+public interface ILightRequest {
+
+    /**
+     * Deadline value of an edit that can be applied whenever the engine has time for it.
+     */
+    int NO_DEADLINE = -1;
+
+    /**
+     * Withdraws the edit if it is not applied yet.
+     *
+     * @return true if the edit was pending and will not be applied
+     */
+    boolean cancel();
+
+    /**
+     * N/A
+     */
+    boolean isCancelled();
+
+    /**
+     * Returns true while the edit waits in the queue.
+     */
+    boolean isPending();
+
+    /**
+     * Returns the supersession key of the edit, or null if it has no key.
+     */
+    Object getKey();
+
+    /**
+     * Returns the time in milliseconds by which the edit should be relit, or {@link Long#MAX_VALUE} if the
+     * edit has no deadline.
+     */
+    long getDeadline();
+}
@@ -0,0 +1,58 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.common.api.engine.sched;
+
+/**
+ * Types of schedulers that order and batch requests of scheduled light engines
+ */
+public enum SchedulerType {
+
+    /**
+     * Requests are handled by priority. Immediate requests and requests with immediate sending are handled
+     * first.
+     */
+    PRIORITY(1),
+
+    /**
+     * Requests are handled by the earliest deadline. Requests without a deadline age, so they are not
+     * starved.
+     */
+    DEADLINE(2),
+
+    /**
+     * Requests are handled in the order they are added and in large batches. Gives the best total
+     * throughput, but an immediate request may wait behind older requests.
+     */
+    THROUGHPUT(3);
+
+    private final int id;
+
+    SchedulerType(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+}
@@ -28,7 +28,12 @@ import java.util.UUID;
 import ru.beykerykt.minecraft.lightapi.common.api.extension.IExtension;
 import ru.beykerykt.minecraft.lightapi.common.internal.chunks.observer.IChunkObserver;
 import ru.beykerykt.minecraft.lightapi.common.internal.engine.ILightEngine;
+import ru.beykerykt.minecraft.lightapi.common.internal.index.LightIndex;
+import ru.beykerykt.minecraft.lightapi.common.internal.operation.LightOperationManager;
+import ru.beykerykt.minecraft.lightapi.common.internal.restore.LightRestorePipeline;
 import ru.beykerykt.minecraft.lightapi.common.internal.service.IBackgroundService;
+import ru.beykerykt.minecraft.lightapi.common.internal.source.LightSourceManager;
+import ru.beykerykt.minecraft.lightapi.common.internal.storage.ILightStorage;
 
 public interface IPlatformImpl {
 
@@ -107,6 +112,32 @@ public interface IPlatformImpl {
      */
     IBackgroundService getBackgroundService();
 
+    /**
+     * Returns storage for lights with {@link ru.beykerykt.minecraft.lightapi.common.api.engine.LightFlag}
+     * USE_STORAGE_PROVIDER flag. May be null if the storage is disabled.
+     */
+    ILightStorage getLightStorage();
+
+    /**
+     * Returns index of the placed custom lights. May be null if the index is disabled.
+     */
+    LightIndex getLightIndex();
+
+    /**
+     * N/A
+     */
+    LightRestorePipeline getRestorePipeline();
+
+    /**
+     * N/A
+     */
+    LightSourceManager getLightSourceManager();
+
+    /**
+     * N/A
+     */
+    LightOperationManager getLightOperationManager();
+
     /**
      * N/A
      */
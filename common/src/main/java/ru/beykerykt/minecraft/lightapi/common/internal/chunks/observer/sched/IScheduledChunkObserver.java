@@ -24,6 +24,7 @@
 package ru.beykerykt.minecraft.lightapi.common.internal.chunks.observer.sched;
 
 import ru.beykerykt.minecraft.lightapi.common.internal.chunks.observer.IChunkObserver;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongIntHashMap;
 
 public interface IScheduledChunkObserver extends IChunkObserver, Runnable {
 
@@ -36,4 +37,15 @@ public interface IScheduledChunkObserver extends IChunkObserver, Runnable {
      * N/A
      */
     int notifyUpdateChunks(String worldName, int blockX, int blockY, int blockZ, int lightLevel, int lightFlags);
+
+    /**
+     * Marks the chunks around all lights for update in one critical section, so they are sent together.
+     * The keys are packed block positions, the values are the light levels.
+     */
+    int notifyUpdateChunks(String worldName, LongIntHashMap lights, int lightFlags);
+
+    /**
+     * Drops the observed chunks without sending them
+     */
+    void discardObservedChunks();
 }
@@ -28,15 +28,22 @@ import java.util.Iterator;
 import java.util.Map;
 
 import ru.beykerykt.minecraft.lightapi.common.api.ResultCode;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.LightFlag;
 import ru.beykerykt.minecraft.lightapi.common.internal.IPlatformImpl;
 import ru.beykerykt.minecraft.lightapi.common.internal.chunks.data.IChunkData;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.propagation.IOpacityProvider;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.propagation.LightFrontierTracer;
 import ru.beykerykt.minecraft.lightapi.common.internal.service.IBackgroundService;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.BlockPosition;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongIntHashMap;
 
 public abstract class ScheduledChunkObserverImpl implements IScheduledChunkObserver {
 
     private final IBackgroundService mBackgroundService;
     private final Map<Long, IChunkData> observedChunks = new HashMap<>();
     private final IPlatformImpl mPlatformImpl;
+    // Main thread and background thread may notify at the same time
+    private final ThreadLocal<LightFrontierTracer> mTracer = ThreadLocal.withInitial(LightFrontierTracer::new);
     private boolean isBusy = false;
 
     public ScheduledChunkObserverImpl(IPlatformImpl platform, IBackgroundService service) {
@@ -64,6 +71,17 @@ public abstract class ScheduledChunkObserverImpl implements IScheduledChunkObser
         observedChunks.clear();
     }
 
+    @Override
+    public void discardObservedChunks() {
+        if (getBackgroundService().isMainThread()) {
+            observedChunks.clear();
+        } else {
+            synchronized (observedChunks) {
+                observedChunks.clear();
+            }
+        }
+    }
+
     @Override
     public boolean isBusy() {
         return isBusy;
@@ -85,6 +103,49 @@ public abstract class ScheduledChunkObserverImpl implements IScheduledChunkObser
 
     protected abstract boolean isChunkLoaded(String worldName, int chunkX, int chunkZ);
 
+    /**
+     * Provides the opacity of blocks for the precise computation of the affected sections.
+     *
+     * @return null if the precise computation is disabled
+     */
+    protected IOpacityProvider getOpacityProvider(String worldName) {
+        return null;
+    }
+
+    /**
+     * Traces the light of the given level through the blocks of the world.
+     *
+     * @return tracer with the reached sections, or null if the precise computation is not available. The
+     * tracer is reused by the next call from the same thread.
+     */
+    protected LightFrontierTracer traceLight(String worldName, int blockX, int blockY, int blockZ, int lightLevel,
+            int lightFlags) {
+        // Sky light is not traced, it does not fade when going down
+        if (lightFlags != LightFlag.BLOCK_LIGHTING) {
+            return null;
+        }
+        IOpacityProvider provider = getOpacityProvider(worldName);
+        if (provider == null) {
+            return null;
+        }
+        LightFrontierTracer tracer = mTracer.get();
+        tracer.trace(provider, blockX, blockY, blockZ, lightLevel);
+        return tracer;
+    }
+
+    private void markSectionForUpdate(String worldName, int chunkX, int chunkZ, int sectionY, int lightType) {
+        long chunkCoord = chunkCoordToLong(chunkX, chunkZ);
+        IChunkData data;
+        if (observedChunks.containsKey(chunkCoord)) {
+            data = observedChunks.get(chunkCoord);
+        } else {
+            data = createChunkData(worldName, chunkX, chunkZ);
+            // register new chunk data
+            observedChunks.put(chunkCoord, data);
+        }
+        data.markSectionForUpdate(lightType, sectionY);
+    }
+
     /* @hide */
     private int notifyUpdateChunksLocked(String worldName, int blockX, int blockY, int blockZ, int lightLevel,
             int lightType) {
@@ -92,6 +153,20 @@ public abstract class ScheduledChunkObserverImpl implements IScheduledChunkObser
             return ResultCode.WORLD_NOT_AVAILABLE;
         }
 
+        LightFrontierTracer tracer = traceLight(worldName, blockX, blockY, blockZ, lightLevel, lightType);
+        if (tracer != null) {
+            // mark only the sections reached by the light
+            tracer.forEachSection(sectionKey -> {
+                int chunkX = BlockPosition.unpackLongX(sectionKey);
+                int sectionY = BlockPosition.unpackLongY(sectionKey);
+                int chunkZ = BlockPosition.unpackLongZ(sectionKey);
+                if (isValidChunkSection(worldName, sectionY) && isChunkLoaded(worldName, chunkX, chunkZ)) {
+                    markSectionForUpdate(worldName, chunkX, chunkZ, sectionY, lightType);
+                }
+            });
+            return ResultCode.SUCCESS;
+        }
+
         int finalLightLevel = lightLevel < 0 ? 0 : Math.min(lightLevel, 15);
 
         // start watching chunks
@@ -111,16 +186,7 @@ public abstract class ScheduledChunkObserverImpl implements IScheduledChunkObser
                             if (lightLevelZ > getDeltaLight(blockY & 15, dY)) {
                                 int sectionY = (blockY >> 4) + dY;
                                 if (isValidChunkSection(worldName, sectionY)) {
-                                    long chunkCoord = chunkCoordToLong(chunkX, chunkZ);
-                                    IChunkData data;
-                                    if (observedChunks.containsKey(chunkCoord)) {
-                                        data = observedChunks.get(chunkCoord);
-                                    } else {
-                                        data = createChunkData(worldName, chunkX, chunkZ);
-                                        // register new chunk data
-                                        observedChunks.put(chunkCoord, data);
-                                    }
-                                    data.markSectionForUpdate(lightType, sectionY);
+                                    markSectionForUpdate(worldName, chunkX, chunkZ, sectionY, lightType);
                                 }
                             }
                         }
@@ -143,6 +209,27 @@ public abstract class ScheduledChunkObserverImpl implements IScheduledChunkObser
         }
     }
 
+    /* @hide */
+    private int notifyUpdateChunksLocked(String worldName, LongIntHashMap lights, int lightFlags) {
+        if (!getPlatformImpl().isWorldAvailable(worldName)) {
+            return ResultCode.WORLD_NOT_AVAILABLE;
+        }
+        lights.forEach((pos, lightLevel) -> notifyUpdateChunksLocked(worldName, BlockPosition.unpackLongX(pos),
+                BlockPosition.unpackLongY(pos), BlockPosition.unpackLongZ(pos), lightLevel, lightFlags));
+        return ResultCode.SUCCESS;
+    }
+
+    @Override
+    public int notifyUpdateChunks(String worldName, LongIntHashMap lights, int lightFlags) {
+        if (getBackgroundService().isMainThread()) {
+            return notifyUpdateChunksLocked(worldName, lights, lightFlags);
+        } else {
+            synchronized (observedChunks) {
+                return notifyUpdateChunksLocked(worldName, lights, lightFlags);
+            }
+        }
+    }
+
     private void handleChunksLocked() {
         isBusy = true;
         Iterator it = observedChunks.entrySet().iterator();
@@ -23,10 +23,14 @@
  */
 package ru.beykerykt.minecraft.lightapi.common.internal.engine;
 
+import java.nio.ByteBuffer;
+
 import ru.beykerykt.minecraft.lightapi.common.api.engine.EditPolicy;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.RelightPolicy;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.SendPolicy;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.ICallback;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.ILightRequest;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongIntHashMap;
 
 public interface ILightEngine {
 
@@ -68,6 +72,19 @@ public interface ILightEngine {
      */
     int getLightLevel(String worldName, int blockX, int blockY, int blockZ, int lightFlags);
 
+    /**
+     * Gets the levels of light in the given region with specific flags. Levels are packed as nibbles
+     * into the buffer, see {@link ru.beykerykt.minecraft.lightapi.common.api.engine.LightLevelBuffer}.
+     */
+    int getLightLevels(String worldName, int minX, int minY, int minZ, int maxX, int maxY, int maxZ, int lightFlags,
+            ByteBuffer out);
+
+    /**
+     * Returns true if {@link #getLightLevels} copies whole sections at once. Otherwise it reads block by
+     * block and a bulk read is not cheaper than a few single reads.
+     */
+    boolean isSectionCopySupported();
+
     /**
      * Placement of a specific type of light with a given level of illumination in the named world in
      * certain coordinates with the return code result.
@@ -75,11 +92,45 @@ public interface ILightEngine {
     int setLightLevel(String worldName, int blockX, int blockY, int blockZ, int lightLevel, int lightFlags,
             EditPolicy editPolicy, SendPolicy sendPolicy, ICallback callback);
 
+    /**
+     * Same as setLightLevel, but returns a handle that can cancel the edit while it is queued. A request with
+     * a non-null key supersedes the pending request with the same key, the old one is cancelled. The deadline is
+     * the number of ticks in which the edit should be relit, or {@link ILightRequest#NO_DEADLINE}.
+     *
+     * @return handle of the request, or null if the world is not available
+     */
+    ILightRequest submitLightLevel(String worldName, int blockX, int blockY, int blockZ, int lightLevel,
+            int lightFlags, EditPolicy editPolicy, SendPolicy sendPolicy, Object key, int deadlineTicks,
+            ICallback callback);
+
     /**
      * Sets "directly" the level of light in given coordinates without additional processing.
      */
     int setRawLightLevel(String worldName, int blockX, int blockY, int blockZ, int lightLevel, int lightFlags);
 
+    /**
+     * Sets "directly" the level of light in given coordinates without additional processing. Returns
+     * {@link ru.beykerykt.minecraft.lightapi.common.api.ResultCode#MOVED_TO_DEFERRED} if the edit is
+     * postponed, the real result is passed to the callback later.
+     */
+    int setRawLightLevel(String worldName, int blockX, int blockY, int blockZ, int lightLevel, int lightFlags,
+            ICallback callback);
+
+    /**
+     * Queues the lights of one chunk restored from light providers as a low priority batch. The keys are
+     * {@link ru.beykerykt.minecraft.lightapi.common.internal.utils.BlockPosition#asLong(int, int, int)}, the
+     * values are the light level and the light flags shifted by 4 bits. Lights with pending edits are skipped.
+     */
+    int restoreLights(String worldName, LongIntHashMap lights);
+
+    /**
+     * Applies the lights of a transaction at once: raw levels are written in one critical section of the
+     * request queue, the world is relit once and all affected sections are marked for sending together.
+     * The keys and values are the same as in {@link #restoreLights(String, LongIntHashMap)}. Queued edits of
+     * the same positions are older than the transaction and are dropped.
+     */
+    int commitLights(String worldName, LongIntHashMap lights);
+
     /**
      * Performs re-illumination of the light in the given coordinates.
      */
@@ -27,7 +27,8 @@ public enum LightEngineType {
     UNKNOWN(0),
     VANILLA(1),
     STARLIGHT(2),
-    COMPATIBILITY(3);
+    COMPATIBILITY(3),
+    VIRTUAL(4);
 
     private final int id;
 
@@ -0,0 +1,99 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package ru.beykerykt.minecraft.lightapi.common.internal.engine;
+
+import ru.beykerykt.minecraft.lightapi.common.api.ResultCode;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.ILightTransaction;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.LightFlag;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.BlockPosition;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongIntHashMap;
+
+public class LightTransactionImpl implements ILightTransaction {
+
+    private final ILightEngine mLightEngine;
+    private final String mWorldName;
+    // position -> light level and light flags shifted by 4 bits
+    private LongIntHashMap mEdits = new LongIntHashMap();
+
+    public LightTransactionImpl(ILightEngine lightEngine, String worldName) {
+        this.mLightEngine = lightEngine;
+        this.mWorldName = worldName;
+    }
+
+    private void checkOpen() {
+        if (mEdits == null) {
+            throw new IllegalStateException("Transaction is already closed");
+        }
+    }
+
+    @Override
+    public String getWorldName() {
+        return mWorldName;
+    }
+
+    @Override
+    public void setLightLevel(int blockX, int blockY, int blockZ, int lightLevel) {
+        setLightLevel(blockX, blockY, blockZ, lightLevel, LightFlag.BLOCK_LIGHTING);
+    }
+
+    @Override
+    public synchronized void setLightLevel(int blockX, int blockY, int blockZ, int lightLevel, int lightFlags) {
+        checkOpen();
+        if (lightLevel < 0 || lightLevel > 15) {
+            throw new IllegalArgumentException("lightLevel must be in range 0 - 15");
+        }
+        mEdits.put(BlockPosition.asLong(blockX, blockY, blockZ), lightLevel | (lightFlags << 4));
+    }
+
+    @Override
+    public synchronized int getEditCount() {
+        return mEdits == null ? 0 : mEdits.size();
+    }
+
+    @Override
+    public int commit() {
+        LongIntHashMap edits;
+        synchronized (this) {
+            checkOpen();
+            edits = mEdits;
+            mEdits = null;
+        }
+        if (edits.isEmpty()) {
+            return ResultCode.SUCCESS;
+        }
+        return mLightEngine.commitLights(mWorldName, edits);
+    }
+
+    @Override
+    public synchronized void rollback() {
+        checkOpen();
+        mEdits = null;
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return mEdits != null;
+    }
+}
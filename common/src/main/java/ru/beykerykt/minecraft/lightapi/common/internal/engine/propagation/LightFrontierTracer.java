@@ -0,0 +1,200 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.common.internal.engine.propagation;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.BlockPosition;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongIntHashMap;
+
+/**
+ * Traces the area which can be reached by the light of one point, taking into account the opacity of the
+ * blocks around. It is used to find the minimal set of chunk sections affected by a light change.
+ * <p>
+ * The instance is reusable but not thread safe.
+ */
+public class LightFrontierTracer {
+
+    private static final int MAX_RADIUS = 15;
+    private static final int SIZE = MAX_RADIUS * 2 + 1;
+
+    // Offsets of the 6 neighbours: -x, +x, -z, +z, -y, +y
+    private static final int[] OFFSET_X = {-1, 1, 0, 0, 0, 0};
+    private static final int[] OFFSET_Y = {0, 0, 0, 0, -1, 1};
+    private static final int[] OFFSET_Z = {0, 0, -1, 1, 0, 0};
+
+    private final byte[] mLevels = new byte[SIZE * SIZE * SIZE];
+    // Blocks are processed from the highest level, so the first level set for a block is final
+    private final int[][] mBuckets = new int[16][];
+    private final int[] mBucketSizes = new int[16];
+    private final LongIntHashMap mSections = new LongIntHashMap();
+    private int mVisitedCount;
+    private int mSourceX, mSourceZ;
+    private int mMinX, mMinY, mMinZ;
+    private int mMaxX, mMaxY, mMaxZ;
+
+    public LightFrontierTracer() {
+        for (int i = 0; i < mBuckets.length; i++) {
+            mBuckets[i] = new int[64];
+        }
+    }
+
+    private static int index(int dx, int dy, int dz) {
+        return ((dy + MAX_RADIUS) * SIZE + dz + MAX_RADIUS) * SIZE + dx + MAX_RADIUS;
+    }
+
+    private void push(int level, int index) {
+        int[] bucket = mBuckets[level];
+        int size = mBucketSizes[level];
+        if (size == bucket.length) {
+            bucket = mBuckets[level] = Arrays.copyOf(bucket, size << 1);
+        }
+        bucket[size] = index;
+        mBucketSizes[level] = size + 1;
+    }
+
+    private void visit(int blockX, int blockY, int blockZ) {
+        mVisitedCount++;
+        mSections.put(LightSectionStorage.getSectionKey(blockX >> 4, blockY >> 4, blockZ >> 4), 1);
+        mMinX = Math.min(mMinX, blockX);
+        mMinY = Math.min(mMinY, blockY);
+        mMinZ = Math.min(mMinZ, blockZ);
+        mMaxX = Math.max(mMaxX, blockX);
+        mMaxY = Math.max(mMaxY, blockY);
+        mMaxZ = Math.max(mMaxZ, blockZ);
+    }
+
+    /**
+     * Traces the light of the given level placed at the given position. The opacity of the source block
+     * itself is ignored.
+     *
+     * @return the number of blocks reached by the light
+     */
+    public int trace(IOpacityProvider provider, int blockX, int blockY, int blockZ, int lightLevel) {
+        reset(blockX, blockY, blockZ);
+        int finalLightLevel = lightLevel < 0 ? 0 : Math.min(lightLevel, 15);
+        if (finalLightLevel == 0) {
+            return 0;
+        }
+        int sourceIndex = index(0, 0, 0);
+        mLevels[sourceIndex] = (byte) finalLightLevel;
+        visit(blockX, blockY, blockZ);
+        push(finalLightLevel, sourceIndex);
+        for (int level = finalLightLevel; level > 1; level--) {
+            int[] bucket = mBuckets[level];
+            // Neighbours always get a lower level, so the current bucket does not grow while it is iterated
+            for (int i = 0; i < mBucketSizes[level]; i++) {
+                int index = bucket[i];
+                int dx = index % SIZE - MAX_RADIUS;
+                int dz = (index / SIZE) % SIZE - MAX_RADIUS;
+                int dy = index / (SIZE * SIZE) - MAX_RADIUS;
+                for (int dir = 0; dir < 6; dir++) {
+                    int nx = dx + OFFSET_X[dir];
+                    int ny = dy + OFFSET_Y[dir];
+                    int nz = dz + OFFSET_Z[dir];
+                    int neighbourIndex = index(nx, ny, nz);
+                    if (mLevels[neighbourIndex] != 0) {
+                        continue;
+                    }
+                    int x = blockX + nx;
+                    int y = blockY + ny;
+                    int z = blockZ + nz;
+                    int neighbourLevel = level - Math.max(1, provider.getOpacity(x, y, z));
+                    if (neighbourLevel <= 0) {
+                        continue;
+                    }
+                    mLevels[neighbourIndex] = (byte) neighbourLevel;
+                    visit(x, y, z);
+                    push(neighbourLevel, neighbourIndex);
+                }
+            }
+        }
+        return mVisitedCount;
+    }
+
+    private void reset(int blockX, int blockY, int blockZ) {
+        for (int level = 0; level < mBucketSizes.length; level++) {
+            int[] bucket = mBuckets[level];
+            for (int i = 0; i < mBucketSizes[level]; i++) {
+                mLevels[bucket[i]] = 0;
+            }
+            mBucketSizes[level] = 0;
+        }
+        mSections.clear();
+        mVisitedCount = 0;
+        mSourceX = blockX;
+        mSourceZ = blockZ;
+        mMinX = mMaxX = blockX;
+        mMinY = mMaxY = blockY;
+        mMinZ = mMaxZ = blockZ;
+    }
+
+    /**
+     * N/A
+     */
+    public int getSectionCount() {
+        return mSections.size();
+    }
+
+    /**
+     * Iterates the sections reached by the last traced light. Keys can be unpacked by {@link BlockPosition}.
+     */
+    public void forEachSection(LongConsumer consumer) {
+        mSections.forEach((key, value) -> consumer.accept(key));
+    }
+
+    /**
+     * N/A
+     *
+     * @return the largest horizontal distance between the source and a block reached by the last traced light
+     */
+    public int getHorizontalRadius() {
+        return Math.max(Math.max(mSourceX - mMinX, mMaxX - mSourceX), Math.max(mSourceZ - mMinZ, mMaxZ - mSourceZ));
+    }
+
+    public int getMinX() {
+        return mMinX;
+    }
+
+    public int getMinY() {
+        return mMinY;
+    }
+
+    public int getMinZ() {
+        return mMinZ;
+    }
+
+    public int getMaxX() {
+        return mMaxX;
+    }
+
+    public int getMaxY() {
+        return mMaxY;
+    }
+
+    public int getMaxZ() {
+        return mMaxZ;
+    }
+}
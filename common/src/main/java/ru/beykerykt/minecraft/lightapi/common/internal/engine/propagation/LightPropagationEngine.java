@@ -0,0 +1,287 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.common.internal.engine.propagation;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.BlockPosition;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongIntHashMap;
+
+/**
+ * Server independent breadth-first light propagation over {@link LightSectionStorage}. Light sources
+ * are set with {@link #setLightLevel(int, int, int, int)} and spread by {@link #propagate()}: all
+ * decreases first, then all increases. The engine remembers its sources, so a removed light does not
+ * erase the light of the others. Sections whose values were changed are collected and can be read
+ * with {@link #forEachChangedSection(LongConsumer)}.
+ *
+ * <p>Queue entries are packed into longs relative to the first queued position of the batch, so one
+ * batch must stay within 32767 blocks of it horizontally. Not thread-safe.
+ */
+public class LightPropagationEngine {
+
+    // Queue entry layout (low to high bits):
+    // | x - originX + 32768 (16) | z - originZ + 32768 (16) | y + 2048 (12) | level (4) | directions (6) | source (1) |
+    private static final int COORD_OFFSET = 32768;
+    private static final int COORD_MASK = 0xFFFF;
+    private static final int Y_OFFSET = 2048;
+    private static final int Y_MASK = 0xFFF;
+    private static final int SHIFT_Z = 16;
+    private static final int SHIFT_Y = 32;
+    private static final int SHIFT_LEVEL = 44;
+    private static final int SHIFT_DIRECTIONS = 48;
+    // The level of the entry must be written into the block, other entries are already written
+    private static final long FLAG_SOURCE = 1L << 54;
+
+    // -x, +x, -y, +y, -z, +z. The opposite direction is (index ^ 1).
+    private static final int[] DIRECTION_X = {-1, 1, 0, 0, 0, 0};
+    private static final int[] DIRECTION_Y = {0, 0, -1, 1, 0, 0};
+    private static final int[] DIRECTION_Z = {0, 0, 0, 0, -1, 1};
+    private static final int ALL_DIRECTIONS = (1 << 6) - 1;
+
+    private final LightSectionStorage mStorage;
+    private final IOpacityProvider mOpacityProvider;
+    private final LongIntHashMap mChangedSections = new LongIntHashMap();
+    // packed block position -> light level
+    private final LongIntHashMap mSources = new LongIntHashMap();
+    private final LongIntHashMap mPendingSources = new LongIntHashMap();
+
+    private long[] mIncreaseQueue = new long[256];
+    private int mIncreaseSize;
+    private long[] mDecreaseQueue = new long[256];
+    private int mDecreaseSize;
+
+    private boolean mHasOrigin;
+    private int mOriginX;
+    private int mOriginZ;
+
+    public LightPropagationEngine(LightSectionStorage storage, IOpacityProvider opacityProvider) {
+        this.mStorage = storage;
+        this.mOpacityProvider = opacityProvider;
+    }
+
+    public LightSectionStorage getStorage() {
+        return mStorage;
+    }
+
+    public int getLightLevel(int blockX, int blockY, int blockZ) {
+        return mStorage.getLightLevel(blockX, blockY, blockZ);
+    }
+
+    /**
+     * Sets the level of the light source in the block, zero removes the source. The light is spread on
+     * {@link #propagate()}, the last edit of the same block wins.
+     */
+    public void setLightLevel(int blockX, int blockY, int blockZ, int lightLevel) {
+        if (lightLevel < 0 || lightLevel > 15) {
+            throw new IllegalArgumentException("lightLevel must be in range 0 - 15");
+        }
+        mPendingSources.put(BlockPosition.asLong(blockX, blockY, blockZ), lightLevel);
+    }
+
+    public int getSourceLevel(int blockX, int blockY, int blockZ) {
+        return mSources.get(BlockPosition.asLong(blockX, blockY, blockZ), 0);
+    }
+
+    public boolean hasPendingChanges() {
+        return !mPendingSources.isEmpty();
+    }
+
+    /**
+     * Spreads all pending changes.
+     *
+     * @return the number of processed queue entries
+     */
+    public int propagate() {
+        mPendingSources.forEach(this::applySource);
+        mPendingSources.clear();
+        int processed = performDecrease();
+        processed += performIncrease();
+        mHasOrigin = false;
+        return processed;
+    }
+
+    private void applySource(long pos, int lightLevel) {
+        int oldLightLevel = mSources.get(pos, 0);
+        if (lightLevel == 0) {
+            mSources.remove(pos);
+        } else {
+            mSources.put(pos, lightLevel);
+        }
+        int blockX = BlockPosition.unpackLongX(pos);
+        int blockY = BlockPosition.unpackLongY(pos);
+        int blockZ = BlockPosition.unpackLongZ(pos);
+        if (lightLevel < oldLightLevel) {
+            int currentLightLevel = mStorage.getLightLevel(blockX, blockY, blockZ);
+            writeLightLevel(blockX, blockY, blockZ, 0);
+            mDecreaseQueue = append(mDecreaseQueue, mDecreaseSize++,
+                    encode(blockX, blockY, blockZ, currentLightLevel, ALL_DIRECTIONS));
+        }
+        if (lightLevel > 0) {
+            // The level is written when the entry is polled, after all decreases are done
+            mIncreaseQueue = append(mIncreaseQueue, mIncreaseSize++,
+                    encode(blockX, blockY, blockZ, lightLevel, ALL_DIRECTIONS) | FLAG_SOURCE);
+        }
+    }
+
+    public int getChangedSectionCount() {
+        return mChangedSections.size();
+    }
+
+    /**
+     * Passes the keys ({@link LightSectionStorage#getSectionKey(int, int, int)}) of sections changed since
+     * the last {@link #clearChangedSections()}.
+     */
+    public void forEachChangedSection(LongConsumer consumer) {
+        mChangedSections.forEach((key, value) -> consumer.accept(key));
+    }
+
+    public void clearChangedSections() {
+        mChangedSections.clear();
+    }
+
+    private static long[] append(long[] queue, int index, long entry) {
+        if (index == queue.length) {
+            queue = Arrays.copyOf(queue, queue.length << 1);
+        }
+        queue[index] = entry;
+        return queue;
+    }
+
+    private long encode(int blockX, int blockY, int blockZ, int lightLevel, int directions) {
+        if (!mHasOrigin) {
+            mOriginX = blockX;
+            mOriginZ = blockZ;
+            mHasOrigin = true;
+        }
+        int relX = blockX - mOriginX + COORD_OFFSET;
+        int relZ = blockZ - mOriginZ + COORD_OFFSET;
+        int relY = blockY + Y_OFFSET;
+        if ((relX & ~COORD_MASK) != 0 || (relZ & ~COORD_MASK) != 0 || (relY & ~Y_MASK) != 0) {
+            throw new IllegalArgumentException(
+                    "Position (" + blockX + ", " + blockY + ", " + blockZ + ") is out of the propagation range");
+        }
+        return relX | ((long) relZ << SHIFT_Z) | ((long) relY << SHIFT_Y) | ((long) lightLevel << SHIFT_LEVEL) | (
+                (long) directions << SHIFT_DIRECTIONS);
+    }
+
+    private void writeLightLevel(int blockX, int blockY, int blockZ, int lightLevel) {
+        mStorage.setLightLevel(blockX, blockY, blockZ, lightLevel);
+        mChangedSections.put(LightSectionStorage.getSectionKey(blockX >> 4, blockY >> 4, blockZ >> 4), 0);
+    }
+
+    private int performIncrease() {
+        int index = 0;
+        // The queue may grow while it is processed
+        while (index < mIncreaseSize) {
+            long entry = mIncreaseQueue[index++];
+            int blockX = (int) (entry & COORD_MASK) - COORD_OFFSET + mOriginX;
+            int blockZ = (int) ((entry >>> SHIFT_Z) & COORD_MASK) - COORD_OFFSET + mOriginZ;
+            int blockY = (int) ((entry >>> SHIFT_Y) & Y_MASK) - Y_OFFSET;
+            int lightLevel = (int) ((entry >>> SHIFT_LEVEL) & 0xF);
+            int directions = (int) (entry >>> SHIFT_DIRECTIONS) & ALL_DIRECTIONS;
+
+            int currentLightLevel = mStorage.getLightLevel(blockX, blockY, blockZ);
+            if ((entry & FLAG_SOURCE) != 0) {
+                if (currentLightLevel > lightLevel) {
+                    // already lit by a brighter source
+                    continue;
+                } else if (currentLightLevel < lightLevel) {
+                    writeLightLevel(blockX, blockY, blockZ, lightLevel);
+                }
+            } else if (currentLightLevel != lightLevel) {
+                // the block was changed after the entry was queued
+                continue;
+            }
+
+            for (int direction = 0; direction < 6; direction++) {
+                if ((directions & (1 << direction)) == 0) {
+                    continue;
+                }
+                int neighbourX = blockX + DIRECTION_X[direction];
+                int neighbourY = blockY + DIRECTION_Y[direction];
+                int neighbourZ = blockZ + DIRECTION_Z[direction];
+                int opacity = mOpacityProvider.getOpacity(neighbourX, neighbourY, neighbourZ);
+                int targetLightLevel = lightLevel - Math.max(1, opacity);
+                if (targetLightLevel <= 0) {
+                    continue;
+                }
+                if (mStorage.getLightLevel(neighbourX, neighbourY, neighbourZ) >= targetLightLevel) {
+                    continue;
+                }
+                writeLightLevel(neighbourX, neighbourY, neighbourZ, targetLightLevel);
+                mIncreaseQueue = append(mIncreaseQueue, mIncreaseSize++,
+                        encode(neighbourX, neighbourY, neighbourZ, targetLightLevel,
+                                ALL_DIRECTIONS & ~(1 << (direction ^ 1))));
+            }
+        }
+        mIncreaseSize = 0;
+        return index;
+    }
+
+    private int performDecrease() {
+        int index = 0;
+        while (index < mDecreaseSize) {
+            long entry = mDecreaseQueue[index++];
+            int blockX = (int) (entry & COORD_MASK) - COORD_OFFSET + mOriginX;
+            int blockZ = (int) ((entry >>> SHIFT_Z) & COORD_MASK) - COORD_OFFSET + mOriginZ;
+            int blockY = (int) ((entry >>> SHIFT_Y) & Y_MASK) - Y_OFFSET;
+            int lightLevel = (int) ((entry >>> SHIFT_LEVEL) & 0xF);
+            int directions = (int) (entry >>> SHIFT_DIRECTIONS) & ALL_DIRECTIONS;
+
+            for (int direction = 0; direction < 6; direction++) {
+                if ((directions & (1 << direction)) == 0) {
+                    continue;
+                }
+                int neighbourX = blockX + DIRECTION_X[direction];
+                int neighbourY = blockY + DIRECTION_Y[direction];
+                int neighbourZ = blockZ + DIRECTION_Z[direction];
+                int neighbourLightLevel = mStorage.getLightLevel(neighbourX, neighbourY, neighbourZ);
+                if (neighbourLightLevel == 0) {
+                    continue;
+                }
+                int opacity = mOpacityProvider.getOpacity(neighbourX, neighbourY, neighbourZ);
+                int targetLightLevel = lightLevel - Math.max(1, opacity);
+                if (neighbourLightLevel > targetLightLevel) {
+                    // Lit by another source, spread it again into the darkened area
+                    mIncreaseQueue = append(mIncreaseQueue, mIncreaseSize++,
+                            encode(neighbourX, neighbourY, neighbourZ, neighbourLightLevel, ALL_DIRECTIONS));
+                    continue;
+                }
+                writeLightLevel(neighbourX, neighbourY, neighbourZ, 0);
+                int emission = Math.max(mOpacityProvider.getEmission(neighbourX, neighbourY, neighbourZ),
+                        mSources.get(BlockPosition.asLong(neighbourX, neighbourY, neighbourZ), 0));
+                if (emission > 0) {
+                    mIncreaseQueue = append(mIncreaseQueue, mIncreaseSize++,
+                            encode(neighbourX, neighbourY, neighbourZ, emission, ALL_DIRECTIONS) | FLAG_SOURCE);
+                }
+                mDecreaseQueue = append(mDecreaseQueue, mDecreaseSize++,
+                        encode(neighbourX, neighbourY, neighbourZ, neighbourLightLevel,
+                                ALL_DIRECTIONS & ~(1 << (direction ^ 1))));
+            }
+        }
+        mDecreaseSize = 0;
+        return index;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.common.internal.engine.propagation;
+
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.BlockPosition;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongObjectHashMap;
+
+/**
+ * Light levels of one light type, stored by chunk sections. Missing sections are considered as
+ * filled by zero level and created on the first write.
+ */
+public class LightSectionStorage {
+
+    private final LongObjectHashMap<NibbleArray> mSections = new LongObjectHashMap<>();
+    // Neighbour lookups mostly hit the same section
+    private long mLastKey;
+    private NibbleArray mLastSection;
+
+    public static long getSectionKey(int sectionX, int sectionY, int sectionZ) {
+        return BlockPosition.asLong(sectionX, sectionY, sectionZ);
+    }
+
+    private NibbleArray lookup(long key) {
+        if (mLastSection != null && mLastKey == key) {
+            return mLastSection;
+        }
+        NibbleArray section = mSections.get(key);
+        if (section != null) {
+            mLastKey = key;
+            mLastSection = section;
+        }
+        return section;
+    }
+
+    public NibbleArray getSection(int sectionX, int sectionY, int sectionZ) {
+        return lookup(getSectionKey(sectionX, sectionY, sectionZ));
+    }
+
+    public NibbleArray getOrCreateSection(int sectionX, int sectionY, int sectionZ) {
+        long key = getSectionKey(sectionX, sectionY, sectionZ);
+        NibbleArray section = lookup(key);
+        if (section == null) {
+            section = new NibbleArray();
+            mSections.put(key, section);
+            mLastKey = key;
+            mLastSection = section;
+        }
+        return section;
+    }
+
+    public void setSection(int sectionX, int sectionY, int sectionZ, NibbleArray section) {
+        mSections.put(getSectionKey(sectionX, sectionY, sectionZ), section);
+        mLastSection = null;
+    }
+
+    public NibbleArray removeSection(int sectionX, int sectionY, int sectionZ) {
+        mLastSection = null;
+        return mSections.remove(getSectionKey(sectionX, sectionY, sectionZ));
+    }
+
+    public int getSectionCount() {
+        return mSections.size();
+    }
+
+    public void clear() {
+        mSections.clear();
+        mLastSection = null;
+    }
+
+    public int getLightLevel(int blockX, int blockY, int blockZ) {
+        NibbleArray section = getSection(blockX >> 4, blockY >> 4, blockZ >> 4);
+        if (section == null) {
+            return 0;
+        }
+        return section.get(blockX & 15, blockY & 15, blockZ & 15);
+    }
+
+    public void setLightLevel(int blockX, int blockY, int blockZ, int lightLevel) {
+        NibbleArray section;
+        if (lightLevel == 0) {
+            section = getSection(blockX >> 4, blockY >> 4, blockZ >> 4);
+            if (section == null) {
+                return;
+            }
+        } else {
+            section = getOrCreateSection(blockX >> 4, blockY >> 4, blockZ >> 4);
+        }
+        section.set(blockX & 15, blockY & 15, blockZ & 15, lightLevel);
+    }
+}
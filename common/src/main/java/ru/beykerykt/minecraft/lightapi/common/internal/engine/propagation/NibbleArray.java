@@ -0,0 +1,92 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.common.internal.engine.propagation;
+
+import java.util.Arrays;
+
+/**
+ * 4-bit light levels of a 16x16x16 chunk section. The layout matches the vanilla one: index is
+ * {@code y << 8 | z << 4 | x}, the low nibble of a byte goes first.
+ */
+public class NibbleArray {
+
+    public static final int SIZE = 2048;
+
+    private final byte[] mData;
+
+    public NibbleArray() {
+        this(new byte[SIZE]);
+    }
+
+    public NibbleArray(byte[] data) {
+        if (data.length != SIZE) {
+            throw new IllegalArgumentException("data length must be " + SIZE);
+        }
+        this.mData = data;
+    }
+
+    public static int getIndex(int localX, int localY, int localZ) {
+        return (localY << 8) | (localZ << 4) | localX;
+    }
+
+    public int get(int index) {
+        return (mData[index >> 1] >> ((index & 1) << 2)) & 0xF;
+    }
+
+    public void set(int index, int value) {
+        int shift = (index & 1) << 2;
+        int pos = index >> 1;
+        mData[pos] = (byte) ((mData[pos] & ~(0xF << shift)) | ((value & 0xF) << shift));
+    }
+
+    public int get(int localX, int localY, int localZ) {
+        return get(getIndex(localX, localY, localZ));
+    }
+
+    public void set(int localX, int localY, int localZ, int value) {
+        set(getIndex(localX, localY, localZ), value);
+    }
+
+    public byte[] getData() {
+        return mData;
+    }
+
+    public boolean isEmpty() {
+        for (byte b : mData) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void fill(int value) {
+        int v = value & 0xF;
+        Arrays.fill(mData, (byte) (v | (v << 4)));
+    }
+
+    public NibbleArray copy() {
+        return new NibbleArray(mData.clone());
+    }
+}
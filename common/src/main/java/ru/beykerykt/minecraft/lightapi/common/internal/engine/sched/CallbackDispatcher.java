@@ -0,0 +1,83 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.common.internal.engine.sched;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.ICallback;
+import ru.beykerykt.minecraft.lightapi.common.internal.IPlatformImpl;
+
+/**
+ * Calls request callbacks on the blocking executor of the background service instead of the thread
+ * that handles the request, so a slow callback does not hold the queues. Results are delivered one
+ * at a time in the order they are posted.
+ */
+class CallbackDispatcher {
+
+    private final IPlatformImpl mPlatformImpl;
+    private final Queue<Runnable> mPending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean mScheduled = new AtomicBoolean();
+
+    CallbackDispatcher(IPlatformImpl platformImpl) {
+        this.mPlatformImpl = platformImpl;
+    }
+
+    ICallback wrap(ICallback callback) {
+        if (callback == null) {
+            return null;
+        }
+        return (requestFlag, resultCode) -> post(() -> callback.onResult(requestFlag, resultCode));
+    }
+
+    private void post(Runnable task) {
+        mPending.add(task);
+        if (!mScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            mPlatformImpl.getBackgroundService().executeBlocking(this::drain);
+        } catch (RejectedExecutionException e) {
+            // the service is shut down, deliver on this thread
+            drain();
+        }
+    }
+
+    private void drain() {
+        do {
+            Runnable task;
+            while ((task = mPending.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    mPlatformImpl.error("Callback failed: " + e);
+                }
+            }
+            mScheduled.set(false);
+            // a task posted after the last poll may not have scheduled a drain
+        } while (!mPending.isEmpty() && mScheduled.compareAndSet(false, true));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.common.internal.engine.sched;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.SchedulerType;
+import ru.beykerykt.minecraft.lightapi.common.internal.chunks.observer.sched.IScheduledChunkObserver;
+import ru.beykerykt.minecraft.lightapi.common.internal.service.IBackgroundService;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.FlagUtils;
+
+/**
+ * A scheduler that handles requests with the earliest deadline first. Requests without a deadline get a
+ * virtual one when they are created, so they age and can not be starved by a stream of deadline requests.
+ * A deadline is met if the request is relit in time.
+ */
+public class DeadlineScheduler extends PriorityScheduler {
+
+    private final long TICK_MS = 50;
+    private final long mAgingMs;
+    private final AtomicLong mMetDeadlineCount = new AtomicLong();
+    private final AtomicLong mMissedDeadlineCount = new AtomicLong();
+    // misses since the last call of takeUnreportedMissedCount()
+    private final AtomicLong mUnreportedMissedCount = new AtomicLong();
+
+    /**
+     * @param agingTicks the number of ticks after which a request of the default priority without a
+     *                   deadline is due
+     */
+    public DeadlineScheduler(IScheduledLightEngine lightEngine, IScheduledChunkObserver chunkObserver,
+            IBackgroundService backgroundService, long maxTimeMsPerTick, int agingTicks) {
+        super(lightEngine, chunkObserver, backgroundService, maxTimeMsPerTick);
+        this.mAgingMs = agingTicks * TICK_MS;
+    }
+
+    private long getDueTime(Request request) {
+        if (request.hasDeadline()) {
+            return request.getDeadline();
+        }
+        // the due time is fixed at creation, so the order of queued requests does not change. A request
+        // with a higher priority is due sooner.
+        int priority = Math.max(request.getPriority(), Request.LOW_PRIORITY);
+        return request.getCreationTime() + mAgingMs * (Request.DEFAULT_PRIORITY + 1) / (priority + 1);
+    }
+
+    /**
+     * Returns the number of requests with a deadline that were relit in time.
+     */
+    public long getMetDeadlineCount() {
+        return mMetDeadlineCount.get();
+    }
+
+    /**
+     * Returns the number of requests with a deadline that were relit too late.
+     */
+    public long getMissedDeadlineCount() {
+        return mMissedDeadlineCount.get();
+    }
+
+    /**
+     * Returns the number of missed deadlines since the previous call, e.g. for periodic metrics.
+     */
+    public long takeUnreportedMissedCount() {
+        return mUnreportedMissedCount.getAndSet(0);
+    }
+
+    @Override
+    public SchedulerType getType() {
+        return SchedulerType.DEADLINE;
+    }
+
+    @Override
+    public int compareRequests(Request o1, Request o2) {
+        int result = Long.compare(getDueTime(o1), getDueTime(o2));
+        if (result == 0) {
+            result = super.compareRequests(o1, o2);
+        }
+        return result;
+    }
+
+    @Override
+    public int handleRelightRequest(Request request) {
+        if (request.hasDeadline() && FlagUtils.isFlagSet(request.getRequestFlags(), RequestFlag.RECALCULATE)) {
+            if (System.currentTimeMillis() <= request.getDeadline()) {
+                mMetDeadlineCount.incrementAndGet();
+            } else {
+                mMissedDeadlineCount.incrementAndGet();
+                mUnreportedMissedCount.incrementAndGet();
+            }
+        }
+        return super.handleRelightRequest(request);
+    }
+}
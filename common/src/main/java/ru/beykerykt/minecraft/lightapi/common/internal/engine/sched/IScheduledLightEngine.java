@@ -23,6 +23,7 @@
  */
 package ru.beykerykt.minecraft.lightapi.common.internal.engine.sched;
 
+import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.SchedulerType;
 import ru.beykerykt.minecraft.lightapi.common.internal.engine.ILightEngine;
 
 public interface IScheduledLightEngine extends ILightEngine, Runnable {
@@ -37,6 +38,28 @@ public interface IScheduledLightEngine extends ILightEngine, Runnable {
      */
     void setScheduler(IScheduler scheduler);
 
+    /**
+     * Returns the type of the current scheduler, or of the scheduler that replaces it on the next tick
+     */
+    SchedulerType getSchedulerType();
+
+    /**
+     * Replaces the scheduler with a scheduler of the given type, queued requests are kept. Called from
+     * another thread, the scheduler is replaced on the next tick of the main thread.
+     */
+    int setSchedulerType(SchedulerType type);
+
+    /**
+     * Reads the light level of the request position before the edit is applied. While the light queue is
+     * drained, levels are read per chunk section.
+     */
+    void captureOldLightLevel(Request request);
+
+    /**
+     * Returns the number of requests waiting to be applied or relit
+     */
+    int getPendingRequestCount();
+
     /**
      * Tell the engine the task of changing the light level
      */
@@ -23,9 +23,12 @@
  */
 package ru.beykerykt.minecraft.lightapi.common.internal.engine.sched;
 
+import java.util.Queue;
+
 import ru.beykerykt.minecraft.lightapi.common.api.engine.EditPolicy;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.SendPolicy;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.ICallback;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.SchedulerType;
 
 /**
  * A scheduler interface for scheduled light engine logic
@@ -49,6 +52,28 @@ public interface IScheduler {
     Request createRequest(int defaultFlag, String worldName, int blockX, int blockY, int blockZ, int lightLevel,
             int lightFlags, EditPolicy editPolicy, SendPolicy sendPolicy, ICallback callback);
 
+    /**
+     * Returns the type of the scheduler
+     */
+    SchedulerType getType();
+
+    /**
+     * Creates a storage for one of the request queues of the light engine. The storage must be thread-safe,
+     * requests are added from any thread.
+     */
+    Queue<Request> createQueue();
+
+    /**
+     * Returns the number of requests that the light engine handles between checks of the time budget.
+     */
+    int getDrainBatchSize();
+
+    /**
+     * Compares requests in the queues of the light engine. A request that is less than another is handled
+     * first.
+     */
+    int compareRequests(Request o1, Request o2);
+
     /**
      * Processes light requests. The function should only process requests without changes in flags.
      */
@@ -24,12 +24,15 @@
 package ru.beykerykt.minecraft.lightapi.common.internal.engine.sched;
 
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.PriorityBlockingQueue;
 
 import ru.beykerykt.minecraft.lightapi.common.api.ResultCode;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.EditPolicy;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.RelightPolicy;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.SendPolicy;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.ICallback;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.SchedulerType;
 import ru.beykerykt.minecraft.lightapi.common.internal.chunks.data.IChunkData;
 import ru.beykerykt.minecraft.lightapi.common.internal.chunks.observer.sched.IScheduledChunkObserver;
 import ru.beykerykt.minecraft.lightapi.common.internal.service.IBackgroundService;
@@ -73,10 +76,9 @@ public class PriorityScheduler implements IScheduler {
     @Override
     public Request createEmptyRequest(String worldName, int blockX, int blockY, int blockZ, int lightLevel,
             int lightFlags, EditPolicy editPolicy, SendPolicy sendPolicy, ICallback callback) {
-        // keep information about old light level
-        int oldLightLevel = getLightEngine().getLightLevel(worldName, blockX, blockY, blockZ, lightFlags);
-        return new Request(Request.DEFAULT_PRIORITY, 0, worldName, blockX, blockY, blockZ, oldLightLevel, lightLevel,
-                lightFlags, callback);
+        // the old light level is captured by the light engine before the edit
+        return new Request(Request.DEFAULT_PRIORITY, 0, worldName, blockX, blockY, blockZ,
+                Request.UNKNOWN_LIGHT_LEVEL, lightLevel, lightFlags, callback);
     }
 
     @Override
@@ -133,17 +135,40 @@ public class PriorityScheduler implements IScheduler {
         return request;
     }
 
+    @Override
+    public SchedulerType getType() {
+        return SchedulerType.PRIORITY;
+    }
+
+    @Override
+    public Queue<Request> createQueue() {
+        return new PriorityBlockingQueue<>(20, this::compareRequests);
+    }
+
+    @Override
+    public int getDrainBatchSize() {
+        return 1;
+    }
+
+    @Override
+    public int compareRequests(Request o1, Request o2) {
+        return o2.getPriority() - o1.getPriority();
+    }
+
     @Override
     public int handleLightRequest(Request request) {
         if (FlagUtils.isFlagSet(request.getRequestFlags(), RequestFlag.EDIT)) {
             request.removeRequestFlag(RequestFlag.EDIT);
+            getLightEngine().captureOldLightLevel(request);
             int resultCode = getLightEngine().setRawLightLevel(request.getWorldName(), request.getBlockX(),
-                    request.getBlockY(), request.getBlockZ(), request.getLightLevel(), request.getLightFlags());
-            if (request.getCallback() != null) {
+                    request.getBlockY(), request.getBlockZ(), request.getLightLevel(), request.getLightFlags(),
+                    request.getCallback());
+            // A postponed edit reports its result to the callback by itself
+            if (resultCode != ResultCode.MOVED_TO_DEFERRED && request.getCallback() != null) {
                 request.getCallback().onResult(RequestFlag.EDIT, resultCode);
             }
 
-            if (resultCode == ResultCode.SUCCESS) {
+            if (resultCode == ResultCode.SUCCESS || resultCode == ResultCode.MOVED_TO_DEFERRED) {
                 if (request.getLightLevel() == 0) {
                     // HAX: If the light is successfully removed, then add an additional flag, since the
                     // return value of the recalculation may be equal to RECALCULATE_NO_CHANGES.
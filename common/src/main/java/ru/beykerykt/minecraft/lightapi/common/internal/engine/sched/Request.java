@@ -24,24 +24,36 @@
 package ru.beykerykt.minecraft.lightapi.common.internal.engine.sched;
 
 import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.ICallback;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.ILightRequest;
 import ru.beykerykt.minecraft.lightapi.common.internal.utils.FlagUtils;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongIntHashMap;
 
-public class Request implements Comparable<Request> {
+public class Request implements Comparable<Request>, ILightRequest {
 
     public static final int HIGH_PRIORITY = 10;
     public static final int DEFAULT_PRIORITY = 5;
     public static final int LOW_PRIORITY = 0;
 
+    // the old light level is captured when the edit is applied
+    public static final int UNKNOWN_LIGHT_LEVEL = -1;
+
     private final String mWorldName;
     private final int mBlockX;
     private final int mBlockY;
     private final int mBlockZ;
     private final int mLightLevel;
-    private final int mOldLightLevel;
     private final int mLightFlags;
     private final ICallback mCallback;
+    private final long mCreationTime;
     private int mRequestFlags;
     private int mPriority;
+    private int mOldLightLevel;
+    private Object mKey;
+    private long mDeadline = Long.MAX_VALUE;
+    // lights of a restore batch: block position -> light level and light flags shifted by 4 bits
+    private LongIntHashMap mBatchLights;
+    private boolean isCancelled;
+    private boolean isStarted;
 
     public Request(int priority, int requestFlags, String worldName, int blockX, int blockY, int blockZ,
             int oldLightLevel, int lightLevel, int lightFlags, ICallback callback) {
@@ -55,6 +67,7 @@ public class Request implements Comparable<Request> {
         this.mLightLevel = lightLevel;
         this.mLightFlags = lightFlags;
         this.mCallback = callback;
+        this.mCreationTime = System.currentTimeMillis();
     }
 
     public int getPriority() {
@@ -101,6 +114,10 @@ public class Request implements Comparable<Request> {
         return mOldLightLevel;
     }
 
+    public void setOldLightLevel(int oldLightLevel) {
+        this.mOldLightLevel = oldLightLevel;
+    }
+
     public int getLightLevel() {
         return mLightLevel;
     }
@@ -113,6 +130,75 @@ public class Request implements Comparable<Request> {
         return mCallback;
     }
 
+    @Override
+    public Object getKey() {
+        return mKey;
+    }
+
+    public void setKey(Object key) {
+        this.mKey = key;
+    }
+
+    public long getCreationTime() {
+        return mCreationTime;
+    }
+
+    @Override
+    public long getDeadline() {
+        return mDeadline;
+    }
+
+    public void setDeadline(long deadline) {
+        this.mDeadline = deadline;
+    }
+
+    public boolean hasDeadline() {
+        return mDeadline != Long.MAX_VALUE;
+    }
+
+    /**
+     * Gets the lights of a restore batch, or null if the request edits a single block.
+     */
+    public LongIntHashMap getBatchLights() {
+        return mBatchLights;
+    }
+
+    public void setBatchLights(LongIntHashMap batchLights) {
+        this.mBatchLights = batchLights;
+    }
+
+    @Override
+    public synchronized boolean cancel() {
+        if (isStarted || isCancelled) {
+            return false;
+        }
+        isCancelled = true;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return isCancelled;
+    }
+
+    @Override
+    public synchronized boolean isPending() {
+        return !isStarted && !isCancelled;
+    }
+
+    /**
+     * Marks the edit as handed to the light engine, a started edit can't be cancelled.
+     *
+     * @return false if the request is cancelled and must be skipped
+     */
+    public synchronized boolean markStarted() {
+        if (isCancelled) {
+            return false;
+        }
+        isStarted = true;
+        return true;
+    }
+
     @Override
     public int compareTo(Request o) {
         return this.getPriority() - o.getPriority();
@@ -0,0 +1,220 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.common.internal.engine.sched;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary journal of light requests that were not processed before shutdown.
+ * <p>
+ * Format: magic, version, table of world names and the entries. Each entry takes 15 bytes: world
+ * index (short), x, y, z (int) and the light level with the light flags (byte). Callbacks are not
+ * stored.
+ */
+public class RequestJournal {
+
+    private static final int MAGIC = 0x4C414A4C;
+    private static final int VERSION = 1;
+
+    private final File mFile;
+
+    public RequestJournal(File file) {
+        this.mFile = file;
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * Reads all entries. The journal is kept until {@link #delete()} is called, so the entries survive
+     * a crash before they are replayed. A journal that can not be parsed is renamed aside.
+     */
+    public List<Entry> read() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (!mFile.exists()) {
+            return entries;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)))) {
+            if (in.readInt() != MAGIC) {
+                throw new JournalFormatException("Not a request journal: " + mFile, null);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new JournalFormatException("Unsupported request journal version: " + version, null);
+            }
+            String[] worldNames = new String[in.readShort()];
+            for (int i = 0; i < worldNames.length; i++) {
+                worldNames[i] = in.readUTF();
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int worldIndex = in.readShort();
+                if (worldIndex < 0 || worldIndex >= worldNames.length) {
+                    throw new JournalFormatException("Invalid world index in request journal: " + worldIndex, null);
+                }
+                int blockX = in.readInt();
+                int blockY = in.readInt();
+                int blockZ = in.readInt();
+                int value = in.readUnsignedByte();
+                entries.add(new Entry(worldNames[worldIndex], blockX, blockY, blockZ, value & 15, value >>> 4));
+            }
+        } catch (EOFException e) {
+            throw moveAside(new JournalFormatException("Request journal is truncated: " + mFile, e));
+        } catch (JournalFormatException e) {
+            throw moveAside(e);
+        }
+        return entries;
+    }
+
+    /**
+     * Deletes the journal once its entries are replayed.
+     */
+    public void delete() throws IOException {
+        Files.deleteIfExists(mFile.toPath());
+    }
+
+    private IOException moveAside(IOException cause) {
+        File badFile = new File(mFile.getAbsoluteFile().getParentFile(),
+                mFile.getName() + "." + System.currentTimeMillis() + ".bad");
+        try {
+            Files.move(mFile.toPath(), badFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            return cause;
+        }
+        return new IOException(cause.getMessage() + ", moved to " + badFile, cause);
+    }
+
+    /**
+     * Replaces the journal with the given entries. The file is written next to the journal and moved
+     * over it, so the old journal stays valid if the write fails.
+     */
+    public void write(List<Entry> entries) throws IOException {
+        if (entries.isEmpty()) {
+            Files.deleteIfExists(mFile.toPath());
+            return;
+        }
+        Map<String, Integer> worldIds = new HashMap<>();
+        List<String> worldNames = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (!worldIds.containsKey(entry.getWorldName())) {
+                worldIds.put(entry.getWorldName(), worldNames.size());
+                worldNames.add(entry.getWorldName());
+            }
+        }
+        File parent = mFile.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Can not create directory " + parent);
+        }
+        File tmpFile = new File(parent, mFile.getName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmpFile)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeShort(worldNames.size());
+            for (String worldName : worldNames) {
+                out.writeUTF(worldName);
+            }
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeShort(worldIds.get(entry.getWorldName()));
+                out.writeInt(entry.getBlockX());
+                out.writeInt(entry.getBlockY());
+                out.writeInt(entry.getBlockZ());
+                out.writeByte((entry.getLightLevel() & 15) | (entry.getLightFlags() & 15) << 4);
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmpFile.toPath(), mFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static class JournalFormatException extends IOException {
+
+        private static final long serialVersionUID = -3862915094471203765L;
+
+        JournalFormatException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    public static class Entry {
+
+        private final String mWorldName;
+        private final int mBlockX;
+        private final int mBlockY;
+        private final int mBlockZ;
+        private final int mLightLevel;
+        private final int mLightFlags;
+
+        public Entry(String worldName, int blockX, int blockY, int blockZ, int lightLevel, int lightFlags) {
+            this.mWorldName = worldName;
+            this.mBlockX = blockX;
+            this.mBlockY = blockY;
+            this.mBlockZ = blockZ;
+            this.mLightLevel = lightLevel;
+            this.mLightFlags = lightFlags;
+        }
+
+        public String getWorldName() {
+            return mWorldName;
+        }
+
+        public int getBlockX() {
+            return mBlockX;
+        }
+
+        public int getBlockY() {
+            return mBlockY;
+        }
+
+        public int getBlockZ() {
+            return mBlockZ;
+        }
+
+        public int getLightLevel() {
+            return mLightLevel;
+        }
+
+        public int getLightFlags() {
+            return mLightFlags;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.common.internal.engine.sched;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.Queue;
+
+/**
+ * A queue of the light engine. The engine uses the queue as a lock, so the queue stays the same for the
+ * lifetime of the engine, while the storage of requests is provided by the scheduler and can be replaced.
+ */
+public class RequestQueue extends AbstractQueue<Request> {
+
+    private volatile Queue<Request> mQueue;
+
+    public RequestQueue(Queue<Request> queue) {
+        this.mQueue = queue;
+    }
+
+    /**
+     * Replaces the storage of requests, requests from the old storage are moved to the new one. The caller
+     * must make sure that no requests are added at the same time.
+     */
+    public void setQueue(Queue<Request> queue) {
+        Queue<Request> oldQueue = mQueue;
+        Request request;
+        while ((request = oldQueue.poll()) != null) {
+            queue.add(request);
+        }
+        mQueue = queue;
+    }
+
+    @Override
+    public Iterator<Request> iterator() {
+        return mQueue.iterator();
+    }
+
+    @Override
+    public int size() {
+        return mQueue.size();
+    }
+
+    @Override
+    public boolean offer(Request request) {
+        return mQueue.offer(request);
+    }
+
+    @Override
+    public Request poll() {
+        return mQueue.poll();
+    }
+
+    @Override
+    public Request peek() {
+        return mQueue.peek();
+    }
+
+    @Override
+    public void clear() {
+        mQueue.clear();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.common.internal.engine.sched;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A thread-safe FIFO queue of requests on top of a growable ring buffer. Adding and removing a request
+ * takes constant time. The iterator works on a snapshot of the queue.
+ */
+public class RequestRingBuffer extends AbstractQueue<Request> {
+
+    private Request[] mElements;
+    private int mHead;
+    private int mSize;
+
+    public RequestRingBuffer(int initialCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(initialCapacity, 16) - 1) << 1;
+        this.mElements = new Request[capacity];
+    }
+
+    private void grow() {
+        Request[] elements = new Request[mElements.length << 1];
+        int tail = mElements.length - mHead;
+        System.arraycopy(mElements, mHead, elements, 0, tail);
+        System.arraycopy(mElements, 0, elements, tail, mHead);
+        mElements = elements;
+        mHead = 0;
+    }
+
+    @Override
+    public synchronized boolean offer(Request request) {
+        if (request == null) {
+            throw new NullPointerException();
+        }
+        if (mSize == mElements.length) {
+            grow();
+        }
+        mElements[(mHead + mSize) & (mElements.length - 1)] = request;
+        mSize++;
+        return true;
+    }
+
+    @Override
+    public synchronized Request poll() {
+        if (mSize == 0) {
+            return null;
+        }
+        Request request = mElements[mHead];
+        mElements[mHead] = null;
+        mHead = (mHead + 1) & (mElements.length - 1);
+        mSize--;
+        return request;
+    }
+
+    @Override
+    public synchronized Request peek() {
+        return mSize == 0 ? null : mElements[mHead];
+    }
+
+    @Override
+    public synchronized int size() {
+        return mSize;
+    }
+
+    @Override
+    public synchronized void clear() {
+        Arrays.fill(mElements, null);
+        mHead = 0;
+        mSize = 0;
+    }
+
+    @Override
+    public synchronized Object[] toArray() {
+        Object[] array = new Object[mSize];
+        for (int i = 0; i < mSize; i++) {
+            array[i] = mElements[(mHead + i) & (mElements.length - 1)];
+        }
+        return array;
+    }
+
+    @Override
+    public Iterator<Request> iterator() {
+        Object[] snapshot = toArray();
+        return new Iterator<Request>() {
+            private int mIndex;
+
+            @Override
+            public boolean hasNext() {
+                return mIndex < snapshot.length;
+            }
+
+            @Override
+            public Request next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return (Request) snapshot[mIndex++];
+            }
+        };
+    }
+}
@@ -23,37 +23,67 @@
  */
 package ru.beykerykt.minecraft.lightapi.common.internal.engine.sched;
 
-import java.util.Queue;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.PriorityBlockingQueue;
 
 import ru.beykerykt.minecraft.lightapi.common.api.ResultCode;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.EditPolicy;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.LightFlag;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.RelightPolicy;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.SendPolicy;
 import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.ICallback;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.ILightRequest;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.SchedulerType;
 import ru.beykerykt.minecraft.lightapi.common.internal.IPlatformImpl;
+import ru.beykerykt.minecraft.lightapi.common.internal.chunks.observer.sched.IScheduledChunkObserver;
 import ru.beykerykt.minecraft.lightapi.common.internal.service.IBackgroundService;
+import ru.beykerykt.minecraft.lightapi.common.internal.storage.ILightStorage;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.BlockPosition;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.FlagUtils;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongIntHashMap;
 
 /**
  * Abstract class for scheduled light engines
  */
 public abstract class ScheduledLightEngineImpl implements IScheduledLightEngine {
 
-    protected final Queue<Request> lightQueue = new PriorityBlockingQueue<>(20,
-            (o1, o2) -> o2.getPriority() - o1.getPriority());
-    protected final Queue<Request> relightQueue = new PriorityBlockingQueue<>(20,
-            (o1, o2) -> o2.getPriority() - o1.getPriority());
-    protected final Queue<Request> sendQueue = new PriorityBlockingQueue<>(20,
-            (o1, o2) -> o2.getPriority() - o1.getPriority());
+    // the storage of requests is replaced by the scheduler
+    protected final RequestQueue lightQueue = new RequestQueue(new PriorityBlockingQueue<>(20,
+            (o1, o2) -> o2.getPriority() - o1.getPriority()));
+    protected final RequestQueue relightQueue = new RequestQueue(new PriorityBlockingQueue<>(20,
+            (o1, o2) -> o2.getPriority() - o1.getPriority()));
+    protected final RequestQueue sendQueue = new RequestQueue(new PriorityBlockingQueue<>(20,
+            (o1, o2) -> o2.getPriority() - o1.getPriority()));
     private final IBackgroundService mBackgroundService;
     private final long TICK_MS = 50;
+    // how long journal entries wait for their world after startup
+    private final int JOURNAL_WORLD_WAIT_TICKS = 1200;
+    private final Deque<RequestJournal.Entry> mReplayQueue = new ArrayDeque<>();
+    // supersession key -> the newest pending request with the key
+    private final Map<Object, Request> mKeyedRequests = new ConcurrentHashMap<>();
+    // world name -> block position -> queued edits of the position
+    private final Map<String, Map<Long, List<Request>>> mQueuedEdits = new ConcurrentHashMap<>();
+    private final SectionLightCache mSectionLightCache = new SectionLightCache(this);
     private final IPlatformImpl mPlatformImpl;
     protected long maxTimeMsPerTick;
     protected int maxRequestCount;
     protected RelightPolicy mRelightPolicy;
     private IScheduler mScheduler;
+    private volatile SchedulerType mPendingSchedulerType;
+    // the thread that drains the light queue now, only this thread uses the section cache
+    private volatile Thread mDrainThread;
     private int requestCount = 0;
     private long penaltyTime = 0;
+    private RequestJournal mJournal;
+    private int mReplayTicks = 0;
+    private CallbackDispatcher mCallbackDispatcher;
 
     public ScheduledLightEngineImpl(IPlatformImpl platformImpl, IBackgroundService service, RelightPolicy strategy,
             int maxRequestCount, int maxTimeMsPerTick) {
@@ -77,18 +107,102 @@ public abstract class ScheduledLightEngineImpl implements IScheduledLightEngine
                 && getScheduler().canExecute();
     }
 
+    /**
+     * Sets the journal for requests left on shutdown. If set, pending requests are written to the
+     * journal instead of being processed and are replayed on the next start.
+     */
+    protected void setJournal(RequestJournal journal) {
+        mJournal = journal;
+    }
+
+    /**
+     * If enabled, request callbacks are called on the blocking executor of the background service in
+     * the order of the results, instead of inline on the thread that handles the request.
+     */
+    protected void setAsyncCallbacks(boolean enabled) {
+        mCallbackDispatcher = enabled ? new CallbackDispatcher(getPlatformImpl()) : null;
+    }
+
+    private ICallback wrapCallback(ICallback callback) {
+        return mCallbackDispatcher != null ? mCallbackDispatcher.wrap(callback) : callback;
+    }
+
     @Override
     public void onStart() {
+        if (mJournal != null) {
+            try {
+                List<RequestJournal.Entry> entries = mJournal.read();
+                if (entries.isEmpty()) {
+                    mJournal.delete();
+                } else {
+                    getPlatformImpl().info("Replaying " + entries.size() + " requests from the journal");
+                }
+                synchronized (lightQueue) {
+                    mReplayQueue.addAll(entries);
+                }
+            } catch (IOException e) {
+                getPlatformImpl().error("Can not read the request journal: " + e.getMessage());
+            }
+        }
         if (getScheduler() != null) {
             getPlatformImpl().debug(getClass().getName() + " is started!");
         }
     }
 
+    private RequestJournal.Entry toJournalEntry(Request request) {
+        return new RequestJournal.Entry(request.getWorldName(), request.getBlockX(), request.getBlockY(),
+                request.getBlockZ(), request.getLightLevel(), request.getLightFlags());
+    }
+
+    /* @hide */
+    private void writeJournalLocked() {
+        List<RequestJournal.Entry> entries = new ArrayList<>(mReplayQueue);
+        // the relight queue holds older requests than the light queue, replay keeps the order
+        for (Request request : relightQueue) {
+            entries.add(toJournalEntry(request));
+        }
+        for (Request request : lightQueue) {
+            if (request.isCancelled()) {
+                continue;
+            }
+            if (request.getBatchLights() != null) {
+                request.getBatchLights().forEach((pos, value) -> entries.add(new RequestJournal.Entry(
+                        request.getWorldName(), BlockPosition.unpackLongX(pos), BlockPosition.unpackLongY(pos),
+                        BlockPosition.unpackLongZ(pos), value & 15, value >>> 4)));
+            } else {
+                entries.add(toJournalEntry(request));
+            }
+        }
+        try {
+            mJournal.write(entries);
+            getPlatformImpl().info("Saved " + entries.size() + " requests to the journal");
+        } catch (IOException e) {
+            getPlatformImpl().error("Can not write the request journal: " + e.getMessage());
+        }
+        mReplayQueue.clear();
+        lightQueue.clear();
+        relightQueue.clear();
+        mKeyedRequests.clear();
+        mQueuedEdits.clear();
+        // players are disconnecting anyway
+        sendQueue.clear();
+        if (getPlatformImpl().getChunkObserver() instanceof IScheduledChunkObserver) {
+            ((IScheduledChunkObserver) getPlatformImpl().getChunkObserver()).discardObservedChunks();
+        }
+    }
+
     @Override
     public void onShutdown() {
         getPlatformImpl().debug(getClass().getName() + " is shutdown!");
+        if (mJournal != null) {
+            synchronized (lightQueue) {
+                writeJournalLocked();
+            }
+            return;
+        }
         while (lightQueue.peek() != null) {
             Request request = lightQueue.poll();
+            removeQueuedEdit(request);
             handleLightRequest(request);
         }
         while (relightQueue.peek() != null) {
@@ -102,6 +216,8 @@ public abstract class ScheduledLightEngineImpl implements IScheduledLightEngine
         lightQueue.clear();
         relightQueue.clear();
         sendQueue.clear();
+        mKeyedRequests.clear();
+        mQueuedEdits.clear();
     }
 
     @Override
@@ -128,9 +244,14 @@ public abstract class ScheduledLightEngineImpl implements IScheduledLightEngine
     /* @hide */
     private int setLightLevelLocked(String worldName, int blockX, int blockY, int blockZ, int lightLevel, int lightType,
             EditPolicy editPolicy, SendPolicy sendPolicy, ICallback callback) {
-        int resultCode = ResultCode.SUCCESS;
         Request request = getScheduler().createRequest(RequestFlag.EDIT, worldName, blockX, blockY, blockZ, lightLevel,
                 lightType, editPolicy, sendPolicy, callback);
+        return submitRequestLocked(request, editPolicy);
+    }
+
+    /* @hide */
+    private int submitRequestLocked(Request request, EditPolicy editPolicy) {
+        int resultCode = ResultCode.SUCCESS;
         switch (editPolicy) {
             case FORCE_IMMEDIATE: {
                 // Execute request immediately
@@ -173,6 +294,14 @@ public abstract class ScheduledLightEngineImpl implements IScheduledLightEngine
         if (!getPlatformImpl().isWorldAvailable(worldName)) {
             return ResultCode.WORLD_NOT_AVAILABLE;
         }
+        if (FlagUtils.isFlagSet(lightFlags, LightFlag.USE_STORAGE_PROVIDER)) {
+            ILightStorage storage = getPlatformImpl().getLightStorage();
+            if (storage != null) {
+                storage.storeLightLevel(worldName, blockX, blockY, blockZ, lightLevel, lightFlags);
+            }
+            lightFlags = FlagUtils.removeFlag(lightFlags, LightFlag.USE_STORAGE_PROVIDER);
+        }
+        callback = wrapCallback(callback);
         if (getBackgroundService().isMainThread()) {
             return setLightLevelLocked(worldName, blockX, blockY, blockZ, lightLevel, lightFlags, editPolicy,
                     sendPolicy,
@@ -186,6 +315,248 @@ public abstract class ScheduledLightEngineImpl implements IScheduledLightEngine
         }
     }
 
+    /* @hide */
+    private Request submitLightLevelLocked(String worldName, int blockX, int blockY, int blockZ, int lightLevel,
+            int lightFlags, EditPolicy editPolicy, SendPolicy sendPolicy, Object key, int deadlineTicks,
+            ICallback callback) {
+        Request request = getScheduler().createRequest(RequestFlag.EDIT, worldName, blockX, blockY, blockZ, lightLevel,
+                lightFlags, editPolicy, sendPolicy, callback);
+        if (deadlineTicks != ILightRequest.NO_DEADLINE) {
+            request.setDeadline(request.getCreationTime() + deadlineTicks * TICK_MS);
+        }
+        if (key != null) {
+            request.setKey(key);
+            Request previous = mKeyedRequests.put(key, request);
+            if (previous != null) {
+                // the old request stays in the queue as a tombstone
+                previous.cancel();
+            }
+        }
+        submitRequestLocked(request, editPolicy);
+        return request;
+    }
+
+    @Override
+    public ILightRequest submitLightLevel(String worldName, int blockX, int blockY, int blockZ, int lightLevel,
+            int lightFlags, EditPolicy editPolicy, SendPolicy sendPolicy, Object key, int deadlineTicks,
+            ICallback callback) {
+        if (!getPlatformImpl().isWorldAvailable(worldName)) {
+            return null;
+        }
+        if (FlagUtils.isFlagSet(lightFlags, LightFlag.USE_STORAGE_PROVIDER)) {
+            ILightStorage storage = getPlatformImpl().getLightStorage();
+            if (storage != null) {
+                storage.storeLightLevel(worldName, blockX, blockY, blockZ, lightLevel, lightFlags);
+            }
+            lightFlags = FlagUtils.removeFlag(lightFlags, LightFlag.USE_STORAGE_PROVIDER);
+        }
+        callback = wrapCallback(callback);
+        if (getBackgroundService().isMainThread()) {
+            return submitLightLevelLocked(worldName, blockX, blockY, blockZ, lightLevel, lightFlags, editPolicy,
+                    sendPolicy, key, deadlineTicks, callback);
+        } else {
+            synchronized (lightQueue) {
+                return submitLightLevelLocked(worldName, blockX, blockY, blockZ, lightLevel, lightFlags, editPolicy,
+                        sendPolicy, key, deadlineTicks, callback);
+            }
+        }
+    }
+
+    private void addQueuedEdit(Request request) {
+        if (request.getBatchLights() != null) {
+            return;
+        }
+        mQueuedEdits.computeIfAbsent(request.getWorldName(), k -> new ConcurrentHashMap<>()).compute(
+                BlockPosition.asLong(request.getBlockX(), request.getBlockY(), request.getBlockZ()),
+                (k, requests) -> {
+                    if (requests == null) {
+                        requests = new ArrayList<>(1);
+                    }
+                    requests.add(request);
+                    return requests;
+                });
+    }
+
+    private void removeQueuedEdit(Request request) {
+        Map<Long, List<Request>> positions = mQueuedEdits.get(request.getWorldName());
+        if (positions == null || request.getBatchLights() != null) {
+            return;
+        }
+        positions.computeIfPresent(BlockPosition.asLong(request.getBlockX(), request.getBlockY(),
+                request.getBlockZ()), (k, requests) -> {
+                    requests.remove(request);
+                    return requests.isEmpty() ? null : requests;
+                });
+    }
+
+    private boolean hasQueuedEdit(String worldName, long pos) {
+        Map<Long, List<Request>> positions = mQueuedEdits.get(worldName);
+        return positions != null && positions.containsKey(pos);
+    }
+
+    /* @hide */
+    private int restoreLightsLocked(String worldName, LongIntHashMap lights) {
+        // edits already waiting in the queue are newer than the restored lights
+        LongIntHashMap batchLights = new LongIntHashMap(lights.size());
+        long[] anyPos = new long[1];
+        lights.forEach((pos, value) -> {
+            if (!hasQueuedEdit(worldName, pos)) {
+                batchLights.put(pos, value);
+                anyPos[0] = pos;
+            }
+        });
+        if (batchLights.isEmpty()) {
+            return ResultCode.SUCCESS;
+        }
+        // one request for the whole chunk, lights which are at the level already are skipped by the drain
+        Request request = getScheduler().createRequest(RequestFlag.EDIT, worldName,
+                BlockPosition.unpackLongX(anyPos[0]), BlockPosition.unpackLongY(anyPos[0]),
+                BlockPosition.unpackLongZ(anyPos[0]), 0, 0, EditPolicy.DEFERRED, SendPolicy.DEFERRED, null);
+        request.setPriority(Request.LOW_PRIORITY);
+        request.setBatchLights(batchLights);
+        lightQueue.add(request);
+        return ResultCode.SUCCESS;
+    }
+
+    /* @hide */
+    private void handleRestoreBatchLocked(Request request) {
+        String worldName = request.getWorldName();
+        if (!getPlatformImpl().isWorldAvailable(worldName)) {
+            return;
+        }
+        // light flags -> restored levels of the positions which are not at the level yet
+        Map<Integer, LongIntHashMap> flagLevels = new HashMap<>();
+        request.getBatchLights().forEach((pos, value) -> {
+            // edits queued after the restore are newer
+            if (hasQueuedEdit(worldName, pos)) {
+                return;
+            }
+            int lightLevel = value & 15;
+            int lightFlags = FlagUtils.removeFlag(value >>> 4, LightFlag.USE_STORAGE_PROVIDER);
+            if (getDrainLightLevel(worldName, BlockPosition.unpackLongX(pos), BlockPosition.unpackLongY(pos),
+                    BlockPosition.unpackLongZ(pos), lightFlags) == lightLevel) {
+                return;
+            }
+            flagLevels.computeIfAbsent(lightFlags, k -> new LongIntHashMap()).put(pos, lightLevel);
+        });
+        applyLightsLocked(worldName, flagLevels);
+    }
+
+    private int getDrainLightLevel(String worldName, int blockX, int blockY, int blockZ, int lightFlags) {
+        if (Thread.currentThread() != mDrainThread) {
+            return getLightLevel(worldName, blockX, blockY, blockZ, lightFlags);
+        }
+        return mSectionLightCache.getLightLevel(worldName, blockX, blockY, blockZ, lightFlags);
+    }
+
+    @Override
+    public int restoreLights(String worldName, LongIntHashMap lights) {
+        if (!getPlatformImpl().isWorldAvailable(worldName)) {
+            return ResultCode.WORLD_NOT_AVAILABLE;
+        }
+        if (getBackgroundService().isMainThread()) {
+            return restoreLightsLocked(worldName, lights);
+        } else {
+            synchronized (lightQueue) {
+                return restoreLightsLocked(worldName, lights);
+            }
+        }
+    }
+
+    /* @hide */
+    private int applyLightsLocked(String worldName, Map<Integer, LongIntHashMap> flagLevels) {
+        // light flags -> levels reached by the old or the new light of each position
+        Map<Integer, LongIntHashMap> sendLevels = new HashMap<>();
+        // any changed position and the flags of all changes, used for the relight
+        long anyPos = 0;
+        int allLightFlags = 0;
+        for (Map.Entry<Integer, LongIntHashMap> entry : flagLevels.entrySet()) {
+            LongIntHashMap levels = entry.getValue();
+            LongIntHashMap oldLevels = new LongIntHashMap(levels.size());
+            setRawLightLevels(worldName, levels, entry.getKey(), oldLevels);
+            if (oldLevels.isEmpty()) {
+                continue;
+            }
+            LongIntHashMap reachedLevels = new LongIntHashMap(oldLevels.size());
+            long[] lastPos = new long[1];
+            oldLevels.forEach((pos, oldLightLevel) -> {
+                reachedLevels.put(pos, Math.max(oldLightLevel, levels.get(pos, 0)));
+                lastPos[0] = pos;
+            });
+            sendLevels.put(entry.getKey(), reachedLevels);
+            if (Thread.currentThread() == mDrainThread) {
+                // later requests of the same pass read the new levels
+                levels.forEach((pos, lightLevel) -> mSectionLightCache.onLightLevelChanged(worldName,
+                        BlockPosition.unpackLongX(pos), BlockPosition.unpackLongY(pos), BlockPosition.unpackLongZ(pos),
+                        entry.getKey(), lightLevel));
+            }
+            anyPos = lastPos[0];
+            allLightFlags |= entry.getKey();
+        }
+        if (sendLevels.isEmpty()) {
+            return ResultCode.RECALCULATE_NO_CHANGES;
+        }
+
+        // the handler relights all pending changes of the world at once
+        recalculateLighting(worldName, BlockPosition.unpackLongX(anyPos), BlockPosition.unpackLongY(anyPos),
+                BlockPosition.unpackLongZ(anyPos), allLightFlags);
+
+        if (getPlatformImpl().getChunkObserver() instanceof IScheduledChunkObserver) {
+            IScheduledChunkObserver observer = (IScheduledChunkObserver) getPlatformImpl().getChunkObserver();
+            for (Map.Entry<Integer, LongIntHashMap> entry : sendLevels.entrySet()) {
+                observer.notifyUpdateChunks(worldName, entry.getValue(), entry.getKey());
+            }
+        }
+        return ResultCode.SUCCESS;
+    }
+
+    /* @hide */
+    private int commitLightsLocked(String worldName, LongIntHashMap lights) {
+        // queued edits of the same positions are older than the transaction, they stay in the queue as
+        // tombstones
+        Map<Long, List<Request>> positions = mQueuedEdits.get(worldName);
+        if (positions != null) {
+            lights.forEach((pos, value) -> positions.computeIfPresent(pos, (k, requests) -> {
+                for (Request request : requests) {
+                    request.cancel();
+                }
+                return requests;
+            }));
+        }
+
+        // light flags -> new levels of the positions
+        Map<Integer, LongIntHashMap> flagLevels = new HashMap<>();
+        ILightStorage storage = getPlatformImpl().getLightStorage();
+        lights.forEach((pos, value) -> {
+            int lightLevel = value & 15;
+            int lightFlags = value >>> 4;
+            if (FlagUtils.isFlagSet(lightFlags, LightFlag.USE_STORAGE_PROVIDER)) {
+                if (storage != null) {
+                    storage.storeLightLevel(worldName, BlockPosition.unpackLongX(pos), BlockPosition.unpackLongY(pos),
+                            BlockPosition.unpackLongZ(pos), lightLevel, lightFlags);
+                }
+                lightFlags = FlagUtils.removeFlag(lightFlags, LightFlag.USE_STORAGE_PROVIDER);
+            }
+            flagLevels.computeIfAbsent(lightFlags, k -> new LongIntHashMap()).put(pos, lightLevel);
+        });
+
+        return applyLightsLocked(worldName, flagLevels);
+    }
+
+    @Override
+    public int commitLights(String worldName, LongIntHashMap lights) {
+        if (!getPlatformImpl().isWorldAvailable(worldName)) {
+            return ResultCode.WORLD_NOT_AVAILABLE;
+        }
+        if (getBackgroundService().isMainThread()) {
+            return commitLightsLocked(worldName, lights);
+        } else {
+            synchronized (lightQueue) {
+                return commitLightsLocked(worldName, lights);
+            }
+        }
+    }
+
     @Override
     public IScheduler getScheduler() {
         if (mScheduler == null) {
@@ -196,13 +567,81 @@ public abstract class ScheduledLightEngineImpl implements IScheduledLightEngine
 
     @Override
     public void setScheduler(IScheduler scheduler) {
-        mScheduler = scheduler;
+        // the main thread adds requests without locks
+        if (mScheduler != null && !getBackgroundService().isMainThread()) {
+            throw new IllegalStateException("The scheduler can be replaced only from the main thread");
+        }
+        synchronized (lightQueue) {
+            synchronized (relightQueue) {
+                synchronized (sendQueue) {
+                    lightQueue.setQueue(scheduler.createQueue());
+                    relightQueue.setQueue(scheduler.createQueue());
+                    sendQueue.setQueue(scheduler.createQueue());
+                    mScheduler = scheduler;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the raw levels of many positions with the same light flags in one critical section of the
+     * handler. The keys of lights are
+     * {@link ru.beykerykt.minecraft.lightapi.common.internal.utils.BlockPosition#asLong(int, int, int)}, the
+     * values are the new light levels. The levels read right before the write are put to oldLevels, positions
+     * which could not be set are left out.
+     */
+    protected abstract int setRawLightLevels(String worldName, LongIntHashMap lights, int lightFlags,
+            LongIntHashMap oldLevels);
+
+    /**
+     * Creates a scheduler of the given type for this engine.
+     */
+    protected abstract IScheduler createScheduler(SchedulerType type);
+
+    @Override
+    public SchedulerType getSchedulerType() {
+        SchedulerType pendingType = mPendingSchedulerType;
+        return pendingType != null ? pendingType : getScheduler().getType();
+    }
+
+    @Override
+    public int setSchedulerType(SchedulerType type) {
+        if (getBackgroundService().isMainThread()) {
+            mPendingSchedulerType = null;
+            if (getScheduler().getType() != type) {
+                setScheduler(createScheduler(type));
+            }
+            return ResultCode.SUCCESS;
+        }
+        // will be replaced on the next tick of the main thread
+        mPendingSchedulerType = type;
+        return ResultCode.MOVED_TO_DEFERRED;
+    }
+
+    @Override
+    public void captureOldLightLevel(Request request) {
+        if (Thread.currentThread() != mDrainThread) {
+            request.setOldLightLevel(getLightLevel(request.getWorldName(), request.getBlockX(), request.getBlockY(),
+                    request.getBlockZ(), request.getLightFlags()));
+            return;
+        }
+        request.setOldLightLevel(mSectionLightCache.getLightLevel(request.getWorldName(), request.getBlockX(),
+                request.getBlockY(), request.getBlockZ(), request.getLightFlags()));
+        mSectionLightCache.onLightLevelChanged(request.getWorldName(), request.getBlockX(), request.getBlockY(),
+                request.getBlockZ(), request.getLightFlags(), request.getLightLevel());
+    }
+
+    @Override
+    public int getPendingRequestCount() {
+        // the storages of requests are thread-safe
+        return lightQueue.size() + relightQueue.size();
     }
 
     /* @hide */
     private int notifyChangeLightLevelLocked(Request request) {
         if (request != null) {
             lightQueue.add(request);
+            addQueuedEdit(request);
         }
         return ResultCode.SUCCESS;
     }
@@ -257,6 +696,20 @@ public abstract class ScheduledLightEngineImpl implements IScheduledLightEngine
     }
 
     private void handleLightRequest(Request request) {
+        if (request.getKey() != null) {
+            mKeyedRequests.remove(request.getKey(), request);
+        }
+        if (!request.markStarted()) {
+            // tombstone of a cancelled request
+            if (request.getCallback() != null) {
+                request.getCallback().onResult(RequestFlag.EDIT, ResultCode.CANCELLED);
+            }
+            return;
+        }
+        if (request.getBatchLights() != null) {
+            handleRestoreBatchLocked(request);
+            return;
+        }
         if (getBackgroundService().isMainThread()) {
             getScheduler().handleLightRequest(request);
         } else {
@@ -286,26 +739,78 @@ public abstract class ScheduledLightEngineImpl implements IScheduledLightEngine
         }
     }
 
+    /* @hide */
+    private void replayJournalLocked() {
+        if (mReplayQueue.isEmpty()) {
+            return;
+        }
+        mReplayTicks++;
+        int count = Math.min(mReplayQueue.size(), maxRequestCount);
+        for (int i = 0; i < count; i++) {
+            RequestJournal.Entry entry = mReplayQueue.poll();
+            if (!getPlatformImpl().isWorldAvailable(entry.getWorldName())) {
+                if (mReplayTicks < JOURNAL_WORLD_WAIT_TICKS) {
+                    // the world may be loaded later
+                    mReplayQueue.add(entry);
+                } else {
+                    getPlatformImpl().debug("replayJournalLocked: world " + entry.getWorldName()
+                            + " is not available, request is dropped");
+                }
+                continue;
+            }
+            setLightLevelLocked(entry.getWorldName(), entry.getBlockX(), entry.getBlockY(), entry.getBlockZ(),
+                    entry.getLightLevel(), entry.getLightFlags(), EditPolicy.DEFERRED, SendPolicy.DEFERRED, null);
+        }
+        if (mReplayQueue.isEmpty()) {
+            // all entries are queued now, the journal is written again on shutdown if they are still pending
+            try {
+                mJournal.delete();
+            } catch (IOException e) {
+                getPlatformImpl().error("Can not delete the request journal: " + e.getMessage());
+            }
+        }
+    }
+
     private void handleLightQueueLocked() {
         if (!getScheduler().canExecute()) {
             return;
         }
         long startTime = System.currentTimeMillis();
+        int batchSize = getScheduler().getDrainBatchSize();
         requestCount = 0;
-        while (lightQueue.peek() != null) {
-            getPlatformImpl().debug("handleLightQueueLocked()");
-            long time = System.currentTimeMillis() - startTime;
-            if (time > maxTimeMsPerTick) {
-                getPlatformImpl().debug("handleLightQueueLocked: maxRelightTimePerTick is reached (" + time + " ms)");
-                break;
-            }
-            if (requestCount > maxRequestCount) {
-                getPlatformImpl().debug("handleLightQueueLocked: maxRequestCount is reached (" + requestCount + ")");
-                break;
+        mDrainThread = Thread.currentThread();
+        try {
+            while (lightQueue.peek() != null) {
+                getPlatformImpl().debug("handleLightQueueLocked()");
+                long time = System.currentTimeMillis() - startTime;
+                if (time > maxTimeMsPerTick) {
+                    getPlatformImpl().debug(
+                            "handleLightQueueLocked: maxRelightTimePerTick is reached (" + time + " ms)");
+                    break;
+                }
+                if (requestCount > maxRequestCount) {
+                    getPlatformImpl().debug(
+                            "handleLightQueueLocked: maxRequestCount is reached (" + requestCount + ")");
+                    break;
+                }
+                for (int i = 0; i < batchSize; i++) {
+                    Request request = lightQueue.poll();
+                    if (request == null) {
+                        break;
+                    }
+                    removeQueuedEdit(request);
+                    // tombstones are skipped without using the budget
+                    boolean isTombstone = request.isCancelled();
+                    handleLightRequest(request);
+                    if (!isTombstone) {
+                        requestCount++;
+                    }
+                }
             }
-            Request request = lightQueue.poll();
-            handleLightRequest(request);
-            requestCount++;
+        } finally {
+            // the world changes between passes
+            mDrainThread = null;
+            mSectionLightCache.clear();
         }
     }
 
@@ -314,6 +819,7 @@ public abstract class ScheduledLightEngineImpl implements IScheduledLightEngine
             return;
         }
         long startTime = System.currentTimeMillis();
+        int batchSize = getScheduler().getDrainBatchSize();
         requestCount = 0;
         while (relightQueue.peek() != null) {
             getPlatformImpl().debug("handleRelightQueueLocked()");
@@ -326,9 +832,14 @@ public abstract class ScheduledLightEngineImpl implements IScheduledLightEngine
                 getPlatformImpl().debug("handleRelightQueueLocked: maxRequestCount is reached (" + requestCount + ")");
                 break;
             }
-            Request request = relightQueue.poll();
-            handleRelightRequest(request);
-            requestCount++;
+            for (int i = 0; i < batchSize; i++) {
+                Request request = relightQueue.poll();
+                if (request == null) {
+                    break;
+                }
+                handleRelightRequest(request);
+                requestCount++;
+            }
         }
     }
 
@@ -337,6 +848,7 @@ public abstract class ScheduledLightEngineImpl implements IScheduledLightEngine
             return;
         }
         long startTime = System.currentTimeMillis();
+        int batchSize = getScheduler().getDrainBatchSize();
         requestCount = 0;
         while (sendQueue.peek() != null) {
             getPlatformImpl().debug("handleSendQueueLocked()");
@@ -349,15 +861,21 @@ public abstract class ScheduledLightEngineImpl implements IScheduledLightEngine
                 getPlatformImpl().debug("handleSendQueueLocked: maxRequestCount is reached (" + requestCount + ")");
                 break;
             }
-            Request request = sendQueue.poll();
-            handleSendRequest(request);
-            requestCount++;
+            for (int i = 0; i < batchSize; i++) {
+                Request request = sendQueue.poll();
+                if (request == null) {
+                    break;
+                }
+                handleSendRequest(request);
+                requestCount++;
+            }
         }
     }
 
     @Override
     public void run() {
         synchronized (lightQueue) {
+            replayJournalLocked();
             handleLightQueueLocked();
         }
 
@@ -370,6 +888,13 @@ public abstract class ScheduledLightEngineImpl implements IScheduledLightEngine
         }
     }
 
+    protected void onTickScheduler() {
+        SchedulerType pendingType = mPendingSchedulerType;
+        if (pendingType != null) {
+            setSchedulerType(pendingType);
+        }
+    }
+
     protected void onTickPenaltyTime() {
         if (penaltyTime > 0) {
             penaltyTime -= TICK_MS;
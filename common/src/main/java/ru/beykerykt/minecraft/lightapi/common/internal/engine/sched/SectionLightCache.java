@@ -0,0 +1,139 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.common.internal.engine.sched;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import ru.beykerykt.minecraft.lightapi.common.api.ResultCode;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.LightLevelBuffer;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.ILightEngine;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.BlockPosition;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongObjectHashMap;
+
+/**
+ * Light levels of chunk sections read during one pass over the light queue. The first request in a section
+ * reads its light level directly, the second one reads the whole section at once, so the next requests in
+ * the section don't touch the world. The section is only read at once if the light engine copies whole
+ * sections, otherwise every request reads its level directly. Levels changed by the pass are written
+ * through. Not thread-safe.
+ */
+public class SectionLightCache {
+
+    private static final int SECTION_CAPACITY = 16 * 16 * 16 / 2;
+
+    private final ILightEngine mLightEngine;
+    private final Map<String, LongObjectHashMap<Section>> mWorlds = new HashMap<>();
+    private final Deque<ByteBuffer> mFreeBuffers = new ArrayDeque<>();
+
+    public SectionLightCache(ILightEngine lightEngine) {
+        this.mLightEngine = lightEngine;
+    }
+
+    private static long getSectionKey(int blockX, int blockY, int blockZ, int lightFlags) {
+        // sky and block light of a section are stored separately
+        return BlockPosition.asLong(blockX >> 4, ((blockY >> 4) << 2) | (lightFlags & 3), blockZ >> 4);
+    }
+
+    private static int getIndex(int blockX, int blockY, int blockZ) {
+        return ((blockY & 15) << 8) | ((blockZ & 15) << 4) | (blockX & 15);
+    }
+
+    private Section getSection(String worldName, int blockX, int blockY, int blockZ, int lightFlags) {
+        LongObjectHashMap<Section> sections = mWorlds.get(worldName);
+        if (sections == null) {
+            sections = new LongObjectHashMap<>();
+            mWorlds.put(worldName, sections);
+        }
+        long key = getSectionKey(blockX, blockY, blockZ, lightFlags);
+        Section section = sections.get(key);
+        if (section == null) {
+            section = new Section();
+            sections.put(key, section);
+        }
+        return section;
+    }
+
+    /**
+     * Gets the level of light from given coordinates with specific flags.
+     */
+    public int getLightLevel(String worldName, int blockX, int blockY, int blockZ, int lightFlags) {
+        Section section = getSection(worldName, blockX, blockY, blockZ, lightFlags);
+        if (section.levels == null) {
+            if (section.readCount++ == 0 || !mLightEngine.isSectionCopySupported()) {
+                return mLightEngine.getLightLevel(worldName, blockX, blockY, blockZ, lightFlags);
+            }
+            ByteBuffer levels = mFreeBuffers.isEmpty() ? ByteBuffer.allocate(SECTION_CAPACITY) : mFreeBuffers.poll();
+            int minX = blockX & ~15;
+            int minY = blockY & ~15;
+            int minZ = blockZ & ~15;
+            int resultCode = mLightEngine.getLightLevels(worldName, minX, minY, minZ, minX + 15, minY + 15,
+                    minZ + 15, lightFlags, levels);
+            if (resultCode != ResultCode.SUCCESS) {
+                mFreeBuffers.add(levels);
+                return mLightEngine.getLightLevel(worldName, blockX, blockY, blockZ, lightFlags);
+            }
+            section.levels = levels;
+        }
+        return LightLevelBuffer.getLightLevel(section.levels, getIndex(blockX, blockY, blockZ));
+    }
+
+    /**
+     * Writes the new light level through to the cached section, if the section is read.
+     */
+    public void onLightLevelChanged(String worldName, int blockX, int blockY, int blockZ, int lightFlags,
+            int lightLevel) {
+        LongObjectHashMap<Section> sections = mWorlds.get(worldName);
+        if (sections == null) {
+            return;
+        }
+        Section section = sections.get(getSectionKey(blockX, blockY, blockZ, lightFlags));
+        if (section != null && section.levels != null) {
+            LightLevelBuffer.setLightLevel(section.levels, getIndex(blockX, blockY, blockZ), lightLevel);
+        }
+    }
+
+    /**
+     * Forgets all sections, the buffers are kept for the next pass.
+     */
+    public void clear() {
+        for (LongObjectHashMap<Section> sections : mWorlds.values()) {
+            sections.forEach((key, section) -> {
+                if (section.levels != null) {
+                    mFreeBuffers.add(section.levels);
+                }
+            });
+        }
+        mWorlds.clear();
+    }
+
+    private static class Section {
+
+        private int readCount;
+        private ByteBuffer levels;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.common.internal.engine.sched;
+
+import java.util.Queue;
+
+import ru.beykerykt.minecraft.lightapi.common.api.engine.EditPolicy;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.SendPolicy;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.ICallback;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.sched.SchedulerType;
+import ru.beykerykt.minecraft.lightapi.common.internal.chunks.observer.sched.IScheduledChunkObserver;
+import ru.beykerykt.minecraft.lightapi.common.internal.service.IBackgroundService;
+
+/**
+ * A scheduler for the best total throughput. Requests are not prioritized, they are added to FIFO ring
+ * buffers and handled in large batches. Every edit except a forced one is relit from the relight queue,
+ * so the relight of many edits is combined.
+ */
+public class ThroughputScheduler extends PriorityScheduler {
+
+    private final int mDrainBatchSize;
+
+    public ThroughputScheduler(IScheduledLightEngine lightEngine, IScheduledChunkObserver chunkObserver,
+            IBackgroundService backgroundService, long maxTimeMsPerTick, int drainBatchSize) {
+        super(lightEngine, chunkObserver, backgroundService, maxTimeMsPerTick);
+        this.mDrainBatchSize = Math.max(drainBatchSize, 1);
+    }
+
+    @Override
+    public SchedulerType getType() {
+        return SchedulerType.THROUGHPUT;
+    }
+
+    @Override
+    public Queue<Request> createQueue() {
+        return new RequestRingBuffer(256);
+    }
+
+    @Override
+    public int getDrainBatchSize() {
+        return mDrainBatchSize;
+    }
+
+    @Override
+    public int compareRequests(Request o1, Request o2) {
+        // requests are handled in the order they are added
+        return 0;
+    }
+
+    @Override
+    public Request createRequest(int defaultFlag, String worldName, int blockX, int blockY, int blockZ, int lightLevel,
+            int lightFlags, EditPolicy editPolicy, SendPolicy sendPolicy, ICallback callback) {
+        Request request = createEmptyRequest(worldName, blockX, blockY, blockZ, lightLevel, lightFlags, editPolicy,
+                sendPolicy, callback);
+        request.setRequestFlags(defaultFlag);
+        if (editPolicy == EditPolicy.FORCE_IMMEDIATE) {
+            request.addRequestFlag(RequestFlag.RECALCULATE);
+            request.addRequestFlag(RequestFlag.SEPARATE_SEND);
+            return request;
+        }
+        request.addRequestFlag(RequestFlag.DEFERRED_RECALCULATE);
+        if (sendPolicy == SendPolicy.IMMEDIATE) {
+            request.addRequestFlag(RequestFlag.SEPARATE_SEND);
+        } else if (sendPolicy == SendPolicy.DEFERRED) {
+            request.addRequestFlag(RequestFlag.COMBINED_SEND);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package ru.beykerykt.minecraft.lightapi.common.internal.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.BlockPosition;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.ChunkUtils;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongHashSet;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongObjectHashMap;
+
+/**
+ * In-memory index of the custom block light sources placed through the light engine.
+ * <p>
+ * Positions are packed with {@link BlockPosition#asLong(int, int, int)} and kept in one primitive set
+ * per chunk. A query only visits the chunks that overlap the queried area and contain lights, so
+ * its cost follows the number of lights found rather than the number of lights in the world.
+ * <p>
+ * The index is updated when a light level is actually written to the world, so it follows the
+ * state of the world and not the state of the request queue. All methods are thread-safe.
+ */
+public class LightIndex {
+
+    private final Map<String, LongObjectHashMap<ChunkLights>> mWorlds = new HashMap<>();
+
+    /**
+     * Called after a block light level was written to the world. Zero removes the position.
+     */
+    public synchronized void onLightLevelChanged(String worldName, int blockX, int blockY, int blockZ,
+            int lightLevel) {
+        long chunkKey = ChunkUtils.getChunkKey(blockX >> 4, blockZ >> 4);
+        long pos = BlockPosition.asLong(blockX, blockY, blockZ);
+        LongObjectHashMap<ChunkLights> chunks = mWorlds.get(worldName);
+        if (lightLevel > 0) {
+            if (chunks == null) {
+                chunks = new LongObjectHashMap<>();
+                mWorlds.put(worldName, chunks);
+            }
+            ChunkLights lights = chunks.get(chunkKey);
+            if (lights == null) {
+                lights = new ChunkLights(chunkKey);
+                chunks.put(chunkKey, lights);
+            }
+            lights.mPositions.add(pos);
+        } else if (chunks != null) {
+            ChunkLights lights = chunks.get(chunkKey);
+            if (lights != null && lights.mPositions.remove(pos) && lights.mPositions.isEmpty()) {
+                chunks.remove(chunkKey);
+            }
+        }
+    }
+
+    /**
+     * N/A
+     */
+    public synchronized boolean contains(String worldName, int blockX, int blockY, int blockZ) {
+        ChunkLights lights = getChunkLights(worldName, ChunkUtils.getChunkKey(blockX >> 4, blockZ >> 4));
+        return lights != null && lights.mPositions.contains(BlockPosition.asLong(blockX, blockY, blockZ));
+    }
+
+    /**
+     * N/A
+     */
+    public synchronized int size(String worldName) {
+        LongObjectHashMap<ChunkLights> chunks = mWorlds.get(worldName);
+        if (chunks == null) {
+            return 0;
+        }
+        int[] size = new int[1];
+        chunks.forEach((chunkKey, lights) -> size[0] += lights.mPositions.size());
+        return size[0];
+    }
+
+    /**
+     * Returns the packed positions of all lights in the chunk.
+     */
+    public synchronized long[] getLightsInChunk(String worldName, int chunkX, int chunkZ) {
+        ChunkLights lights = getChunkLights(worldName, ChunkUtils.getChunkKey(chunkX, chunkZ));
+        if (lights == null) {
+            return new long[0];
+        }
+        LongList out = new LongList(lights.mPositions.size());
+        lights.mPositions.forEach(out::add);
+        return out.toArray();
+    }
+
+    /**
+     * Returns the packed positions of all lights in the box, bounds are inclusive.
+     */
+    public synchronized long[] getLightsInBox(String worldName, int minX, int minY, int minZ, int maxX, int maxY,
+            int maxZ) {
+        LongList out = new LongList(16);
+        forEachChunkInBox(worldName, minX, minZ, maxX, maxZ, lights -> lights.mPositions.forEach(pos -> {
+            if (isInBox(pos, minX, minY, minZ, maxX, maxY, maxZ)) {
+                out.add(pos);
+            }
+        }));
+        return out.toArray();
+    }
+
+    /**
+     * Returns the packed positions of all lights within the radius (in blocks) of the center.
+     */
+    public synchronized long[] getLightsInRadius(String worldName, int centerX, int centerY, int centerZ,
+            int radius) {
+        LongList out = new LongList(16);
+        long radiusSq = (long) radius * radius;
+        forEachChunkInBox(worldName, centerX - radius, centerZ - radius, centerX + radius, centerZ + radius,
+                lights -> lights.mPositions.forEach(pos -> {
+                    long dx = BlockPosition.unpackLongX(pos) - centerX;
+                    long dy = BlockPosition.unpackLongY(pos) - centerY;
+                    long dz = BlockPosition.unpackLongZ(pos) - centerZ;
+                    if (dx * dx + dy * dy + dz * dz <= radiusSq) {
+                        out.add(pos);
+                    }
+                }));
+        return out.toArray();
+    }
+
+    /**
+     * Removes all lights of the world, called when the world is unloaded.
+     */
+    public synchronized void removeWorld(String worldName) {
+        mWorlds.remove(worldName);
+    }
+
+    /**
+     * N/A
+     */
+    public synchronized void clear() {
+        mWorlds.clear();
+    }
+
+    private ChunkLights getChunkLights(String worldName, long chunkKey) {
+        LongObjectHashMap<ChunkLights> chunks = mWorlds.get(worldName);
+        return chunks == null ? null : chunks.get(chunkKey);
+    }
+
+    private void forEachChunkInBox(String worldName, int minX, int minZ, int maxX, int maxZ,
+            Consumer<ChunkLights> consumer) {
+        LongObjectHashMap<ChunkLights> chunks = mWorlds.get(worldName);
+        if (chunks == null || chunks.isEmpty()) {
+            return;
+        }
+        int minChunkX = minX >> 4;
+        int minChunkZ = minZ >> 4;
+        int maxChunkX = maxX >> 4;
+        int maxChunkZ = maxZ >> 4;
+        long area = (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+        if (area > chunks.size()) {
+            // the box is larger than the indexed area, walk the indexed chunks instead
+            List<ChunkLights> matched = new ArrayList<>();
+            chunks.forEach((chunkKey, lights) -> {
+                if (lights.mChunkX >= minChunkX && lights.mChunkX <= maxChunkX && lights.mChunkZ >= minChunkZ
+                        && lights.mChunkZ <= maxChunkZ) {
+                    matched.add(lights);
+                }
+            });
+            for (ChunkLights lights : matched) {
+                consumer.accept(lights);
+            }
+            return;
+        }
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                ChunkLights lights = chunks.get(ChunkUtils.getChunkKey(chunkX, chunkZ));
+                if (lights != null) {
+                    consumer.accept(lights);
+                }
+            }
+        }
+    }
+
+    private static boolean isInBox(long pos, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        int x = BlockPosition.unpackLongX(pos);
+        int y = BlockPosition.unpackLongY(pos);
+        int z = BlockPosition.unpackLongZ(pos);
+        return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+    }
+
+    private static class ChunkLights {
+
+        private final int mChunkX;
+        private final int mChunkZ;
+        private final LongHashSet mPositions = new LongHashSet();
+
+        ChunkLights(long chunkKey) {
+            this.mChunkX = ChunkUtils.getChunkX(chunkKey);
+            this.mChunkZ = ChunkUtils.getChunkZ(chunkKey);
+        }
+    }
+
+    private static class LongList {
+
+        private long[] mData;
+        private int mSize;
+
+        LongList(int capacity) {
+            this.mData = new long[Math.max(capacity, 1)];
+        }
+
+        void add(long value) {
+            if (mSize == mData.length) {
+                mData = Arrays.copyOf(mData, mSize << 1);
+            }
+            mData[mSize++] = value;
+        }
+
+        long[] toArray() {
+            return mSize == mData.length ? mData : Arrays.copyOf(mData, mSize);
+        }
+    }
+}
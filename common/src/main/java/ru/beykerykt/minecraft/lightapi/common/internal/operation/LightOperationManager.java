@@ -0,0 +1,254 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package ru.beykerykt.minecraft.lightapi.common.internal.operation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import ru.beykerykt.minecraft.lightapi.common.api.ResultCode;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.EditPolicy;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.ILightOperation;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.SendPolicy;
+import ru.beykerykt.minecraft.lightapi.common.internal.IPlatformImpl;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.ILightEngine;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.sched.IScheduledLightEngine;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.BlockPosition;
+
+/**
+ * Runs light operations over large areas. Every tick the positions of the running operations are
+ * pulled from their shapes and handed to the light engine as deferred edits. The number of edits per
+ * tick is limited, and no edits are produced while the engine has more pending requests than
+ * allowed, so the engine works through the area at the pace of its own time budget.
+ */
+public class LightOperationManager {
+
+    private static final long TICK_MS = 50;
+
+    private final IPlatformImpl mPlatformImpl;
+    private final int mMaxEditsPerTick;
+    private final int mMaxPendingRequests;
+    private final List<Operation> mOperations = new CopyOnWriteArrayList<>();
+    private ScheduledFuture<?> mScheduledFuture;
+
+    public LightOperationManager(IPlatformImpl platformImpl, int maxEditsPerTick, int maxPendingRequests) {
+        this.mPlatformImpl = platformImpl;
+        this.mMaxEditsPerTick = Math.max(1, maxEditsPerTick);
+        this.mMaxPendingRequests = Math.max(1, maxPendingRequests);
+    }
+
+    protected IPlatformImpl getPlatformImpl() {
+        return mPlatformImpl;
+    }
+
+    public void onStart() {
+        mScheduledFuture = getPlatformImpl().getBackgroundService().scheduleWithFixedDelay(this::onTick, 0,
+                (int) TICK_MS, TimeUnit.MILLISECONDS);
+        getPlatformImpl().debug(getClass().getName() + " is started!");
+    }
+
+    public void onShutdown() {
+        if (mScheduledFuture != null) {
+            mScheduledFuture.cancel(false);
+        }
+        // the rest of the area is dropped, it can't be resumed without the shape
+        for (Operation operation : mOperations) {
+            operation.cancel();
+        }
+        mOperations.clear();
+        getPlatformImpl().debug(getClass().getName() + " is shutdown!");
+    }
+
+    public ILightOperation submit(String worldName, Spliterator.OfLong positions, int lightLevel, int lightFlags,
+            SendPolicy sendPolicy) {
+        if (lightLevel < 0 || lightLevel > 15) {
+            throw new IllegalArgumentException("lightLevel must be in range 0 - 15");
+        }
+        Operation operation = new Operation(worldName, positions, lightLevel, lightFlags, sendPolicy);
+        mOperations.add(operation);
+        return operation;
+    }
+
+    private int getEditBudget() {
+        ILightEngine lightEngine = getPlatformImpl().getLightEngine();
+        if (!(lightEngine instanceof IScheduledLightEngine)) {
+            return mMaxEditsPerTick;
+        }
+        int pending = ((IScheduledLightEngine) lightEngine).getPendingRequestCount();
+        return Math.min(mMaxEditsPerTick, mMaxPendingRequests - pending);
+    }
+
+    private void onTick() {
+        if (mOperations.isEmpty()) {
+            return;
+        }
+        int budget = getEditBudget();
+        if (budget <= 0) {
+            return;
+        }
+        ILightEngine lightEngine = getPlatformImpl().getLightEngine();
+        List<Operation> finished = new ArrayList<>();
+        // the budget is shared evenly, an operation that finishes early leaves its share to the next ones
+        int left = mOperations.size();
+        for (Operation operation : mOperations) {
+            int share = budget / left--;
+            try {
+                budget -= operation.process(lightEngine, share);
+            } catch (RuntimeException e) {
+                // a broken shape must not stop the tick, it would never run again
+                operation.fail();
+                getPlatformImpl().error("Light operation in " + operation.mWorldName + " failed: " + e);
+            }
+            if (operation.isDone()) {
+                finished.add(operation);
+            }
+        }
+        mOperations.removeAll(finished);
+    }
+
+    private class Operation implements ILightOperation {
+
+        private final String mWorldName;
+        private final Spliterator.OfLong mPositions;
+        private final int mLightLevel;
+        private final int mLightFlags;
+        private final SendPolicy mSendPolicy;
+        private final long mTotalCount;
+        private volatile long mProcessedCount;
+        private volatile long mStartTimeMs;
+        private volatile boolean isCancelled;
+        private volatile boolean isFinished;
+        private volatile int mResultCode = ResultCode.SUCCESS;
+
+        Operation(String worldName, Spliterator.OfLong positions, int lightLevel, int lightFlags,
+                SendPolicy sendPolicy) {
+            this.mWorldName = worldName;
+            this.mPositions = positions;
+            this.mLightLevel = lightLevel;
+            this.mLightFlags = lightFlags;
+            this.mSendPolicy = sendPolicy;
+            this.mTotalCount = positions.hasCharacteristics(Spliterator.SIZED) ? positions.estimateSize() : -1;
+        }
+
+        /**
+         * Called from the tick when the shape throws.
+         */
+        private void fail() {
+            mResultCode = ResultCode.FAILED;
+            isCancelled = true;
+        }
+
+        /**
+         * Called from the tick only.
+         *
+         * @return number of processed positions
+         */
+        private int process(ILightEngine lightEngine, int maxCount) {
+            if (isDone()) {
+                return 0;
+            }
+            if (mStartTimeMs == 0) {
+                mStartTimeMs = System.currentTimeMillis();
+            }
+            int count = 0;
+            while (count < maxCount && !isCancelled) {
+                boolean hasNext = mPositions.tryAdvance((long pos) -> {
+                    mResultCode = lightEngine.setLightLevel(mWorldName, BlockPosition.unpackLongX(pos),
+                            BlockPosition.unpackLongY(pos), BlockPosition.unpackLongZ(pos), mLightLevel,
+                            mLightFlags, EditPolicy.DEFERRED, mSendPolicy, null);
+                });
+                if (!hasNext) {
+                    isFinished = true;
+                    break;
+                }
+                count++;
+                if (mResultCode == ResultCode.WORLD_NOT_AVAILABLE) {
+                    // the world is gone, the rest of the area can't be applied either
+                    isCancelled = true;
+                }
+            }
+            mProcessedCount += count;
+            return count;
+        }
+
+        @Override
+        public long getProcessedCount() {
+            return mProcessedCount;
+        }
+
+        @Override
+        public long getTotalCount() {
+            return mTotalCount;
+        }
+
+        @Override
+        public double getProgress() {
+            if (isFinished) {
+                return 1.0;
+            }
+            if (mTotalCount <= 0) {
+                return mTotalCount == 0 ? 1.0 : -1;
+            }
+            return Math.min(1.0, (double) mProcessedCount / mTotalCount);
+        }
+
+        @Override
+        public long getEstimatedTimeRemainingMs() {
+            if (isDone()) {
+                return 0;
+            }
+            long processed = mProcessedCount;
+            long startTimeMs = mStartTimeMs;
+            if (mTotalCount < 0 || processed == 0 || startTimeMs == 0) {
+                return -1;
+            }
+            long elapsed = Math.max(1, System.currentTimeMillis() - startTimeMs);
+            return (long) ((double) (mTotalCount - processed) * elapsed / processed);
+        }
+
+        @Override
+        public int getResultCode() {
+            return mResultCode;
+        }
+
+        @Override
+        public void cancel() {
+            isCancelled = true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return isCancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return isFinished || isCancelled;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.common.internal.restore;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import ru.beykerykt.minecraft.lightapi.common.api.ResultCode;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.ILightProvider;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.LightFlag;
+import ru.beykerykt.minecraft.lightapi.common.internal.IPlatformImpl;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.BlockPosition;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.ChunkUtils;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongIntHashMap;
+
+/**
+ * Restores lights from the registered providers when chunks are loaded. Lights are fetched on the
+ * background thread and passed to the light engine as one batch per chunk, limited per tick.
+ */
+public class LightRestorePipeline {
+
+    private static final long TICK_MS = 50;
+    private static final int LIGHT_FLAGS = LightFlag.BLOCK_LIGHTING | LightFlag.SKY_LIGHTING;
+
+    private final IPlatformImpl mPlatformImpl;
+    private final int mMaxChunksPerTick;
+    private final int mMaxLightsPerTick;
+    private final List<ILightProvider> mProviders = new CopyOnWriteArrayList<>();
+    // loaded chunks waiting for restore, world name -> chunk keys
+    private final Map<String, Set<Long>> mPendingChunks = new ConcurrentHashMap<>();
+    private final Queue<ChunkBatch> mReadyBatches = new ConcurrentLinkedQueue<>();
+    private ScheduledFuture<?> mScheduledFuture;
+
+    public LightRestorePipeline(IPlatformImpl platformImpl, int maxChunksPerTick, int maxLightsPerTick) {
+        this.mPlatformImpl = platformImpl;
+        this.mMaxChunksPerTick = maxChunksPerTick;
+        this.mMaxLightsPerTick = maxLightsPerTick;
+    }
+
+    protected IPlatformImpl getPlatformImpl() {
+        return mPlatformImpl;
+    }
+
+    public void onStart() {
+        mScheduledFuture = getPlatformImpl().getBackgroundService().scheduleWithFixedDelay(this::onTick, 0,
+                (int) TICK_MS, TimeUnit.MILLISECONDS);
+        getPlatformImpl().debug(getClass().getName() + " is started!");
+    }
+
+    public void onShutdown() {
+        if (mScheduledFuture != null) {
+            mScheduledFuture.cancel(false);
+        }
+        mPendingChunks.clear();
+        mReadyBatches.clear();
+        mProviders.clear();
+        getPlatformImpl().debug(getClass().getName() + " is shutdown!");
+    }
+
+    public void registerProvider(ILightProvider provider) {
+        if (!mProviders.contains(provider)) {
+            mProviders.add(provider);
+        }
+    }
+
+    public void unregisterProvider(ILightProvider provider) {
+        mProviders.remove(provider);
+    }
+
+    private Set<Long> getPendingChunks(String worldName) {
+        return mPendingChunks.computeIfAbsent(worldName, k -> ConcurrentHashMap.newKeySet());
+    }
+
+    public void onChunkLoad(String worldName, int chunkX, int chunkZ) {
+        if (mProviders.isEmpty()) {
+            return;
+        }
+        if (!getPendingChunks(worldName).add(ChunkUtils.getChunkKey(chunkX, chunkZ))) {
+            return;
+        }
+        getPlatformImpl().getBackgroundService().executeBlocking(() -> fetchChunk(worldName, chunkX, chunkZ));
+    }
+
+    public void onChunkUnload(String worldName, int chunkX, int chunkZ) {
+        Set<Long> chunks = mPendingChunks.get(worldName);
+        if (chunks != null) {
+            // the batch is dropped if the chunk is gone before it is restored
+            chunks.remove(ChunkUtils.getChunkKey(chunkX, chunkZ));
+        }
+    }
+
+    public void onWorldUnload(String worldName) {
+        mPendingChunks.remove(worldName);
+    }
+
+    private boolean isPending(String worldName, int chunkX, int chunkZ) {
+        Set<Long> chunks = mPendingChunks.get(worldName);
+        return chunks != null && chunks.contains(ChunkUtils.getChunkKey(chunkX, chunkZ));
+    }
+
+    private void fetchChunk(String worldName, int chunkX, int chunkZ) {
+        if (!isPending(worldName, chunkX, chunkZ)) {
+            return;
+        }
+        LongIntHashMap lights = new LongIntHashMap();
+        for (ILightProvider provider : mProviders) {
+            try {
+                provider.provideLights(worldName, chunkX, chunkZ, (blockX, blockY, blockZ, lightLevel, lightFlags) -> {
+                    if (blockX >> 4 != chunkX || blockZ >> 4 != chunkZ || lightLevel <= 0) {
+                        return;
+                    }
+                    long pos = BlockPosition.asLong(blockX, blockY, blockZ);
+                    int value = lightLevel > 15 ? 15 : lightLevel;
+                    int flags = (lightFlags & LIGHT_FLAGS) != 0 ? lightFlags & LIGHT_FLAGS : LightFlag.BLOCK_LIGHTING;
+                    // the brightest light wins if providers overlap
+                    if ((lights.get(pos, 0) & 15) < value) {
+                        lights.put(pos, value | flags << 4);
+                    }
+                });
+            } catch (Exception e) {
+                getPlatformImpl().error("Light provider " + provider.getClass().getName() + " failed on chunk "
+                        + chunkX + ", " + chunkZ);
+                e.printStackTrace();
+            }
+        }
+        if (lights.isEmpty()) {
+            onChunkUnload(worldName, chunkX, chunkZ);
+            return;
+        }
+        mReadyBatches.add(new ChunkBatch(worldName, chunkX, chunkZ, lights));
+    }
+
+    private void onTick() {
+        int chunkCount = 0;
+        int lightCount = 0;
+        ChunkBatch batch;
+        while (chunkCount < mMaxChunksPerTick && (batch = mReadyBatches.peek()) != null) {
+            // a single batch is never split
+            if (chunkCount > 0 && lightCount + batch.lights.size() > mMaxLightsPerTick) {
+                break;
+            }
+            mReadyBatches.poll();
+            Set<Long> chunks = mPendingChunks.get(batch.worldName);
+            if (chunks == null || !chunks.remove(ChunkUtils.getChunkKey(batch.chunkX, batch.chunkZ))) {
+                continue;
+            }
+            int resultCode = getPlatformImpl().getLightEngine().restoreLights(batch.worldName, batch.lights);
+            if (resultCode != ResultCode.SUCCESS) {
+                getPlatformImpl().debug("Can not restore lights of chunk " + batch.chunkX + ", " + batch.chunkZ
+                        + ": " + resultCode);
+            }
+            chunkCount++;
+            lightCount += batch.lights.size();
+        }
+    }
+
+    private static class ChunkBatch {
+
+        private final String worldName;
+        private final int chunkX;
+        private final int chunkZ;
+        private final LongIntHashMap lights;
+
+        ChunkBatch(String worldName, int chunkX, int chunkZ, LongIntHashMap lights) {
+            this.worldName = worldName;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.lights = lights;
+        }
+    }
+}
@@ -24,6 +24,7 @@
 
 package ru.beykerykt.minecraft.lightapi.common.internal.service;
 
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -34,6 +35,7 @@ import ru.beykerykt.minecraft.lightapi.common.internal.IPlatformImpl;
 
 public abstract class BackgroundServiceImpl implements IBackgroundService {
     private ScheduledExecutorService executorService;
+    private ExecutorService blockingExecutorService;
     private IPlatformImpl mPlatform;
 
     public BackgroundServiceImpl(IPlatformImpl platform) {
@@ -50,12 +52,41 @@ public abstract class BackgroundServiceImpl implements IBackgroundService {
         }
     }
 
+    /**
+     * Moves blocking tasks to virtual threads if the runtime supports them, otherwise they share the
+     * threads of the executor service.
+     *
+     * @return true if blocking tasks run on virtual threads
+     */
+    protected boolean configureBlockingExecutorService(String namePrefix) {
+        if (this.blockingExecutorService == null && BlockingExecutors.isVirtualThreadsSupported()) {
+            this.blockingExecutorService = BlockingExecutors.newVirtualThreadExecutor(namePrefix);
+        }
+        return this.blockingExecutorService != null;
+    }
+
     protected ScheduledExecutorService getExecutorService() {
         return this.executorService;
     }
 
+    protected ExecutorService getBlockingExecutorService() {
+        return this.blockingExecutorService != null ? this.blockingExecutorService : this.executorService;
+    }
+
     @Override
     public void onShutdown() {
+        if (this.blockingExecutorService != null) {
+            // pending I/O is finished before the threads of the service are stopped
+            this.blockingExecutorService.shutdown();
+            try {
+                if (!this.blockingExecutorService.awaitTermination(10, TimeUnit.SECONDS)) {
+                    this.blockingExecutorService.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                this.blockingExecutorService.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
         if (getExecutorService() != null) {
             getExecutorService().shutdown();
             try {
@@ -76,4 +107,14 @@ public abstract class BackgroundServiceImpl implements IBackgroundService {
     public ScheduledFuture<?> scheduleWithFixedDelay(Runnable runnable, int initialDelay, int delay, TimeUnit unit) {
         return getExecutorService().scheduleWithFixedDelay(runnable, initialDelay, delay, unit);
     }
+
+    @Override
+    public void execute(Runnable runnable) {
+        getExecutorService().execute(runnable);
+    }
+
+    @Override
+    public void executeBlocking(Runnable runnable) {
+        getBlockingExecutorService().execute(runnable);
+    }
 }
@@ -52,4 +52,15 @@ public interface IBackgroundService {
      * N/A
      */
     ScheduledFuture<?> scheduleWithFixedDelay(Runnable runnable, int initialDelay, int delay, TimeUnit unit);
+
+    /**
+     * Executes the task once on the background thread
+     */
+    void execute(Runnable runnable);
+
+    /**
+     * Executes the blocking task (e.g. storage I/O) once outside the threads that drain the queues. On
+     * Java 21+ the task may run on a virtual thread.
+     */
+    void executeBlocking(Runnable runnable);
 }
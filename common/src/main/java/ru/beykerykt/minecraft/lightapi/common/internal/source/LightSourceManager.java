@@ -0,0 +1,375 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.common.internal.source;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import ru.beykerykt.minecraft.lightapi.common.api.ResultCode;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.ILightSource;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.LightFlag;
+import ru.beykerykt.minecraft.lightapi.common.internal.IPlatformImpl;
+import ru.beykerykt.minecraft.lightapi.common.internal.chunks.observer.IChunkObserver;
+import ru.beykerykt.minecraft.lightapi.common.internal.chunks.observer.sched.IScheduledChunkObserver;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.ILightEngine;
+
+/**
+ * Applies the changes of light source handles once per tick. All changes of a world are written as raw
+ * light levels first and relit together, so a move costs one relight and one merged send.
+ */
+public class LightSourceManager {
+
+    private static final long TICK_MS = 50;
+
+    private final IPlatformImpl mPlatformImpl;
+    private final Set<Handle> mDirtySources = ConcurrentHashMap.newKeySet();
+    private final Set<Handle> mSources = ConcurrentHashMap.newKeySet();
+    private ScheduledFuture<?> mScheduledFuture;
+
+    public LightSourceManager(IPlatformImpl platformImpl) {
+        this.mPlatformImpl = platformImpl;
+    }
+
+    protected IPlatformImpl getPlatformImpl() {
+        return mPlatformImpl;
+    }
+
+    public void onStart() {
+        mScheduledFuture = getPlatformImpl().getBackgroundService().scheduleWithFixedDelay(this::onTick, 0,
+                (int) TICK_MS, TimeUnit.MILLISECONDS);
+        getPlatformImpl().debug(getClass().getName() + " is started!");
+    }
+
+    public void onShutdown() {
+        if (mScheduledFuture != null) {
+            mScheduledFuture.cancel(false);
+        }
+        // the light sources are not persistent
+        for (Handle handle : mSources) {
+            handle.destroy();
+        }
+        onTick();
+        mSources.clear();
+        getPlatformImpl().debug(getClass().getName() + " is shutdown!");
+    }
+
+    public ILightSource createLightSource(String worldName, int blockX, int blockY, int blockZ, int lightLevel,
+            int lightFlags) {
+        if (lightLevel < 0 || lightLevel > 15) {
+            throw new IllegalArgumentException("lightLevel must be in range 0 - 15");
+        }
+        Handle handle = new Handle(worldName, blockX, blockY, blockZ, lightLevel, lightFlags);
+        mSources.add(handle);
+        mDirtySources.add(handle);
+        return handle;
+    }
+
+    private void onTick() {
+        if (mDirtySources.isEmpty()) {
+            return;
+        }
+        ILightEngine lightEngine = getPlatformImpl().getLightEngine();
+        IChunkObserver chunkObserver = getPlatformImpl().getChunkObserver();
+        // world name -> changes
+        Map<String, List<Change>> changes = new HashMap<>();
+        Map<String, Integer> worldFlags = new HashMap<>();
+        List<Update> updates = new ArrayList<>();
+        for (Handle handle : mDirtySources) {
+            mDirtySources.remove(handle);
+            Update update = handle.collectChanges(changes, worldFlags);
+            if (update != null) {
+                updates.add(update);
+            }
+        }
+        for (Map.Entry<String, List<Change>> entry : changes.entrySet()) {
+            String worldName = entry.getKey();
+            if (!getPlatformImpl().isWorldAvailable(worldName)) {
+                continue;
+            }
+            try {
+                applyChanges(lightEngine, chunkObserver, worldName, entry.getValue(), worldFlags.get(worldName));
+            } catch (RuntimeException e) {
+                // the changes that were not written are tried again on the next tick
+                getPlatformImpl().error("Light sources in " + worldName + " failed: " + e);
+            }
+        }
+        // the state in the world follows only the written changes, the rest is tried again on the next tick
+        for (Update update : updates) {
+            update.handle.onUpdateApplied(update);
+        }
+    }
+
+    private void applyChanges(ILightEngine lightEngine, IChunkObserver chunkObserver, String worldName,
+            List<Change> changes, int lightFlags) {
+        boolean changed = false;
+        // decreases are listed before increases, so an overlapping light is placed again
+        for (Change change : changes) {
+            int resultCode = lightEngine.setRawLightLevel(worldName, change.blockX, change.blockY, change.blockZ,
+                    change.lightLevel, change.lightFlags);
+            change.isApplied = resultCode == ResultCode.SUCCESS || resultCode == ResultCode.MOVED_TO_DEFERRED;
+            changed |= change.isApplied;
+        }
+        if (!changed) {
+            return;
+        }
+        Change first = changes.get(0);
+        lightEngine.recalculateLighting(worldName, first.blockX, first.blockY, first.blockZ, lightFlags);
+        if (chunkObserver instanceof IScheduledChunkObserver) {
+            IScheduledChunkObserver observer = (IScheduledChunkObserver) chunkObserver;
+            // the observer merges the sections of all changes into one send per chunk
+            for (Change change : changes) {
+                if (change.isApplied) {
+                    observer.notifyUpdateChunks(worldName, change.blockX, change.blockY, change.blockZ,
+                            change.sendLightLevel, change.lightFlags);
+                }
+            }
+        }
+    }
+
+    private static class Change {
+
+        private final int blockX;
+        private final int blockY;
+        private final int blockZ;
+        private final int lightLevel;
+        private final int sendLightLevel;
+        private final int lightFlags;
+        private boolean isApplied;
+
+        Change(int blockX, int blockY, int blockZ, int lightLevel, int sendLightLevel, int lightFlags) {
+            this.blockX = blockX;
+            this.blockY = blockY;
+            this.blockZ = blockZ;
+            this.lightLevel = lightLevel;
+            this.sendLightLevel = sendLightLevel;
+            this.lightFlags = lightFlags;
+        }
+    }
+
+    /**
+     * Changes of one handle in one tick and the state they lead to
+     */
+    private static class Update {
+
+        private final Handle handle;
+        private final String worldName;
+        private final int blockX;
+        private final int blockY;
+        private final int blockZ;
+        private final int lightLevel;
+        // removes the light at the old position, or null
+        private Change removal;
+        // places the light at the new position or changes the level in place, or null
+        private Change placement;
+
+        Update(Handle handle, String worldName, int blockX, int blockY, int blockZ, int lightLevel) {
+            this.handle = handle;
+            this.worldName = worldName;
+            this.blockX = blockX;
+            this.blockY = blockY;
+            this.blockZ = blockZ;
+            this.lightLevel = lightLevel;
+        }
+    }
+
+    private class Handle implements ILightSource {
+
+        // requested state
+        private String mWorldName;
+        private int mBlockX;
+        private int mBlockY;
+        private int mBlockZ;
+        private int mLightLevel;
+        private final int mLightFlags;
+        private boolean mDestroyed;
+        // state in the world, the level is zero if nothing is placed
+        private String mAppliedWorldName;
+        private int mAppliedX;
+        private int mAppliedY;
+        private int mAppliedZ;
+        private int mAppliedLightLevel;
+
+        Handle(String worldName, int blockX, int blockY, int blockZ, int lightLevel, int lightFlags) {
+            this.mWorldName = worldName;
+            this.mBlockX = blockX;
+            this.mBlockY = blockY;
+            this.mBlockZ = blockZ;
+            this.mLightLevel = lightLevel;
+            int flags = lightFlags & (LightFlag.BLOCK_LIGHTING | LightFlag.SKY_LIGHTING);
+            this.mLightFlags = flags != 0 ? flags : LightFlag.BLOCK_LIGHTING;
+        }
+
+        private Change addChange(Map<String, List<Change>> changes, Map<String, Integer> worldFlags,
+                String worldName, int blockX, int blockY, int blockZ, int lightLevel, int sendLightLevel,
+                boolean decrease) {
+            List<Change> list = changes.computeIfAbsent(worldName, k -> new ArrayList<>());
+            Change change = new Change(blockX, blockY, blockZ, lightLevel, sendLightLevel, mLightFlags);
+            if (decrease) {
+                list.add(0, change);
+            } else {
+                list.add(change);
+            }
+            worldFlags.merge(worldName, mLightFlags, (a, b) -> a | b);
+            return change;
+        }
+
+        /**
+         * @return the changes needed to reach the requested state, or null if there is nothing to write
+         */
+        synchronized Update collectChanges(Map<String, List<Change>> changes, Map<String, Integer> worldFlags) {
+            int targetLightLevel = mDestroyed ? 0 : mLightLevel;
+            Update update = new Update(this, mWorldName, mBlockX, mBlockY, mBlockZ, targetLightLevel);
+            boolean samePosition = mAppliedLightLevel > 0 && mWorldName.equals(mAppliedWorldName)
+                    && mBlockX == mAppliedX && mBlockY == mAppliedY && mBlockZ == mAppliedZ;
+            if (samePosition) {
+                if (targetLightLevel != mAppliedLightLevel) {
+                    update.placement = addChange(changes, worldFlags, mWorldName, mBlockX, mBlockY, mBlockZ,
+                            targetLightLevel, Math.max(targetLightLevel, mAppliedLightLevel),
+                            targetLightLevel < mAppliedLightLevel);
+                }
+            } else {
+                if (mAppliedLightLevel > 0) {
+                    update.removal = addChange(changes, worldFlags, mAppliedWorldName, mAppliedX, mAppliedY,
+                            mAppliedZ, 0, mAppliedLightLevel, true);
+                }
+                if (targetLightLevel > 0) {
+                    update.placement = addChange(changes, worldFlags, mWorldName, mBlockX, mBlockY, mBlockZ,
+                            targetLightLevel, targetLightLevel, false);
+                }
+            }
+            if (update.removal == null && update.placement == null) {
+                setApplied(update);
+                return null;
+            }
+            return update;
+        }
+
+        synchronized void onUpdateApplied(Update update) {
+            boolean isRemoved = update.removal == null || update.removal.isApplied;
+            boolean isPlaced = update.placement == null || update.placement.isApplied;
+            if (isRemoved && isPlaced) {
+                setApplied(update);
+                return;
+            }
+            if (isRemoved) {
+                // the old light is gone, the new one is placed on the next tick
+                mAppliedLightLevel = 0;
+            }
+            // otherwise the old light is still in the world and is removed on the next tick
+            markDirty();
+        }
+
+        private void setApplied(Update update) {
+            mAppliedWorldName = update.worldName;
+            mAppliedX = update.blockX;
+            mAppliedY = update.blockY;
+            mAppliedZ = update.blockZ;
+            mAppliedLightLevel = update.lightLevel;
+        }
+
+        private void markDirty() {
+            mDirtySources.add(this);
+        }
+
+        @Override
+        public synchronized String getWorldName() {
+            return mWorldName;
+        }
+
+        @Override
+        public synchronized int getBlockX() {
+            return mBlockX;
+        }
+
+        @Override
+        public synchronized int getBlockY() {
+            return mBlockY;
+        }
+
+        @Override
+        public synchronized int getBlockZ() {
+            return mBlockZ;
+        }
+
+        @Override
+        public synchronized int getLightLevel() {
+            return mLightLevel;
+        }
+
+        @Override
+        public int getLightFlags() {
+            return mLightFlags;
+        }
+
+        @Override
+        public void moveTo(int blockX, int blockY, int blockZ) {
+            moveTo(getWorldName(), blockX, blockY, blockZ);
+        }
+
+        @Override
+        public synchronized void moveTo(String worldName, int blockX, int blockY, int blockZ) {
+            if (mDestroyed) {
+                throw new IllegalStateException("Light source is destroyed");
+            }
+            mWorldName = worldName;
+            mBlockX = blockX;
+            mBlockY = blockY;
+            mBlockZ = blockZ;
+            markDirty();
+        }
+
+        @Override
+        public synchronized void setLightLevel(int lightLevel) {
+            if (mDestroyed) {
+                throw new IllegalStateException("Light source is destroyed");
+            }
+            if (lightLevel < 0 || lightLevel > 15) {
+                throw new IllegalArgumentException("lightLevel must be in range 0 - 15");
+            }
+            mLightLevel = lightLevel;
+            markDirty();
+        }
+
+        @Override
+        public synchronized void destroy() {
+            if (mDestroyed) {
+                return;
+            }
+            mDestroyed = true;
+            mSources.remove(this);
+            markDirty();
+        }
+
+        @Override
+        public synchronized boolean isDestroyed() {
+            return mDestroyed;
+        }
+    }
+}
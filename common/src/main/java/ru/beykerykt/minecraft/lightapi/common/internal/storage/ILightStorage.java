@@ -0,0 +1,62 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.common.internal.storage;
+
+/**
+ * Persistent storage of custom light sources, see
+ * {@link ru.beykerykt.minecraft.lightapi.common.api.engine.LightFlag#USE_STORAGE_PROVIDER}
+ */
+public interface ILightStorage {
+
+    /**
+     * N/A
+     */
+    void onStart();
+
+    /**
+     * Writes all pending changes to the disk
+     */
+    void onShutdown();
+
+    /**
+     * Records the light source. The light level 0 removes the source. Changes are written to the disk
+     * later, in batches.
+     */
+    int storeLightLevel(String worldName, int blockX, int blockY, int blockZ, int lightLevel, int lightFlags);
+
+    /**
+     * Passes all light sources stored for the chunk to the consumer.
+     */
+    int forEachLight(String worldName, int chunkX, int chunkZ, LightConsumer consumer);
+
+    /**
+     * Writes pending changes to the disk
+     */
+    int flush();
+
+    interface LightConsumer {
+
+        void accept(int blockX, int blockY, int blockZ, int lightLevel, int lightFlags);
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.common.internal.storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.zip.CRC32;
+
+/**
+ * Memory-mapped file with the light sources of 32x32 chunks.
+ * <p>
+ * Layout: sector 0 holds the magic and the version, sector 1 holds the location (first sector and
+ * sector count) of each chunk. Chunk data starts with its length and CRC32. New data is always written
+ * into free sectors and forced to the disk before the location is published, so a crash can lose only
+ * the last unpublished changes, never corrupt the stored ones.
+ */
+final class RegionFile implements Closeable {
+
+    static final int CHUNK_COUNT = 32 * 32;
+    private static final int SECTOR_SIZE = 4096;
+    private static final int HEADER_SECTORS = 2;
+    private static final int MAX_SECTOR_COUNT = 255;
+    // The mapping grows by 1 MB
+    private static final int MAP_GROW_SECTORS = 256;
+    private static final int MAGIC = 0x4C415049; // LAPI
+    private static final int VERSION = 1;
+    private static final int CHUNK_HEADER_SIZE = 8;
+
+    private final File mFile;
+    private final FileChannel mChannel;
+    private final BitSet mUsedSectors = new BitSet();
+    private final CRC32 mCrc = new CRC32();
+    private MappedByteBuffer mBuffer;
+
+    RegionFile(File file) throws IOException {
+        this.mFile = file;
+        this.mChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = mChannel.size();
+        boolean isNew = size < HEADER_SECTORS * SECTOR_SIZE;
+        map((int) Math.max((size + SECTOR_SIZE - 1) / SECTOR_SIZE, HEADER_SECTORS));
+        mUsedSectors.set(0, HEADER_SECTORS);
+        if (isNew) {
+            mBuffer.putInt(0, MAGIC);
+            mBuffer.putInt(4, VERSION);
+            mBuffer.force();
+        } else if (mBuffer.getInt(0) != MAGIC || mBuffer.getInt(4) != VERSION) {
+            close();
+            throw new IOException("Unknown format of region file " + file);
+        } else {
+            int sectors = (int) (size / SECTOR_SIZE);
+            for (int index = 0; index < CHUNK_COUNT; index++) {
+                int location = getLocation(index);
+                int offset = location >>> 8;
+                int count = location & 0xFF;
+                if (location != 0 && (offset < HEADER_SECTORS || offset + count > sectors)) {
+                    // points out of the file, drop it
+                    setLocation(index, 0);
+                } else if (location != 0) {
+                    mUsedSectors.set(offset, offset + count);
+                }
+            }
+        }
+    }
+
+    private void map(int sectors) throws IOException {
+        mBuffer = mChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) sectors * SECTOR_SIZE);
+    }
+
+    private void ensureCapacity(int sectorEnd) throws IOException {
+        if ((long) sectorEnd * SECTOR_SIZE > mBuffer.capacity()) {
+            // mapping beyond the end extends the file
+            map(sectorEnd + MAP_GROW_SECTORS);
+        }
+    }
+
+    private int getLocation(int index) {
+        return mBuffer.getInt(SECTOR_SIZE + index * 4);
+    }
+
+    private void setLocation(int index, int location) {
+        mBuffer.putInt(SECTOR_SIZE + index * 4, location);
+    }
+
+    private int crc(ByteBuffer data) {
+        mCrc.reset();
+        mCrc.update(data.duplicate());
+        return (int) mCrc.getValue();
+    }
+
+    /**
+     * Returns the data of the chunk without copying it, or null if the chunk is not stored or damaged.
+     * The view is valid until the next write of this chunk.
+     */
+    ByteBuffer read(int index) {
+        int location = getLocation(index);
+        if (location == 0) {
+            return null;
+        }
+        int position = (location >>> 8) * SECTOR_SIZE;
+        int length = mBuffer.getInt(position);
+        if (length < 0 || length + CHUNK_HEADER_SIZE > (location & 0xFF) * SECTOR_SIZE) {
+            return null;
+        }
+        ByteBuffer data = mBuffer.duplicate();
+        data.position(position + CHUNK_HEADER_SIZE).limit(position + CHUNK_HEADER_SIZE + length);
+        data = data.slice().asReadOnlyBuffer();
+        if (crc(data) != mBuffer.getInt(position + 4)) {
+            return null;
+        }
+        return data;
+    }
+
+    private int allocate(int count) {
+        int offset = HEADER_SECTORS;
+        while (true) {
+            offset = mUsedSectors.nextClearBit(offset);
+            int end = mUsedSectors.nextSetBit(offset);
+            if (end < 0 || end - offset >= count) {
+                return offset;
+            }
+            offset = end;
+        }
+    }
+
+    /**
+     * Writes the data into free sectors. The data becomes visible only after {@link #force()} and
+     * {@link #publish(int, int)}.
+     *
+     * @return location of the written data, 0 for empty data
+     */
+    int write(ByteBuffer data) throws IOException {
+        int length = data.remaining();
+        if (length == 0) {
+            return 0;
+        }
+        int count = (length + CHUNK_HEADER_SIZE + SECTOR_SIZE - 1) / SECTOR_SIZE;
+        if (count > MAX_SECTOR_COUNT) {
+            throw new IOException("Chunk data is too large: " + length + " bytes");
+        }
+        int offset = allocate(count);
+        ensureCapacity(offset + count);
+        mUsedSectors.set(offset, offset + count);
+        int position = offset * SECTOR_SIZE;
+        mBuffer.putInt(position, length);
+        mBuffer.putInt(position + 4, crc(data));
+        ByteBuffer target = mBuffer.duplicate();
+        target.position(position + CHUNK_HEADER_SIZE);
+        target.put(data.duplicate());
+        return (offset << 8) | count;
+    }
+
+    /**
+     * Points the chunk to the new location and frees the old sectors. The data at the location must be
+     * forced before.
+     */
+    void publish(int index, int location) {
+        int oldLocation = getLocation(index);
+        setLocation(index, location);
+        if (oldLocation != 0) {
+            int offset = oldLocation >>> 8;
+            mUsedSectors.clear(offset, offset + (oldLocation & 0xFF));
+        }
+    }
+
+    void force() {
+        mBuffer.force();
+    }
+
+    File getFile() {
+        return mFile;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mBuffer.force();
+        mChannel.force(true);
+        mChannel.close();
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.common.internal.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import ru.beykerykt.minecraft.lightapi.common.api.ResultCode;
+import ru.beykerykt.minecraft.lightapi.common.api.engine.LightFlag;
+import ru.beykerykt.minecraft.lightapi.common.internal.IPlatformImpl;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.BlockPosition;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.ChunkUtils;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongIntHashMap;
+
+/**
+ * Light storage based on region files of 32x32 chunks, see {@link RegionFile}. Changes are collected in
+ * memory and merged with the chunks on the disk in batches from the background service, so storing a
+ * light never touches the files.
+ * <p>
+ * Chunk data is a list of int entries: x (4 bits), z (4 bits), y (12 bits), light level (4 bits) and light
+ * flags (8 bits).
+ */
+public class RegionLightStorage implements ILightStorage {
+
+    private static final String FILE_EXTENSION = ".llr";
+    private static final int STORED_FLAGS = LightFlag.BLOCK_LIGHTING | LightFlag.SKY_LIGHTING;
+
+    private final IPlatformImpl mPlatformImpl;
+    private final File mDirectory;
+    private final int mFlushPeriodMs;
+    // Guards the region files and all reads and writes of them. Taken before the monitor of this storage
+    private final Object mRegionLock = new Object();
+    // world name -> region key -> region file
+    private final Map<String, Map<Long, RegionFile>> mRegions = new HashMap<>();
+    // world name -> chunk key -> block position -> light level and flags, the level 0 removes the light.
+    // Changes since the last flush
+    private Map<String, Map<Long, LongIntHashMap>> mDirtyChunks = new HashMap<>();
+    // Changes taken by the running flush, they are not on the disk yet
+    private Map<String, Map<Long, LongIntHashMap>> mFlushingChunks = Collections.emptyMap();
+    private final AtomicBoolean isFlushQueued = new AtomicBoolean();
+    private ScheduledFuture<?> mFlushFuture;
+
+    public RegionLightStorage(IPlatformImpl platformImpl, File directory, int flushPeriodMs) {
+        this.mPlatformImpl = platformImpl;
+        this.mDirectory = directory;
+        this.mFlushPeriodMs = flushPeriodMs;
+    }
+
+    protected IPlatformImpl getPlatformImpl() {
+        return mPlatformImpl;
+    }
+
+    @Override
+    public void onStart() {
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            getPlatformImpl().error("Can not create light storage directory: " + mDirectory);
+        }
+        mFlushFuture = getPlatformImpl().getBackgroundService().scheduleWithFixedDelay(this::queueFlush,
+                mFlushPeriodMs, mFlushPeriodMs, TimeUnit.MILLISECONDS);
+        getPlatformImpl().debug(getClass().getName() + " is started!");
+    }
+
+    private void queueFlush() {
+        // writing files blocks, so it is done outside the background threads
+        if (isFlushQueued.compareAndSet(false, true)) {
+            getPlatformImpl().getBackgroundService().executeBlocking(() -> {
+                isFlushQueued.set(false);
+                flush();
+            });
+        }
+    }
+
+    @Override
+    public void onShutdown() {
+        if (mFlushFuture != null) {
+            mFlushFuture.cancel(false);
+        }
+        flush();
+        synchronized (mRegionLock) {
+            for (Map<Long, RegionFile> regions : mRegions.values()) {
+                for (RegionFile region : regions.values()) {
+                    try {
+                        region.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+            mRegions.clear();
+        }
+        getPlatformImpl().debug(getClass().getName() + " is shutdown!");
+    }
+
+    private static int encodeEntry(int blockX, int blockY, int blockZ, int lightLevel, int lightFlags) {
+        return (blockX & 15) | (blockZ & 15) << 4 | (blockY & 0xFFF) << 8 | (lightLevel & 15) << 20
+                | (lightFlags & 0xFF) << 24;
+    }
+
+    private static int encodeValue(int lightLevel, int lightFlags) {
+        return (lightLevel & 15) | (lightFlags & 0xFF) << 4;
+    }
+
+    private static int getRegionIndex(int chunkX, int chunkZ) {
+        return (chunkX & 31) | (chunkZ & 31) << 5;
+    }
+
+    /* @hide */
+    private RegionFile getRegionLocked(String worldName, int chunkX, int chunkZ, boolean create)
+            throws IOException {
+        Map<Long, RegionFile> regions = mRegions.computeIfAbsent(worldName, k -> new HashMap<>());
+        long regionKey = ChunkUtils.getChunkKey(chunkX >> 5, chunkZ >> 5);
+        RegionFile region = regions.get(regionKey);
+        if (region == null) {
+            File file = new File(new File(mDirectory, worldName), "r." + (chunkX >> 5) + "." + (chunkZ >> 5)
+                    + FILE_EXTENSION);
+            if (!create && !file.exists()) {
+                return null;
+            }
+            if (!file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+                throw new IOException("Can not create directory " + file.getParentFile());
+            }
+            region = new RegionFile(file);
+            regions.put(regionKey, region);
+        }
+        return region;
+    }
+
+    private void decodeChunk(ByteBuffer data, int chunkX, int chunkZ, LightConsumer consumer) {
+        int count = data.getInt(0);
+        for (int i = 0; i < count; i++) {
+            int entry = data.getInt(4 + i * 4);
+            int blockX = (chunkX << 4) | (entry & 15);
+            int blockZ = (chunkZ << 4) | ((entry >> 4) & 15);
+            int blockY = (entry << 12) >> 20;
+            consumer.accept(blockX, blockY, blockZ, (entry >>> 20) & 15, (entry >>> 24) & 0xFF);
+        }
+    }
+
+    /* @hide */
+    private LongIntHashMap readChunkLocked(String worldName, int chunkX, int chunkZ) throws IOException {
+        LongIntHashMap lights = new LongIntHashMap();
+        RegionFile region = getRegionLocked(worldName, chunkX, chunkZ, false);
+        ByteBuffer data = region != null ? region.read(getRegionIndex(chunkX, chunkZ)) : null;
+        if (data != null) {
+            decodeChunk(data, chunkX, chunkZ, (x, y, z, lightLevel, lightFlags) -> lights.put(
+                    BlockPosition.asLong(x, y, z), encodeValue(lightLevel, lightFlags)));
+        }
+        return lights;
+    }
+
+    private static void applyChanges(LongIntHashMap lights, LongIntHashMap changes) {
+        changes.forEach((pos, value) -> {
+            if ((value & 15) > 0) {
+                lights.put(pos, value);
+            } else {
+                lights.remove(pos);
+            }
+        });
+    }
+
+    private static LongIntHashMap getChunk(Map<String, Map<Long, LongIntHashMap>> worlds, String worldName,
+            long chunkKey) {
+        Map<Long, LongIntHashMap> chunks = worlds.get(worldName);
+        return chunks != null ? chunks.get(chunkKey) : null;
+    }
+
+    @Override
+    public synchronized int storeLightLevel(String worldName, int blockX, int blockY, int blockZ, int lightLevel,
+            int lightFlags) {
+        int finalLightLevel = lightLevel < 0 ? 0 : Math.min(lightLevel, 15);
+        Map<Long, LongIntHashMap> chunks = mDirtyChunks.computeIfAbsent(worldName, k -> new HashMap<>());
+        chunks.computeIfAbsent(ChunkUtils.getChunkKey(blockX >> 4, blockZ >> 4), k -> new LongIntHashMap()).put(
+                BlockPosition.asLong(blockX, blockY, blockZ), encodeValue(finalLightLevel, lightFlags & STORED_FLAGS));
+        return ResultCode.SUCCESS;
+    }
+
+    @Override
+    public int forEachLight(String worldName, int chunkX, int chunkZ, LightConsumer consumer) {
+        long chunkKey = ChunkUtils.getChunkKey(chunkX, chunkZ);
+        LongIntHashMap lights;
+        synchronized (mRegionLock) {
+            try {
+                lights = readChunkLocked(worldName, chunkX, chunkZ);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return ResultCode.FAILED;
+            }
+            // the flush can not publish meanwhile, so its changes are not counted twice or lost
+            synchronized (this) {
+                LongIntHashMap flushing = getChunk(mFlushingChunks, worldName, chunkKey);
+                if (flushing != null) {
+                    applyChanges(lights, flushing);
+                }
+                LongIntHashMap dirty = getChunk(mDirtyChunks, worldName, chunkKey);
+                if (dirty != null) {
+                    applyChanges(lights, dirty);
+                }
+            }
+        }
+        lights.forEach((pos, value) -> consumer.accept(BlockPosition.unpackLongX(pos),
+                BlockPosition.unpackLongY(pos), BlockPosition.unpackLongZ(pos), value & 15, value >>> 4));
+        return ResultCode.SUCCESS;
+    }
+
+    private ByteBuffer encodeChunk(LongIntHashMap lights) {
+        ByteBuffer data = ByteBuffer.allocate(4 + lights.size() * 4);
+        data.putInt(lights.size());
+        lights.forEach((pos, value) -> data.putInt(encodeEntry(BlockPosition.unpackLongX(pos),
+                BlockPosition.unpackLongY(pos), BlockPosition.unpackLongZ(pos), value & 15, value >>> 4)));
+        data.flip();
+        return lights.isEmpty() ? ByteBuffer.allocate(0) : data;
+    }
+
+    @Override
+    public int flush() {
+        synchronized (mRegionLock) {
+            Map<String, Map<Long, LongIntHashMap>> flushing;
+            synchronized (this) {
+                if (mDirtyChunks.isEmpty()) {
+                    return ResultCode.SUCCESS;
+                }
+                // new changes are collected while the files are written
+                flushing = mDirtyChunks;
+                mDirtyChunks = new HashMap<>();
+                mFlushingChunks = flushing;
+            }
+            int resultCode = ResultCode.SUCCESS;
+            // world name -> chunk key -> changes which could not be written
+            Map<String, Map<Long, LongIntHashMap>> failed = new HashMap<>();
+            for (Map.Entry<String, Map<Long, LongIntHashMap>> worldEntry : flushing.entrySet()) {
+                if (flushWorldLocked(worldEntry.getKey(), worldEntry.getValue(), failed) != ResultCode.SUCCESS) {
+                    resultCode = ResultCode.FAILED;
+                }
+            }
+            synchronized (this) {
+                mFlushingChunks = Collections.emptyMap();
+                // keep the changes for the next flush, newer changes of the same positions win
+                for (Map.Entry<String, Map<Long, LongIntHashMap>> worldEntry : failed.entrySet()) {
+                    Map<Long, LongIntHashMap> chunks = mDirtyChunks.computeIfAbsent(worldEntry.getKey(),
+                            k -> new HashMap<>());
+                    for (Map.Entry<Long, LongIntHashMap> chunkEntry : worldEntry.getValue().entrySet()) {
+                        LongIntHashMap newer = chunks.get(chunkEntry.getKey());
+                        if (newer != null) {
+                            newer.forEach(chunkEntry.getValue()::put);
+                        }
+                        chunks.put(chunkEntry.getKey(), chunkEntry.getValue());
+                    }
+                }
+            }
+            return resultCode;
+        }
+    }
+
+    /* @hide */
+    private int flushWorldLocked(String worldName, Map<Long, LongIntHashMap> chunks,
+            Map<String, Map<Long, LongIntHashMap>> failed) {
+        int resultCode = ResultCode.SUCCESS;
+        // region -> chunks of the region
+        Map<RegionFile, List<long[]>> written = new HashMap<>();
+        for (Map.Entry<Long, LongIntHashMap> chunkEntry : chunks.entrySet()) {
+            long chunkKey = chunkEntry.getKey();
+            int chunkX = ChunkUtils.getChunkX(chunkKey);
+            int chunkZ = ChunkUtils.getChunkZ(chunkKey);
+            try {
+                LongIntHashMap lights = readChunkLocked(worldName, chunkX, chunkZ);
+                applyChanges(lights, chunkEntry.getValue());
+                RegionFile region = getRegionLocked(worldName, chunkX, chunkZ, true);
+                int location = region.write(encodeChunk(lights));
+                written.computeIfAbsent(region, k -> new ArrayList<>()).add(
+                        new long[]{getRegionIndex(chunkX, chunkZ), location});
+            } catch (IOException e) {
+                getPlatformImpl().error("Can not save light sources of chunk " + chunkX + ", " + chunkZ);
+                e.printStackTrace();
+                failed.computeIfAbsent(worldName, k -> new HashMap<>()).put(chunkKey, chunkEntry.getValue());
+                resultCode = ResultCode.FAILED;
+            }
+        }
+        for (Map.Entry<RegionFile, List<long[]>> regionEntry : written.entrySet()) {
+            RegionFile region = regionEntry.getKey();
+            // the data must be on the disk before the header points to it
+            region.force();
+            for (long[] chunk : regionEntry.getValue()) {
+                region.publish((int) chunk[0], (int) chunk[1]);
+            }
+            region.force();
+        }
+        return resultCode;
+    }
+}
@@ -33,4 +33,12 @@ public class ChunkUtils {
     public static long getChunkKey(int chunkX, int chunkZ) {
         return (long) chunkX & 0xffffffffL | ((long) chunkZ & 0xffffffffL) << 32;
     }
+
+    public static int getChunkX(long chunkKey) {
+        return (int) chunkKey;
+    }
+
+    public static int getChunkZ(long chunkKey) {
+        return (int) (chunkKey >>> 32);
+    }
 }
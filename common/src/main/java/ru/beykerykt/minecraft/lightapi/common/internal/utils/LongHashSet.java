@@ -0,0 +1,159 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.common.internal.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash set of primitive longs. Not thread-safe.
+ */
+public class LongHashSet {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private long[] mKeys;
+    private boolean[] mUsed;
+    private int mSize;
+    private int mMask;
+    private int mResizeThreshold;
+
+    public LongHashSet() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max((int) (expectedSize / LOAD_FACTOR), DEFAULT_CAPACITY) - 1) << 1;
+        allocate(capacity);
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        mUsed = new boolean[capacity];
+        mMask = capacity - 1;
+        mResizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int findSlot(long key) {
+        int slot = mix(key) & mMask;
+        while (mUsed[slot] && mKeys[slot] != key) {
+            slot = (slot + 1) & mMask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = mKeys;
+        boolean[] oldUsed = mUsed;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = findSlot(oldKeys[i]);
+                mKeys[slot] = oldKeys[i];
+                mUsed[slot] = true;
+            }
+        }
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public boolean contains(long key) {
+        return mUsed[findSlot(key)];
+    }
+
+    /**
+     * Adds the key to the set.
+     *
+     * @return true if the key was not present in the set
+     */
+    public boolean add(long key) {
+        int slot = findSlot(key);
+        if (mUsed[slot]) {
+            return false;
+        }
+        mKeys[slot] = key;
+        mUsed[slot] = true;
+        if (++mSize > mResizeThreshold) {
+            rehash(mKeys.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the key from the set.
+     *
+     * @return true if the key was present in the set
+     */
+    public boolean remove(long key) {
+        int slot = findSlot(key);
+        if (!mUsed[slot]) {
+            return false;
+        }
+        // Backward shift deletion, keeps probe sequences valid without tombstones
+        int gap = slot;
+        int next = (gap + 1) & mMask;
+        while (mUsed[next]) {
+            int home = mix(mKeys[next]) & mMask;
+            if (((next - home) & mMask) >= ((next - gap) & mMask)) {
+                mKeys[gap] = mKeys[next];
+                gap = next;
+            }
+            next = (next + 1) & mMask;
+        }
+        mUsed[gap] = false;
+        mSize--;
+        return true;
+    }
+
+    public void clear() {
+        if (mSize > 0) {
+            Arrays.fill(mUsed, false);
+            mSize = 0;
+        }
+    }
+
+    public void forEach(Consumer consumer) {
+        for (int i = 0; i < mKeys.length; i++) {
+            if (mUsed[i]) {
+                consumer.accept(mKeys[i]);
+            }
+        }
+    }
+
+    public interface Consumer {
+
+        void accept(long key);
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.baker;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ru.beykerykt.minecraft.lightapi.baker.nbt.NbtCompound;
+import ru.beykerykt.minecraft.lightapi.baker.nbt.NbtIO;
+import ru.beykerykt.minecraft.lightapi.baker.nbt.NbtList;
+
+/**
+ * Block states and block light of a chunk read from a region file. Supports the chunk format of
+ * 1.13 - 1.17 ("Level" compound) and 1.18+.
+ */
+public class BakeChunk {
+
+    // 20w17a, entries of block states no longer span two longs
+    private static final int DATA_VERSION_NO_SPANNING = 2529;
+
+    private final int mChunkX;
+    private final int mChunkZ;
+    private final NbtCompound mRoot;
+    private final NbtCompound mLevel;
+    private final NbtList mSections;
+    private final boolean mLegacy;
+    private final boolean mSpanning;
+    private final Map<Integer, Section> mSectionsByY = new HashMap<>();
+    private int mMinSectionY = Integer.MAX_VALUE;
+    private int mMaxSectionY = Integer.MIN_VALUE;
+
+    public BakeChunk(int chunkX, int chunkZ, NbtCompound root, BlockOpacity blockOpacity) {
+        this.mChunkX = chunkX;
+        this.mChunkZ = chunkZ;
+        this.mRoot = root;
+        NbtCompound level = root.getCompound("Level");
+        this.mLegacy = level != null && !root.containsKey("sections");
+        this.mLevel = mLegacy ? level : root;
+        NbtList sections = mLevel.getList(mLegacy ? "Sections" : "sections");
+        if (sections == null) {
+            sections = new NbtList(NbtIO.TAG_COMPOUND);
+            mLevel.put(mLegacy ? "Sections" : "sections", sections);
+        }
+        this.mSections = sections;
+        this.mSpanning = root.getInt("DataVersion", 0) < DATA_VERSION_NO_SPANNING;
+        for (Object element : sections) {
+            if (!(element instanceof NbtCompound)) {
+                continue;
+            }
+            NbtCompound tag = (NbtCompound) element;
+            int sectionY = (byte) tag.getInt("Y", 0);
+            mMinSectionY = Math.min(mMinSectionY, sectionY);
+            mMaxSectionY = Math.max(mMaxSectionY, sectionY);
+            mSectionsByY.put(sectionY, new Section(tag, blockOpacity));
+        }
+    }
+
+    public int getChunkX() {
+        return mChunkX;
+    }
+
+    public int getChunkZ() {
+        return mChunkZ;
+    }
+
+    public NbtCompound getRoot() {
+        return mRoot;
+    }
+
+    /**
+     * If the light was not calculated yet, the server calculates it again on load and the baked light
+     * is lost.
+     */
+    public boolean isLightOn() {
+        return mLevel.getInt("isLightOn", 0) != 0;
+    }
+
+    public int getOpacity(int localX, int blockY, int localZ) {
+        int sectionY = blockY >> 4;
+        if (sectionY < mMinSectionY || sectionY > mMaxSectionY) {
+            return 15;
+        }
+        Section section = mSectionsByY.get(sectionY);
+        if (section == null) {
+            // sections without blocks are not stored
+            return 0;
+        }
+        return section.getOpacity(localX, blockY & 15, localZ);
+    }
+
+    public byte[] getBlockLight(int sectionY) {
+        Section section = mSectionsByY.get(sectionY);
+        return section != null ? section.mTag.getByteArray("BlockLight") : null;
+    }
+
+    public void setBlockLight(int sectionY, byte[] data) {
+        Section section = mSectionsByY.get(sectionY);
+        if (section == null) {
+            NbtCompound tag = new NbtCompound();
+            tag.put("Y", (byte) sectionY);
+            mSections.add(tag);
+            section = new Section(tag, null);
+            mSectionsByY.put(sectionY, section);
+        }
+        section.mTag.put("BlockLight", data);
+    }
+
+    private static int ceilLog2(int value) {
+        return 32 - Integer.numberOfLeadingZeros(value - 1);
+    }
+
+    private class Section {
+
+        private final NbtCompound mTag;
+        private final int[] mPaletteOpacity;
+        private final long[] mData;
+        private final int mBits;
+
+        Section(NbtCompound tag, BlockOpacity blockOpacity) {
+            this.mTag = tag;
+            NbtList palette;
+            long[] data;
+            if (mLegacy) {
+                palette = tag.getList("Palette");
+                data = tag.getLongArray("BlockStates");
+            } else {
+                NbtCompound blockStates = tag.getCompound("block_states");
+                palette = blockStates != null ? blockStates.getList("palette") : null;
+                data = blockStates != null ? blockStates.getLongArray("data") : null;
+            }
+            if (palette == null || palette.isEmpty() || blockOpacity == null) {
+                mPaletteOpacity = new int[]{0};
+                mData = null;
+                mBits = 0;
+                return;
+            }
+            mPaletteOpacity = new int[palette.size()];
+            for (int i = 0; i < palette.size(); i++) {
+                Object entry = palette.get(i);
+                String name = entry instanceof NbtCompound ? ((NbtCompound) entry).getString("Name") : null;
+                mPaletteOpacity[i] = name != null ? blockOpacity.getOpacity(name) : 15;
+            }
+            int bits = Math.max(4, ceilLog2(palette.size()));
+            int expectedLength = mSpanning ? (4096 * bits + 63) / 64 : (4096 + (64 / bits) - 1) / (64 / bits);
+            if (palette.size() == 1 || data == null || data.length != expectedLength) {
+                // a single block state, or data we can not read
+                mData = null;
+                mBits = 0;
+            } else {
+                mData = data;
+                mBits = bits;
+            }
+        }
+
+        int getOpacity(int localX, int localY, int localZ) {
+            if (mData == null) {
+                return mPaletteOpacity[0];
+            }
+            int index = (localY << 8) | (localZ << 4) | localX;
+            long mask = (1L << mBits) - 1;
+            int paletteIndex;
+            if (mSpanning) {
+                int bitIndex = index * mBits;
+                int longIndex = bitIndex >> 6;
+                int offset = bitIndex & 63;
+                long value = mData[longIndex] >>> offset;
+                if (offset + mBits > 64) {
+                    value |= mData[longIndex + 1] << (64 - offset);
+                }
+                paletteIndex = (int) (value & mask);
+            } else {
+                int valuesPerLong = 64 / mBits;
+                int offset = (index % valuesPerLong) * mBits;
+                paletteIndex = (int) ((mData[index / valuesPerLong] >>> offset) & mask);
+            }
+            return paletteIndex < mPaletteOpacity.length ? mPaletteOpacity[paletteIndex] : 15;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.baker;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Guesses how much block light a block absorbs from its name. Without the block registry the tool can
+ * not know the real shapes, so full blocks are opaque and the known see-through blocks are not. The
+ * guesses can be overridden from a file with "minecraft:name=opacity" lines.
+ */
+public class BlockOpacity {
+
+    private static final String[] TRANSPARENT_NAMES = {"air", "cave_air", "void_air", "light", "barrier",
+            "structure_void", "moving_piston", "grass", "tall_grass", "fern", "large_fern", "dead_bush", "snow",
+            "ladder", "vine", "lever", "tripwire", "tripwire_hook", "redstone_wire", "repeater", "comparator",
+            "cake", "chain", "scaffolding", "bell", "conduit", "hopper", "cauldron", "brewing_stand", "anvil",
+            "lectern", "enchanting_table", "end_rod", "lightning_rod", "sugar_cane", "bamboo",
+            "kelp", "kelp_plant", "seagrass", "tall_seagrass", "sea_pickle", "lily_pad", "cactus", "farmland",
+            "dirt_path", "grass_path", "nether_portal", "end_portal", "end_gateway", "fire", "soul_fire",
+            "campfire", "soul_campfire", "turtle_egg", "dragon_egg", "flower_pot", "sweet_berry_bush",
+            "glow_lichen", "hanging_roots", "spore_blossom", "big_dripleaf", "small_dripleaf",
+            "pointed_dripstone", "daylight_detector", "stonecutter", "grindstone", "chest", "trapped_chest",
+            "ender_chest", "piston_head", "beacon", "sculk_vein", "sculk_sensor", "sculk_shrieker",
+            "mangrove_roots", "frogspawn", "wheat", "carrots", "potatoes", "beetroots", "melon_stem",
+            "pumpkin_stem", "attached_melon_stem", "attached_pumpkin_stem", "nether_wart", "cocoa",
+            "twisting_vines", "twisting_vines_plant", "weeping_vines", "weeping_vines_plant", "cave_vines",
+            "cave_vines_plant", "sculk_catalyst", "rose_bush", "sunflower", "lilac", "peony", "dandelion",
+            "poppy", "blue_orchid", "allium", "azure_bluet", "oxeye_daisy", "cornflower", "lily_of_the_valley",
+            "wither_rose", "crimson_roots", "warped_roots", "nether_sprouts"};
+    private static final String[] TRANSPARENT_PARTS = {"glass", "_pane", "_slab", "_stairs", "_fence", "_wall",
+            "_door", "_trapdoor", "_sign", "_banner", "_button", "_pressure_plate", "rail", "_carpet", "torch",
+            "lantern", "candle", "_sapling", "_head", "_skull", "_bed", "shulker_box", "_coral", "_fungus",
+            "_mushroom", "_tulip", "_amethyst_bud", "amethyst_cluster", "iron_bars", "_gate", "leaves",
+            "azalea", "propagule", "_pickle", "_frame"};
+    private static final String[] FILTERING_NAMES = {"water", "bubble_column", "ice", "frosted_ice", "slime_block",
+            "honey_block", "spawner", "lava", "cobweb"};
+
+    private final Map<String, Integer> mOverrides = new ConcurrentHashMap<>();
+    private final Map<String, Integer> mCache = new ConcurrentHashMap<>();
+
+    public void loadOverrides(File file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int separator = line.indexOf('=');
+                if (separator < 0) {
+                    throw new IOException("Invalid opacity line: " + line);
+                }
+                int opacity = Integer.parseInt(line.substring(separator + 1).trim());
+                mOverrides.put(normalize(line.substring(0, separator).trim()), Math.max(0, Math.min(15, opacity)));
+            }
+        }
+        mCache.clear();
+    }
+
+    private static String normalize(String name) {
+        return name.indexOf(':') < 0 ? "minecraft:" + name : name;
+    }
+
+    private static boolean contains(String[] names, String name) {
+        for (String candidate : names) {
+            if (candidate.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int guess(String name) {
+        Integer override = mOverrides.get(name);
+        if (override != null) {
+            return override;
+        }
+        String path = name.substring(name.indexOf(':') + 1);
+        if (contains(FILTERING_NAMES, path)) {
+            return 1;
+        }
+        if (contains(TRANSPARENT_NAMES, path)) {
+            return 0;
+        }
+        for (String part : TRANSPARENT_PARTS) {
+            if (path.contains(part)) {
+                return 0;
+            }
+        }
+        return 15;
+    }
+
+    public int getOpacity(String name) {
+        return mCache.computeIfAbsent(normalize(name), this::guess);
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.baker;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ru.beykerykt.minecraft.lightapi.baker.anvil.AnvilRegionFile;
+import ru.beykerykt.minecraft.lightapi.baker.nbt.NbtCompound;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.ChunkUtils;
+
+/**
+ * Bakes custom block light into the region files of a world, so the lights need no work at runtime.
+ * <p>
+ * Usage: java -jar LightAPI-Baker.jar --region-dir &lt;world/region&gt; --lights &lt;file&gt;
+ * [--opacity &lt;file&gt;] [--threads &lt;count&gt;] [--dry-run]
+ * <p>
+ * The lights file has one "x y z level" light per line. The server must be stopped while baking.
+ */
+public class LightBaker {
+
+    private final File mRegionDir;
+    private final BlockOpacity mBlockOpacity;
+    private final int mThreadCount;
+    private final boolean mDryRun;
+
+    public LightBaker(File regionDir, BlockOpacity blockOpacity, int threadCount, boolean dryRun) {
+        this.mRegionDir = regionDir;
+        this.mBlockOpacity = blockOpacity;
+        this.mThreadCount = threadCount;
+        this.mDryRun = dryRun;
+    }
+
+    public static List<LightSource> readLights(File file) throws IOException {
+        List<LightSource> sources = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("[\\s,;]+");
+                if (parts.length != 4) {
+                    throw new IOException("Line " + lineNumber + ": expected \"x y z level\"");
+                }
+                try {
+                    int lightLevel = Integer.parseInt(parts[3]);
+                    if (lightLevel < 1 || lightLevel > 15) {
+                        throw new IOException("Line " + lineNumber + ": light level must be in range 1 - 15");
+                    }
+                    sources.add(new LightSource(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                            Integer.parseInt(parts[2]), lightLevel));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Line " + lineNumber + ": " + e.getMessage());
+                }
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Groups the sources by the regions their light reaches
+     */
+    private static Map<Long, List<LightSource>> groupByRegion(List<LightSource> sources) {
+        Map<Long, List<LightSource>> regions = new HashMap<>();
+        for (LightSource source : sources) {
+            int reach = source.getLightLevel() - 1;
+            for (int regionX = (source.getBlockX() - reach) >> 9; regionX <= (source.getBlockX() + reach) >> 9;
+                    regionX++) {
+                for (int regionZ = (source.getBlockZ() - reach) >> 9;
+                        regionZ <= (source.getBlockZ() + reach) >> 9; regionZ++) {
+                    regions.computeIfAbsent(ChunkUtils.getChunkKey(regionX, regionZ), k -> new ArrayList<>())
+                            .add(source);
+                }
+            }
+        }
+        return regions;
+    }
+
+    private int writeRegion(RegionBaker.Result result) throws IOException {
+        File file = RegionBaker.getRegionFile(mRegionDir, result.getRegionX(), result.getRegionZ());
+        AnvilRegionFile region = new AnvilRegionFile(file);
+        try {
+            Map<Integer, NbtCompound> changedChunks = new HashMap<>();
+            int baseChunkX = result.getRegionX() << 5;
+            int baseChunkZ = result.getRegionZ() << 5;
+            for (Map.Entry<Integer, Map<Integer, byte[]>> entry : result.getSections().entrySet()) {
+                int index = entry.getKey();
+                NbtCompound root = region.readChunk(index);
+                if (root == null) {
+                    continue;
+                }
+                BakeChunk chunk = new BakeChunk(baseChunkX + (index & 31), baseChunkZ + (index >> 5), root, null);
+                for (Map.Entry<Integer, byte[]> section : entry.getValue().entrySet()) {
+                    chunk.setBlockLight(section.getKey(), section.getValue());
+                }
+                changedChunks.put(index, chunk.getRoot());
+            }
+            return region.rewrite(changedChunks);
+        } finally {
+            region.close();
+        }
+    }
+
+    public void bake(List<LightSource> sources) throws IOException, InterruptedException {
+        Map<Long, List<LightSource>> regions = groupByRegion(sources);
+        ExecutorService executor = Executors.newFixedThreadPool(mThreadCount);
+        try {
+            long startTime = System.currentTimeMillis();
+            // all regions are read before any region is written
+            List<Future<RegionBaker.Result>> bakes = new ArrayList<>();
+            for (Map.Entry<Long, List<LightSource>> entry : regions.entrySet()) {
+                int regionX = ChunkUtils.getChunkX(entry.getKey());
+                int regionZ = ChunkUtils.getChunkZ(entry.getKey());
+                if (!RegionBaker.getRegionFile(mRegionDir, regionX, regionZ).exists()) {
+                    continue;
+                }
+                bakes.add(executor.submit(new RegionBaker(mRegionDir, regionX, regionZ, entry.getValue(),
+                        mBlockOpacity)));
+            }
+            List<RegionBaker.Result> results = new ArrayList<>();
+            int skippedChunks = 0;
+            for (Future<RegionBaker.Result> bake : bakes) {
+                RegionBaker.Result result = get(bake);
+                skippedChunks += result.getSkippedChunkCount();
+                if (!result.getSections().isEmpty()) {
+                    results.add(result);
+                }
+            }
+            System.out.println("Baked " + sources.size() + " lights in " + results.size() + " regions ("
+                    + (System.currentTimeMillis() - startTime) + " ms)");
+            if (skippedChunks > 0) {
+                System.out.println(skippedChunks + " chunks are skipped, their light is not calculated yet."
+                        + " Load them on the server once and bake again.");
+            }
+            if (mDryRun) {
+                return;
+            }
+
+            List<Future<Integer>> writes = new ArrayList<>();
+            for (RegionBaker.Result result : results) {
+                writes.add(executor.submit(() -> writeRegion(result)));
+            }
+            int writtenChunks = 0;
+            for (Future<Integer> write : writes) {
+                writtenChunks += get(write);
+            }
+            System.out.println("Written " + writtenChunks + " chunks (" + (System.currentTimeMillis() - startTime)
+                    + " ms)");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static <T> T get(Future<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: java -jar LightAPI-Baker.jar --region-dir <world/region> --lights <file>"
+                + " [--opacity <file>] [--threads <count>] [--dry-run]");
+    }
+
+    public static void main(String[] args) {
+        File regionDir = null;
+        File lightsFile = null;
+        File opacityFile = null;
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        boolean dryRun = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--region-dir":
+                        regionDir = new File(args[++i]);
+                        break;
+                    case "--lights":
+                        lightsFile = new File(args[++i]);
+                        break;
+                    case "--opacity":
+                        opacityFile = new File(args[++i]);
+                        break;
+                    case "--threads":
+                        threadCount = Math.max(1, Integer.parseInt(args[++i]));
+                        break;
+                    case "--dry-run":
+                        dryRun = true;
+                        break;
+                    default:
+                        printUsage();
+                        System.exit(1);
+                        return;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            printUsage();
+            System.exit(1);
+            return;
+        }
+        if (regionDir == null || lightsFile == null || !regionDir.isDirectory()) {
+            printUsage();
+            System.exit(1);
+            return;
+        }
+        try {
+            BlockOpacity blockOpacity = new BlockOpacity();
+            if (opacityFile != null) {
+                blockOpacity.loadOverrides(opacityFile);
+            }
+            List<LightSource> sources = readLights(lightsFile);
+            new LightBaker(regionDir, blockOpacity, threadCount, dryRun).bake(sources);
+        } catch (IOException e) {
+            System.err.println("Baking failed: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(2);
+        }
+    }
+}
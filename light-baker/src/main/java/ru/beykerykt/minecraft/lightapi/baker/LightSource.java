@@ -0,0 +1,58 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.baker;
+
+/**
+ * Custom light source placed by the tool
+ */
+public class LightSource {
+
+    private final int mBlockX;
+    private final int mBlockY;
+    private final int mBlockZ;
+    private final int mLightLevel;
+
+    public LightSource(int blockX, int blockY, int blockZ, int lightLevel) {
+        this.mBlockX = blockX;
+        this.mBlockY = blockY;
+        this.mBlockZ = blockZ;
+        this.mLightLevel = lightLevel;
+    }
+
+    public int getBlockX() {
+        return mBlockX;
+    }
+
+    public int getBlockY() {
+        return mBlockY;
+    }
+
+    public int getBlockZ() {
+        return mBlockZ;
+    }
+
+    public int getLightLevel() {
+        return mLightLevel;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.baker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import ru.beykerykt.minecraft.lightapi.baker.anvil.AnvilRegionFile;
+import ru.beykerykt.minecraft.lightapi.baker.nbt.NbtCompound;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.propagation.IOpacityProvider;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.propagation.LightPropagationEngine;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.propagation.LightSectionStorage;
+import ru.beykerykt.minecraft.lightapi.common.internal.engine.propagation.NibbleArray;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.BlockPosition;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.ChunkUtils;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongIntHashMap;
+import ru.beykerykt.minecraft.lightapi.common.internal.utils.LongObjectHashMap;
+
+/**
+ * Computes the block light of one region. The sources of the neighbour regions whose light reaches
+ * the region are spread too, so regions can be baked independently. Only the region files are read,
+ * nothing is written.
+ */
+public class RegionBaker implements Callable<RegionBaker.Result> {
+
+    // light 15 fades out after 14 blocks, the block behind is needed for the opacity
+    private static final int LIGHT_RADIUS = 15;
+
+    private final File mRegionDir;
+    private final int mRegionX;
+    private final int mRegionZ;
+    private final List<LightSource> mSources;
+    private final BlockOpacity mBlockOpacity;
+    private final LongObjectHashMap<BakeChunk> mChunks = new LongObjectHashMap<>();
+
+    public RegionBaker(File regionDir, int regionX, int regionZ, List<LightSource> sources,
+            BlockOpacity blockOpacity) {
+        this.mRegionDir = regionDir;
+        this.mRegionX = regionX;
+        this.mRegionZ = regionZ;
+        this.mSources = sources;
+        this.mBlockOpacity = blockOpacity;
+    }
+
+    public static File getRegionFile(File regionDir, int regionX, int regionZ) {
+        return new File(regionDir, "r." + regionX + "." + regionZ + ".mca");
+    }
+
+    private void loadChunks() throws IOException {
+        // region key -> chunk keys
+        Map<Long, LongIntHashMap> chunksByRegion = new HashMap<>();
+        for (LightSource source : mSources) {
+            for (int chunkX = (source.getBlockX() - LIGHT_RADIUS) >> 4;
+                    chunkX <= (source.getBlockX() + LIGHT_RADIUS) >> 4; chunkX++) {
+                for (int chunkZ = (source.getBlockZ() - LIGHT_RADIUS) >> 4;
+                        chunkZ <= (source.getBlockZ() + LIGHT_RADIUS) >> 4; chunkZ++) {
+                    chunksByRegion.computeIfAbsent(ChunkUtils.getChunkKey(chunkX >> 5, chunkZ >> 5),
+                            k -> new LongIntHashMap()).put(ChunkUtils.getChunkKey(chunkX, chunkZ), 0);
+                }
+            }
+        }
+        for (Map.Entry<Long, LongIntHashMap> entry : chunksByRegion.entrySet()) {
+            File file = getRegionFile(mRegionDir, ChunkUtils.getChunkX(entry.getKey()),
+                    ChunkUtils.getChunkZ(entry.getKey()));
+            if (!file.exists()) {
+                continue;
+            }
+            try (AnvilRegionFile region = new AnvilRegionFile(file)) {
+                IOException[] error = new IOException[1];
+                entry.getValue().forEach((chunkKey, value) -> {
+                    int chunkX = ChunkUtils.getChunkX(chunkKey);
+                    int chunkZ = ChunkUtils.getChunkZ(chunkKey);
+                    try {
+                        BakeChunk chunk = readChunk(region, chunkX, chunkZ);
+                        if (chunk != null) {
+                            mChunks.put(chunkKey, chunk);
+                        }
+                    } catch (IOException e) {
+                        error[0] = e;
+                    }
+                });
+                if (error[0] != null) {
+                    throw error[0];
+                }
+            }
+        }
+    }
+
+    private BakeChunk readChunk(AnvilRegionFile region, int chunkX, int chunkZ) throws IOException {
+        try {
+            NbtCompound root = region.readChunk(AnvilRegionFile.getIndex(chunkX, chunkZ));
+            return root != null ? new BakeChunk(chunkX, chunkZ, root, mBlockOpacity) : null;
+        } catch (IOException e) {
+            throw new IOException("Can not read chunk " + chunkX + ", " + chunkZ + " of " + region.getFile(), e);
+        }
+    }
+
+    private boolean isInRegion(int chunkX, int chunkZ) {
+        return chunkX >> 5 == mRegionX && chunkZ >> 5 == mRegionZ;
+    }
+
+    @Override
+    public Result call() throws IOException {
+        loadChunks();
+        LightSectionStorage storage = new LightSectionStorage();
+        mChunks.forEach((chunkKey, chunk) -> {
+            for (int sectionY = -64; sectionY < 64; sectionY++) {
+                byte[] blockLight = chunk.getBlockLight(sectionY);
+                if (blockLight != null && blockLight.length == NibbleArray.SIZE) {
+                    storage.setSection(chunk.getChunkX(), sectionY, chunk.getChunkZ(),
+                            new NibbleArray(blockLight.clone()));
+                }
+            }
+        });
+        LightPropagationEngine engine = new LightPropagationEngine(storage, new IOpacityProvider() {
+            @Override
+            public int getOpacity(int blockX, int blockY, int blockZ) {
+                BakeChunk chunk = mChunks.get(ChunkUtils.getChunkKey(blockX >> 4, blockZ >> 4));
+                return chunk != null ? chunk.getOpacity(blockX & 15, blockY, blockZ & 15) : 15;
+            }
+        });
+        // the brightest source wins if sources share a block
+        LongIntHashMap sources = new LongIntHashMap();
+        for (LightSource source : mSources) {
+            long pos = BlockPosition.asLong(source.getBlockX(), source.getBlockY(), source.getBlockZ());
+            sources.put(pos, Math.max(sources.get(pos, 0), source.getLightLevel()));
+        }
+        sources.forEach((pos, lightLevel) -> engine.setLightLevel(BlockPosition.unpackLongX(pos),
+                BlockPosition.unpackLongY(pos), BlockPosition.unpackLongZ(pos), lightLevel));
+        engine.propagate();
+
+        Result result = new Result(mRegionX, mRegionZ);
+        engine.forEachChangedSection(sectionKey -> {
+            int chunkX = BlockPosition.unpackLongX(sectionKey);
+            int sectionY = BlockPosition.unpackLongY(sectionKey);
+            int chunkZ = BlockPosition.unpackLongZ(sectionKey);
+            BakeChunk chunk = mChunks.get(ChunkUtils.getChunkKey(chunkX, chunkZ));
+            if (chunk == null || !isInRegion(chunkX, chunkZ)) {
+                return;
+            }
+            if (!chunk.isLightOn()) {
+                result.mSkippedChunks.put(ChunkUtils.getChunkKey(chunkX, chunkZ), 0);
+                return;
+            }
+            NibbleArray section = storage.getSection(chunkX, sectionY, chunkZ);
+            if (section != null) {
+                result.mSections.computeIfAbsent(AnvilRegionFile.getIndex(chunkX, chunkZ), k -> new HashMap<>())
+                        .put(sectionY, section.getData());
+            }
+        });
+        return result;
+    }
+
+    public static class Result {
+
+        private final int mRegionX;
+        private final int mRegionZ;
+        // chunk index -> section Y -> block light
+        private final Map<Integer, Map<Integer, byte[]>> mSections = new HashMap<>();
+        private final LongIntHashMap mSkippedChunks = new LongIntHashMap();
+
+        Result(int regionX, int regionZ) {
+            this.mRegionX = regionX;
+            this.mRegionZ = regionZ;
+        }
+
+        public int getRegionX() {
+            return mRegionX;
+        }
+
+        public int getRegionZ() {
+            return mRegionZ;
+        }
+
+        public Map<Integer, Map<Integer, byte[]>> getSections() {
+            return mSections;
+        }
+
+        /**
+         * Chunks whose light is not calculated yet, the server would discard the baked light.
+         */
+        public int getSkippedChunkCount() {
+            return mSkippedChunks.size();
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.baker.anvil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import ru.beykerykt.minecraft.lightapi.baker.nbt.NbtCompound;
+import ru.beykerykt.minecraft.lightapi.baker.nbt.NbtIO;
+
+/**
+ * Anvil region file (.mca) of 32x32 chunks. The file is mapped read-only, chunks are decompressed
+ * straight from the mapping. Changes are written into a new file which replaces the old one.
+ */
+public class AnvilRegionFile implements Closeable {
+
+    public static final int CHUNK_COUNT = 1024;
+    private static final int SECTOR_SIZE = 4096;
+    private static final int HEADER_SIZE = SECTOR_SIZE * 2;
+    private static final int MAX_SECTOR_COUNT = 255;
+    private static final byte COMPRESSION_GZIP = 1;
+    private static final byte COMPRESSION_ZLIB = 2;
+    private static final byte COMPRESSION_NONE = 3;
+    private static final int COMPRESSION_EXTERNAL = 0x80;
+
+    private final File mFile;
+    private final RandomAccessFile mRaf;
+    private final MappedByteBuffer mBuffer;
+
+    public AnvilRegionFile(File file) throws IOException {
+        this.mFile = file;
+        this.mRaf = new RandomAccessFile(file, "r");
+        long size = mRaf.length();
+        if (size < HEADER_SIZE) {
+            mRaf.close();
+            throw new IOException("Region file is too small: " + file);
+        }
+        this.mBuffer = mRaf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    public static int getIndex(int chunkX, int chunkZ) {
+        return (chunkX & 31) | (chunkZ & 31) << 5;
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    private int getLocation(int index) {
+        return mBuffer.getInt(index * 4);
+    }
+
+    public int getTimestamp(int index) {
+        return mBuffer.getInt(SECTOR_SIZE + index * 4);
+    }
+
+    /**
+     * Returns the stored chunk: length, compression type and the compressed data, or null.
+     */
+    public ByteBuffer getRawChunk(int index) {
+        int location = getLocation(index);
+        if (location == 0) {
+            return null;
+        }
+        long start = (long) (location >>> 8) * SECTOR_SIZE;
+        if (start + 5 > mBuffer.capacity()) {
+            return null;
+        }
+        int length = mBuffer.getInt((int) start);
+        if (length <= 0 || start + 4 + length > mBuffer.capacity()) {
+            return null;
+        }
+        ByteBuffer raw = mBuffer.duplicate();
+        raw.position((int) start).limit((int) start + 4 + length);
+        return raw.slice();
+    }
+
+    public boolean hasChunk(int index) {
+        return getRawChunk(index) != null;
+    }
+
+    public NbtCompound readChunk(int index) throws IOException {
+        ByteBuffer raw = getRawChunk(index);
+        if (raw == null) {
+            return null;
+        }
+        int compression = raw.get(4) & 0xFF;
+        if ((compression & COMPRESSION_EXTERNAL) != 0) {
+            throw new IOException("External chunks are not supported");
+        }
+        ByteBuffer data = raw.duplicate();
+        data.position(5);
+        InputStream in = new ByteBufferInputStream(data.slice());
+        switch (compression) {
+            case COMPRESSION_GZIP:
+                in = new GZIPInputStream(in);
+                break;
+            case COMPRESSION_ZLIB:
+                in = new InflaterInputStream(in);
+                break;
+            case COMPRESSION_NONE:
+                break;
+            default:
+                throw new IOException("Unsupported compression type " + compression);
+        }
+        try (DataInputStream dis = new DataInputStream(in)) {
+            return NbtIO.readRoot(dis);
+        }
+    }
+
+    private static byte[] compress(NbtCompound chunk) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16384);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            NbtIO.writeRoot(out, chunk);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes the region with the changed chunks into a new file and replaces this file with it. The
+     * region is closed afterwards.
+     *
+     * @return the number of written changed chunks
+     */
+    public int rewrite(Map<Integer, NbtCompound> changedChunks) throws IOException {
+        File tmpFile = new File(mFile.getAbsoluteFile().getParentFile(), mFile.getName() + ".tmp");
+        int written = 0;
+        int timestamp = (int) (System.currentTimeMillis() / 1000L);
+        try (RandomAccessFile out = new RandomAccessFile(tmpFile, "rw")) {
+            out.setLength(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            int sector = HEADER_SIZE / SECTOR_SIZE;
+            for (int index = 0; index < CHUNK_COUNT; index++) {
+                ByteBuffer data = null;
+                int chunkTimestamp = getTimestamp(index);
+                NbtCompound changed = changedChunks.get(index);
+                if (changed != null) {
+                    byte[] compressed = compress(changed);
+                    if ((compressed.length + 5 + SECTOR_SIZE - 1) / SECTOR_SIZE <= MAX_SECTOR_COUNT) {
+                        data = ByteBuffer.allocate(5 + compressed.length);
+                        data.putInt(compressed.length + 1).put(COMPRESSION_ZLIB).put(compressed).flip();
+                        chunkTimestamp = timestamp;
+                        written++;
+                    } else {
+                        System.err.println("Chunk " + index + " of " + mFile.getName()
+                                + " is too large after baking, skipped");
+                    }
+                }
+                if (data == null) {
+                    data = getRawChunk(index);
+                    if (data == null) {
+                        continue;
+                    }
+                }
+                int sectorCount = (data.remaining() + SECTOR_SIZE - 1) / SECTOR_SIZE;
+                out.seek((long) sector * SECTOR_SIZE);
+                out.getChannel().write(data);
+                header.putInt(index * 4, sector << 8 | sectorCount);
+                header.putInt(SECTOR_SIZE + index * 4, chunkTimestamp);
+                sector += sectorCount;
+            }
+            // pad the last sector
+            out.setLength((long) sector * SECTOR_SIZE);
+            out.seek(0);
+            out.write(header.array());
+            out.getFD().sync();
+        }
+        close();
+        Files.move(tmpFile.toPath(), mFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        return written;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mRaf.close();
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer mBuffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.mBuffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return mBuffer.hasRemaining() ? mBuffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!mBuffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, mBuffer.remaining());
+            mBuffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return mBuffer.remaining();
+        }
+    }
+}
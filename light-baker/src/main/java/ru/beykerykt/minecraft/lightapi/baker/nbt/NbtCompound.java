@@ -0,0 +1,64 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.baker.nbt;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Compound tag. Values are boxed primitives, arrays, strings, {@link NbtList} or {@link NbtCompound}.
+ */
+public class NbtCompound extends LinkedHashMap<String, Object> {
+
+    private static final long serialVersionUID = 4398860843647309074L;
+
+    public NbtCompound getCompound(String key) {
+        Object value = get(key);
+        return value instanceof NbtCompound ? (NbtCompound) value : null;
+    }
+
+    public NbtList getList(String key) {
+        Object value = get(key);
+        return value instanceof NbtList ? (NbtList) value : null;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        Object value = get(key);
+        return value instanceof Number ? ((Number) value).intValue() : defaultValue;
+    }
+
+    public String getString(String key) {
+        Object value = get(key);
+        return value instanceof String ? (String) value : null;
+    }
+
+    public byte[] getByteArray(String key) {
+        Object value = get(key);
+        return value instanceof byte[] ? (byte[]) value : null;
+    }
+
+    public long[] getLongArray(String key) {
+        Object value = get(key);
+        return value instanceof long[] ? (long[]) value : null;
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2022 Vladimir Mikhailov <beykerykt@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.beykerykt.minecraft.lightapi.baker.nbt;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Reads and writes uncompressed named binary tags
+ */
+public final class NbtIO {
+
+    public static final byte TAG_END = 0;
+    public static final byte TAG_BYTE = 1;
+    public static final byte TAG_SHORT = 2;
+    public static final byte TAG_INT = 3;
+    public static final byte TAG_LONG = 4;
+    public static final byte TAG_FLOAT = 5;
+    public static final byte TAG_DOUBLE = 6;
+    public static final byte TAG_BYTE_ARRAY = 7;
+    public static final byte TAG_STRING = 8;
+    public static final byte TAG_LIST = 9;
+    public static final byte TAG_COMPOUND = 10;
+    public static final byte TAG_INT_ARRAY = 11;
+    public static final byte TAG_LONG_ARRAY = 12;
+
+    private static final int MAX_DEPTH = 512;
+
+    private NbtIO() {
+    }
+
+    /**
+     * Reads the root compound, the name of the root tag is dropped.
+     */
+    public static NbtCompound readRoot(DataInput in) throws IOException {
+        byte type = in.readByte();
+        if (type != TAG_COMPOUND) {
+            throw new IOException("Root tag must be a compound, got " + type);
+        }
+        in.readUTF();
+        return (NbtCompound) readPayload(in, type, 0);
+    }
+
+    public static void writeRoot(DataOutput out, NbtCompound root) throws IOException {
+        out.writeByte(TAG_COMPOUND);
+        out.writeUTF("");
+        writePayload(out, root);
+    }
+
+    private static Object readPayload(DataInput in, byte type, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("NBT is too deep");
+        }
+        switch (type) {
+            case TAG_BYTE:
+                return in.readByte();
+            case TAG_SHORT:
+                return in.readShort();
+            case TAG_INT:
+                return in.readInt();
+            case TAG_LONG:
+                return in.readLong();
+            case TAG_FLOAT:
+                return in.readFloat();
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_BYTE_ARRAY: {
+                byte[] value = new byte[in.readInt()];
+                in.readFully(value);
+                return value;
+            }
+            case TAG_STRING:
+                return in.readUTF();
+            case TAG_LIST: {
+                byte elementType = in.readByte();
+                int size = in.readInt();
+                NbtList list = new NbtList(elementType);
+                for (int i = 0; i < size; i++) {
+                    list.add(readPayload(in, elementType, depth + 1));
+                }
+                return list;
+            }
+            case TAG_COMPOUND: {
+                NbtCompound compound = new NbtCompound();
+                byte childType;
+                while ((childType = in.readByte()) != TAG_END) {
+                    String name = in.readUTF();
+                    compound.put(name, readPayload(in, childType, depth + 1));
+                }
+                return compound;
+            }
+            case TAG_INT_ARRAY: {
+                int[] value = new int[in.readInt()];
+                for (int i = 0; i < value.length; i++) {
+                    value[i] = in.readInt();
+                }
+                return value;
+            }
+            case TAG_LONG_ARRAY: {
+                long[] value = new long[in.readInt()];
+                for (int i = 0; i < value.length; i++) {
+                    value[i] = in.readLong();
+                }
+                return value;
+            }
+            default:
+                throw new IOException("Unknown tag type " + type);
+        }
+    }
+
+    private static byte getType(Object value) {
+        if (value instanceof Byte) {
+            return TAG_BYTE;
+        } else if (value instanceof Short) {
+            return TAG_SHORT;
+        } else if (value instanceof Integer) {
+            return TAG_INT;
+        } else if (value instanceof Long) {
+            return TAG_LONG;
+        } else if (value instanceof Float) {
+            return TAG_FLOAT;
+        } else if (value instanceof Double) {
+            return TAG_DOUBLE;
+        } else if (value instanceof byte[]) {
+            return TAG_BYTE_ARRAY;
+        } else if (value instanceof String) {
+            return TAG_STRING;
+        } else if (value instanceof NbtList) {
+            return TAG_LIST;
+        } else if (value instanceof NbtCompound) {
+            return TAG_COMPOUND;
+        } else if (value instanceof int[]) {
+            return TAG_INT_ARRAY;
+        } else if (value instanceof long[]) {
+            return TAG_LONG_ARRAY;
+        }
+        throw new IllegalArgumentException("Unsupported value: " + value.getClass().getName());
+    }
+
+    private static void writePayload(DataOutput out, Object value) throws IOException {
+        switch (getType(value)) {
+            case TAG_BYTE:
+                out.writeByte((Byte) value);
+                break;
+            case TAG_SHORT:
+                out.writeShort((Short) value);
+                break;
+            case TAG_INT:
+                out.writeInt((Integer) value);
+                break;
+            case TAG_LONG:
+                out.writeLong((Long) value);
+                break;
+            case TAG_FLOAT:
+                out.writeFloat((Float) value);
+                break;
+            case TAG_DOUBLE:
+                out.writeDouble((Double) value);
+                break;
+            case TAG_BYTE_ARRAY: {
+                byte[] array = (byte[]) value;
+                out.writeInt(array.length);
+                out.write(array);
+                break;
+            }
+            case TAG_STRING:
+                out.writeUTF((String) value);
+                break;
+            case TAG_LIST: {
+                NbtList list = (NbtList) value;
+                byte elementType = list.isEmpty() ? list.getElementType() : getType(list.get(0));
+                out.writeByte(elementType);
+                out.writeInt(list.size());
+                for (Object element : list) {
+                    writePayload(out, element);
+                }
+                break;
+            }
+            case TAG_COMPOUND: {
+                for (Map.Entry<String, Object> entry : ((NbtCompound) value).entrySet()) {
+                    out.writeByte(getType(entry.getValue()));
+                    out.writeUTF(entry.getKey());
+                    writePayload(out, entry.getValue());
+                }
+                out.writeByte(TAG_END);
+                break;
+            }
+            case TAG_INT_ARRAY: {
+                int[] array = (int[]) value;
+                out.writeInt(array.length);
+                for (int element : array) {
+                    out.writeInt(element);
+                }
+                break;
+            }
+            case TAG_LONG_ARRAY: {
+                long[] array = (long[]) value;
+                out.writeInt(array.length);
+                for (long element : array) {
+                    out.writeLong(element);
+                }
+                break;
+            }
+            default:
+                break;
+        }
+    }
+}